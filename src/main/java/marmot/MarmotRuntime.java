@@ -6,6 +6,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 
 import utils.func.FOption;
@@ -22,6 +23,7 @@ import marmot.exec.MarmotAnalysis;
 import marmot.exec.MarmotExecution;
 import marmot.exec.MarmotExecutionException;
 import marmot.exec.PlanAnalysis;
+import marmot.geo.query.RangeQueryEstimate;
 import marmot.io.MarmotFileNotFoundException;
 import marmot.optor.CreateDataSetOptions;
 
@@ -55,6 +57,21 @@ public interface MarmotRuntime {
 	 */
 	public List<DataSet> getDataSetAll();
 	
+	/**
+	 * 주어진 데이터세트들 각각에 대해 주어진 질의 영역에 대한 영역 질의 결과 예측치를 반환한다.
+	 * <p>
+	 * 반환되는 예측치들은 {@code dsIds}의 순서와 동일하다.
+	 * 
+	 * @param dsIds	데이터세트 식별자 리스트.
+	 * @param range	질의 영역.
+	 * @return	영역 질의 결과 예측치 리스트.
+	 */
+	public default List<RangeQueryEstimate> estimateRangeQueries(List<String> dsIds, Envelope range) {
+		return FStream.from(dsIds)
+						.map(id -> getDataSet(id).estimateRangeQuery(range))
+						.toList();
+	}
+	
 	/**
 	 * 주어진 식별자에 해당하는 데이터세트를 삭제시킨다.
 	 * 
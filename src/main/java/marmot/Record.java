@@ -67,6 +67,10 @@ public interface Record {
 	/**
 	 * 레코드의 모든 컬럼 값들을 리스트 형태로 반환한다.
 	 * 리스트의 컬럼 값들은 레코드 스키마에 정의된 순서대로 기록된다.
+	 * <p>
+	 * 구현에 따라 레코드 내부 배열이 반환되거나 호출시마다 새 배열이 생성될 수 있으므로
+	 * ({@link marmot.support.PrimitiveRecord}), 반환된 배열을 통해 레코드를 수정해서는 안되며
+	 * 개별 컬럼 값만 필요한 경우는 {@link #get(int)}를 사용한다.
 	 * 
 	 * @return	컬럼 값 리스트.
 	 */
@@ -207,6 +211,45 @@ public interface Record {
 		return DataUtils.asDouble(get(name));
 	}
 	
+	/**
+	 * 순번에 해당하는 컬럼에 정수 값을 설정한다.
+	 * <p>
+	 * 기본 구현은 값을 boxing하여 {@link #set(int, Object)}를 호출한다.
+	 *
+	 * @param idx	컬럼 순번.
+	 * @param value	컬럼 값.
+	 * @return	갱신된 레코드 객체.
+	 */
+	public default Record setInt(int idx, int value) {
+		return set(idx, value);
+	}
+
+	/**
+	 * 순번에 해당하는 컬럼에 long 값을 설정한다.
+	 * <p>
+	 * 기본 구현은 값을 boxing하여 {@link #set(int, Object)}를 호출한다.
+	 *
+	 * @param idx	컬럼 순번.
+	 * @param value	컬럼 값.
+	 * @return	갱신된 레코드 객체.
+	 */
+	public default Record setLong(int idx, long value) {
+		return set(idx, value);
+	}
+
+	/**
+	 * 순번에 해당하는 컬럼에 double 값을 설정한다.
+	 * <p>
+	 * 기본 구현은 값을 boxing하여 {@link #set(int, Object)}를 호출한다.
+	 *
+	 * @param idx	컬럼 순번.
+	 * @param value	컬럼 값.
+	 * @return	갱신된 레코드 객체.
+	 */
+	public default Record setDouble(int idx, double value) {
+		return set(idx, value);
+	}
+
 	public default float getFloat(int idx) {
 		return DataUtils.asFloat(get(idx));
 	}
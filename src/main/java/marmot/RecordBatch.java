@@ -0,0 +1,372 @@
+package marmot;
+
+import java.util.Arrays;
+
+import org.locationtech.jts.geom.Geometry;
+
+import utils.Preconditions;
+
+import marmot.type.DataType;
+import marmot.type.TypeCode;
+
+
+/**
+ * {@code RecordBatch}는 동일 스키마를 갖는 여러 레코드를 컬럼 단위로 저장하는 클래스이다.
+ * <p>
+ * 각 컬럼은 컬럼 타입에 따라 primitive 배열 ({@code int[]}, {@code long[]}, {@code double[]}),
+ * 공간 객체 배열 ({@link Geometry}[]) 또는 일반 객체 배열 중 하나로 저장되고,
+ * 컬럼 값의 null 여부는 컬럼 별 bitmap으로 관리된다.
+ * 이를 통해 레코드 단위로 값을 boxing/unboxing 하지 않고 다수의 레코드를 한번에 처리할 수 있다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class RecordBatch {
+	public static final int DEFAULT_CAPACITY = 4 * 1024;
+
+	public enum VectorType {
+		INT, LONG, DOUBLE, GEOMETRY, OBJECT;
+	}
+
+	private final RecordSchema m_schema;
+	private final int m_capacity;
+	private final VectorType[] m_types;
+	private final TypeCode[] m_tcs;
+	private final Object[] m_vectors;
+	private final long[][] m_nulls;
+	private int m_size = 0;
+
+	public static RecordBatch of(RecordSchema schema) {
+		return new RecordBatch(schema, DEFAULT_CAPACITY);
+	}
+
+	public static RecordBatch of(RecordSchema schema, int capacity) {
+		return new RecordBatch(schema, capacity);
+	}
+
+	private RecordBatch(RecordSchema schema, int capacity) {
+		Preconditions.checkNotNullArgument(schema, "RecordSchema");
+		Preconditions.checkArgument(capacity > 0, "capacity > 0, but: " + capacity);
+
+		m_schema = schema;
+		m_capacity = capacity;
+
+		int ncols = schema.getColumnCount();
+		m_types = new VectorType[ncols];
+		m_tcs = new TypeCode[ncols];
+		m_vectors = new Object[ncols];
+		m_nulls = new long[ncols][(capacity + 63) >>> 6];
+		for ( int i =0; i < ncols; ++i ) {
+			DataType type = schema.getColumnAt(i).type();
+			m_tcs[i] = type.getTypeCode();
+			m_types[i] = toVectorType(type);
+			switch ( m_types[i] ) {
+				case INT:
+					m_vectors[i] = new int[capacity];
+					break;
+				case LONG:
+					m_vectors[i] = new long[capacity];
+					break;
+				case DOUBLE:
+					m_vectors[i] = new double[capacity];
+					break;
+				case GEOMETRY:
+					m_vectors[i] = new Geometry[capacity];
+					break;
+				default:
+					m_vectors[i] = new Object[capacity];
+					break;
+			}
+		}
+	}
+
+	/**
+	 * 본 배치에 저장된 레코드들의 스키마를 반환한다.
+	 *
+	 * @return	레코드 스키마.
+	 */
+	public RecordSchema getRecordSchema() {
+		return m_schema;
+	}
+
+	/**
+	 * 본 배치에 저장 가능한 최대 레코드 수를 반환한다.
+	 *
+	 * @return	최대 레코드 수
+	 */
+	public int capacity() {
+		return m_capacity;
+	}
+
+	/**
+	 * 본 배치에 저장된 레코드 수를 반환한다.
+	 *
+	 * @return	레코드 수
+	 */
+	public int size() {
+		return m_size;
+	}
+
+	public boolean isEmpty() {
+		return m_size == 0;
+	}
+
+	public boolean isFull() {
+		return m_size >= m_capacity;
+	}
+
+	/**
+	 * 배치에 저장된 모든 레코드를 제거한다.
+	 * <p>
+	 * 할당된 컬럼 배열은 재사용된다.
+	 */
+	public void clear() {
+		for ( int i =0; i < m_vectors.length; ++i ) {
+			Arrays.fill(m_nulls[i], 0L);
+			switch ( m_types[i] ) {
+				case GEOMETRY:
+				case OBJECT:
+					// 참조 객체가 GC되도록 사용된 영역을 비운다.
+					Arrays.fill((Object[])m_vectors[i], 0, m_size, null);
+					break;
+				default:
+			}
+		}
+		m_size = 0;
+	}
+
+	/**
+	 * 주어진 순번의 컬럼이 저장되는 벡터의 형태를 반환한다.
+	 *
+	 * @param colIdx	컬럼 순번
+	 * @return	벡터 형태
+	 */
+	public VectorType getVectorType(int colIdx) {
+		return m_types[colIdx];
+	}
+
+	public int[] getIntVector(int colIdx) {
+		checkVectorType(colIdx, VectorType.INT);
+		return (int[])m_vectors[colIdx];
+	}
+
+	public long[] getLongVector(int colIdx) {
+		checkVectorType(colIdx, VectorType.LONG);
+		return (long[])m_vectors[colIdx];
+	}
+
+	public double[] getDoubleVector(int colIdx) {
+		checkVectorType(colIdx, VectorType.DOUBLE);
+		return (double[])m_vectors[colIdx];
+	}
+
+	public Geometry[] getGeometryVector(int colIdx) {
+		checkVectorType(colIdx, VectorType.GEOMETRY);
+		return (Geometry[])m_vectors[colIdx];
+	}
+
+	public Object[] getObjectVector(int colIdx) {
+		checkVectorType(colIdx, VectorType.OBJECT);
+		return (Object[])m_vectors[colIdx];
+	}
+
+	public boolean isNull(int row, int colIdx) {
+		return (m_nulls[colIdx][row >>> 6] & (1L << row)) != 0;
+	}
+
+	public int getInt(int row, int colIdx) {
+		return getIntVector(colIdx)[row];
+	}
+
+	public long getLong(int row, int colIdx) {
+		return getLongVector(colIdx)[row];
+	}
+
+	public double getDouble(int row, int colIdx) {
+		return getDoubleVector(colIdx)[row];
+	}
+
+	public Geometry getGeometry(int row, int colIdx) {
+		return getGeometryVector(colIdx)[row];
+	}
+
+	/**
+	 * 주어진 위치의 컬럼 값을 객체 형태로 반환한다.
+	 * <p>
+	 * primitive 벡터에 저장된 값은 컬럼 타입에 맞게 boxing되어 반환된다.
+	 *
+	 * @param row		레코드 순번
+	 * @param colIdx	컬럼 순번
+	 * @return	컬럼 값. null인 경우는 {@code null}.
+	 */
+	public Object get(int row, int colIdx) {
+		if ( isNull(row, colIdx) ) {
+			return null;
+		}
+
+		switch ( m_types[colIdx] ) {
+			case INT:
+				int iv = ((int[])m_vectors[colIdx])[row];
+				switch ( m_tcs[colIdx] ) {
+					case BYTE:
+						return (byte)iv;
+					case SHORT:
+						return (short)iv;
+					default:
+						return iv;
+				}
+			case LONG:
+				return ((long[])m_vectors[colIdx])[row];
+			case DOUBLE:
+				double dv = ((double[])m_vectors[colIdx])[row];
+				return (m_tcs[colIdx] == TypeCode.FLOAT) ? (Object)(float)dv : (Object)dv;
+			default:
+				return ((Object[])m_vectors[colIdx])[row];
+		}
+	}
+
+	/**
+	 * 주어진 위치의 컬럼 값을 설정한다.
+	 *
+	 * @param row		레코드 순번
+	 * @param colIdx	컬럼 순번
+	 * @param value		컬럼 값
+	 */
+	public void set(int row, int colIdx, Object value) {
+		Preconditions.checkArgument(row >= 0 && row < m_capacity, "invalid row index: " + row);
+
+		if ( value == null ) {
+			m_nulls[colIdx][row >>> 6] |= (1L << row);
+			switch ( m_types[colIdx] ) {
+				case GEOMETRY:
+				case OBJECT:
+					((Object[])m_vectors[colIdx])[row] = null;
+					break;
+				default:
+			}
+			return;
+		}
+
+		m_nulls[colIdx][row >>> 6] &= ~(1L << row);
+		switch ( m_types[colIdx] ) {
+			case INT:
+				((int[])m_vectors[colIdx])[row] = ((Number)value).intValue();
+				break;
+			case LONG:
+				((long[])m_vectors[colIdx])[row] = ((Number)value).longValue();
+				break;
+			case DOUBLE:
+				((double[])m_vectors[colIdx])[row] = ((Number)value).doubleValue();
+				break;
+			case GEOMETRY:
+				((Geometry[])m_vectors[colIdx])[row] = (Geometry)value;
+				break;
+			default:
+				((Object[])m_vectors[colIdx])[row] = value;
+				break;
+		}
+	}
+
+	/**
+	 * 주어진 레코드를 배치의 마지막에 추가한다.
+	 *
+	 * @param record	추가할 레코드.
+	 * @return	추가 여부. 배치가 이미 가득 찬 경우는 {@code false}.
+	 */
+	public boolean add(Record record) {
+		if ( isFull() ) {
+			return false;
+		}
+
+		int row = m_size;
+		for ( int i =0; i < m_vectors.length; ++i ) {
+			switch ( m_types[i] ) {
+				case INT:
+				case LONG:
+				case DOUBLE:
+					set(row, i, record.get(i));
+					break;
+				case GEOMETRY:
+					Geometry geom = record.getGeometry(i);
+					((Geometry[])m_vectors[i])[row] = geom;
+					setNull(row, i, geom == null);
+					break;
+				default:
+					Object obj = record.get(i);
+					((Object[])m_vectors[i])[row] = obj;
+					setNull(row, i, obj == null);
+					break;
+			}
+		}
+		++m_size;
+
+		return true;
+	}
+
+	/**
+	 * 배치의 레코드 수를 직접 설정한다.
+	 * <p>
+	 * 컬럼 벡터를 직접 채운 경우 채워진 레코드 수를 설정하기 위해 사용한다.
+	 *
+	 * @param size	레코드 수
+	 */
+	public void setSize(int size) {
+		Preconditions.checkArgument(size >= 0 && size <= m_capacity, "invalid size: " + size);
+
+		m_size = size;
+	}
+
+	public void setNull(int row, int colIdx, boolean flag) {
+		if ( flag ) {
+			m_nulls[colIdx][row >>> 6] |= (1L << row);
+		}
+		else {
+			m_nulls[colIdx][row >>> 6] &= ~(1L << row);
+		}
+	}
+
+	/**
+	 * 주어진 순번의 레코드 값을 {@code output} 레코드에 복사한다.
+	 *
+	 * @param row		레코드 순번
+	 * @param output	값이 복사될 레코드
+	 * @return	값이 복사된 레코드
+	 */
+	public Record copyTo(int row, Record output) {
+		Preconditions.checkArgument(row >= 0 && row < m_size, "invalid row index: " + row);
+
+		for ( int i =0; i < m_vectors.length; ++i ) {
+			output.set(i, get(row, i));
+		}
+
+		return output;
+	}
+
+	@Override
+	public String toString() {
+		return String.format("RecordBatch[size=%d/%d, schema=%s]", m_size, m_capacity, m_schema);
+	}
+
+	private void checkVectorType(int colIdx, VectorType type) {
+		if ( m_types[colIdx] != type ) {
+			String msg = String.format("invalid vector type: column=%s, expected=%s, actual=%s",
+										m_schema.getColumnAt(colIdx), type, m_types[colIdx]);
+			throw new IllegalArgumentException(msg);
+		}
+	}
+
+	private static VectorType toVectorType(DataType type) {
+		switch ( type.getTypeCode() ) {
+			case BYTE:
+			case SHORT:
+			case INT:
+				return VectorType.INT;
+			case LONG:
+				return VectorType.LONG;
+			case FLOAT:
+			case DOUBLE:
+				return VectorType.DOUBLE;
+			default:
+				return type.isGeometryType() ? VectorType.GEOMETRY : VectorType.OBJECT;
+		}
+	}
+}
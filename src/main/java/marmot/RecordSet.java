@@ -98,6 +98,27 @@ public interface RecordSet extends Closeable, Iterable<Record>, FStreamable<Reco
 	 */
 	public Record nextCopy();
 
+	/**
+	 * 레코드 세트의 다음 레코드들을 읽어 주어진 배치에 적재시킨다.
+	 * <p>
+	 * 배치에 기존에 저장된 레코드들은 모두 제거되고, 최대 {@link RecordBatch#capacity()}개의
+	 * 레코드가 적재된다. 기본 구현은 {@link #next(Record)}를 반복 호출하여 배치를 채운다.
+	 *
+	 * @param batch	다음 레코드들이 저장될 배치 객체.
+	 * @return	적재된 레코드 수. 레코드 세트에 더 이상의 레코드가 없는 경우는 0.
+	 */
+	public default int nextBatch(RecordBatch batch) {
+		Preconditions.checkNotNullArgument(batch, "RecordBatch");
+
+		batch.clear();
+		Record record = DefaultRecord.of(getRecordSchema());
+		while ( !batch.isFull() && next(record) ) {
+			batch.add(record);
+		}
+
+		return batch.size();
+	}
+
 	/**
 	 * 빈 레코드세트 객체를 생성한다.
 	 * 
@@ -1,7 +1,11 @@
 package marmot.command;
 
+import java.util.Optional;
+
 import utils.Preconditions;
 
+import picocli.CommandLine.Option;
+
 
 /**
  * 
@@ -9,6 +13,8 @@ import utils.Preconditions;
  */
 public class ImportParameters extends StoreDataSetParameters {
 	private String m_dsId;
+	private int m_streamCount = 1;
+	private Optional<String> m_shardColumn = Optional.empty();
 
 	/**
 	 * Import 대상 데이터세트 식별자를 반환한다.
@@ -29,4 +35,37 @@ public class ImportParameters extends StoreDataSetParameters {
 		
 		m_dsId = id;
 	}
-}
\ No newline at end of file
+	
+	/**
+	 * 데이터세트에 레코드들을 추가할 때 동시에 사용할 업로드 스트림의 수를 반환한다.
+	 * 
+	 * @return	업로드 스트림 수
+	 */
+	public int getStreamCount() {
+		return m_streamCount;
+	}
+
+	@Option(names={"-streams"}, paramLabel="count", description="number of parallel upload streams")
+	public void setStreamCount(int count) {
+		Preconditions.checkArgument(count > 0, "invalid stream count: " + count);
+		
+		m_streamCount = count;
+	}
+	
+	/**
+	 * 병렬 업로드시 레코드를 업로드 스트림에 분배할 때 사용할 컬럼 이름을 반환한다.
+	 * <p>
+	 * 컬럼이 지정되지 않은 경우는 레코드들을 순서대로 돌아가며 분배한다.
+	 * 
+	 * @return	분배 키 컬럼 이름
+	 */
+	public Optional<String> getShardColumn() {
+		return m_shardColumn;
+	}
+
+	@Option(names={"-shard_col"}, paramLabel="col-name",
+			description="column to distribute records over parallel upload streams")
+	public void setShardColumn(String colName) {
+		m_shardColumn = Optional.ofNullable(colName);
+	}
+}
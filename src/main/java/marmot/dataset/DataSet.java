@@ -1,19 +1,35 @@
 package marmot.dataset;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
+import java.util.function.Supplier;
 
 import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
 
+import com.google.common.collect.Lists;
+
+import utils.Preconditions;
 import utils.func.FOption;
+import utils.stream.AsyncExecutionOptions;
+import utils.stream.FStream;
 
+import marmot.Record;
 import marmot.RecordSchema;
 import marmot.RecordSet;
+import marmot.geo.GeoClientUtils;
 import marmot.geo.catalog.SpatialIndexInfo;
 import marmot.geo.command.ClusterSpatiallyOptions;
 import marmot.geo.command.CreateSpatialIndexOptions;
 import marmot.geo.command.EstimateQuadKeysOptions;
 import marmot.geo.query.RangeQueryEstimate;
+import marmot.rset.PrefetchingConcatedRecordSet;
+import marmot.type.DataType;
+import marmot.type.TypeCode;
 
 /**
  * 
@@ -155,6 +171,71 @@ public interface DataSet {
 	 */
 	public RecordSet read();
 	
+	/**
+	 * 데이터세트에 저장된 레코드 세트를 주어진 갯수의 스트림을 통해 동시에 읽는다.
+	 * <p>
+	 * 반환되는 레코드들의 순서는 보장되지 않는다.
+	 * 
+	 * @param nstreams	동시에 사용할 최대 스트림 수.
+	 * @return	데이터세트에 기록된 레코드 세트.
+	 * @see #readParallel(int, boolean)
+	 */
+	public default RecordSet readParallel(int nstreams) {
+		return readParallel(nstreams, false);
+	}
+	
+	/**
+	 * 데이터세트에 저장된 레코드 세트를 주어진 갯수의 스트림을 통해 동시에 읽는다.
+	 * <p>
+	 * 데이터세트가 공간 클러스터링 되어 있는 경우는 클러스터 단위로 나누어 최대
+	 * {@code nstreams}개의 클러스터를 동시에 읽는다. 단, 점이 아닌 공간 데이터는 하나의
+	 * 레코드가 여러 클러스터에 중복 저장될 수 있으므로, 공간 컬럼이 {@link DataType#POINT}
+	 * 타입인 경우에만 클러스터 단위로 읽는다. 또한 공간 인덱스가 데이터세트 갱신 이전에 생성되었거나
+	 * 공간 정보가 없는 레코드가 있어 인덱스에 포함된 레코드 수가 데이터세트의 레코드 수와 다른
+	 * 경우는 일부 레코드가 누락될 수 있으므로 클러스터 단위로 읽지 않는다.
+	 * 그 밖의 경우는 {@link #read()}와 동일하다.
+	 * <p>
+	 * {@code ordered}가 {@code true}인 경우는 클러스터들을 quad-key 순서대로 연결하여
+	 * 반환하고, 그렇지 않은 경우는 먼저 도착한 레코드부터 반환한다.
+	 * 
+	 * @param nstreams	동시에 사용할 최대 스트림 수.
+	 * @param ordered	클러스터 순서 유지 여부.
+	 * @return	데이터세트에 기록된 레코드 세트.
+	 */
+	public default RecordSet readParallel(int nstreams, boolean ordered) {
+		Preconditions.checkArgument(nstreams > 0, "invalid stream count: " + nstreams);
+		
+		if ( nstreams == 1 || !isSpatiallyClustered() || !hasGeometryColumn() ) {
+			return read();
+		}
+		TypeCode tc = getRecordSchema().getColumn(getGeometryColumn()).type().getTypeCode();
+		if ( tc != TypeCode.POINT ) {
+			return read();
+		}
+		FOption<SpatialIndexInfo> idxInfo = getSpatialIndexInfo();
+		if ( idxInfo.isAbsent()
+			|| idxInfo.get().getNonDuplicatedRecordCount() != getRecordCount() ) {
+			return read();
+		}
+		
+		List<String> quadKeys = Lists.newArrayList(getClusterQuadKeyAll());
+		Collections.sort(quadKeys);
+		
+		if ( ordered ) {
+			List<Supplier<RecordSet>> suppliers = Lists.newArrayList();
+			for ( String qk: quadKeys ) {
+				suppliers.add(() -> readSpatialCluster(qk));
+			}
+			return new PrefetchingConcatedRecordSet(getRecordSchema(), suppliers, nstreams);
+		}
+		else {
+			FStream<Record> strm = FStream.from(quadKeys)
+										.flatMapAsync(qk -> readSpatialCluster(qk).fstream(),
+														AsyncExecutionOptions.WORKER_COUNT(nstreams));
+			return RecordSet.from(getRecordSchema(), strm);
+		}
+	}
+	
 	/**
 	 * 주어진 레코드 세트를 데이터세트에 추가한다.
 	 * <p>
@@ -234,10 +315,44 @@ public interface DataSet {
 	 * 무작위로 주어진 샘플수 만큼 선택해서 반환한다.
 	 * 
 	 * @param range		질의 영역
-	 * @param nsample	샘플수
+	 * @param nsamples	샘플수
 	 */
 	public RecordSet queryRange(Envelope range, int nsamples);
 	
+	/**
+	 * 본 데이터 세트의 공간 클러스터들 중에서 주어진 quad-key에 해당하는 클러스터들에 한해
+	 * 주어진 질의 영역과 겹치는 레코드들 중에서 무작위로 주어진 샘플수 만큼 선택해서 반환한다.
+	 * <p>
+	 * {@code quadKeys}가 빈 리스트인 경우는 {@link #queryRange(Envelope, int)}와 동일하다.
+	 * 기본 구현은 각 클러스터를 {@link #readSpatialCluster(String)}로 읽어 질의 영역과 겹치는
+	 * 레코드들을 고른다.
+	 * 
+	 * @param range		질의 영역
+	 * @param quadKeys	검색 대상 클러스터들의 quad-key 리스트.
+	 * @param nsamples	샘플수. 0 이하인 경우는 샘플링하지 않는다.
+	 */
+	public default RecordSet queryRange(Envelope range, List<String> quadKeys, int nsamples) {
+		Preconditions.checkNotNullArgument(range, "query range");
+		Preconditions.checkNotNullArgument(quadKeys, "quad-keys");
+		
+		if ( quadKeys.isEmpty() ) {
+			return queryRange(range, nsamples);
+		}
+		
+		int geomIdx = getGeometryColumnIndex();
+		PreparedGeometry pkey = PreparedGeometryFactory.prepare(GeoClientUtils.toPolygon(range));
+		FStream<Record> strm = FStream.from(quadKeys)
+										.flatMap(qk -> readSpatialCluster(qk).fstream())
+										.filter(r -> {
+											Geometry geom = r.getGeometry(geomIdx);
+											return geom != null && pkey.intersects(geom);
+										});
+		if ( nsamples > 0 ) {
+			strm = strm.shuffle().take(nsamples);
+		}
+		return RecordSet.from(getRecordSchema(), strm);
+	}
+	
 	/**
 	 * 주어진 공간 파티션 식별자에 해당하는 파티션에 저장된 모든 공간 데이터를 반환한다.
 	 * 
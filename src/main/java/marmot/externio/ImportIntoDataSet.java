@@ -94,6 +94,10 @@ public abstract class ImportIntoDataSet implements ProgressReporter<Long> {
 					return countingRSet.getCount();
 				}
 			}
+			else if ( m_params.getStreamCount() > 1 ) {
+				return new ParallelRecordSetAppender(ds, m_params.getStreamCount(),
+													m_params.getShardColumn()).run(rset);
+			}
 			else {
 				return ds.append(rset);
 			}
@@ -0,0 +1,132 @@
+package marmot.externio;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+import utils.Preconditions;
+import utils.Throwables;
+
+import marmot.Record;
+import marmot.RecordSchema;
+import marmot.RecordSet;
+import marmot.RecordSetException;
+import marmot.dataset.DataSet;
+import marmot.rset.PipedRecordSet;
+
+
+/**
+ * 입력 레코드 세트를 여러 개의 파티션으로 나누어 동시에 데이터세트에 추가하는 클래스.
+ * <p>
+ * 입력 레코드들은 순서대로(round-robin) 또는 주어진 키 컬럼 값의 해시 값에 따라
+ * {@code nstreams}개의 파티션으로 분배되고, 각 파티션은 서로 다른 파티션 식별자로
+ * {@link DataSet#append(RecordSet, String)}를 통해 동시에 추가된다.
+ * 하나의 파티션 추가가 실패하면 나머지 파티션 추가도 모두 중단된다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class ParallelRecordSetAppender {
+	private static final Logger s_logger = LoggerFactory.getLogger(ParallelRecordSetAppender.class);
+	private static final int QUEUE_LENGTH = 1024;
+
+	private final DataSet m_ds;
+	private final int m_nstreams;
+	private final Optional<String> m_keyCol;
+
+	public ParallelRecordSetAppender(DataSet ds, int nstreams, Optional<String> keyCol) {
+		Preconditions.checkNotNullArgument(ds, "DataSet is null");
+		Preconditions.checkArgument(nstreams > 0, "invalid stream count: " + nstreams);
+		Preconditions.checkNotNullArgument(keyCol, "key column is null");
+
+		m_ds = ds;
+		m_nstreams = nstreams;
+		m_keyCol = keyCol;
+	}
+
+	/**
+	 * 주어진 레코드 세트를 데이터세트에 추가한다.
+	 *
+	 * @param rset	추가할 레코드 세트.
+	 * @return	추가된 레코드의 수.
+	 */
+	public long run(RecordSet rset) {
+		Preconditions.checkNotNullArgument(rset, "RecordSet is null");
+
+		RecordSchema schema = rset.getRecordSchema();
+		int keyIdx = m_keyCol.map(name -> schema.getColumn(name).ordinal()).orElse(-1);
+
+		String prefix = UUID.randomUUID().toString().substring(0, 8);
+		List<PipedRecordSet> pipes = Lists.newArrayList();
+		List<CompletableFuture<Long>> appends = Lists.newArrayList();
+		ExecutorService executor = Executors.newFixedThreadPool(m_nstreams);
+		try {
+			for ( int i =0; i < m_nstreams; ++i ) {
+				PipedRecordSet pipe = RecordSet.pipe(schema, QUEUE_LENGTH);
+				String partId = String.format("%s_%03d", prefix, i);
+				pipes.add(pipe);
+				appends.add(CompletableFuture.supplyAsync(() -> m_ds.append(pipe, partId), executor));
+			}
+
+			try {
+				dispatch(rset, pipes, appends, keyIdx);
+				pipes.forEach(PipedRecordSet::endOfSupply);
+			}
+			catch ( Throwable e ) {
+				pipes.forEach(pipe -> pipe.endOfSupply(e));
+				throw e;
+			}
+			finally {
+				rset.closeQuietly();
+			}
+
+			long total = 0;
+			for ( CompletableFuture<Long> append: appends ) {
+				total += append.join();
+			}
+			s_logger.info("appended: ds={}, streams={}, count={}", m_ds.getId(), m_nstreams, total);
+
+			return total;
+		}
+		catch ( CompletionException e ) {
+			Throwable cause = Throwables.unwrapThrowable(e);
+			throw Throwables.toRuntimeException(cause);
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+
+	private void dispatch(RecordSet rset, List<PipedRecordSet> pipes,
+							List<CompletableFuture<Long>> appends, int keyIdx) {
+		int seq = 0;
+		Record rec;
+		while ( (rec = rset.nextCopy()) != null ) {
+			int idx;
+			if ( keyIdx >= 0 ) {
+				idx = Math.floorMod(Objects.hashCode(rec.get(keyIdx)), m_nstreams);
+			}
+			else {
+				idx = seq;
+				seq = (seq + 1) % m_nstreams;
+			}
+
+			// 해당 파티션의 추가 작업이 실패하여 pipe가 닫힌 경우는 그 원인 예외를 발생시켜
+			// 전체 작업을 중단시킨다.
+			if ( !pipes.get(idx).supply(rec) ) {
+				appends.get(idx).join();
+				throw new RecordSetException("partition append has been stopped: ds="
+											+ m_ds.getId() + ", partition=" + idx);
+			}
+		}
+	}
+}
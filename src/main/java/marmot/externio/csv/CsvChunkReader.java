@@ -0,0 +1,199 @@
+package marmot.externio.csv;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+
+import utils.Preconditions;
+
+
+/**
+ * CSV 입력 스트림을 레코드 경계에서 나뉜 일정 크기 이상의 바이트 블럭(chunk)들로 분할하는 클래스.
+ * <p>
+ * 각 블럭은 독립적으로 파싱될 수 있도록 따옴표로 묶인 필드 밖의 줄바꿈 문자에서만 나뉜다.
+ * 필드 값의 파싱없이 설정된 구분자, 따옴표, 이스케이프 문자만을 추적하므로 실제 파싱에 비해
+ * 매우 적은 비용으로 분할이 가능하다. 바이트 단위로 경계를 찾기 때문에, 이들 문자가 다른 문자의
+ * 일부 바이트로 사용되지 않는 문자 인코딩({@link #isSplittable(CsvParameters)})에 대해서만
+ * 사용할 수 있다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+final class CsvChunkReader implements Closeable {
+	static final int DEFAULT_CHUNK_SIZE = 4 * 1024 * 1024;
+	private static final int READ_SIZE = 64 * 1024;
+
+	private final InputStream m_is;
+	private final int m_chunkSize;
+	private final int m_delim;
+	private final int m_quote;			// 따옴표를 사용하지 않는 경우는 -1
+	private final int m_escape;			// 이스케이프 문자를 사용하지 않는 경우는 -1
+	private final boolean m_ignoreSpaces;
+
+	private byte[] m_buf;
+	private int m_len = 0;
+	private int m_scanned = 0;
+	private boolean m_eof = false;
+
+	private boolean m_inQuote = false;
+	private boolean m_afterQuote = false;
+	private boolean m_escaped = false;
+	private boolean m_fieldStart = true;
+
+	CsvChunkReader(InputStream is, CsvParameters params, int chunkSize) {
+		Preconditions.checkNotNullArgument(is, "InputStream");
+		Preconditions.checkNotNullArgument(params, "CsvParameters");
+		Preconditions.checkArgument(chunkSize > 0, "invalid chunk size: " + chunkSize);
+
+		m_is = is;
+		m_chunkSize = chunkSize;
+		m_delim = params.delimiter();
+		m_quote = params.quote().map(c -> (int)c).orElse(-1);
+		m_escape = params.escape().map(c -> (int)c).orElse(-1);
+		m_ignoreSpaces = params.trimColumn().orElse(false);
+		m_buf = new byte[chunkSize + READ_SIZE];
+	}
+
+	/**
+	 * 주어진 CSV 설정으로 작성된 파일을 바이트 단위로 분할할 수 있는지 여부를 반환한다.
+	 * <p>
+	 * UTF-16/32는 ASCII 문자도 여러 바이트로 표현되므로 분할할 수 없다. MS949(CP949)는
+	 * 두번째 바이트로 ASCII 영문자를 사용하므로 구분자 등의 특수 문자가 영문자가 아닌 경우만
+	 * 분할할 수 있다.
+	 *
+	 * @param params	CSV 설정.
+	 * @return	분할 가능 여부.
+	 */
+	static boolean isSplittable(CsvParameters params) {
+		Charset cs = params.charset().orElse(StandardCharsets.UTF_8);
+		String name = cs.name().toUpperCase();
+
+		boolean excludeLetters;
+		if ( cs.equals(StandardCharsets.UTF_8) || cs.equals(StandardCharsets.US_ASCII)
+			|| name.equals("EUC-KR") || cs.newEncoder().maxBytesPerChar() <= 1 ) {
+			excludeLetters = false;
+		}
+		else if ( name.contains("949") ) {
+			excludeLetters = true;
+		}
+		else {
+			return false;
+		}
+
+		return isSafe(Optional.of(params.delimiter()), excludeLetters)
+				&& isSafe(params.quote(), excludeLetters)
+				&& isSafe(params.escape(), excludeLetters);
+	}
+
+	private static boolean isSafe(Optional<Character> oc, boolean excludeLetters) {
+		return oc.map(c -> c < 0x80 && !(excludeLetters && Character.isLetter(c)))
+				.orElse(true);
+	}
+
+	/**
+	 * 다음 블럭을 읽는다.
+	 * <p>
+	 * 반환되는 블럭은 입력 스트림의 끝이 아닌 한 레코드의 끝(줄바꿈 문자)에서 끝나며,
+	 * 하나의 레코드가 설정된 블럭 크기보다 큰 경우는 블럭 크기를 넘을 수 있다.
+	 *
+	 * @return	블럭 데이터. 더 이상 읽을 데이터가 없는 경우는 {@code null}.
+	 * @throws IOException	입력 스트림 읽기가 실패한 경우.
+	 */
+	byte[] next() throws IOException {
+		while ( true ) {
+			int cut = scan();
+			if ( cut >= 0 ) {
+				byte[] chunk = Arrays.copyOf(m_buf, cut);
+				System.arraycopy(m_buf, cut, m_buf, 0, m_len - cut);
+				m_len -= cut;
+				m_scanned -= cut;
+
+				return chunk;
+			}
+			if ( m_eof ) {
+				if ( m_len == 0 ) {
+					return null;
+				}
+
+				byte[] chunk = Arrays.copyOf(m_buf, m_len);
+				m_len = m_scanned = 0;
+
+				return chunk;
+			}
+
+			fill();
+		}
+	}
+
+	@Override
+	public void close() throws IOException {
+		m_is.close();
+	}
+
+	private void fill() throws IOException {
+		if ( m_buf.length - m_len < READ_SIZE ) {
+			m_buf = Arrays.copyOf(m_buf, m_buf.length * 2);
+		}
+
+		int nbytes = m_is.read(m_buf, m_len, READ_SIZE);
+		if ( nbytes < 0 ) {
+			m_eof = true;
+		}
+		else {
+			m_len += nbytes;
+		}
+	}
+
+	// 블럭 크기를 넘어선 뒤 처음 나타나는 레코드 경계 위치(줄바꿈 문자 다음)를 찾는다.
+	// 찾지 못한 경우는 -1을 반환하며, 다음 호출에서는 이어서 검색한다.
+	private int scan() {
+		for (; m_scanned < m_len; ++m_scanned ) {
+			int b = m_buf[m_scanned] & 0xFF;
+
+			if ( m_escaped ) {
+				m_escaped = false;
+				m_fieldStart = false;
+				continue;
+			}
+			if ( b == m_escape ) {
+				m_escaped = true;
+				continue;
+			}
+			if ( m_inQuote ) {
+				if ( b == m_quote ) {
+					m_inQuote = false;
+					m_afterQuote = true;
+				}
+				continue;
+			}
+
+			// 따옴표는 필드 시작 위치에서만 유효하며, 닫는 따옴표 바로 다음의 따옴표는
+			// 이중 따옴표("")로 간주하여 다시 따옴표 안으로 들어간다.
+			if ( b == m_quote && (m_fieldStart || m_afterQuote) ) {
+				m_inQuote = true;
+				m_afterQuote = false;
+				m_fieldStart = false;
+				continue;
+			}
+			m_afterQuote = false;
+
+			if ( b == m_delim ) {
+				m_fieldStart = true;
+			}
+			else if ( b == '\n' ) {
+				m_fieldStart = true;
+				if ( m_scanned + 1 >= m_chunkSize ) {
+					return ++m_scanned;
+				}
+			}
+			else if ( b != '\r' && !(m_ignoreSpaces && b == ' ') ) {
+				m_fieldStart = false;
+			}
+		}
+
+		return -1;
+	}
+}
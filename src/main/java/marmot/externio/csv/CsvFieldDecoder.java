@@ -0,0 +1,296 @@
+package marmot.externio.csv;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.TemporalQuery;
+
+import org.geotools.geometry.jts.Geometries;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.io.ParseException;
+
+import marmot.Column;
+import marmot.Record;
+import marmot.geo.GeoClientUtils;
+import marmot.support.DataUtils;
+import marmot.type.DataType;
+import marmot.type.GeometryDataType;
+
+
+/**
+ * CSV 필드 문자열을 하나의 컬럼 값으로 변환하는 디코더.
+ * <p>
+ * 디코더는 레코드 스키마의 각 컬럼별로 {@link #of(Column)}를 통해 한번 생성되며, 값마다
+ * 타입 코드에 따른 분기나 {@link DataUtils#cast(Object, DataType)}의 범용 변환 과정을 거치지
+ * 않고 컬럼 타입에 맞는 변환을 바로 수행한다. 정수/실수 값은 앞뒤 공백 제거를 위한 부분 문자열을
+ * 만들지 않고 필드 문자열에서 직접 파싱된다.
+ * <p>
+ * 디코더는 상태를 변경하지 않으므로 여러 쓰레드에서 동시에 사용될 수 있다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+@FunctionalInterface
+interface CsvFieldDecoder {
+	/**
+	 * 주어진 필드 문자열을 변환하여 레코드의 해당 컬럼에 설정한다.
+	 *
+	 * @param value	필드 문자열 (null이 아님).
+	 * @param output	출력 레코드.
+	 * @param idx	컬럼 순번.
+	 */
+	public void decode(String value, Record output, int idx);
+
+	static CsvFieldDecoder of(Column col) {
+		switch ( col.type().getTypeCode() ) {
+			case STRING:
+				return (v, output, idx) -> output.set(idx, v);
+			case INT:
+				return (v, output, idx) -> output.setInt(idx, parseInt(v));
+			case LONG:
+				return (v, output, idx) -> output.setLong(idx, parseLong(v));
+			case SHORT:
+				return (v, output, idx) -> output.set(idx, parseShort(v));
+			case BYTE:
+				return (v, output, idx) -> output.set(idx, parseByte(v));
+			case DOUBLE:
+				return (v, output, idx) -> output.setDouble(idx, parseDouble(v));
+			case FLOAT:
+				return (v, output, idx) -> output.set(idx, Float.parseFloat(v));
+			case BOOLEAN:
+				return (v, output, idx) -> output.set(idx, DataUtils.asBoolean(v));
+			case DATETIME:
+				return new TemporalDecoder<>(LocalDateTime::from, DATETIME_FORMATS,
+											(output, idx, dt) -> output.set(idx, dt));
+			case DATE:
+				return new TemporalDecoder<>(LocalDate::from, DATE_FORMATS,
+											(output, idx, d) -> output.set(idx, java.sql.Date.valueOf(d)));
+			case TIME:
+				return new TemporalDecoder<>(LocalTime::from, TIME_FORMATS,
+											(output, idx, t) -> output.set(idx, t));
+			default:
+				DataType type = col.type();
+				if ( type instanceof GeometryDataType ) {
+					// 공간 컬럼 값은 WKT 형식으로 간주한다.
+					Geometries geomType = ((GeometryDataType)type).toGeometries();
+					return (v, output, idx) -> {
+						try {
+							Geometry geom = GeoClientUtils.fromWKT(v.trim());
+							output.set(idx, GeoClientUtils.cast(geom, geomType));
+						}
+						catch ( ParseException e ) {
+							throw new IllegalArgumentException("invalid WKT: '" + v + "'", e);
+						}
+					};
+				}
+				return (v, output, idx) -> output.set(idx, DataUtils.cast(v, type));
+		}
+	}
+
+	static final DateTimeFormatter[] DATETIME_FORMATS = {
+		DateTimeFormatter.ISO_LOCAL_DATE_TIME,
+		new DateTimeFormatterBuilder().append(DateTimeFormatter.ISO_LOCAL_DATE)
+									.appendLiteral(' ')
+									.append(DateTimeFormatter.ISO_LOCAL_TIME)
+									.toFormatter(),
+		DateTimeFormatter.ofPattern("yyyy/MM/dd HH:mm:ss"),
+		DateTimeFormatter.ofPattern("yyyyMMddHHmmss"),
+	};
+	static final DateTimeFormatter[] DATE_FORMATS = {
+		DateTimeFormatter.ISO_LOCAL_DATE,
+		DateTimeFormatter.ofPattern("yyyy/MM/dd"),
+		DateTimeFormatter.BASIC_ISO_DATE,
+	};
+	static final DateTimeFormatter[] TIME_FORMATS = {
+		DateTimeFormatter.ISO_LOCAL_TIME,
+		DateTimeFormatter.ofPattern("HHmmss"),
+	};
+
+	/**
+	 * 날짜/시간 컬럼용 디코더.
+	 * 미리 생성된 형식들을 차례로 시도하며, 마지막으로 성공한 형식을 기억하여 다음 값에
+	 * 먼저 적용한다.
+	 */
+	static final class TemporalDecoder<T> implements CsvFieldDecoder {
+		@FunctionalInterface
+		interface Setter<T> {
+			public void set(Record output, int idx, T value);
+		}
+
+		private final TemporalQuery<T> m_query;
+		private final DateTimeFormatter[] m_formats;
+		private final Setter<T> m_setter;
+		private volatile int m_lastFormat = 0;
+
+		TemporalDecoder(TemporalQuery<T> query, DateTimeFormatter[] formats, Setter<T> setter) {
+			m_query = query;
+			m_formats = formats;
+			m_setter = setter;
+		}
+
+		@Override
+		public void decode(String value, Record output, int idx) {
+			String str = value.trim();
+			int last = m_lastFormat;
+			for ( int i =0; i < m_formats.length; ++i ) {
+				int fidx = (last + i) % m_formats.length;
+				try {
+					T parsed = m_formats[fidx].parse(str, m_query);
+					m_lastFormat = fidx;
+					m_setter.set(output, idx, parsed);
+					return;
+				}
+				catch ( DateTimeParseException ignored ) { }
+			}
+
+			throw new IllegalArgumentException("invalid date/time value: '" + value + "'");
+		}
+	}
+
+	/**
+	 * 주어진 문자열을 int 값으로 파싱한다.
+	 *
+	 * @param str	파싱할 문자열.
+	 * @return	파싱된 값.
+	 * @throws NumberFormatException	정수 형식이 아니거나 int 범위를 벗어난 경우.
+	 */
+	static int parseInt(String str) {
+		return (int)parseLong(str, Integer.MIN_VALUE, Integer.MAX_VALUE, "int");
+	}
+
+	/**
+	 * 주어진 문자열을 short 값으로 파싱한다.
+	 *
+	 * @param str	파싱할 문자열.
+	 * @return	파싱된 값.
+	 * @throws NumberFormatException	정수 형식이 아니거나 short 범위를 벗어난 경우.
+	 */
+	static short parseShort(String str) {
+		return (short)parseLong(str, Short.MIN_VALUE, Short.MAX_VALUE, "short");
+	}
+
+	/**
+	 * 주어진 문자열을 byte 값으로 파싱한다.
+	 *
+	 * @param str	파싱할 문자열.
+	 * @return	파싱된 값.
+	 * @throws NumberFormatException	정수 형식이 아니거나 byte 범위를 벗어난 경우.
+	 */
+	static byte parseByte(String str) {
+		return (byte)parseLong(str, Byte.MIN_VALUE, Byte.MAX_VALUE, "byte");
+	}
+
+	private static long parseLong(String str, long min, long max, String typeName) {
+		long lv = parseLong(str);
+		if ( lv < min || lv > max ) {
+			throw new NumberFormatException("out of " + typeName + " range: " + str);
+		}
+		return lv;
+	}
+
+	/**
+	 * 주어진 문자열을 long 값으로 파싱한다.
+	 * 앞뒤 공백은 무시되며, 18자리를 넘는 경우는 {@link Long#parseLong(String)}을 사용한다.
+	 *
+	 * @param str	파싱할 문자열.
+	 * @return	파싱된 값.
+	 * @throws NumberFormatException	정수 형식이 아닌 경우.
+	 */
+	static long parseLong(String str) {
+		int begin = 0;
+		int end = str.length();
+		while ( begin < end && str.charAt(begin) <= ' ' ) { ++begin; }
+		while ( end > begin && str.charAt(end-1) <= ' ' ) { --end; }
+
+		boolean neg = false;
+		if ( begin < end ) {
+			char c = str.charAt(begin);
+			if ( c == '-' || c == '+' ) {
+				neg = (c == '-');
+				++begin;
+			}
+		}
+		if ( begin == end ) {
+			throw new NumberFormatException("For input string: \"" + str + "\"");
+		}
+		if ( end - begin > 18 ) {
+			return Long.parseLong(str.trim());
+		}
+
+		long value = 0;
+		for ( int i = begin; i < end; ++i ) {
+			int digit = str.charAt(i) - '0';
+			if ( digit < 0 || digit > 9 ) {
+				throw new NumberFormatException("For input string: \"" + str + "\"");
+			}
+			value = value * 10 + digit;
+		}
+
+		return neg ? -value : value;
+	}
+
+	static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	static final long MAX_EXACT_MANTISSA = 1L << 53;
+
+	/**
+	 * 주어진 문자열을 double 값으로 파싱한다.
+	 * <p>
+	 * 지수 표기가 없는 일반적인 소수 형식이면서 유효 숫자가 2^53 이하, 소수점 이하 자리수가
+	 * 22 이하인 경우는 가수와 10의 거듭제곱이 모두 double로 정확히 표현되므로 한번의 나눗셈으로
+	 * {@link Double#parseDouble(String)}와 동일한 값을 계산한다. 그 밖의 경우는
+	 * {@link Double#parseDouble(String)}을 사용한다.
+	 *
+	 * @param str	파싱할 문자열.
+	 * @return	파싱된 값.
+	 * @throws NumberFormatException	실수 형식이 아닌 경우.
+	 */
+	static double parseDouble(String str) {
+		int begin = 0;
+		int end = str.length();
+		while ( begin < end && str.charAt(begin) <= ' ' ) { ++begin; }
+		while ( end > begin && str.charAt(end-1) <= ' ' ) { --end; }
+
+		boolean neg = false;
+		if ( begin < end ) {
+			char c = str.charAt(begin);
+			if ( c == '-' || c == '+' ) {
+				neg = (c == '-');
+				++begin;
+			}
+		}
+
+		long mantissa = 0;
+		int ndigits = 0;
+		int fracDigits = -1;
+		for ( int i = begin; i < end; ++i ) {
+			char c = str.charAt(i);
+			if ( c >= '0' && c <= '9' ) {
+				if ( mantissa > (MAX_EXACT_MANTISSA - 9) / 10 ) {
+					return Double.parseDouble(str);
+				}
+				mantissa = mantissa * 10 + (c - '0');
+				++ndigits;
+				if ( fracDigits >= 0 ) {
+					++fracDigits;
+				}
+			}
+			else if ( c == '.' && fracDigits < 0 ) {
+				fracDigits = 0;
+			}
+			else {
+				return Double.parseDouble(str);
+			}
+		}
+		if ( ndigits == 0 || fracDigits >= POWERS_OF_TEN.length ) {
+			return Double.parseDouble(str);
+		}
+
+		double value = (fracDigits > 0) ? mantissa / POWERS_OF_TEN[fracDigits] : mantissa;
+		return neg ? -value : value;
+	}
+}
@@ -34,9 +34,14 @@ public class CsvParameters {
 	private Optional<String> m_header = Optional.empty();
 	private Optional<String> m_pointCols = Optional.empty();
 	private Optional<String> m_srid = Optional.empty();
+	private boolean m_pointLocally = false;
 	private Optional<Boolean> m_trimColumns = Optional.empty();
 	private Optional<String> m_nullValue = Optional.empty();
 	private boolean m_tiger = false;
+	private Optional<Integer> m_parserCount = Optional.empty();
+	private boolean m_unordered = false;
+	private boolean m_inferTypes = false;
+	private Optional<Integer> m_inferSampleCount = Optional.empty();
 	
 	public static CsvParameters create() {
 		return new CsvParameters();
@@ -182,6 +187,17 @@ public class CsvParameters {
 		return m_srid;
 	}
 	
+	public boolean pointLocally() {
+		return m_pointLocally;
+	}
+
+	@Option(names={"-point_local"},
+			description="build point geometry from 'point_cols' while parsing CSV")
+	public CsvParameters pointLocally(boolean flag) {
+		m_pointLocally = flag;
+		return this;
+	}
+	
 	public boolean tiger() {
 		return m_tiger;
 	}
@@ -192,6 +208,52 @@ public class CsvParameters {
 		return this;
 	}
 	
+	public Optional<Integer> parserCount() {
+		return m_parserCount;
+	}
+
+	@Option(names={"-parsers"}, paramLabel="count",
+			description="number of parallel CSV parser threads")
+	public CsvParameters parserCount(int count) {
+		Preconditions.checkArgument(count > 0, "invalid parser count: " + count);
+		
+		m_parserCount = Optional.of(count);
+		return this;
+	}
+	
+	public boolean unordered() {
+		return m_unordered;
+	}
+
+	@Option(names={"-unordered"}, description="do not preserve record order in parallel parsing")
+	public CsvParameters unordered(boolean flag) {
+		m_unordered = flag;
+		return this;
+	}
+	
+	public boolean inferTypes() {
+		return m_inferTypes;
+	}
+
+	@Option(names={"-infer_types"}, description="infer column types from sampled records")
+	public CsvParameters inferTypes(boolean flag) {
+		m_inferTypes = flag;
+		return this;
+	}
+	
+	public Optional<Integer> inferSampleCount() {
+		return m_inferSampleCount;
+	}
+
+	@Option(names={"-infer_sample"}, paramLabel="count",
+			description="number of records sampled for type inference")
+	public CsvParameters inferSampleCount(int count) {
+		Preconditions.checkArgument(count > 0, "invalid sample count: " + count);
+		
+		m_inferSampleCount = Optional.of(count);
+		return this;
+	}
+	
 	public CsvParameters duplicate() {
 		CsvParameters dupl = create();
 		dupl.m_delim = m_delim;
@@ -202,10 +264,15 @@ public class CsvParameters {
 		dupl.m_comment = m_comment;
 		dupl.m_pointCols = m_pointCols;
 		dupl.m_srid = m_srid;
+		dupl.m_pointLocally = m_pointLocally;
 		dupl.m_trimColumns = m_trimColumns;
 		dupl.m_header = m_header;
 		dupl.m_nullValue = m_nullValue;
 		dupl.m_tiger = m_tiger;
+		dupl.m_parserCount = m_parserCount;
+		dupl.m_unordered = m_unordered;
+		dupl.m_inferTypes = m_inferTypes;
+		dupl.m_inferSampleCount = m_inferSampleCount;
 		
 		return dupl;
 	}
@@ -0,0 +1,161 @@
+package marmot.externio.csv;
+
+import java.util.Collections;
+import java.util.List;
+
+import javax.annotation.Nullable;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+import utils.Preconditions;
+
+import marmot.Column;
+import marmot.Record;
+import marmot.RecordBatch;
+import marmot.RecordBatch.VectorType;
+import marmot.RecordSchema;
+import marmot.RecordSet;
+import marmot.geo.CoordinateTransform;
+import marmot.geo.GeoClientUtils;
+import marmot.rset.AbstractRecordSet;
+import marmot.support.DataUtils;
+import marmot.support.DefaultRecord;
+import marmot.type.DataType;
+
+
+/**
+ * 입력 레코드의 x, y 좌표 컬럼 값으로 점(POINT) 공간 컬럼을 생성하는 레코드 세트.
+ * <p>
+ * 결과 레코드는 생성된 공간 컬럼과 좌표 컬럼을 제외한 나머지 입력 컬럼들로 구성된다.
+ * 입력 레코드들은 {@link RecordSet#nextBatch(RecordBatch)}를 통해 일정 수만큼 한번에 읽으며,
+ * 좌표 컬럼이 실수 타입인 경우는 좌표 값을 boxing 없이 배치의 컬럼 배열에서 바로 읽는다.
+ * 좌표계 변환이 필요한 경우는 읽은 좌표들을 하나의 배열로 한번에 변환한다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+class CsvPointRecordSet extends AbstractRecordSet {
+	private static final Logger s_logger = LoggerFactory.getLogger(CsvPointRecordSet.class);
+	private static final int BATCH_SIZE = 4096;
+
+	private final RecordSet m_input;
+	private final RecordSchema m_schema;
+	private final int m_xIdx;
+	private final int m_yIdx;
+	private final int[] m_srcIdxes;			// 결과 레코드 컬럼(공간 컬럼 제외)별 입력 컬럼 순번
+	private final @Nullable CoordinateTransform m_trans;
+
+	private final RecordBatch m_inBatch;
+	private final double[] m_coords = new double[BATCH_SIZE * 2];
+	private List<Record> m_batch = Collections.emptyList();
+	private int m_batchIdx = 0;
+
+	/**
+	 * 점 공간 컬럼 생성 레코드 세트를 생성한다.
+	 *
+	 * @param input	입력 레코드 세트.
+	 * @param xCol	x 좌표 컬럼 이름.
+	 * @param yCol	y 좌표 컬럼 이름.
+	 * @param geomCol	생성될 공간 컬럼 이름.
+	 * @param trans	좌표계 변환 객체. 변환이 필요없는 경우는 {@code null}.
+	 */
+	CsvPointRecordSet(RecordSet input, String xCol, String yCol, String geomCol,
+						@Nullable CoordinateTransform trans) {
+		Preconditions.checkNotNullArgument(input, "input RecordSet");
+		Preconditions.checkNotNullArgument(xCol, "x-column");
+		Preconditions.checkNotNullArgument(yCol, "y-column");
+		Preconditions.checkNotNullArgument(geomCol, "geometry column");
+
+		m_input = input;
+		m_trans = trans;
+		setLogger(s_logger);
+
+		RecordSchema inSchema = input.getRecordSchema();
+		m_xIdx = inSchema.getColumn(xCol).ordinal();
+		m_yIdx = inSchema.getColumn(yCol).ordinal();
+
+		RecordSchema.Builder builder = RecordSchema.builder().addColumn(geomCol, DataType.POINT);
+		List<Integer> srcIdxes = Lists.newArrayList();
+		for ( Column col: inSchema.getColumns() ) {
+			int idx = col.ordinal();
+			if ( idx != m_xIdx && idx != m_yIdx && !col.name().equalsIgnoreCase(geomCol) ) {
+				builder.addColumn(col);
+				srcIdxes.add(idx);
+			}
+		}
+		m_schema = builder.build();
+		m_srcIdxes = srcIdxes.stream().mapToInt(Integer::intValue).toArray();
+		m_inBatch = RecordBatch.of(inSchema, BATCH_SIZE);
+	}
+
+	@Override
+	protected void closeInGuard() {
+		m_input.closeQuietly();
+	}
+
+	@Override
+	public RecordSchema getRecordSchema() {
+		return m_schema;
+	}
+
+	@Override
+	public Record nextCopy() {
+		checkNotClosed();
+
+		if ( m_batchIdx >= m_batch.size() ) {
+			m_batch = readBatch();
+			m_batchIdx = 0;
+			if ( m_batch.isEmpty() ) {
+				return null;
+			}
+		}
+
+		return m_batch.get(m_batchIdx++);
+	}
+
+	private List<Record> readBatch() {
+		int count = m_input.nextBatch(m_inBatch);
+		if ( count == 0 ) {
+			return Collections.emptyList();
+		}
+
+		// 좌표 값이 없는 레코드는 NaN으로 표시하여 공간 컬럼 값을 null로 설정한다.
+		readCoordinates(m_xIdx, 0, count);
+		readCoordinates(m_yIdx, 1, count);
+		if ( m_trans != null ) {
+			m_trans.transform(m_coords, count);
+		}
+
+		List<Record> outputs = Lists.newArrayListWithCapacity(count);
+		for ( int i =0; i < count; ++i ) {
+			Record out = DefaultRecord.of(m_schema);
+
+			double x = m_coords[i*2];
+			double y = m_coords[i*2+1];
+			out.set(0, (Double.isNaN(x) || Double.isNaN(y)) ? null : GeoClientUtils.toPoint(x, y));
+			for ( int j =0; j < m_srcIdxes.length; ++j ) {
+				out.set(j+1, m_inBatch.get(i, m_srcIdxes[j]));
+			}
+			outputs.add(out);
+		}
+
+		return outputs;
+	}
+
+	private void readCoordinates(int colIdx, int offset, int count) {
+		if ( m_inBatch.getVectorType(colIdx) == VectorType.DOUBLE ) {
+			double[] values = m_inBatch.getDoubleVector(colIdx);
+			for ( int i =0; i < count; ++i ) {
+				m_coords[i*2 + offset] = m_inBatch.isNull(i, colIdx) ? Double.NaN : values[i];
+			}
+		}
+		else {
+			for ( int i =0; i < count; ++i ) {
+				Object v = m_inBatch.get(i, colIdx);
+				m_coords[i*2 + offset] = (v != null) ? DataUtils.asDouble(v) : Double.NaN;
+			}
+		}
+	}
+}
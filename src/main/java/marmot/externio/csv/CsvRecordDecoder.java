@@ -0,0 +1,95 @@
+package marmot.externio.csv;
+
+import org.apache.commons.csv.CSVRecord;
+
+import utils.stream.FStream;
+
+import marmot.Record;
+import marmot.RecordBatch;
+import marmot.RecordSchema;
+
+
+/**
+ * 파싱된 CSV 레코드의 필드 값들을 주어진 레코드 스키마에 맞는 레코드 값으로 변환하는 클래스.
+ * <p>
+ * 각 컬럼별 필드 디코더({@link CsvFieldDecoder})는 생성시 한번만 만들어진다.
+ * 변환 과정에서 상태를 변경하지 않으므로 여러 쓰레드에서 동시에 사용될 수 있다.
+ * <p>
+ * {@link RecordBatch}로 변환하는 경우 정수/실수 컬럼 값은 boxing 없이 배치의 컬럼 배열에
+ * 바로 저장된다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+final class CsvRecordDecoder {
+	private final CsvFieldDecoder[] m_decoders;
+	private final String m_nullValue;
+
+	CsvRecordDecoder(RecordSchema schema, CsvParameters params) {
+		m_decoders = FStream.from(schema.getColumns())
+							.map(CsvFieldDecoder::of)
+							.toList()
+							.toArray(new CsvFieldDecoder[0]);
+		m_nullValue = params.nullValue().orElse(null);
+	}
+
+	void decode(CSVRecord csv, Record output) {
+		int ncols = Math.min(m_decoders.length, csv.size());
+		for ( int i =0; i < ncols; ++i ) {
+			String value = csv.get(i);
+
+			// 길이 0 문자열을 null로 간주한다.
+			// 이 경우 'null_value' 옵션이 설정된 경우 해당 값으로 치환시킨다.
+			if ( value.length() == 0 ) {
+				value = m_nullValue;
+			}
+			if ( value != null ) {
+				m_decoders[i].decode(value, output, i);
+			}
+			else {
+				output.set(i, null);
+			}
+		}
+	}
+
+	/**
+	 * CSV 레코드를 변환하여 주어진 배치의 {@code row}번째 레코드로 저장한다.
+	 * <p>
+	 * 정수/실수 이외의 컬럼 값은 {@code buffer} 레코드를 통해 변환된 후 배치에 저장된다.
+	 *
+	 * @param csv	CSV 레코드.
+	 * @param batch	출력 배치.
+	 * @param row	배치 내 레코드 순번.
+	 * @param buffer	변환에 사용할 임시 레코드.
+	 */
+	void decode(CSVRecord csv, RecordBatch batch, int row, Record buffer) {
+		for ( int i =0; i < m_decoders.length; ++i ) {
+			String value = (i < csv.size()) ? csv.get(i) : null;
+			if ( value != null && value.length() == 0 ) {
+				value = m_nullValue;
+			}
+			if ( value == null ) {
+				batch.set(row, i, null);
+				continue;
+			}
+
+			switch ( batch.getVectorType(i) ) {
+				case INT:
+					batch.getIntVector(i)[row] = CsvFieldDecoder.parseInt(value);
+					batch.setNull(row, i, false);
+					break;
+				case LONG:
+					batch.getLongVector(i)[row] = CsvFieldDecoder.parseLong(value);
+					batch.setNull(row, i, false);
+					break;
+				case DOUBLE:
+					batch.getDoubleVector(i)[row] = CsvFieldDecoder.parseDouble(value);
+					batch.setNull(row, i, false);
+					break;
+				default:
+					m_decoders[i].decode(value, buffer, i);
+					batch.set(row, i, buffer.get(i));
+					break;
+			}
+		}
+	}
+}
@@ -8,9 +8,13 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.Reader;
 import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Iterator;
 import java.util.List;
 
+import javax.annotation.Nullable;
+
 import org.apache.commons.csv.CSVFormat;
 import org.apache.commons.csv.CSVParser;
 import org.apache.commons.csv.CSVRecord;
@@ -25,13 +29,12 @@ import utils.func.Optionals;
 import utils.func.Try;
 import utils.stream.FStream;
 
-import marmot.Column;
 import marmot.Record;
+import marmot.RecordBatch;
 import marmot.RecordSchema;
 import marmot.RecordSetException;
 import marmot.rset.AbstractRecordSet;
-import marmot.support.DataUtils;
-import marmot.type.DataType;
+import marmot.support.DefaultRecord;
 
 
 /**
@@ -45,19 +48,34 @@ public class CsvRecordSet extends AbstractRecordSet {
 	private final CsvParameters m_options;
 	private final CSVParser m_parser;
 	private final Iterator<CSVRecord> m_iter;
-	private final String m_nullValue;
 	private final RecordSchema m_schema;
-	private final Column[] m_columns;
-	private List<String> m_first;
+	private final CsvRecordDecoder m_decoder;
+	private final Deque<CSVRecord> m_pendings = new ArrayDeque<>();
 	private long m_lineNo = 0;
+	private Record m_buffer = null;		// 배치 적재시 사용할 임시 레코드
 	private StopWatch m_watch;
 	
 	static CsvRecordSet from(String key, InputStream is, CsvParameters opts) throws IOException {
+		return from(key, is, opts, null);
+	}
+	
+	/**
+	 * 주어진 레코드 스키마를 사용하는 CSV 레코드 세트를 생성한다.
+	 * 여러 파일을 읽을 때 첫번째 파일에서 추정된 스키마를 나머지 파일에도 적용하기 위해 사용된다.
+	 * 
+	 * @param key	입력 식별자.
+	 * @param is	입력 스트림.
+	 * @param opts	CSV 설정.
+	 * @param schema	레코드 스키마. {@code null}인 경우는 CSV 설정에 따라 스키마를 생성한다.
+	 * @return	CSV 레코드 세트.
+	 */
+	static CsvRecordSet from(String key, InputStream is, CsvParameters opts,
+							@Nullable RecordSchema schema) throws IOException {
 		Preconditions.checkNotNullArgument(is, "is is null");
 		Preconditions.checkNotNullArgument(opts, "CsvOptions is null");
 		
 		BufferedReader reader = new BufferedReader(new InputStreamReader(is, opts.charset().get()));
-		return new CsvRecordSet(key, reader, opts);
+		return new CsvRecordSet(key, reader, opts, schema);
 	}
 	
 	static CsvRecordSet from(String key, BufferedReader reader, CsvParameters opts)
@@ -65,7 +83,7 @@ public class CsvRecordSet extends AbstractRecordSet {
 		Preconditions.checkNotNullArgument(reader, "reader is null");
 		Preconditions.checkNotNullArgument(opts, "CsvOptions is null");
 		
-		return new CsvRecordSet(key, reader, opts);
+		return new CsvRecordSet(key, reader, opts, null);
 	}
 	
 	static CsvRecordSet from(File file, CsvParameters opts) throws IOException {
@@ -73,17 +91,42 @@ public class CsvRecordSet extends AbstractRecordSet {
 		Preconditions.checkNotNullArgument(opts, "CsvOptions is null");
 		
 		Reader reader = new InputStreamReader(new FileInputStream(file), opts.charset().get());
-		return new CsvRecordSet(file.getAbsolutePath(), new BufferedReader(reader), opts);
+		return new CsvRecordSet(file.getAbsolutePath(), new BufferedReader(reader), opts, null);
 	}
 	
-	private CsvRecordSet(String key, BufferedReader reader, CsvParameters opts) throws IOException {
+	private CsvRecordSet(String key, BufferedReader reader, CsvParameters opts,
+							@Nullable RecordSchema schema) throws IOException {
 		m_key = key;
 		m_options = opts;
 		setLogger(s_logger);
 		
 		m_watch = StopWatch.start();
 		
-		m_nullValue = opts.nullValue().orElse(null);
+		CSVFormat format = toCsvFormat(opts);
+		m_parser = format.parse(reader);
+		
+		m_iter = m_parser.iterator();
+		if ( !m_iter.hasNext() ) {
+			throw new IllegalArgumentException("input CSV file is empty: key=" + m_key);
+		}
+		CSVRecord first = m_iter.next();
+		if ( !opts.headerFirst().orElse(false) ) {
+			m_pendings.add(first);
+		}
+		if ( schema == null && opts.inferTypes() ) {
+			// 타입 추정에 사용된 표본 레코드들은 이후 차례대로 반환되도록 보관한다.
+			int nsamples = opts.inferSampleCount().orElse(CsvSchemaInferrer.DEFAULT_SAMPLE_COUNT);
+			while ( m_pendings.size() < nsamples && m_iter.hasNext() ) {
+				m_pendings.add(m_iter.next());
+			}
+		}
+		
+		m_schema = (schema != null) ? schema
+									: buildRecordSchema(first, Lists.newArrayList(m_pendings), opts);
+		m_decoder = new CsvRecordDecoder(m_schema, opts);
+	}
+	
+	static CSVFormat toCsvFormat(CsvParameters opts) {
 		CSVFormat format = CSVFormat.DEFAULT.withDelimiter(opts.delimiter())
 									.withQuote(null);
 		format = Optionals.transform(opts.quote(), format, (f,q) -> f.withQuote(q));
@@ -94,32 +137,54 @@ public class CsvRecordSet extends AbstractRecordSet {
 		else {
 			format = format.withTrim(false).withIgnoreSurroundingSpaces(false);
 		}
-		m_parser = format.parse(reader);
 		
-		m_iter = m_parser.iterator();
-		if ( !m_iter.hasNext() ) {
-			throw new IllegalArgumentException("input CSV file is empty: key=" + m_key);
+		return format;
+	}
+	
+	/**
+	 * CSV 파일의 첫번째 레코드와 CSV 설정을 통해 레코드 스키마를 생성한다.
+	 * <p>
+	 * 타입 추정이 설정된 경우는 주어진 표본 레코드들을 통해 컬럼 타입을 추정한다.
+	 * 
+	 * @param first	CSV 파일의 첫번째 레코드.
+	 * @param samples	타입 추정에 사용할 표본 레코드 리스트.
+	 * @param opts	CSV 설정.
+	 * @return	레코드 스키마.
+	 */
+	static RecordSchema buildRecordSchema(CSVRecord first, List<CSVRecord> samples,
+											CsvParameters opts) throws IOException {
+		List<String> colSpecs = getColumnSpecs(first, opts);
+		if ( opts.inferTypes() ) {
+			return CsvSchemaInferrer.infer(colSpecs, samples, opts).getRecordSchema();
 		}
-		m_first = Lists.newArrayList(m_iter.next().iterator());
-		
+		else {
+			return CsvUtils.buildRecordSchema(colSpecs);
+		}
+	}
+	
+	/**
+	 * CSV 파일의 첫번째 레코드와 CSV 설정을 통해 컬럼 정의 리스트를 구한다.
+	 * 
+	 * @param first	CSV 파일의 첫번째 레코드.
+	 * @param opts	CSV 설정.
+	 * @return	컬럼 정의 리스트.
+	 */
+	static List<String> getColumnSpecs(CSVRecord first, CsvParameters opts) throws IOException {
 		if ( opts.headerFirst().orElse(false) ) {
-			m_schema = CsvUtils.buildRecordSchema(m_first);
-			m_first = null;
+			return Lists.newArrayList(first.iterator());
 		}
 		else if ( opts.header().isPresent() ) {
 			try ( Reader hdrReader = new StringReader(opts.header().get());
-					CSVParser hdrParser = format.parse(hdrReader); ) {
+					CSVParser hdrParser = toCsvFormat(opts).parse(hdrReader); ) {
 				CSVRecord header = hdrParser.getRecords().get(0);
-				m_schema = CsvUtils.buildRecordSchema(Lists.newArrayList(header.iterator()));
+				return Lists.newArrayList(header.iterator());
 			}
 		}
 		else {
-			List<String> header = FStream.range(0, m_first.size())
-									.map(idx -> String.format("field_%02d", idx))
-									.toList();
-			m_schema = CsvUtils.buildRecordSchema(header);
+			return FStream.range(0, first.size())
+							.map(idx -> String.format("field_%02d", idx))
+							.toList();
 		}
-		m_columns = m_schema.getColumns().toArray(new Column[0]);
 	}
 	
 	@Override
@@ -136,65 +201,77 @@ public class CsvRecordSet extends AbstractRecordSet {
 	public boolean next(Record output) {
 		checkNotClosed();
 		
-		if ( m_first != null ) {
-			
-			++m_lineNo;
-			set(output, m_first);
-			m_first = null;
-			
-			return true;
-		}
-		
 		try {
-			if ( !m_iter.hasNext() ) {
-				m_watch.stop();
-				
-				if ( getLogger().isInfoEnabled() ) {
-					double velo = m_lineNo / m_watch.getElapsedInFloatingSeconds();
-					String msg = String.format("loaded: file=%s, lines=%d, elapsed=%s, velo=%.1f/s",
-												m_key, m_lineNo, m_watch.getElapsedSecondString(), velo);
-					getLogger().info(msg);
-				}
-				
+			CSVRecord values = nextCsvRecord();
+			if ( values == null ) {
 				return false;
 			}
 			
-			++m_lineNo;
-			List<String> values = Lists.newArrayList(m_iter.next().iterator());
-//			if ( values.size() != m_columns.length ) {
-//				String msg = String.format("invalid CSV line: %s:%d, expected=%d, csv=%s",
-//											m_key, m_lineNo, values.size(), m_columns.length, values);
-//				throw new IOException(msg);
-//			}
-			set(output, values);
+			m_decoder.decode(values, output);
 			
 			return true;
 		}
 		catch ( Exception e ) {
-			throw new RecordSetException("line=" + m_lineNo + ": " + e);
+			throw new RecordSetException("line=" + m_lineNo, e);
 		}
 	}
 	
+	/**
+	 * 다음 레코드들을 읽어 주어진 배치에 적재시킨다.
+	 * <p>
+	 * 정수/실수 컬럼 값은 레코드 객체를 거치지 않고 배치의 컬럼 배열에 바로 저장된다.
+	 */
 	@Override
-	public String toString() {
-		return String.format("%s[%s]", getClass().getSimpleName(), m_options);
+	public int nextBatch(RecordBatch batch) {
+		checkNotClosed();
+		Preconditions.checkArgument(batch.getRecordSchema().getColumnCount() == m_schema.getColumnCount(),
+									"incompatible RecordBatch: schema=" + batch.getRecordSchema());
+		
+		batch.clear();
+		if ( m_buffer == null ) {
+			m_buffer = DefaultRecord.of(m_schema);
+		}
+		
+		try {
+			int row = 0;
+			CSVRecord values;
+			while ( row < batch.capacity() && (values = nextCsvRecord()) != null ) {
+				m_decoder.decode(values, batch, row, m_buffer);
+				batch.setSize(++row);
+			}
+			
+			return row;
+		}
+		catch ( Exception e ) {
+			throw new RecordSetException("line=" + m_lineNo, e);
+		}
 	}
 	
-	private void set(Record output, List<String> values) {
-		for ( int i =0; i < Math.min(output.getColumnCount(), values.size()); ++i ) {
-			String value = values.get(i);
-
-			// 길이 0 문자열을 null로 간주한다.
-			// 이 경우 'null_value' 옵션이 설정된 경우 해당 값으로 치환시킨다.
-			if ( value.length() == 0 ) {
-				value = m_nullValue;
-			}
-			if ( m_columns[i].type() != DataType.STRING ) {
-				output.set(i, DataUtils.cast(value, m_columns[i].type()));
-			}
-			else {
-				output.set(i, value);
+	private CSVRecord nextCsvRecord() {
+		if ( !m_pendings.isEmpty() ) {
+			++m_lineNo;
+			return m_pendings.poll();
+		}
+		
+		if ( !m_iter.hasNext() ) {
+			m_watch.stop();
+			
+			if ( getLogger().isInfoEnabled() ) {
+				double velo = m_lineNo / m_watch.getElapsedInFloatingSeconds();
+				String msg = String.format("loaded: file=%s, lines=%d, elapsed=%s, velo=%.1f/s",
+											m_key, m_lineNo, m_watch.getElapsedSecondString(), velo);
+				getLogger().info(msg);
 			}
+			
+			return null;
 		}
+		
+		++m_lineNo;
+		return m_iter.next();
+	}
+	
+	@Override
+	public String toString() {
+		return String.format("%s[%s]", getClass().getSimpleName(), m_options);
 	}
 }
\ No newline at end of file
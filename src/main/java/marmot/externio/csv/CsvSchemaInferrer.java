@@ -0,0 +1,305 @@
+package marmot.externio.csv;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Pattern;
+
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.locationtech.jts.geom.Geometry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+import utils.Tuple;
+
+import marmot.Column;
+import marmot.RecordSchema;
+import marmot.geo.GeoClientUtils;
+import marmot.type.DataType;
+import marmot.type.GeometryDataType;
+
+
+/**
+ * CSV 파일의 앞부분 레코드들을 표본으로 하여 각 컬럼의 타입을 추정하는 클래스.
+ * <p>
+ * 컬럼 정의에 타입이 명시되지 않은 컬럼들에 대해 표본 값들이 모두 정수 형식이면 LONG,
+ * 실수 형식이면 DOUBLE, 날짜/시간 형식이면 DATETIME 또는 DATE, WKT 형식이면 해당 공간 타입으로
+ * 추정한다. '0'으로 시작하는 여러 자리 숫자 값(예: 행정구역 코드)이 포함된 컬럼은 값이 바뀌지 않도록
+ * STRING으로 유지한다. 또한 경도/위도 값 범위에 속하는 DOUBLE 컬럼 쌍 중 이름이 좌표 컬럼 이름
+ * 규칙(x/y, lon/lat, 경도/위도 등)에 맞는 쌍을 점 좌표 컬럼으로 추정한다.
+ * <p>
+ * 표본 이후의 레코드에 INT 범위를 벗어나는 값이 포함되면 적재가 실패하기 때문에, 정수 컬럼은
+ * 표본 값의 범위와 무관하게 LONG으로 추정한다. INT 타입이 필요한 경우는 컬럼 정의에
+ * 명시하여야 한다 (예: {@code id:int}).
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+final class CsvSchemaInferrer {
+	private static final Logger s_logger = LoggerFactory.getLogger(CsvSchemaInferrer.class);
+	static final int DEFAULT_SAMPLE_COUNT = 1000;
+
+	private static final String[][] POINT_COLUMN_NAMES = {
+		{ "x", "y" }, { "lon", "lat" }, { "lng", "lat" }, { "longitude", "latitude" },
+		{ "경도", "위도" }, { "x좌표", "y좌표" }, { "xcoord", "ycoord" }, { "x_coord", "y_coord" },
+	};
+	private static final Pattern WKT_PREFIX
+		= Pattern.compile("^\\s*(POINT|LINESTRING|POLYGON|MULTIPOINT|MULTILINESTRING|MULTIPOLYGON"
+							+ "|GEOMETRYCOLLECTION)\\s*(Z|M|ZM)?\\s*(\\(|EMPTY)",
+							Pattern.CASE_INSENSITIVE);
+
+	private CsvSchemaInferrer() {
+		throw new AssertionError("should not be called: " + CsvSchemaInferrer.class);
+	}
+
+	static final class Result {
+		private final RecordSchema m_schema;
+		private final Optional<Tuple<String,String>> m_pointCols;
+
+		private Result(RecordSchema schema, Optional<Tuple<String,String>> pointCols) {
+			m_schema = schema;
+			m_pointCols = pointCols;
+		}
+
+		RecordSchema getRecordSchema() {
+			return m_schema;
+		}
+
+		/**
+		 * 점 좌표로 추정된 (x, y) 컬럼 이름 쌍을 반환한다.
+		 *
+		 * @return	컬럼 이름 쌍. 추정된 쌍이 없는 경우는 {@link Optional#empty()}.
+		 */
+		Optional<Tuple<String,String>> getPointColumns() {
+			return m_pointCols;
+		}
+	}
+
+	/**
+	 * 주어진 컬럼 정의와 표본 레코드들을 통해 레코드 스키마를 추정한다.
+	 *
+	 * @param colSpecs	컬럼 정의 리스트 ('이름' 또는 '이름:타입').
+	 * @param samples	표본 레코드 리스트.
+	 * @param params	CSV 설정.
+	 * @return	추정 결과.
+	 */
+	static Result infer(List<String> colSpecs, List<CSVRecord> samples, CsvParameters params) {
+		String nullValue = params.nullValue().orElse(null);
+
+		List<String> specs = Lists.newArrayList();
+		List<ColumnStats> stats = Lists.newArrayList();
+		for ( int i =0; i < colSpecs.size(); ++i ) {
+			String spec = colSpecs.get(i);
+			if ( spec.indexOf(':') >= 0 ) {
+				specs.add(spec);
+				stats.add(null);
+				continue;
+			}
+
+			ColumnStats cstats = new ColumnStats();
+			for ( CSVRecord sample: samples ) {
+				if ( i < sample.size() ) {
+					String value = sample.get(i);
+					if ( value.length() > 0 && !value.equals(nullValue) ) {
+						cstats.add(value);
+					}
+				}
+			}
+			stats.add(cstats);
+			specs.add(spec + ":" + cstats.getDataType().getName());
+		}
+		RecordSchema schema = CsvUtils.buildRecordSchema(specs);
+
+		Optional<Tuple<String,String>> pointCols = findPointColumns(schema, stats);
+		s_logger.info("inferred CSV schema: samples={}, schema={}, point_cols={}",
+						samples.size(), schema, pointCols.map(Tuple::toString).orElse("none"));
+
+		return new Result(schema, pointCols);
+	}
+
+	/**
+	 * 주어진 CSV 파일의 앞부분 레코드들을 표본으로 하여 레코드 스키마를 추정한다.
+	 *
+	 * @param file	CSV 파일.
+	 * @param params	CSV 설정.
+	 * @return	추정 결과.
+	 * @throws IOException	파일 읽기가 실패한 경우.
+	 */
+	static Result infer(File file, CsvParameters params) throws IOException {
+		try ( InputStream is = MultiFileCsvRecordSet.openFile(file);
+				CSVParser parser = CsvRecordSet.toCsvFormat(params)
+									.parse(new InputStreamReader(is, params.charset()
+																		.orElse(StandardCharsets.UTF_8))) ) {
+			Iterator<CSVRecord> iter = parser.iterator();
+			if ( !iter.hasNext() ) {
+				throw new IllegalArgumentException("input CSV file is empty: key=" + file);
+			}
+
+			CSVRecord first = iter.next();
+			List<String> colSpecs = CsvRecordSet.getColumnSpecs(first, params);
+			List<CSVRecord> samples = Lists.newArrayList();
+			if ( !params.headerFirst().orElse(false) ) {
+				samples.add(first);
+			}
+			int nsamples = params.inferSampleCount().orElse(DEFAULT_SAMPLE_COUNT);
+			while ( samples.size() < nsamples && iter.hasNext() ) {
+				samples.add(iter.next());
+			}
+
+			return infer(colSpecs, samples, params);
+		}
+	}
+
+	private static Optional<Tuple<String,String>> findPointColumns(RecordSchema schema,
+																	List<ColumnStats> stats) {
+		for ( String[] names: POINT_COLUMN_NAMES ) {
+			Column xcol = findColumn(schema, names[0]);
+			Column ycol = findColumn(schema, names[1]);
+			if ( xcol == null || ycol == null ) {
+				continue;
+			}
+
+			ColumnStats xstats = stats.get(xcol.ordinal());
+			ColumnStats ystats = stats.get(ycol.ordinal());
+			if ( xstats != null && ystats != null
+				&& xstats.isNumeric() && ystats.isNumeric()
+				&& xstats.isWithin(180) && ystats.isWithin(90) ) {
+				return Optional.of(Tuple.of(xcol.name(), ycol.name()));
+			}
+		}
+
+		return Optional.empty();
+	}
+
+	private static Column findColumn(RecordSchema schema, String name) {
+		for ( Column col: schema.getColumns() ) {
+			if ( col.name().equalsIgnoreCase(name) ) {
+				return col;
+			}
+		}
+		return null;
+	}
+
+	private static final class ColumnStats {
+		private int m_count = 0;
+		private boolean m_long = true;
+		private boolean m_double = true;
+		private boolean m_datetime = true;
+		private boolean m_date = true;
+		private boolean m_wkt = true;
+		private boolean m_leadingZero = false;
+		private GeometryDataType m_geomType = null;
+		private double m_maxAbs = 0;
+
+		void add(String value) {
+			++m_count;
+
+			if ( m_long ) {
+				try {
+					CsvFieldDecoder.parseLong(value);
+				}
+				catch ( NumberFormatException e ) {
+					m_long = false;
+				}
+			}
+			if ( m_double ) {
+				try {
+					double dv = CsvFieldDecoder.parseDouble(value);
+					m_double = !Double.isNaN(dv) && !Double.isInfinite(dv);
+					m_maxAbs = Math.max(m_maxAbs, Math.abs(dv));
+
+					String str = value.trim();
+					if ( str.length() > 1 && str.charAt(0) == '0' && str.charAt(1) != '.' ) {
+						m_leadingZero = true;
+					}
+				}
+				catch ( NumberFormatException e ) {
+					m_double = false;
+				}
+			}
+			if ( m_datetime ) {
+				m_datetime = matches(value, CsvFieldDecoder.DATETIME_FORMATS);
+			}
+			if ( m_date ) {
+				m_date = matches(value, CsvFieldDecoder.DATE_FORMATS);
+			}
+			if ( m_wkt ) {
+				m_wkt = addWkt(value);
+			}
+		}
+
+		boolean isNumeric() {
+			return m_count > 0 && m_double && !m_leadingZero;
+		}
+
+		boolean isWithin(double bound) {
+			return m_maxAbs <= bound;
+		}
+
+		DataType getDataType() {
+			if ( m_count == 0 ) {
+				return DataType.STRING;
+			}
+			// 날짜 형식(yyyyMMdd 등)의 숫자 값은 정수 타입이 우선한다.
+			if ( isNumeric() ) {
+				return m_long ? DataType.LONG : DataType.DOUBLE;
+			}
+			if ( m_leadingZero ) {
+				return DataType.STRING;
+			}
+			if ( m_datetime ) {
+				return DataType.DATETIME;
+			}
+			if ( m_date ) {
+				return DataType.DATE;
+			}
+			if ( m_wkt ) {
+				return m_geomType;
+			}
+
+			return DataType.STRING;
+		}
+
+		private boolean addWkt(String value) {
+			if ( !WKT_PREFIX.matcher(value).lookingAt() ) {
+				return false;
+			}
+
+			try {
+				Geometry geom = GeoClientUtils.fromWKT(value.trim());
+				GeometryDataType type = GeometryDataType.fromGeometry(geom);
+				if ( m_geomType == null ) {
+					m_geomType = type;
+				}
+				else if ( m_geomType != type ) {
+					m_geomType = DataType.GEOMETRY;
+				}
+				return true;
+			}
+			catch ( Exception e ) {
+				return false;
+			}
+		}
+
+		private static boolean matches(String value, DateTimeFormatter[] formats) {
+			String str = value.trim();
+			for ( DateTimeFormatter format: formats ) {
+				try {
+					format.parse(str);
+					return true;
+				}
+				catch ( DateTimeParseException ignored ) { }
+			}
+			return false;
+		}
+	}
+}
@@ -5,6 +5,7 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.util.List;
 import java.util.Optional;
 
 import utils.Throwables;
@@ -19,6 +20,7 @@ import marmot.RecordSetException;
 import marmot.command.ImportParameters;
 import marmot.dataset.GeometryColumnInfo;
 import marmot.externio.ImportIntoDataSet;
+import marmot.geo.CoordinateTransform;
 import marmot.support.MetaPlanLoader;
 
 
@@ -82,9 +84,35 @@ public abstract class ImportCsv extends ImportIntoDataSet {
 		}
 	}
 
+	private boolean isPointColumnsGiven() {
+		return m_csvParams.pointColumns().isPresent()
+				&& m_params.getGeometryColumnInfo().isPresent();
+	}
+
+	/**
+	 * 'point_local' 옵션이 설정된 경우, 파싱된 레코드들의 좌표 컬럼으로부터 점 공간 컬럼을
+	 * 바로 생성하는 레코드 세트를 반환한다. 이때 필요한 경우 좌표계 변환도 함께 수행된다.
+	 * 
+	 * @param rset	파싱된 CSV 레코드 세트.
+	 * @return	레코드 세트.
+	 */
+	protected RecordSet toPointLocally(RecordSet rset) {
+		if ( !m_csvParams.pointLocally() || !isPointColumnsGiven() ) {
+			return rset;
+		}
+		
+		GeometryColumnInfo info = m_params.getGeometryColumnInfo().get();
+		Tuple<String,String> ptCols = m_csvParams.pointColumns().get();
+		CoordinateTransform trans = m_csvParams.srid()
+												.filter(srid -> !srid.equals(info.srid()))
+												.map(srid -> CoordinateTransform.get(srid, info.srid()))
+												.orElse(null);
+		return new CsvPointRecordSet(rset, ptCols._1, ptCols._2, info.name(), trans);
+	}
+
 	private Optional<Plan> getToPointPlan() {
-		if ( !m_csvParams.pointColumns().isPresent()
-			|| !m_params.getGeometryColumnInfo().isPresent() ) {
+		// 'point_local' 옵션이 설정된 경우는 업로드 전에 점 공간 컬럼이 생성된다.
+		if ( !isPointColumnsGiven() || m_csvParams.pointLocally() ) {
 			return Optional.empty();
 		}
 		
@@ -122,7 +150,37 @@ public abstract class ImportCsv extends ImportIntoDataSet {
 
 		@Override
 		protected RecordSet loadRecordSet(MarmotRuntime marmot) {
-			return new MultiFileCsvRecordSet(m_start, m_csvParams, m_glob);
+			int nparsers = m_csvParams.parserCount().orElse(1);
+			if ( nparsers > 1 && CsvChunkReader.isSplittable(m_csvParams) ) {
+				try {
+					List<File> files = MultiFileCsvRecordSet.listFiles(m_start, m_glob);
+					return toPointLocally(new ParallelCsvRecordSet(files, m_csvParams, nparsers));
+				}
+				catch ( IOException e ) {
+					throw new RecordSetException("fails to list CSV files: path=" + m_start, e);
+				}
+			}
+			
+			return toPointLocally(new MultiFileCsvRecordSet(m_start, m_csvParams, m_glob));
+		}
+
+		@Override
+		protected Optional<Plan> loadImportPlan(MarmotRuntime marmot) {
+			// 타입 추정이 설정되고 점 좌표 컬럼이 지정되지 않은 경우는 추정된 좌표 컬럼 쌍을 사용한다.
+			if ( m_csvParams.inferTypes() && m_csvParams.pointColumns().isEmpty()
+				&& m_params.getGeometryColumnInfo().isPresent() ) {
+				try {
+					File first = MultiFileCsvRecordSet.listFiles(m_start, m_glob).get(0);
+					CsvSchemaInferrer.infer(first, m_csvParams)
+									.getPointColumns()
+									.ifPresent(xy -> m_csvParams.pointColumns(xy._1 + m_csvParams.delimiter() + xy._2));
+				}
+				catch ( IOException e ) {
+					throw new RecordSetException("fails to infer CSV schema: path=" + m_start, e);
+				}
+			}
+			
+			return super.loadImportPlan(marmot);
 		}
 
 		@Override
@@ -158,7 +216,7 @@ public abstract class ImportCsv extends ImportIntoDataSet {
 		@Override
 		protected RecordSet loadRecordSet(MarmotRuntime marmot) {
 			try {
-				return CsvRecordSet.from(m_key, m_reader, m_csvParams);
+				return toPointLocally(CsvRecordSet.from(m_key, m_reader, m_csvParams));
 			}
 			catch ( IOException e ) {
 				throw new RecordSetException("fails to load CsvRecordSet: cause=" + e);
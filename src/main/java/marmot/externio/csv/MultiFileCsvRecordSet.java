@@ -49,22 +49,7 @@ class MultiFileCsvRecordSet extends ConcatedRecordSet {
 		setLogger(s_logger);
 		
 		try {
-			List<File> files;
-			if ( start.isDirectory() ) {
-//				String glob = "**/*.{csv,gz,gzip,zip}";
-				files = FileUtils.walk(start, glob)
-								.sort()
-								.toList();
-				if ( files.isEmpty() ) {
-					throw new IllegalArgumentException("no CSV files to read: path=" + start);
-				}
-			}
-			else {
-				files = Lists.newArrayList(start);
-			}
-			if ( files.isEmpty() ) {
-				throw new IllegalArgumentException("no CSV files to read: path=" + start);
-			}
+			List<File> files = listFiles(start, glob);
 			getLogger().info("loading CSVFile: from={}, nfiles={}", start, files.size());
 
 			m_files = FStream.from(files);
@@ -112,27 +97,55 @@ class MultiFileCsvRecordSet extends ConcatedRecordSet {
 		}
 	}
 	
+	static List<File> listFiles(File start, String glob) throws IOException {
+		List<File> files;
+		if ( start.isDirectory() ) {
+//			String glob = "**/*.{csv,gz,gzip,zip}";
+			files = FileUtils.walk(start, glob)
+							.sort()
+							.toList();
+		}
+		else {
+			files = Lists.newArrayList(start);
+		}
+		if ( files.isEmpty() ) {
+			throw new IllegalArgumentException("no CSV files to read: path=" + start);
+		}
+		
+		return files;
+	}
+	
+	/**
+	 * 주어진 CSV 파일을 읽는 입력 스트림을 생성한다.
+	 * 파일 확장자에 따라 압축된 파일은 압축을 풀어 읽는 스트림이 생성된다.
+	 * 
+	 * @param file	CSV 파일.
+	 * @return	입력 스트림.
+	 */
 	@SuppressWarnings("resource")
+	static InputStream openFile(File file) throws IOException {
+		InputStream src = new FileInputStream(file);
+		String ext = FilenameUtils.getExtension(file.getAbsolutePath());
+		switch ( ext ) {
+			case "csv":
+				return src;
+			case "gz":
+			case "gzip":
+				return new GZIPInputStream(src);
+			case "zip":
+				return new ZipInputStream(src);
+			default:
+				src.close();
+				String msg = String.format("fails to load CsvRecordSet: unknown extenstion=%s", ext);
+				throw new RecordSetException(msg);
+		}
+	}
+	
 	private CsvRecordSet loadFile(File file) {
 		try {
-			InputStream src = new FileInputStream(file);
-			String ext = FilenameUtils.getExtension(file.getAbsolutePath());
-			switch ( ext ) {
-				case "csv":
-					break;
-				case "gz":
-				case "gzip":
-					src = new GZIPInputStream(src);
-					break;
-				case "zip":
-					src = new ZipInputStream(src);
-					break;
-				default:
-					String msg = String.format("fails to load CsvRecordSet: unknown extenstion=%s", ext);
-					throw new RecordSetException(msg);
-			}
-			
-			CsvRecordSet rset = CsvRecordSet.from(file.getAbsolutePath(), src, m_params);
+			InputStream src = openFile(file);
+			// 타입 추정 등으로 파일마다 스키마가 달라지지 않도록 첫번째 파일의 스키마를 사용한다.
+			CsvRecordSet rset = CsvRecordSet.from(file.getAbsolutePath(), src, m_params, m_schema);
 			getLogger().info("loading: CSV[{}], {}", m_params, file);
 			
 			return rset;
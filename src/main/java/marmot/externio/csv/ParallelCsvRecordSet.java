@@ -0,0 +1,287 @@
+package marmot.externio.csv;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVParser;
+import org.apache.commons.csv.CSVRecord;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+
+import utils.Preconditions;
+import utils.StopWatch;
+import utils.Throwables;
+
+import marmot.Record;
+import marmot.RecordSchema;
+import marmot.RecordSetException;
+import marmot.rset.AbstractRecordSet;
+import marmot.support.DefaultRecord;
+
+
+/**
+ * 여러 CSV 파일들을 여러 쓰레드를 사용하여 동시에 파싱하는 레코드 세트.
+ * <p>
+ * 하나의 읽기 쓰레드가 파일들을 차례대로 읽으면서 {@link CsvChunkReader}를 통해 레코드 경계에서
+ * 나뉜 블럭들로 분할하고, 각 블럭은 파서 쓰레드들에서 독립적으로 파싱되어 레코드 리스트로
+ * 변환된다. 하나의 파일 내 블럭들과 서로 다른 파일들의 블럭들이 모두 동시에 파싱된다.
+ * 동시에 처리 중인 블럭의 수는 제한되어 메모리 사용량이 일정 수준을 넘지 않는다.
+ * <p>
+ * 순서 유지 모드에서는 레코드들이 파일 및 블럭 순서대로 반환되고, 그렇지 않은 경우는
+ * 파싱이 먼저 끝난 블럭의 레코드들부터 반환된다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+class ParallelCsvRecordSet extends AbstractRecordSet {
+	private static final Logger s_logger = LoggerFactory.getLogger(ParallelCsvRecordSet.class);
+	private static final CompletableFuture<List<Record>> END_OF_CHUNKS = new CompletableFuture<>();
+
+	private final List<File> m_files;
+	private final CsvParameters m_params;
+	private final Charset m_charset;
+	private final CSVFormat m_format;
+	private final RecordSchema m_schema;
+	private final CsvRecordDecoder m_decoder;
+	private final boolean m_ordered;
+	private final int m_chunkSize;
+	private final int m_maxInflight;
+
+	private final ExecutorService m_parsers;
+	private final Thread m_reader;
+	private final Semaphore m_slots;
+	private final BlockingQueue<CompletableFuture<List<Record>>> m_results
+															= new LinkedBlockingQueue<>();
+	private final StopWatch m_watch;
+
+	private List<Record> m_batch = Collections.emptyList();
+	private int m_batchIdx = 0;
+	private long m_count = 0;
+	private boolean m_eos = false;
+
+	ParallelCsvRecordSet(List<File> files, CsvParameters params, int nparsers) {
+		this(files, params, nparsers, CsvChunkReader.DEFAULT_CHUNK_SIZE);
+	}
+
+	ParallelCsvRecordSet(List<File> files, CsvParameters params, int nparsers, int chunkSize) {
+		Preconditions.checkNotNullArgument(files, "CSV files");
+		Preconditions.checkArgument(!files.isEmpty(), "no CSV files to read");
+		Preconditions.checkNotNullArgument(params, "CsvParameters");
+		Preconditions.checkArgument(nparsers > 0, "invalid parser count: " + nparsers);
+		Preconditions.checkArgument(CsvChunkReader.isSplittable(params),
+									"CSV files are not splittable: params=" + params);
+
+		m_files = files;
+		m_params = params;
+		m_charset = params.charset().orElse(StandardCharsets.UTF_8);
+		m_format = CsvRecordSet.toCsvFormat(params);
+		m_ordered = !params.unordered();
+		m_chunkSize = chunkSize;
+		m_maxInflight = nparsers * 2;
+		setLogger(s_logger);
+
+		m_schema = readRecordSchema(files.get(0));
+		m_decoder = new CsvRecordDecoder(m_schema, params);
+
+		m_slots = new Semaphore(m_maxInflight);
+		m_parsers = Executors.newFixedThreadPool(nparsers, r -> {
+			Thread thread = new Thread(r, "csv-parser");
+			thread.setDaemon(true);
+			return thread;
+		});
+		m_reader = new Thread(this::readChunks, "csv-chunk-reader");
+		m_reader.setDaemon(true);
+
+		m_watch = StopWatch.start();
+		m_reader.start();
+		getLogger().info("parsing CSV files: nfiles={}, parsers={}, ordered={}",
+							files.size(), nparsers, m_ordered);
+	}
+
+	@Override
+	protected void closeInGuard() {
+		m_reader.interrupt();
+		m_parsers.shutdownNow();
+	}
+
+	@Override
+	public RecordSchema getRecordSchema() {
+		return m_schema;
+	}
+
+	@Override
+	public Record nextCopy() {
+		checkNotClosed();
+
+		while ( m_batchIdx >= m_batch.size() ) {
+			if ( m_eos ) {
+				return null;
+			}
+
+			CompletableFuture<List<Record>> result;
+			try {
+				result = m_results.take();
+			}
+			catch ( InterruptedException e ) {
+				throw new RecordSetException("interrupted while waiting CSV chunks");
+			}
+
+			if ( result == END_OF_CHUNKS ) {
+				m_eos = true;
+				m_watch.stop();
+
+				if ( getLogger().isInfoEnabled() ) {
+					double velo = m_count / m_watch.getElapsedInFloatingSeconds();
+					String msg = String.format("loaded: nfiles=%d, lines=%d, elapsed=%s, velo=%.1f/s",
+												m_files.size(), m_count,
+												m_watch.getElapsedSecondString(), velo);
+					getLogger().info(msg);
+				}
+
+				return null;
+			}
+
+			m_slots.release();
+			try {
+				m_batch = result.join();
+				m_batchIdx = 0;
+			}
+			catch ( CompletionException e ) {
+				throw Throwables.toRuntimeException(Throwables.unwrapThrowable(e));
+			}
+		}
+
+		++m_count;
+		return m_batch.get(m_batchIdx++);
+	}
+
+	@Override
+	public String toString() {
+		return String.format("%s[nfiles=%d, %s]", getClass().getSimpleName(), m_files.size(), m_params);
+	}
+
+	private RecordSchema readRecordSchema(File file) {
+		try ( InputStream is = MultiFileCsvRecordSet.openFile(file);
+				CSVParser parser = m_format.parse(new InputStreamReader(is, m_charset)) ) {
+			Iterator<CSVRecord> iter = parser.iterator();
+			if ( !iter.hasNext() ) {
+				throw new IllegalArgumentException("input CSV file is empty: key=" + file);
+			}
+
+			CSVRecord first = iter.next();
+			List<CSVRecord> samples = Lists.newArrayList();
+			if ( m_params.inferTypes() ) {
+				if ( !m_params.headerFirst().orElse(false) ) {
+					samples.add(first);
+				}
+				int nsamples = m_params.inferSampleCount()
+										.orElse(CsvSchemaInferrer.DEFAULT_SAMPLE_COUNT);
+				while ( samples.size() < nsamples && iter.hasNext() ) {
+					samples.add(iter.next());
+				}
+			}
+			
+			return CsvRecordSet.buildRecordSchema(first, samples, m_params);
+		}
+		catch ( IOException e ) {
+			throw new RecordSetException("fails to read CSV header: file=" + file, e);
+		}
+	}
+
+	private void readChunks() {
+		boolean headerFirst = m_params.headerFirst().orElse(false);
+		try {
+			for ( File file: m_files ) {
+				try ( CsvChunkReader chunks = new CsvChunkReader(MultiFileCsvRecordSet.openFile(file),
+																m_params, m_chunkSize) ) {
+					getLogger().info("loading: CSV[{}], {}", m_params, file);
+
+					byte[] bytes;
+					for ( int chunkNo = 0; (bytes = chunks.next()) != null; ++chunkNo ) {
+						m_slots.acquire();
+
+						// 헤더 레코드는 각 파일의 첫번째 블럭에만 포함된다.
+						Chunk chunk = new Chunk(file, chunkNo, bytes, headerFirst && chunkNo == 0);
+						CompletableFuture<List<Record>> result
+									= CompletableFuture.supplyAsync(() -> parse(chunk), m_parsers);
+						if ( m_ordered ) {
+							m_results.put(result);
+						}
+						else {
+							result.whenComplete((r,e) -> m_results.add(result));
+						}
+					}
+				}
+			}
+
+			if ( !m_ordered ) {
+				// 순서 비유지 모드에서는 모든 블럭이 소비되어 반환된 슬롯들을 모두 회수한 뒤에
+				// 종료 표시를 추가하여, 종료 표시가 마지막 블럭보다 먼저 전달되지 않도록 한다.
+				m_slots.acquire(m_maxInflight);
+			}
+			m_results.put(END_OF_CHUNKS);
+		}
+		catch ( InterruptedException e ) {
+			// 레코드 세트가 닫힌 경우
+		}
+		catch ( Throwable e ) {
+			m_results.add(CompletableFuture.failedFuture(e));
+		}
+	}
+
+	private List<Record> parse(Chunk chunk) {
+		Reader reader = new InputStreamReader(new ByteArrayInputStream(chunk.m_bytes), m_charset);
+		try ( CSVParser parser = m_format.parse(reader) ) {
+			Iterator<CSVRecord> iter = parser.iterator();
+			if ( chunk.m_skipHeader && iter.hasNext() ) {
+				iter.next();
+			}
+
+			List<Record> records = Lists.newArrayList();
+			while ( iter.hasNext() ) {
+				Record record = DefaultRecord.of(m_schema);
+				m_decoder.decode(iter.next(), record);
+				records.add(record);
+			}
+
+			return records;
+		}
+		catch ( Exception e ) {
+			String msg = String.format("fails to parse CSV: file=%s, chunk=%d, cause=%s",
+										chunk.m_file, chunk.m_chunkNo, e);
+			throw new RecordSetException(msg, e);
+		}
+	}
+
+	private static final class Chunk {
+		private final File m_file;
+		private final int m_chunkNo;
+		private final byte[] m_bytes;
+		private final boolean m_skipHeader;
+
+		Chunk(File file, int chunkNo, byte[] bytes, boolean skipHeader) {
+			m_file = file;
+			m_chunkNo = chunkNo;
+			m_bytes = bytes;
+			m_skipHeader = skipHeader;
+		}
+	}
+}
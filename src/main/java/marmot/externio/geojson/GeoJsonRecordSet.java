@@ -0,0 +1,638 @@
+package marmot.externio.geojson;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.Nullable;
+
+import org.geotools.geometry.jts.Geometries;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequences;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.LineString;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.impl.PackedCoordinateSequence;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import utils.Preconditions;
+import utils.func.Try;
+
+import marmot.Column;
+import marmot.Record;
+import marmot.RecordSchema;
+import marmot.RecordSetException;
+import marmot.geo.GeoClientUtils;
+import marmot.rset.AbstractRecordSet;
+import marmot.support.DataUtils;
+import marmot.type.DataType;
+import marmot.type.GeometryDataType;
+
+
+/**
+ * GeoJSON FeatureCollection 문서를 스트리밍 방식으로 읽어 레코드로 변환하는 레코드 세트.
+ * <p>
+ * Gson {@link JsonReader}를 사용하여 'features' 배열의 feature들을 차례대로 읽으면서, 속성 값은
+ * 바로 레코드의 컬럼 값으로, 공간 정보는 좌표 배열({@link PackedCoordinateSequence})을 통해 바로
+ * JTS 공간 객체로 변환한다. 좌표마다 {@code Coordinate} 객체를 생성하지 않으며, feature 단위의
+ * 중간 객체도 생성하지 않는다.
+ * <p>
+ * 레코드 스키마가 주어지지 않은 경우는 앞부분 feature들을 표본으로 하여 스키마를 결정한다.
+ * 공간 컬럼이 첫번째 컬럼이 되고, 표본에 나타난 속성들이 처음 나타난 순서대로 그 뒤에 추가된다.
+ * 속성 타입은 표본 값들이 모두 정수이면 LONG, 실수를 포함하면 DOUBLE, 모두 boolean이면
+ * BOOLEAN, 그 밖의 경우는 STRING으로 결정된다. 스키마에 포함되지 않은 속성은 무시된다.
+ * 표본 이후의 feature에 INT 범위를 벗어나는 값이 나타날 수 있기 때문에 정수 속성은
+ * 표본 값의 범위와 무관하게 LONG으로 결정한다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+class GeoJsonRecordSet extends AbstractRecordSet {
+	private static final Logger s_logger = LoggerFactory.getLogger(GeoJsonRecordSet.class);
+	static final int DEFAULT_SAMPLE_COUNT = 1000;
+
+	private final JsonReader m_reader;
+	private final RecordSchema m_schema;
+	private final int m_geomIdx;
+	private final Geometries m_geomType;
+	private final Map<String,Integer> m_colIdxes;	// 속성 이름별 컬럼 순번
+	private final DataType[] m_types;
+	private final Deque<Feature> m_samples = Lists.newLinkedList();
+
+	private double[] m_ords = new double[3 * 256];	// 좌표 값 임시 버퍼 (좌표당 3개)
+	private long m_featureNo = 0;
+	private boolean m_eos = false;
+
+	/**
+	 * GeoJSON 레코드 세트를 생성한다.
+	 *
+	 * @param reader	GeoJSON 문서 입력.
+	 * @param geomCol	공간 컬럼 이름.
+	 * @param schema	레코드 스키마. {@code null}인 경우는 표본 feature들을 통해 결정된다.
+	 */
+	GeoJsonRecordSet(Reader reader, String geomCol, @Nullable RecordSchema schema) {
+		this(reader, geomCol, schema, DEFAULT_SAMPLE_COUNT);
+	}
+
+	GeoJsonRecordSet(Reader reader, String geomCol, @Nullable RecordSchema schema,
+					int nsamples) {
+		Preconditions.checkNotNullArgument(reader, "reader");
+		Preconditions.checkNotNullArgument(geomCol, "geometry column");
+		Preconditions.checkArgument(nsamples > 0, "invalid sample count: " + nsamples);
+
+		m_reader = new JsonReader(reader);
+		setLogger(s_logger);
+
+		try {
+			moveToFeatures();
+			if ( schema == null ) {
+				while ( m_samples.size() < nsamples && m_reader.hasNext() ) {
+					m_samples.add(readSample());
+					++m_featureNo;
+				}
+				schema = buildRecordSchema(geomCol, m_samples);
+				getLogger().info("inferred GeoJSON schema: samples={}, schema={}",
+									m_samples.size(), schema);
+			}
+		}
+		catch ( IOException | RuntimeException e ) {
+			Try.run(m_reader::close);
+			throw new RecordSetException(String.format("fails to parse GeoJSON: feature=%d",
+														m_featureNo), e);
+		}
+
+		m_schema = schema;
+		m_geomIdx = schema.getColumn(geomCol).ordinal();
+		m_geomType = ((GeometryDataType)schema.getColumn(geomCol).type()).toGeometries();
+		m_types = schema.getColumns().stream()
+						.map(Column::type)
+						.toArray(sz -> new DataType[sz]);
+		m_colIdxes = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		for ( Column col: schema.getColumns() ) {
+			if ( col.ordinal() != m_geomIdx ) {
+				m_colIdxes.put(col.name(), col.ordinal());
+			}
+		}
+	}
+
+	@Override
+	protected void closeInGuard() {
+		Try.run(m_reader::close);
+	}
+
+	@Override
+	public RecordSchema getRecordSchema() {
+		return m_schema;
+	}
+
+	@Override
+	public boolean next(Record output) throws RecordSetException {
+		checkNotClosed();
+
+		output.clear();
+
+		Feature sample = m_samples.pollFirst();
+		if ( sample != null ) {
+			if ( sample.m_geom != null ) {
+				output.set(m_geomIdx, GeoClientUtils.cast(sample.m_geom, m_geomType));
+			}
+			for ( Map.Entry<String,Object> prop: sample.m_props.entrySet() ) {
+				Integer idx = m_colIdxes.get(prop.getKey());
+				if ( idx != null ) {
+					output.set(idx, DataUtils.cast(prop.getValue(), m_types[idx]));
+				}
+			}
+			return true;
+		}
+		if ( m_eos ) {
+			return false;
+		}
+
+		try {
+			if ( !m_reader.hasNext() ) {
+				m_eos = true;
+				return false;
+			}
+
+			readFeature(output);
+			++m_featureNo;
+
+			return true;
+		}
+		catch ( IOException | RuntimeException e ) {
+			throw new RecordSetException(String.format("fails to parse GeoJSON: feature=%d",
+														m_featureNo), e);
+		}
+	}
+
+	private void moveToFeatures() throws IOException {
+		m_reader.beginObject();
+		while ( m_reader.hasNext() ) {
+			if ( "features".equals(m_reader.nextName()) ) {
+				m_reader.beginArray();
+				return;
+			}
+			m_reader.skipValue();
+		}
+
+		throw new IllegalArgumentException("not a GeoJSON FeatureCollection: 'features' is missing");
+	}
+
+	private void readFeature(Record output) throws IOException {
+		m_reader.beginObject();
+		while ( m_reader.hasNext() ) {
+			switch ( m_reader.nextName() ) {
+				case "geometry":
+					Geometry geom = readGeometry();
+					if ( geom != null ) {
+						output.set(m_geomIdx, GeoClientUtils.cast(geom, m_geomType));
+					}
+					break;
+				case "properties":
+					if ( m_reader.peek() == JsonToken.NULL ) {
+						m_reader.nextNull();
+						break;
+					}
+					m_reader.beginObject();
+					while ( m_reader.hasNext() ) {
+						Integer idx = m_colIdxes.get(m_reader.nextName());
+						if ( idx != null ) {
+							output.set(idx, readValue(m_types[idx]));
+						}
+						else {
+							m_reader.skipValue();
+						}
+					}
+					m_reader.endObject();
+					break;
+				default:
+					m_reader.skipValue();
+					break;
+			}
+		}
+		m_reader.endObject();
+	}
+
+	private Feature readSample() throws IOException {
+		Geometry geom = null;
+		Map<String,Object> props = Maps.newLinkedHashMap();
+
+		m_reader.beginObject();
+		while ( m_reader.hasNext() ) {
+			switch ( m_reader.nextName() ) {
+				case "geometry":
+					geom = readGeometry();
+					break;
+				case "properties":
+					if ( m_reader.peek() == JsonToken.NULL ) {
+						m_reader.nextNull();
+						break;
+					}
+					m_reader.beginObject();
+					while ( m_reader.hasNext() ) {
+						props.put(m_reader.nextName(), readValue());
+					}
+					m_reader.endObject();
+					break;
+				default:
+					m_reader.skipValue();
+					break;
+			}
+		}
+		m_reader.endObject();
+
+		return new Feature(geom, props);
+	}
+
+	// 속성 값을 읽어 주어진 컬럼 타입의 값으로 변환한다.
+	// 값의 JSON 타입이 컬럼 타입과 일치하는 경우는 범용 변환 과정을 거치지 않는다.
+	private Object readValue(DataType type) throws IOException {
+		switch ( m_reader.peek() ) {
+			case NULL:
+				m_reader.nextNull();
+				return null;
+			case NUMBER:
+				switch ( type.getTypeCode() ) {
+					case DOUBLE:
+						return m_reader.nextDouble();
+					case STRING:
+						return m_reader.nextString();
+					default:
+						break;
+				}
+				break;
+			case STRING:
+				if ( type == DataType.STRING ) {
+					return m_reader.nextString();
+				}
+				break;
+			case BOOLEAN:
+				if ( type == DataType.BOOLEAN ) {
+					return m_reader.nextBoolean();
+				}
+				break;
+			default:
+				break;
+		}
+
+		return DataUtils.cast(readValue(), type);
+	}
+
+	// 속성 값을 읽어 대응되는 Java 객체로 변환한다.
+	// 정수는 Long, 실수는 Double로 변환되며, 객체나 배열은 JSON 문자열로 변환된다.
+	private Object readValue() throws IOException {
+		switch ( m_reader.peek() ) {
+			case NULL:
+				m_reader.nextNull();
+				return null;
+			case BOOLEAN:
+				return m_reader.nextBoolean();
+			case NUMBER:
+				String num = m_reader.nextString();
+				if ( isIntegral(num) ) {
+					try {
+						return Long.parseLong(num);
+					}
+					catch ( NumberFormatException ignored ) { }
+				}
+				return Double.parseDouble(num);
+			case STRING:
+				return m_reader.nextString();
+			default:
+				return JsonParser.parseReader(m_reader).toString();
+		}
+	}
+
+	private static boolean isIntegral(String num) {
+		for ( int i =0; i < num.length(); ++i ) {
+			char c = num.charAt(i);
+			if ( c == '.' || c == 'e' || c == 'E' ) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private Geometry readGeometry() throws IOException {
+		if ( m_reader.peek() == JsonToken.NULL ) {
+			m_reader.nextNull();
+			return null;
+		}
+
+		String type = null;
+		Object coords = null;
+		List<Geometry> geoms = Collections.emptyList();
+
+		// 'type' 멤버가 'coordinates' 뒤에 나올 수도 있으므로 좌표는 중첩 구조대로 먼저 읽는다.
+		m_reader.beginObject();
+		while ( m_reader.hasNext() ) {
+			switch ( m_reader.nextName() ) {
+				case "type":
+					type = m_reader.nextString();
+					break;
+				case "coordinates":
+					coords = readCoordinates();
+					break;
+				case "geometries":
+					geoms = Lists.newArrayList();
+					m_reader.beginArray();
+					while ( m_reader.hasNext() ) {
+						Geometry geom = readGeometry();
+						if ( geom != null ) {
+							geoms.add(geom);
+						}
+					}
+					m_reader.endArray();
+					break;
+				default:
+					m_reader.skipValue();
+					break;
+			}
+		}
+		m_reader.endObject();
+
+		if ( type == null ) {
+			throw new IllegalArgumentException("GeoJSON geometry type is missing");
+		}
+		switch ( type ) {
+			case "Point":
+				CoordinateSequence pt = toSequence(coords);
+				return pt.size() > 0 ? GeoClientUtils.GEOM_FACT.createPoint(pt)
+									: GeoClientUtils.EMPTY_POINT;
+			case "MultiPoint":
+				return GeoClientUtils.GEOM_FACT.createMultiPoint(toSequence(coords));
+			case "LineString":
+				return GeoClientUtils.GEOM_FACT.createLineString(toSequence(coords));
+			case "MultiLineString":
+				LineString[] lines = toList(coords).stream()
+													.map(c -> GeoClientUtils.GEOM_FACT
+																	.createLineString(toSequence(c)))
+													.toArray(sz -> new LineString[sz]);
+				return GeoClientUtils.GEOM_FACT.createMultiLineString(lines);
+			case "Polygon":
+				return toPolygon(coords);
+			case "MultiPolygon":
+				Polygon[] polys = toList(coords).stream()
+												.map(GeoJsonRecordSet::toPolygon)
+												.toArray(sz -> new Polygon[sz]);
+				return GeoClientUtils.GEOM_FACT.createMultiPolygon(polys);
+			case "GeometryCollection":
+				return GeoClientUtils.GEOM_FACT.createGeometryCollection(
+															geoms.toArray(new Geometry[geoms.size()]));
+			default:
+				throw new IllegalArgumentException("unsupported GeoJSON type: " + type);
+		}
+	}
+
+	// 좌표 배열을 읽는다. 중첩 수준에 따라 좌표 또는 좌표들의 배열은 하나의
+	// CoordinateSequence로, 그 위 수준은 List로 반환되며 빈 배열은 빈 List로 반환된다.
+	private Object readCoordinates() throws IOException {
+		if ( m_reader.peek() == JsonToken.NULL ) {
+			m_reader.nextNull();
+			return null;
+		}
+
+		m_reader.beginArray();
+		return readOpenedCoordinates();
+	}
+
+	// 여는 '['가 이미 읽힌 좌표 배열의 나머지를 읽는다.
+	private Object readOpenedCoordinates() throws IOException {
+		if ( !m_reader.hasNext() ) {
+			m_reader.endArray();
+			return Collections.emptyList();
+		}
+		if ( m_reader.peek() == JsonToken.NUMBER ) {
+			// 하나의 좌표: [x, y(, z)]
+			int dim = readOrdinates(0);
+			return toSequence(1, dim);
+		}
+
+		m_reader.beginArray();
+		if ( m_reader.peek() == JsonToken.NUMBER ) {
+			// 좌표들의 배열: [[x, y], ...]
+			int dim = readOrdinates(0);
+			int npoints = 1;
+			while ( m_reader.hasNext() ) {
+				m_reader.beginArray();
+				readOrdinates(npoints * 3);
+				++npoints;
+			}
+			m_reader.endArray();
+
+			return toSequence(npoints, dim);
+		}
+
+		List<Object> children = Lists.newArrayList();
+		children.add(readOpenedCoordinates());
+		while ( m_reader.hasNext() ) {
+			children.add(readCoordinates());
+		}
+		m_reader.endArray();
+
+		return children;
+	}
+
+	// 여는 '['가 이미 읽힌 하나의 좌표를 읽어 m_ords의 주어진 위치부터 3개의 값으로 저장하고,
+	// 좌표의 차원을 반환한다. z 값이 없는 경우는 NaN으로 저장된다.
+	private int readOrdinates(int offset) throws IOException {
+		if ( m_ords.length < offset + 3 ) {
+			m_ords = Arrays.copyOf(m_ords, Math.max(m_ords.length * 2, offset + 3));
+		}
+
+		int dim = 0;
+		while ( m_reader.hasNext() ) {
+			double v = m_reader.nextDouble();
+			if ( dim < 3 ) {
+				m_ords[offset + dim] = v;
+			}
+			++dim;
+		}
+		m_reader.endArray();
+
+		if ( dim < 2 ) {
+			throw new IllegalArgumentException("invalid GeoJSON position: dimension=" + dim);
+		}
+		if ( dim == 2 ) {
+			m_ords[offset + 2] = Double.NaN;
+		}
+
+		return dim;
+	}
+
+	private CoordinateSequence toSequence(int npoints, int dim) {
+		int seqDim = (dim >= 3) ? 3 : 2;
+		double[] packed = new double[npoints * seqDim];
+		for ( int i =0; i < npoints; ++i ) {
+			System.arraycopy(m_ords, i * 3, packed, i * seqDim, seqDim);
+		}
+
+		return new PackedCoordinateSequence.Double(packed, seqDim, 0);
+	}
+
+	private static CoordinateSequence toSequence(Object coords) {
+		if ( coords instanceof CoordinateSequence ) {
+			return (CoordinateSequence)coords;
+		}
+		if ( coords == null || (coords instanceof List && ((List<?>)coords).isEmpty()) ) {
+			return new PackedCoordinateSequence.Double(new double[0], 2, 0);
+		}
+
+		throw new IllegalArgumentException("invalid GeoJSON coordinates nesting");
+	}
+
+	private static List<?> toList(Object coords) {
+		if ( coords == null ) {
+			return Collections.emptyList();
+		}
+		if ( coords instanceof List ) {
+			return (List<?>)coords;
+		}
+
+		throw new IllegalArgumentException("invalid GeoJSON coordinates nesting");
+	}
+
+	private static Polygon toPolygon(Object coords) {
+		List<?> rings = toList(coords);
+		if ( rings.isEmpty() ) {
+			return GeoClientUtils.EMPTY_POLYGON;
+		}
+
+		LinearRing shell = toLinearRing(rings.get(0));
+		LinearRing[] holes = rings.stream()
+									.skip(1)
+									.map(GeoJsonRecordSet::toLinearRing)
+									.toArray(sz -> new LinearRing[sz]);
+		return GeoClientUtils.GEOM_FACT.createPolygon(shell, holes);
+	}
+
+	private static LinearRing toLinearRing(Object coords) {
+		// 닫히지 않은 링은 시작점을 끝에 추가하여 닫는다.
+		CoordinateSequence seq = CoordinateSequences.ensureValidRing(
+							GeoClientUtils.GEOM_FACT.getCoordinateSequenceFactory(), toSequence(coords));
+		return GeoClientUtils.GEOM_FACT.createLinearRing(seq);
+	}
+
+	private static RecordSchema buildRecordSchema(String geomCol, Iterable<Feature> samples) {
+		Geometries geomType = null;
+		Map<String,PropertyStats> stats = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+		List<String> names = Lists.newArrayList();
+		for ( Feature sample: samples ) {
+			if ( sample.m_geom != null ) {
+				geomType = unify(geomType, Geometries.get(sample.m_geom));
+			}
+			for ( Map.Entry<String,Object> prop: sample.m_props.entrySet() ) {
+				String name = prop.getKey();
+				if ( name.equalsIgnoreCase(geomCol) ) {
+					continue;
+				}
+
+				PropertyStats pstats = stats.get(name);
+				if ( pstats == null ) {
+					stats.put(name, pstats = new PropertyStats());
+					names.add(name);
+				}
+				pstats.add(prop.getValue());
+			}
+		}
+
+		DataType gtype = (geomType != null) ? GeometryDataType.fromGeometries(geomType)
+											: DataType.GEOMETRY;
+		RecordSchema.Builder builder = RecordSchema.builder().addColumn(geomCol, gtype);
+		for ( String name: names ) {
+			builder.addColumn(name, stats.get(name).getDataType());
+		}
+
+		return builder.build();
+	}
+
+	// 표본 공간 객체들의 타입을 모두 수용할 수 있는 타입을 구한다.
+	// 단일/다중 타입이 섞인 경우는 다중 타입으로, 그 밖의 경우는 GEOMETRY로 결정한다.
+	private static Geometries unify(Geometries t1, Geometries t2) {
+		if ( t1 == null || t1 == t2 ) {
+			return t2;
+		}
+
+		Geometries m1 = toMulti(t1);
+		return (m1 == toMulti(t2)) ? m1 : Geometries.GEOMETRY;
+	}
+
+	private static Geometries toMulti(Geometries type) {
+		switch ( type ) {
+			case POINT:
+				return Geometries.MULTIPOINT;
+			case LINESTRING:
+				return Geometries.MULTILINESTRING;
+			case POLYGON:
+				return Geometries.MULTIPOLYGON;
+			default:
+				return type;
+		}
+	}
+
+	private static final class Feature {
+		private final @Nullable Geometry m_geom;
+		private final Map<String,Object> m_props;
+
+		Feature(Geometry geom, Map<String,Object> props) {
+			m_geom = geom;
+			m_props = props;
+		}
+	}
+
+	private static final class PropertyStats {
+		private boolean m_long = true;
+		private boolean m_double = true;
+		private boolean m_bool = true;
+		private int m_count = 0;
+
+		void add(Object value) {
+			if ( value == null ) {
+				return;
+			}
+			++m_count;
+
+			if ( value instanceof Long ) {
+				m_bool = false;
+			}
+			else if ( value instanceof Double ) {
+				m_long = m_bool = false;
+			}
+			else if ( value instanceof Boolean ) {
+				m_long = m_double = false;
+			}
+			else {
+				m_long = m_double = m_bool = false;
+			}
+		}
+
+		DataType getDataType() {
+			if ( m_count == 0 ) {
+				return DataType.STRING;
+			}
+			if ( m_long ) {
+				return DataType.LONG;
+			}
+			if ( m_double ) {
+				return DataType.DOUBLE;
+			}
+			if ( m_bool ) {
+				return DataType.BOOLEAN;
+			}
+
+			return DataType.STRING;
+		}
+	}
+}
@@ -7,17 +7,14 @@ import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.util.List;
 
-import org.geotools.feature.FeatureIterator;
-import org.geotools.geojson.feature.FeatureJSON;
-import org.geotools.geojson.geom.GeometryJSON;
-import org.opengis.feature.simple.SimpleFeature;
+import javax.annotation.Nullable;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import marmot.RecordSchema;
 import marmot.RecordSet;
 import marmot.RecordSetException;
-import marmot.geo.geotools.SimpleFeatures;
 import marmot.rset.ConcatedRecordSet;
 import utils.func.FOption;
 import utils.io.FileUtils;
@@ -29,7 +26,6 @@ import utils.stream.FStream;
  */
 public class MultiFileGeoJsonRecordSet extends ConcatedRecordSet {
 	private static final Logger s_logger = LoggerFactory.getLogger(MultiFileGeoJsonRecordSet.class);
-	private static final String GEOJSON_GEOM_COLNAME = "geometry";
 	
 	private final FStream<File> m_files;
 	private final String m_geomColName;
@@ -52,7 +48,7 @@ public class MultiFileGeoJsonRecordSet extends ConcatedRecordSet {
 			m_geomColName = geomColName;
 			m_charset = charset;
 			
-			m_first = parseGeoJson(m_files.next().get(), m_geomColName, m_charset);
+			m_first = parseGeoJson(m_files.next().get(), m_geomColName, m_charset, null);
 			m_schema = m_first.getRecordSchema();
 		}
 		catch ( IOException e ) {
@@ -88,7 +84,8 @@ public class MultiFileGeoJsonRecordSet extends ConcatedRecordSet {
 			FOption<File> next = m_files.next();
 			if ( next.isPresent() ) {
 				try {
-					return parseGeoJson(next.getUnchecked(), m_geomColName, m_charset);
+					// 첫번째 파일의 스키마를 사용하여 모든 파일의 레코드 스키마를 일치시킨다.
+					return parseGeoJson(next.getUnchecked(), m_geomColName, m_charset, m_schema);
 				}
 				catch ( IOException e ) {
 					String msg = String.format("fails to load GeoJSON file: path=%s, details=%s",
@@ -104,19 +101,12 @@ public class MultiFileGeoJsonRecordSet extends ConcatedRecordSet {
 	
 	public static RecordSet parseGeoJson(BufferedReader reader, String geomColName)
 		throws IOException {
-        FeatureJSON fjson = new FeatureJSON(new GeometryJSON());
-
-		FeatureIterator<SimpleFeature> iter = fjson.streamFeatureCollection(reader);
-		RecordSet rset = SimpleFeatures.toRecordSet(iter);
-		if ( !GEOJSON_GEOM_COLNAME.equals(geomColName) ) {
-			rset = rset.renameColumn(GEOJSON_GEOM_COLNAME, geomColName);
-		}
-		return rset;
+		return new GeoJsonRecordSet(reader, geomColName, null);
 	}
 	
-	private static RecordSet parseGeoJson(File file, String geomColName, Charset charset)
-		throws IOException {
+	private static RecordSet parseGeoJson(File file, String geomColName, Charset charset,
+											@Nullable RecordSchema schema) throws IOException {
 		BufferedReader reader = Files.newBufferedReader(file.toPath(), charset);
-		return parseGeoJson(reader, geomColName);
+		return new GeoJsonRecordSet(reader, geomColName, schema);
 	}
 }
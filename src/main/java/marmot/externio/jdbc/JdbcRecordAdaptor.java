@@ -106,11 +106,9 @@ public abstract class JdbcRecordAdaptor {
 
 	public void storeRecord(Record record, PreparedStatement pstmt) throws RecordSetException {
 		RecordSchema schema = record.getRecordSchema();
-		Object[] values = record.getAll();
-
 		for ( int i =0; i < schema.getColumnCount(); ++i ) {
 			Column col = schema.getColumnAt(i);
-			setColumn(pstmt, i+1, col, values[i]);
+			setColumn(pstmt, i+1, col, record.get(i));
 		}
 	}
 	
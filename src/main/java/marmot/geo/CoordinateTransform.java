@@ -84,6 +84,22 @@ public class CoordinateTransform {
 		}
 	}
 	
+	/**
+	 * 주어진 배열에 (x, y) 순서로 연속 저장된 좌표들을 한번에 변환한다.
+	 * 변환된 좌표는 인자 배열에 다시 저장된다.
+	 * 
+	 * @param coords	좌표 배열 (x0, y0, x1, y1, ...).
+	 * @param npoints	변환할 좌표의 수.
+	 */
+	public void transform(double[] coords, int npoints) {
+		try {
+			m_trans.transform(coords, 0, coords, 0, npoints);
+		}
+		catch ( TransformException e ) {
+			throw new IllegalArgumentException("invalid coordinates: count=" + npoints, e);
+		}
+	}
+	
 	public static @Nullable CoordinateTransform getTransformToWgs84(String srid) {
 		return (srid.equals("EPSG:4326")) ? null : get(srid, "EPSG:4326");
 	}
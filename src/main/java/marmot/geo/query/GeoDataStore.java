@@ -6,7 +6,13 @@ import static utils.Preconditions.checkNotNullArgument;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 import org.locationtech.jts.geom.Envelope;
 import org.slf4j.Logger;
@@ -15,13 +21,19 @@ import org.slf4j.LoggerFactory;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.io.Files;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 
+import utils.Throwables;
+import utils.func.FOption;
+import utils.func.Unchecked;
 import utils.stream.FStream;
 
 import marmot.MarmotRuntime;
 import marmot.MarmotRuntimeException;
+import marmot.RecordSet;
 import marmot.dataset.DataSet;
 import marmot.support.TextDataSetAdaptor;
 
@@ -29,13 +41,15 @@ import marmot.support.TextDataSetAdaptor;
  * 
  * @author Kang-Woo Lee (ETRI)
  */
-public class GeoDataStore {
+public class GeoDataStore implements AutoCloseable {
 	private static final Logger s_logger = LoggerFactory.getLogger(GeoDataStore.class);
 	private static final long DEFAULT_PARTITION_CACHE_EXPIRE_SECONDS = MINUTES.toSeconds(30);
 	private static final int DEFAULT_DS_CACHE_EXPIRE_MINUTES = 60;
 	private static final int DEFAULT_SAMPLE_COUNT = 50000;
 	private static final boolean DEFAULT_USE_PREFETCH = false;
+	private static final boolean DEFAULT_USE_HYBRID = false;
 	private static final int DEFAULT_LOCAL_CACHE_COST = 15;
+	private static final int DEFAULT_BATCH_WORKER_COUNT = 4;
 	
 	private final MarmotRuntime m_marmot;
 	private final TextDataSetAdaptor m_dsAdaptor;
@@ -43,7 +57,13 @@ public class GeoDataStore {
 	private final PartitionCache m_cache;
 	private final int m_sampleCount;
 	private final boolean m_usePrefetch;
+	private final boolean m_useHybrid;
 	private final int m_maxLocalCacheCost;
+	private final RangeQueryStatistics m_stats = new RangeQueryStatistics();
+	private final RangeQueryEstimateCache m_estimates
+						= new RangeQueryEstimateCache(RangeQueryEstimateCache.DEFAULT_VALIDATE_MILLIS);
+	private final PrefetchScheduler m_prefetcher;
+	private final ExecutorService m_batchExecutor;
 	
 	public static Builder builder() {
 		return new Builder();
@@ -54,9 +74,12 @@ public class GeoDataStore {
 		private File m_cacheDir;
 		private int m_dsCacheExpireMinutes = DEFAULT_DS_CACHE_EXPIRE_MINUTES;
 		private long m_partCacheExpireSecs = DEFAULT_PARTITION_CACHE_EXPIRE_SECONDS;
+		private long m_partCacheMaxSize = PartitionCache.DEFAULT_MAX_CACHE_SIZE;
 		private int m_sampleCount = DEFAULT_SAMPLE_COUNT;
 		private boolean m_usePrefetch = DEFAULT_USE_PREFETCH;
+		private boolean m_useHybrid = DEFAULT_USE_HYBRID;
 		private int m_maxLocalCacheCost = DEFAULT_LOCAL_CACHE_COST;
+		private int m_batchWorkerCount = DEFAULT_BATCH_WORKER_COUNT;
 		
 		private Builder() {
 			File parentDir = Files.createTempDir().getParentFile();
@@ -106,6 +129,22 @@ public class GeoDataStore {
 			return this;
 		}
 		
+		/**
+		 * 지역 캐쉬 저장소에 저장될 파티션 파일들의 최대 크기를 설정한다.
+		 * <p>
+		 * 캐쉬된 파티션 파일들의 크기가 이 값을 넘으면 가장 오랫동안 사용되지 않은
+		 * 파티션부터 제거된다.
+		 * 
+		 * @param size	최대 크기 (바이트 단위)
+		 * @return	공간 정보 저장소 객체 (Fluent Interface 구성용)
+		 */
+		public Builder setPartitionCacheMaxSize(long size) {
+			checkArgument(size > 0, "invalid partition cache size: size=" + size);
+			
+			m_partCacheMaxSize = size;
+			return this;
+		}
+		
 		/**
 		 * 공간 정보 저장소 수준에서의 샘플 갯수를 설정한다.
 		 * <p>
@@ -137,15 +176,33 @@ public class GeoDataStore {
 			m_usePrefetch = flag;
 			return this;
 		}
+		
+		/**
+		 * 캐쉬된 파티션과 서버 질의를 함께 사용하는 혼합 질의 방식의 사용 여부를 설정한다.
+		 * <p>
+		 * 혼합 방식은 서버가 영역 질의 대상 클러스터 제한 (quad_keys)을 지원하는 경우에만
+		 * 사용하여야 한다. 별도로 지정되지 않은 경우는 {@link #DEFAULT_USE_HYBRID}이 설정된다.
+		 * 
+		 * @param flag	혼합 방식 사용 여부
+		 * @return	공간 정보 저장소 객체 (Fluent Interface 구성용)
+		 * @see RangeQuery#useHybrid(boolean)
+		 */
+		public Builder setUseHybrid(boolean flag) {
+			m_useHybrid = flag;
+			return this;
+		}
 
 		/**
 		 * 공간 정보 저장소 수준에서의 지역 캐쉬 활용 비용 최대 값를 설정한다.
 		 * <p>
+		 * 지역 캐쉬를 활용하는 질의는 이 값보다 많은 수의 파티션을 서버에서 적재하지 않는다.
+		 * 실제 수행 방식은 관측된 수행 통계({@link RangeQueryStatistics})를 통해 추정된
+		 * 소요 시간을 비교하여 결정된다.
 		 * 이후 {@link #createRangeQuery(String, Envelope)}를 통해 생성된 모든 질의 객체는
 		 * 기본적으로 이때 설정된 비용 값을 갖게된다. 별도로 지정되지 않은 경우는
 		 * {@link #DEFAULT_LOCAL_CACHE_COST}이 설정된다.
 		 * 
-		 * @param cost	최대 비용
+		 * @param cost	최대 비용 (적재할 최대 파티션 수)
 		 * @return	공간 정보 저장소 객체 (Fluent Interface 구성용)
 		 */
 		public Builder setMaxLocalCacheCost(int cost) {
@@ -154,6 +211,23 @@ public class GeoDataStore {
 			m_maxLocalCacheCost = cost;
 			return this;
 		}
+		
+		/**
+		 * {@link GeoDataStore#queryRanges(List, Envelope)}를 통해 여러 데이터세트를 질의할 때
+		 * 동시에 수행되는 데이터세트별 질의의 최대 수를 설정한다.
+		 * <p>
+		 * 이 값은 저장소 전체에서 공유된다. 별도로 지정되지 않은 경우는
+		 * {@link #DEFAULT_BATCH_WORKER_COUNT}이 설정된다.
+		 * 
+		 * @param count	최대 동시 질의 수
+		 * @return	공간 정보 저장소 객체 (Fluent Interface 구성용)
+		 */
+		public Builder setBatchWorkerCount(int count) {
+			checkArgument(count > 0, "batch worker count must be larger than zero, but " + count);
+			
+			m_batchWorkerCount = count;
+			return this;
+		}
 	}
 	
 	private GeoDataStore(Builder builder) throws IOException {
@@ -170,9 +244,17 @@ public class GeoDataStore {
 										return m_dsAdaptor.adapt(ds);
 									}
 								});
-		m_cache = new PartitionCache(m_marmot, builder.m_cacheDir, builder.m_partCacheExpireSecs);
+		m_cache = new PartitionCache(m_marmot, builder.m_cacheDir, builder.m_partCacheExpireSecs,
+									builder.m_partCacheMaxSize, m_stats);
+		m_prefetcher = new PrefetchScheduler(m_cache);
+		m_batchExecutor = Executors.newFixedThreadPool(builder.m_batchWorkerCount, r -> {
+			Thread thread = new Thread(r, "range-query-batch");
+			thread.setDaemon(true);
+			return thread;
+		});
 		m_sampleCount = builder.m_sampleCount;
 		m_usePrefetch = builder.m_usePrefetch;
+		m_useHybrid = builder.m_useHybrid;
 		m_maxLocalCacheCost = builder.m_maxLocalCacheCost;
 	}
 	
@@ -189,6 +271,36 @@ public class GeoDataStore {
 		return m_cache;
 	}
 	
+	/**
+	 * 영역 질의 수행 방식 결정에 사용되는 수행 통계 정보를 반환한다.
+	 * 
+	 * @return	수행 통계 정보.
+	 */
+	public RangeQueryStatistics getQueryStatistics() {
+		return m_stats;
+	}
+	
+	/**
+	 * 파티션 선적재에 사용되는 스케쥴러를 반환한다.
+	 * 
+	 * @return	선적재 스케쥴러.
+	 */
+	public PrefetchScheduler getPrefetchScheduler() {
+		return m_prefetcher;
+	}
+	
+	/**
+	 * 저장소를 닫는다.
+	 * <p>
+	 * 여러 데이터세트 질의와 파티션 선적재에 사용되는 쓰레드들을 종료시킨다.
+	 * 이미 반환된 질의 결과 레코드 세트는 계속 사용할 수 있다.
+	 */
+	@Override
+	public void close() {
+		m_batchExecutor.shutdown();
+		m_prefetcher.close();
+	}
+	
 	/**
 	 * 저장소에서 포함된 모든 공간 데이터세트들을 반환한다.
 	 * 
@@ -227,12 +339,84 @@ public class GeoDataStore {
 	public RangeQuery createRangeQuery(String dsId, Envelope range) {
 		try {
 			DataSet ds = m_dsCache.getUnchecked(dsId);
-			return new RangeQuery(ds, range, m_sampleCount, m_cache, m_usePrefetch,
-									m_maxLocalCacheCost);
+			return new RangeQuery(ds, range, m_sampleCount, m_cache, m_stats, m_estimates,
+									m_prefetcher, m_usePrefetch, m_useHybrid, m_maxLocalCacheCost);
 		}
 		catch ( UncheckedExecutionException e ) {
 			String msg = String.format("fails to locate DataSet: id=%s", dsId);
 			throw new MarmotRuntimeException(msg, e.getCause());
 		}
 	}
+	
+	/**
+	 * 여러 데이터세트에 대해 동일한 영역 질의를 수행한다.
+	 * <p>
+	 * 각 데이터세트에 대한 질의 결과 추정치는 한번의 요청으로 구하고, 데이터세트별 질의는
+	 * 저장소 전체에서 공유되는 작업 쓰레드들을 통해 동시에 수행된다.
+	 * 하나의 데이터세트에 대한 질의라도 실패하면 이미 생성된 결과 레코드 세트들은 닫히고
+	 * 예외가 발생된다.
+	 * 
+	 *  @param dsIds	질의 대상 데이터세트 식별자 리스트.
+	 *  @param range	질의 사각 영역
+	 *  @return	데이터세트 식별자별 질의 결과 레코드 세트 (dsIds 순서).
+	 */
+	public Map<String,RecordSet> queryRanges(List<String> dsIds, Envelope range) {
+		checkNotNullArgument(dsIds, "dataset ids");
+		checkNotNullArgument(range, "query range");
+		
+		List<String> ids = Lists.newArrayList(new LinkedHashSet<>(dsIds));
+		Map<String,RangeQuery> queries = Maps.newLinkedHashMap();
+		for ( String dsId: ids ) {
+			queries.put(dsId, createRangeQuery(dsId, range));
+		}
+		
+		// 추정치가 필요한 데이터세트들 중에서 캐쉬된 추정 정보로 계산할 수 없는 것들만
+		// 한번의 요청으로 질의 결과 추정치를 구한다.
+		Map<String,RangeQueryEstimate> estimates = Maps.newHashMap();
+		List<String> estIds = Lists.newArrayList();
+		for ( String dsId: ids ) {
+			if ( queries.get(dsId).needsEstimate() ) {
+				FOption<RangeQueryEstimate> cached = m_estimates.find(getGeoDataSet(dsId), range);
+				if ( cached.isPresent() ) {
+					estimates.put(dsId, cached.get());
+				}
+				else {
+					estIds.add(dsId);
+				}
+			}
+		}
+		if ( !estIds.isEmpty() ) {
+			List<RangeQueryEstimate> ests = m_marmot.estimateRangeQueries(estIds, range);
+			for ( int i =0; i < estIds.size(); ++i ) {
+				String dsId = estIds.get(i);
+				estimates.put(dsId, ests.get(i));
+				m_estimates.put(getGeoDataSet(dsId), range, ests.get(i));
+			}
+		}
+		
+		Map<String,CompletableFuture<RecordSet>> futures = Maps.newLinkedHashMap();
+		for ( String dsId: ids ) {
+			RangeQuery query = queries.get(dsId);
+			RangeQueryEstimate est = estimates.get(dsId);
+			futures.put(dsId, CompletableFuture.supplyAsync(() -> (est != null)
+												? query.run(est) : Unchecked.getOrRTE(query::run),
+												m_batchExecutor));
+		}
+		
+		Map<String,RecordSet> results = Maps.newLinkedHashMap();
+		try {
+			for ( Map.Entry<String,CompletableFuture<RecordSet>> ent: futures.entrySet() ) {
+				results.put(ent.getKey(), ent.getValue().join());
+			}
+			
+			return results;
+		}
+		catch ( CompletionException e ) {
+			results.values().forEach(RecordSet::closeQuietly);
+			futures.values().forEach(f -> f.thenAccept(RecordSet::closeQuietly));
+			
+			String msg = String.format("fails to query ranges: ids=%s", ids);
+			throw new MarmotRuntimeException(msg, Throwables.unwrapThrowable(e));
+		}
+	}
 }
@@ -0,0 +1,104 @@
+package marmot.geo.query;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.locationtech.jts.precision.GeometryPrecisionReducer;
+import org.locationtech.jts.simplify.TopologyPreservingSimplifier;
+
+import utils.Preconditions;
+
+import marmot.Record;
+
+
+/**
+ * 주어진 화소 해상도에 맞추어 레코드의 공간 정보를 단순화시키는 클래스.
+ * <p>
+ * 공간 정보는 화소 크기를 허용 오차로 하여 위상을 보존하는 Douglas-Peucker 방식으로
+ * 단순화된 후, 화소 크기 단위의 격자로 정밀도가 축소된다. 화면에서 하나의 화소보다 작은
+ * 정점 변화는 보이지 않으므로 소축척 화면에서 전달/렌더링할 정점의 수가 크게 줄어든다.
+ * 점 객체는 단순화 대상에서 제외된다.
+ * <p>
+ * 화소 크기는 2의 거듭제곱 단위의 단계({@link #getLevel()})로 정규화된다. 화소 크기가 비슷한
+ * 질의들은 같은 단계를 사용하게 되어, {@link PartitionCache}에 단계별로 저장된 단순화된
+ * 파티션을 공유할 수 있다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+final class LevelOfDetail {
+	private final String m_geomCol;
+	private final int m_level;
+	private final double m_pixelSize;
+	private final GeometryPrecisionReducer m_reducer;
+
+	/**
+	 * 주어진 단계의 단순화 객체를 생성한다.
+	 *
+	 * @param geomCol	단순화 대상 공간 컬럼 이름.
+	 * @param level		단순화 단계. 화소 크기는 2<sup>level</sup>이 된다.
+	 */
+	LevelOfDetail(String geomCol, int level) {
+		Preconditions.checkNotNullArgument(geomCol, "geometry column");
+
+		m_geomCol = geomCol;
+		m_level = level;
+		m_pixelSize = Math.scalb(1d, level);
+		m_reducer = new GeometryPrecisionReducer(new PrecisionModel(1 / m_pixelSize));
+	}
+
+	/**
+	 * 주어진 화소 크기를 넘지 않는 가장 큰 단계의 단순화 객체를 생성한다.
+	 *
+	 * @param geomCol	단순화 대상 공간 컬럼 이름.
+	 * @param pixelSize	화소 하나에 해당하는 길이 (데이터세트 좌표계 단위).
+	 * @return	단순화 객체.
+	 */
+	static LevelOfDetail forPixelSize(String geomCol, double pixelSize) {
+		Preconditions.checkArgument(pixelSize > 0 && !Double.isInfinite(pixelSize),
+									"invalid pixel size: " + pixelSize);
+
+		return new LevelOfDetail(geomCol, Math.getExponent(pixelSize));
+	}
+
+	int getLevel() {
+		return m_level;
+	}
+
+	double getPixelSize() {
+		return m_pixelSize;
+	}
+
+	/**
+	 * 주어진 레코드의 공간 정보를 단순화한다.
+	 * <p>
+	 * 인자 레코드는 파티션 캐쉬에 기록될 레코드와 공유될 수 있기 때문에 갱신하지 않고,
+	 * 단순화가 필요한 경우는 복사본의 공간 정보를 단순화하여 반환한다.
+	 *
+	 * @param record	대상 레코드.
+	 * @return	공간 정보가 단순화된 레코드.
+	 */
+	Record apply(Record record) {
+		Geometry geom = record.getGeometry(m_geomCol);
+		if ( geom != null && !(geom instanceof Point) && !geom.isEmpty() ) {
+			return record.duplicate().set(m_geomCol, simplify(geom));
+		}
+
+		return record;
+	}
+
+	private Geometry simplify(Geometry geom) {
+		Geometry simplified = TopologyPreservingSimplifier.simplify(geom, m_pixelSize);
+		try {
+			// 화소보다 작은 객체는 정밀도 축소 후 사라지거나 다른 타입(예: Polygon이
+			// MultiPolygon)으로 바뀔 수 있으므로 이때는 단순화된 공간 정보를 그대로 사용한다.
+			Geometry reduced = m_reducer.reduce(simplified);
+			if ( reduced.isEmpty() || reduced.getClass() != simplified.getClass() ) {
+				return simplified;
+			}
+			return reduced;
+		}
+		catch ( Exception e ) {
+			return simplified;
+		}
+	}
+}
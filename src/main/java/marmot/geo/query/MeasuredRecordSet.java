@@ -0,0 +1,94 @@
+package marmot.geo.query;
+
+import utils.Preconditions;
+
+import marmot.Record;
+import marmot.RecordSchema;
+import marmot.RecordSet;
+import marmot.rset.AbstractRecordSet;
+
+
+/**
+ * 레코드 세트에서 읽힌 레코드 수와 소요 시간을 측정하는 레코드 세트.
+ * <p>
+ * 레코드 세트를 모두 읽거나 닫을 때 첫 레코드까지의 지연 시간과 전체 소요 시간이
+ * 주어진 {@link Observer}에게 한번 전달된다. 레코드를 하나도 읽지 않은 경우는 전달되지 않는다.
+ * 
+ * @author Kang-Woo Lee (ETRI)
+ */
+final class MeasuredRecordSet extends AbstractRecordSet {
+	private final RecordSet m_rset;
+	private final Observer m_observer;
+	private final long m_started;
+	private long m_first = -1;
+	private long m_count = 0;
+	private boolean m_reported = false;
+	
+	@FunctionalInterface
+	interface Observer {
+		public void onMeasured(long count, long latencyNanos, long elapsedNanos);
+	}
+	
+	MeasuredRecordSet(RecordSet rset, long startedNanos, Observer observer) {
+		Preconditions.checkNotNullArgument(rset, "RecordSet");
+		Preconditions.checkNotNullArgument(observer, "Observer");
+		
+		m_rset = rset;
+		m_started = startedNanos;
+		m_observer = observer;
+	}
+
+	@Override
+	protected void closeInGuard() {
+		report();
+		m_rset.closeQuietly();
+	}
+
+	@Override
+	public RecordSchema getRecordSchema() {
+		return m_rset.getRecordSchema();
+	}
+	
+	@Override
+	public boolean next(Record output) {
+		checkNotClosed();
+		
+		if ( m_rset.next(output) ) {
+			onRecord();
+			return true;
+		}
+		else {
+			report();
+			return false;
+		}
+	}
+	
+	@Override
+	public Record nextCopy() {
+		checkNotClosed();
+		
+		Record next = m_rset.nextCopy();
+		if ( next != null ) {
+			onRecord();
+		}
+		else {
+			report();
+		}
+		
+		return next;
+	}
+	
+	private void onRecord() {
+		if ( m_first < 0 ) {
+			m_first = System.nanoTime();
+		}
+		++m_count;
+	}
+	
+	private void report() {
+		if ( !m_reported && m_count > 0 ) {
+			m_reported = true;
+			m_observer.onMeasured(m_count, m_first - m_started, System.nanoTime() - m_started);
+		}
+	}
+}
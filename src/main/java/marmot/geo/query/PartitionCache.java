@@ -7,11 +7,35 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
 
+import javax.annotation.Nullable;
+import javax.annotation.concurrent.GuardedBy;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,20 +43,27 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.cache.RemovalNotification;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 
 import utils.Preconditions;
+import utils.Throwables;
+import utils.UnitUtils;
 import utils.fostore.DefaultFileObjectStore;
 import utils.fostore.FileObjectHandler;
 import utils.fostore.FileObjectStore;
+import utils.func.Try;
 import utils.func.Unchecked;
 import utils.func.UncheckedConsumer;
 import utils.io.IOUtils;
-import utils.io.Lz4Compressions;
+import utils.stream.FStream;
 
 import marmot.MarmotRuntime;
+import marmot.Record;
 import marmot.RecordSet;
 import marmot.dataset.DataSet;
-import marmot.protobuf.PBRecordProtos;
+import marmot.rset.PipedRecordSet;
+import marmot.support.DefaultRecord;
 
 
 /**
@@ -42,15 +73,88 @@ import marmot.protobuf.PBRecordProtos;
 public class PartitionCache {
 	private static final Logger s_logger = LoggerFactory.getLogger(PartitionCache.class);
 	private static final long CACHE_EXPIRE_SECONDS = MINUTES.toSeconds(30);
+	public static final long DEFAULT_MAX_CACHE_SIZE = UnitUtils.parseByteSize("4gb");
+	private static final int INDEX_CACHE_SIZE = 256;
+	private static final int MAPPED_CACHE_SIZE = 256;
+	private static final int DECODE_WORKER_COUNT = 2;
+	private static final int LOAD_QUEUE_LENGTH = 1024;
+	private static final String INDEX_FILE_SUFFIX = ".idx";
+	private static final String TEMP_FILE_SUFFIX = ".tmp";
+	private static final String LOD_SEPARATOR = "@lod";
 
 	private final LoadingCache<String,DataSet> m_dsCache;
+	private final ParitionFileHandler m_handler;
 	private final FileObjectStore<PartitionKey,InputStream> m_fileCache;
+	private final LoadingCache<PartitionKey,Optional<PartitionIndex>> m_indexCache;
+	private final LoadingCache<PartitionKey,PartitionFile> m_mappedCache;
+	private final long m_maxSize;
+	private final RangeQueryStatistics m_stats;
+	
+	// 적재 중인 파티션들
+	private final ConcurrentMap<PartitionKey,CompletableFuture<Void>> m_loadings
+																= Maps.newConcurrentMap();
+	private final ExecutorService m_loader = Executors.newCachedThreadPool(r -> {
+		Thread thread = new Thread(r, "partition-loader");
+		thread.setDaemon(true);
+		return thread;
+	});
+	
+	// 캐쉬된 파티션 파일들의 크기 (접근 순서로 정렬됨)
+	@GuardedBy("m_lru") private final LinkedHashMap<PartitionKey,Long> m_lru
+																= new LinkedHashMap<>(64, 0.75f, true);
+	@GuardedBy("m_lru") private long m_totalSize = 0;
+	
+	private final AtomicLong m_hitCount = new AtomicLong(0);
+	private final AtomicLong m_missCount = new AtomicLong(0);
+	private final AtomicLong m_evictionCount = new AtomicLong(0);
 
-	public PartitionCache(MarmotRuntime marmot, File storeRoot, long expireSecs)
+	/**
+	 * 파티션 캐쉬 객체를 생성한다.
+	 * <p>
+	 * 캐쉬된 파티션 파일들의 전체 크기가 {@code maxSize}를 넘으면 가장 오랫동안 접근되지 않은
+	 * 파티션부터 제거된다. 또한 {@code expireSecs}동안 접근되지 않은 데이터세트의 모든
+	 * 파티션들도 제거된다.
+	 * 
+	 * @param marmot		marmot 객체.
+	 * @param storeRoot		캐쉬 파일이 저장될 최상위 디렉토리.
+	 * @param expireSecs	데이터세트 만료 시간 (초 단위).
+	 * @param maxSize		캐쉬 파일들의 최대 크기 (바이트 단위).
+	 * @throws IOException	캐쉬 디렉토리 접근 중 오류가 발생된 경우.
+	 */
+	public PartitionCache(MarmotRuntime marmot, File storeRoot, long expireSecs, long maxSize)
 		throws IOException {
-		s_logger.info("use dataset_partition_cache: {}", storeRoot);
+		this(marmot, storeRoot, expireSecs, maxSize, new RangeQueryStatistics());
+	}
+	
+	PartitionCache(MarmotRuntime marmot, File storeRoot, long expireSecs, long maxSize,
+					RangeQueryStatistics stats) throws IOException {
+		Preconditions.checkArgument(maxSize > 0, "invalid max cache size: " + maxSize);
+		Preconditions.checkNotNullArgument(stats, "RangeQueryStatistics");
+		s_logger.info("use dataset_partition_cache: {}, max_size={}", storeRoot,
+						UnitUtils.toByteSizeString(maxSize));
 		
-		m_fileCache = new DefaultFileObjectStore<>(storeRoot, new ParitionFileHandler(storeRoot));
+		m_maxSize = maxSize;
+		m_stats = stats;
+		m_handler = new ParitionFileHandler(storeRoot);
+		m_fileCache = new DefaultFileObjectStore<>(storeRoot, m_handler);
+		m_indexCache = CacheBuilder.newBuilder()
+									.maximumSize(INDEX_CACHE_SIZE)
+									.build(new CacheLoader<PartitionKey,Optional<PartitionIndex>>() {
+										@Override
+										public Optional<PartitionIndex> load(PartitionKey key)
+											throws Exception {
+											return loadIndex(key);
+										}
+									});
+		m_mappedCache = CacheBuilder.newBuilder()
+									.maximumSize(MAPPED_CACHE_SIZE)
+									.removalListener(this::onPartitionFileRemoved)
+									.build(new CacheLoader<PartitionKey,PartitionFile>() {
+										@Override
+										public PartitionFile load(PartitionKey key) throws Exception {
+											return PartitionFile.open(m_handler.toFile(key));
+										}
+									});
 		m_dsCache = CacheBuilder.newBuilder()
 								.expireAfterAccess(expireSecs, SECONDS)
 								.removalListener(this::onDataSetRemoved)
@@ -60,6 +164,18 @@ public class PartitionCache {
 										return marmot.getDataSet(key);
 									}
 								});
+		
+		// 이전에 캐쉬된 파티션 파일들을 수정 시각 순서로 등록한다.
+		List<PartitionKey> keys = Lists.newArrayList(m_fileCache.getFileObjectKeyAll());
+		keys.sort(Comparator.comparingLong(k -> m_handler.toFile(k).lastModified()));
+		for ( PartitionKey key: keys ) {
+			register(key, m_handler.toFile(key).length() + m_handler.toIndexFile(key).length());
+		}
+	}
+
+	public PartitionCache(MarmotRuntime marmot, File storeRoot, long expireSecs)
+		throws IOException {
+		this(marmot, storeRoot, expireSecs, DEFAULT_MAX_CACHE_SIZE);
 	}
 
 	public PartitionCache(MarmotRuntime marmot, File storeRoot) throws IOException {
@@ -70,33 +186,311 @@ public class PartitionCache {
 		return m_fileCache.exists(new PartitionKey(dsId, quadKey));
 	}
 	
+	public long getMaxSize() {
+		return m_maxSize;
+	}
+	
+	/**
+	 * 캐쉬 사용 통계 정보를 반환한다.
+	 * 
+	 * @return	캐쉬 통계 정보.
+	 */
+	public Statistics getStatistics() {
+		synchronized ( m_lru ) {
+			return new Statistics(m_hitCount.get(), m_missCount.get(), m_evictionCount.get(),
+									m_lru.size(), m_totalSize, m_maxSize);
+		}
+	}
+	
+	/**
+	 * 주어진 파티션에 포함된 모든 레코드들을 반환한다.
+	 * <p>
+	 * 파티션 파일의 블록들은 병렬로 디코딩되기 때문에 레코드들의 순서는 보장되지 않는다.
+	 * 
+	 * @param dsId		데이터세트 식별자.
+	 * @param quadKey	파티션의 quad-key.
+	 * @return	레코드 세트.
+	 * @throws IOException	파티션 파일 접근 중 오류가 발생된 경우.
+	 */
 	public RecordSet get(String dsId, String quadKey) throws IOException {
-		InputStream is;
+		PartitionKey key = new PartitionKey(dsId, quadKey);
+		DataSet ds = Unchecked.getOrRTE(() -> m_dsCache.get(key.m_dsId));
+		
+		return openOrLoad(ds, key, pfile -> pfile.read(ds.getRecordSchema(), DECODE_WORKER_COUNT));
+	}
+	
+	/**
+	 * 주어진 파티션에 포함된 레코드들 중에서 MBR이 주어진 영역과 겹치는 레코드들을 반환한다.
+	 * <p>
+	 * 파티션 파일의 블록 MBR과 파티션과 함께 저장된 공간 인덱스를 사용하여 후보 레코드들만
+	 * 디코딩하기 때문에, 반환된 레코드들의 공간 정보가 실제로 질의 영역과 겹치는지는
+	 * 호출자가 확인하여야 한다. 블록들은 필요할 때 순서대로 디코딩되기 때문에 반환된
+	 * 레코드 세트의 일부만 읽는 경우는 앞쪽 블록들만 압축 해제된다.
+	 * <p>
+	 * 파티션이 캐쉬되어 있지 않아 서버에서 적재하는 경우는, 적재를 시작한 호출자에게는
+	 * 파티션 파일 기록이 끝나기를 기다리지 않고 서버에서 수신되는 순서대로 파티션의 모든
+	 * 레코드들이 전달된다.
+	 * 
+	 * @param dsId		데이터세트 식별자.
+	 * @param quadKey	파티션의 quad-key.
+	 * @param range		질의 영역.
+	 * @return	후보 레코드 세트.
+	 * @throws IOException	파티션 파일 접근 중 오류가 발생된 경우.
+	 */
+	public RecordSet query(String dsId, String quadKey, Envelope range) throws IOException {
+		PartitionKey key = new PartitionKey(dsId, quadKey);
+		DataSet ds = Unchecked.getOrRTE(() -> m_dsCache.get(key.m_dsId));
+		
+		return openOrLoad(ds, key, pfile -> queryPartition(ds, key, pfile, range));
+	}
+	
+	/**
+	 * 주어진 파티션에 포함된 레코드들 중에서 MBR이 주어진 영역과 겹치는 레코드들을
+	 * 주어진 단계로 단순화하여 반환한다.
+	 * <p>
+	 * 단순화된 파티션은 quad-key와 단순화 단계별로 별도로 캐쉬된다. 해당 단계의 단순화된
+	 * 파티션이 캐쉬되어 있으면 이를 그대로 읽고, 그렇지 않은 경우는 원본 파티션을 질의하여
+	 * 단순화한 결과를 반환하고 이후 질의를 위해 단순화된 파티션을 별도의 쓰레드에서 생성한다.
+	 * 
+	 * @param dsId		데이터세트 식별자.
+	 * @param quadKey	파티션의 quad-key.
+	 * @param range		질의 영역.
+	 * @param lod		단순화 객체.
+	 * @return	단순화된 후보 레코드 세트.
+	 * @throws IOException	파티션 파일 접근 중 오류가 발생된 경우.
+	 */
+	RecordSet query(String dsId, String quadKey, Envelope range, LevelOfDetail lod)
+		throws IOException {
+		PartitionKey key = new PartitionKey(dsId, quadKey);
+		PartitionKey lodKey = new PartitionKey(dsId, quadKey, lod.getLevel());
+		DataSet ds = Unchecked.getOrRTE(() -> m_dsCache.get(key.m_dsId));
+		
+		PartitionFile pfile = openCached(lodKey);
+		if ( pfile != null ) {
+			m_hitCount.incrementAndGet();
+			touch(lodKey);
+			
+			try {
+				return queryPartition(ds, lodKey, pfile, range).onClose(pfile::release);
+			}
+			catch ( Throwable e ) {
+				pfile.release();
+				throw e;
+			}
+		}
+		
+		RecordSet rset = query(dsId, quadKey, range);
+		startSimplifying(ds, key, lodKey, lod);
+		
+		return RecordSet.from(rset.getRecordSchema(), rset.fstream().map(lod::apply));
+	}
+	
+	/**
+	 * 주어진 파티션이 캐쉬되어 있지 않은 경우 서버에서 읽어 캐쉬에 적재한다.
+	 * <p>
+	 * 동일 파티션에 대한 적재가 이미 진행 중인 경우는 새로 적재하지 않고
+	 * 진행 중인 적재가 끝날 때까지 대기한다.
+	 * 
+	 * @param dsId		데이터세트 식별자.
+	 * @param quadKey	파티션의 quad-key.
+	 * @throws IOException	파티션 적재 중 오류가 발생된 경우.
+	 */
+	public void load(String dsId, String quadKey) throws IOException {
+		PartitionKey key = new PartitionKey(dsId, quadKey);
+		DataSet ds = Unchecked.getOrRTE(() -> m_dsCache.get(key.m_dsId));
 		
+		while ( !m_fileCache.exists(key) ) {
+			CompletableFuture<Void> loading = new CompletableFuture<>();
+			CompletableFuture<Void> inflight = m_loadings.putIfAbsent(key, loading);
+			if ( inflight == null ) {
+				startLoading(ds, key, loading, null);
+				inflight = loading;
+			}
+			awaitLoading(inflight);
+		}
+	}
+	
+	private RecordSet openOrLoad(DataSet ds, PartitionKey key,
+								Function<PartitionFile,RecordSet> reader) throws IOException {
 		// 오래된 데이터세트에 대한 파티션 파일이 삭제되게 하기 위해서
-		// 먼저 dsId를 사용해서 m_dsCache를 접근한다.
+		// 호출자는 먼저 dsId를 사용해서 m_dsCache를 접근한다.
 		// 만일 일정기간동안 사용되지 않은 데이터세트의 파티션들이 m_fileCache에 있다면
 		// 이때 제거된다.
-		DataSet ds = Unchecked.getOrRTE(() -> m_dsCache.get(dsId));
+		boolean missed = false;
+		while ( true ) {
+			PartitionFile pfile = openCached(key);
+			if ( pfile != null ) {
+				if ( !missed ) {
+					m_hitCount.incrementAndGet();
+				}
+				touch(key);
+				
+				// 반환된 레코드 세트가 닫힐 때까지는 파티션 파일의 매핑이 해제되지 않도록 한다.
+				try {
+					return reader.apply(pfile).onClose(pfile::release);
+				}
+				catch ( Throwable e ) {
+					pfile.release();
+					throw e;
+				}
+			}
+			
+			// cache에 파티션이 존재하지 않는 경우
+			if ( !missed ) {
+				m_missCount.incrementAndGet();
+				missed = true;
+			}
+			
+			CompletableFuture<Void> loading = new CompletableFuture<>();
+			CompletableFuture<Void> inflight = m_loadings.putIfAbsent(key, loading);
+			if ( inflight == null ) {
+				// 처음 적재를 요청한 경우는 수신되는 레코드들을 바로 전달받는다.
+				PipedRecordSet pipe = RecordSet.pipe(ds.getRecordSchema(), LOAD_QUEUE_LENGTH);
+				startLoading(ds, key, loading, pipe);
+				
+				return pipe;
+			}
+			else {
+				// 이미 다른 쓰레드가 적재 중인 경우는 적재가 완료될 때까지 대기한다.
+				awaitLoading(inflight);
+			}
+		}
+	}
+	
+	private RecordSet queryPartition(DataSet ds, PartitionKey key, PartitionFile pfile,
+										Envelope range) {
+		if ( !ds.hasGeometryColumn() ) {
+			return pfile.read(ds.getRecordSchema(), 1);
+		}
 		
+		Optional<PartitionIndex> idx = Unchecked.getOrRTE(() -> m_indexCache.get(key));
+		if ( idx.isPresent() && idx.get().getStamp() != pfile.getStamp() ) {
+			// 파티션 파일이 교체되는 도중에 읽은 인덱스인 경우는 다시 읽어보고,
+			// 그래도 짝이 맞지 않으면 인덱스 없이 블록 MBR만 사용한다.
+			m_indexCache.invalidate(key);
+			idx = Unchecked.getOrRTE(() -> m_indexCache.get(key))
+							.filter(i -> i.getStamp() == pfile.getStamp());
+		}
+		BitSet candidates = idx.map(i -> i.query(range)).orElse(null);
+		return pfile.query(ds.getRecordSchema(), range, candidates);
+	}
+	
+	private @Nullable PartitionFile openCached(PartitionKey key) {
 		try {
-			PartitionKey key = new PartitionKey(dsId, quadKey);
-			Optional<InputStream> ois = m_fileCache.get(key);
-			if ( ois.isPresent() ) {	// cache에 해당 파티션이 존재하는 경
-				is = ois.get();
+			while ( m_fileCache.exists(key) ) {
+				// 캐쉬에서 얻은 직후 다른 쓰레드에 의해 캐쉬에서 제거되어 닫힌 경우는 다시 연다.
+				PartitionFile pfile = m_mappedCache.get(key);
+				if ( pfile.acquire() ) {
+					return pfile;
+				}
+				m_mappedCache.asMap().remove(key, pfile);
 			}
-			else {	// cache에 파티션이 존재하지 않는 경우
-				RecordSet cluster = ds.readSpatialCluster(quadKey);
+			
+			return null;
+		}
+		catch ( ExecutionException e ) {
+			// 이전 형식으로 기록되었거나 손상된 파티션 파일인 경우는 제거하고 다시 적재한다.
+			s_logger.warn("drop invalid partition file: {}, cause={}", key, ""+e.getCause());
+			unregister(key);
+			Try.run(() -> removeFiles(key));
+			
+			return null;
+		}
+	}
+	
+	private void startLoading(DataSet ds, PartitionKey key, CompletableFuture<Void> loading,
+								@Nullable PipedRecordSet pipe) {
+		// 적재를 요청한 호출자에게는 별도의 쓰레드가 다운로드된 레코드들을 전달한다.
+		// 호출자가 레코드를 늦게 읽거나 중간에 레코드 세트를 닫더라도 다운로드와 적재는
+		// 지연되지 않고 계속된다.
+		Delivery delivery = (pipe != null) ? new Delivery(pipe) : null;
+		if ( delivery != null ) {
+			m_loader.execute(delivery);
+		}
+		
+		CompletableFuture.runAsync(() -> {
+			try {
+				List<Record> records = Lists.newArrayList();
+				long started = System.nanoTime();
+				long first = -1;
+				try ( RecordSet cluster = ds.readSpatialCluster(key.m_quadKey) ) {
+					Record rec;
+					while ( (rec = cluster.nextCopy()) != null ) {
+						if ( first < 0 ) {
+							first = System.nanoTime();
+						}
+						records.add(rec);
+						if ( delivery != null ) {
+							delivery.add(rec);
+						}
+					}
+				}
+				long finished = System.nanoTime();
+				if ( delivery != null ) {
+					delivery.complete(null);
+				}
+				if ( first >= 0 ) {
+					m_stats.observeDownload(records.size(), first - started, finished - started);
+				}
 				
-				File file = writeIntoCache(key, cluster);
-				is = new FileInputStream(file);
+				writeIntoCache(key, RecordSet.from(ds.getRecordSchema(), records));
+				loading.complete(null);
 			}
-			
-			is = Lz4Compressions.decompress(is);
-			return PBRecordProtos.readRecordSet(is);
+			catch ( Throwable e ) {
+				if ( delivery != null ) {
+					delivery.complete(e);
+				}
+				loading.completeExceptionally(e);
+			}
+			finally {
+				m_loadings.remove(key, loading);
+			}
+		}, m_loader);
+	}
+	
+	private void startSimplifying(DataSet ds, PartitionKey key, PartitionKey lodKey,
+									LevelOfDetail lod) {
+		// 동일 단계의 단순화된 파티션을 이미 생성 중인 경우는 새로 생성하지 않는다.
+		CompletableFuture<Void> building = new CompletableFuture<>();
+		if ( m_loadings.putIfAbsent(lodKey, building) != null ) {
+			return;
 		}
-		catch ( ExecutionException unexpected ) {
-			throw new AssertionError();
+		
+		CompletableFuture.runAsync(() -> {
+			try {
+				// 원본 파티션이 적재 중인 경우는 적재가 끝날 때까지 대기한다.
+				load(key.m_dsId, key.m_quadKey);
+				
+				PartitionFile pfile = openCached(key);
+				if ( pfile != null ) {
+					try ( RecordSet rset = pfile.read(ds.getRecordSchema(), DECODE_WORKER_COUNT) ) {
+						writeIntoCache(lodKey, RecordSet.from(rset.getRecordSchema(),
+																rset.fstream().map(lod::apply)));
+					}
+					finally {
+						pfile.release();
+					}
+				}
+				building.complete(null);
+			}
+			catch ( Throwable e ) {
+				s_logger.warn("fails to build simplified partition: {}, cause={}", lodKey, ""+e);
+				building.completeExceptionally(e);
+			}
+			finally {
+				m_loadings.remove(lodKey, building);
+			}
+		}, m_loader);
+	}
+	
+	private void awaitLoading(CompletableFuture<Void> loading) throws IOException {
+		try {
+			loading.join();
+		}
+		catch ( CompletionException e ) {
+			Throwable cause = Throwables.unwrapThrowable(e);
+			Throwables.throwIfInstanceOf(cause, IOException.class);
+			throw Throwables.toRuntimeException(cause);
 		}
 	}
 	
@@ -106,7 +500,9 @@ public class PartitionCache {
 	}
 	
 	public void remove(String dsId, String quadKey) throws IOException {
-		m_fileCache.remove(new PartitionKey(dsId, quadKey));
+		PartitionKey key = new PartitionKey(dsId, quadKey);
+		unregister(key);
+		removeFiles(key);
 	}
 	
 	public Set<PartitionKey> keySet() throws IOException {
@@ -119,18 +515,66 @@ public class PartitionCache {
 	
 	private File writeIntoCache(PartitionKey key, RecordSet rset)
 		throws IOException {
-		rset = RecordSet.from(rset.getRecordSchema(), rset.fstream()
-						.shuffle());
-		InputStream is = PBRecordProtos.toInputStream(rset); 
-		try {
-			is = Lz4Compressions.compress(is);
-			return m_fileCache.insert(key, is).get();
+		DataSet ds = Unchecked.getOrRTE(() -> m_dsCache.get(key.m_dsId));
+		int geomColIdx = ds.hasGeometryColumn() ? ds.getGeometryColumnIndex() : -1;
+		
+		// 파티션 파일에 기록되는 순서대로 레코드들의 MBR을 수집하여 공간 인덱스를 생성한다.
+		List<Envelope> envls = Lists.newArrayList();
+		FStream<Record> strm = rset.fstream().shuffle();
+		if ( geomColIdx >= 0 ) {
+			strm = strm.map(r -> {
+				Geometry geom = r.getGeometry(geomColIdx);
+				envls.add((geom != null) ? geom.getEnvelopeInternal() : new Envelope());
+				return r;
+			});
 		}
-		catch ( Exception unexpected ) {
-			throw new AssertionError();
+		rset = RecordSet.from(rset.getRecordSchema(), strm);
+		
+		// 캐쉬 파일은 본 클래스에서만 읽기 때문에 파티션 파일과 인덱스 파일을 각각 임시 파일에
+		// 기록한 뒤 인덱스 파일, 파티션 파일 순서로 이름을 바꾼다. 두 파일의 이름 변경은
+		// 함께 원자적으로 이루어질 수 없기 때문에, 동일한 stamp 값을 기록하여 교체 도중에
+		// 짝이 맞지 않는 인덱스가 사용되지 않도록 한다.
+		File file = m_handler.toFile(key);
+		File idxFile = m_handler.toIndexFile(key);
+		File parent = file.getParentFile();
+		if ( !parent.exists() && !parent.mkdirs() && !parent.isDirectory() ) {
+			throw new IOException("fails to create partition directory: " + parent);
+		}
+		long stamp = ThreadLocalRandom.current().nextLong();
+		File tmpFile = File.createTempFile(file.getName() + ".", TEMP_FILE_SUFFIX, parent);
+		File tmpIdxFile = null;
+		try {
+			PartitionFile.write(rset, geomColIdx, tmpFile, PartitionFile.DEFAULT_BLOCK_SIZE, stamp);
+			
+			long size = tmpFile.length();
+			if ( geomColIdx >= 0 ) {
+				tmpIdxFile = File.createTempFile(idxFile.getName() + ".", TEMP_FILE_SUFFIX, parent);
+				PartitionIndex.write(envls, stamp, tmpIdxFile);
+				size += tmpIdxFile.length();
+				
+				Files.move(tmpIdxFile.toPath(), idxFile.toPath(),
+							StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			}
+			else {
+				idxFile.delete();
+			}
+			// 매핑된 파일은 교체되지 않을 수 있기 때문에 (예: Windows) 먼저 매핑을 해제한다.
+			m_mappedCache.invalidate(key);
+			Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+						StandardCopyOption.ATOMIC_MOVE);
+			m_mappedCache.invalidate(key);
+			m_indexCache.invalidate(key);
+			
+			register(key, size);
+			evictIfNecessary(key);
+			
+			return file;
 		}
 		finally {
-			is.close();
+			tmpFile.delete();
+			if ( tmpIdxFile != null ) {
+				tmpIdxFile.delete();
+			}
 		}
 	}
 	
@@ -140,21 +584,247 @@ public class PartitionCache {
 		s_logger.info("victim selected: dataset={}", dsId);
 		try {
 			m_fileCache.findFileObjectKeyAll(k -> k.m_dsId.equals(dsId))
-						.forEach(UncheckedConsumer.ignore(m_fileCache::remove));
+						.forEach(UncheckedConsumer.ignore(k -> {
+							unregister(k);
+							removeFiles(k);
+						}));
 		}
 		catch ( IOException ignored ) { }
 	}
 	
+	private void onPartitionFileRemoved(RemovalNotification<PartitionKey,PartitionFile> noti) {
+		noti.getValue().close();
+	}
+	
+	private void removeFiles(PartitionKey key) throws IOException {
+		// 매핑된 파일은 삭제되지 않을 수 있기 때문에 (예: Windows) 먼저 매핑을 해제한다.
+		m_mappedCache.invalidate(key);
+		m_indexCache.invalidate(key);
+		m_fileCache.remove(key);
+		m_handler.toIndexFile(key).delete();
+	}
+	
+	private Optional<PartitionIndex> loadIndex(PartitionKey key) throws IOException {
+		File idxFile = m_handler.toIndexFile(key);
+		if ( !idxFile.exists() ) {
+			return Optional.empty();
+		}
+		
+		try {
+			return Optional.of(PartitionIndex.read(idxFile));
+		}
+		catch ( IOException e ) {
+			// 손상되었거나 교체 중인 인덱스 파일은 사용하지 않는다. (블록 MBR만 사용됨)
+			s_logger.warn("fails to read partition index: {}, cause={}", key, ""+e);
+			return Optional.empty();
+		}
+	}
+	
+	private void register(PartitionKey key, long size) {
+		synchronized ( m_lru ) {
+			Long prev = m_lru.put(key, size);
+			m_totalSize += size - ((prev != null) ? prev : 0);
+		}
+	}
+	
+	private void unregister(PartitionKey key) {
+		synchronized ( m_lru ) {
+			Long prev = m_lru.remove(key);
+			if ( prev != null ) {
+				m_totalSize -= prev;
+			}
+		}
+	}
+	
+	private void touch(PartitionKey key) {
+		synchronized ( m_lru ) {
+			m_lru.get(key);
+		}
+	}
+	
+	private void evictIfNecessary(PartitionKey inserted) {
+		List<PartitionKey> victims = Lists.newArrayList();
+		synchronized ( m_lru ) {
+			Iterator<Map.Entry<PartitionKey,Long>> iter = m_lru.entrySet().iterator();
+			while ( m_totalSize > m_maxSize && iter.hasNext() ) {
+				Map.Entry<PartitionKey,Long> entry = iter.next();
+				
+				// 방금 추가된 파티션은 제거하지 않는다.
+				if ( !entry.getKey().equals(inserted) ) {
+					victims.add(entry.getKey());
+					m_totalSize -= entry.getValue();
+					iter.remove();
+				}
+			}
+		}
+		
+		for ( PartitionKey victim: victims ) {
+			try {
+				removeFiles(victim);
+			}
+			catch ( IOException e ) {
+				s_logger.warn("fails to evict partition: {}, cause={}", victim, ""+e);
+			}
+			
+			File file = m_handler.toFile(victim);
+			if ( file.exists() ) {
+				// 다른 질의가 사용 중이어서 삭제되지 않은 경우는 다음 번에 다시 제거될 수 있도록
+				// 크기를 다시 등록한다.
+				register(victim, file.length() + m_handler.toIndexFile(victim).length());
+			}
+			else {
+				m_evictionCount.incrementAndGet();
+				s_logger.debug("evict partition: {}", victim);
+			}
+		}
+	}
+	
+	/**
+	 * 적재 중인 파티션의 레코드들을 적재를 요청한 호출자의 레코드 세트로 전달하는 작업.
+	 * <p>
+	 * 호출자가 레코드 세트를 닫거나, 너무 오랫동안 읽지 않아 전달이 실패한 경우는
+	 * 해당 호출자에 대한 전달만 중단된다.
+	 */
+	private static final class Delivery implements Runnable {
+		private final PipedRecordSet m_pipe;
+		private final BlockingQueue<Record> m_queue = new LinkedBlockingQueue<>();
+		private final Record m_eos;		// 다운로드 종료 표시
+		private final AtomicBoolean m_completed = new AtomicBoolean(false);
+		private volatile @Nullable Throwable m_failure = null;
+		private volatile boolean m_stopped = false;
+		
+		Delivery(PipedRecordSet pipe) {
+			m_pipe = pipe;
+			m_eos = DefaultRecord.of(pipe.getRecordSchema());
+		}
+		
+		void add(Record rec) {
+			if ( !m_stopped ) {
+				m_queue.add(rec);
+			}
+		}
+		
+		void complete(@Nullable Throwable failure) {
+			if ( m_completed.compareAndSet(false, true) ) {
+				m_failure = failure;
+				m_queue.add(m_eos);
+			}
+		}
+		
+		@Override
+		public void run() {
+			try {
+				while ( true ) {
+					Record rec = m_queue.take();
+					if ( rec == m_eos ) {
+						if ( m_failure != null ) {
+							m_pipe.endOfSupply(m_failure);
+						}
+						else {
+							m_pipe.endOfSupply();
+						}
+						return;
+					}
+					// 전달된 레코드는 캐쉬 파일에 기록될 레코드와 공유되지 않도록 복사한다.
+					if ( !m_pipe.supply(rec.duplicate()) ) {
+						// 호출자가 레코드 세트를 닫은 경우
+						return;
+					}
+				}
+			}
+			catch ( Throwable e ) {
+				// 호출자가 너무 오랫동안 레코드를 읽지 않은 경우 등
+				m_pipe.endOfSupply(e);
+			}
+			finally {
+				m_stopped = true;
+				m_queue.clear();
+			}
+		}
+	}
+	
+	/**
+	 * 파티션 캐쉬 사용 통계 정보.
+	 */
+	public static final class Statistics {
+		private final long m_hitCount;
+		private final long m_missCount;
+		private final long m_evictionCount;
+		private final int m_partitionCount;
+		private final long m_totalSize;
+		private final long m_maxSize;
+		
+		private Statistics(long hitCount, long missCount, long evictionCount, int partitionCount,
+							long totalSize, long maxSize) {
+			m_hitCount = hitCount;
+			m_missCount = missCount;
+			m_evictionCount = evictionCount;
+			m_partitionCount = partitionCount;
+			m_totalSize = totalSize;
+			m_maxSize = maxSize;
+		}
+		
+		public long getHitCount() {
+			return m_hitCount;
+		}
+		
+		public long getMissCount() {
+			return m_missCount;
+		}
+		
+		public double getHitRate() {
+			long total = m_hitCount + m_missCount;
+			return (total > 0) ? (double)m_hitCount / total : 1d;
+		}
+		
+		public long getEvictionCount() {
+			return m_evictionCount;
+		}
+		
+		public int getPartitionCount() {
+			return m_partitionCount;
+		}
+		
+		public long getTotalSize() {
+			return m_totalSize;
+		}
+		
+		public long getMaxSize() {
+			return m_maxSize;
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("hits=%d, misses=%d, hit_rate=%.3f, evictions=%d, partitions=%d, size=%s/%s",
+								m_hitCount, m_missCount, getHitRate(), m_evictionCount, m_partitionCount,
+								UnitUtils.toByteSizeString(m_totalSize),
+								UnitUtils.toByteSizeString(m_maxSize));
+		}
+	}
+	
+	/**
+	 * 캐쉬된 파티션의 식별자.
+	 * <p>
+	 * 단순화된 파티션인 경우는 quad-key와 함께 단순화 단계를 갖는다.
+	 */
 	public static final class PartitionKey {
+		private static final int FULL_RESOLUTION = Integer.MIN_VALUE;
+		
 		private final String m_dsId;
 		private final String m_quadKey;
+		private final int m_level;
 		
 		PartitionKey(String dsId, String quadKey) {
+			this(dsId, quadKey, FULL_RESOLUTION);
+		}
+		
+		PartitionKey(String dsId, String quadKey, int level) {
 			Preconditions.checkNotNullArgument(dsId, "DataSet id");
 			Preconditions.checkNotNullArgument(quadKey, "quad-key");
 			
 			m_dsId = dsId;
 			m_quadKey = quadKey;
+			m_level = level;
 		}
 		
 		public String getDataSetId() {
@@ -165,9 +835,33 @@ public class PartitionCache {
 			return m_quadKey;
 		}
 		
+		/**
+		 * 단순화된 파티션인지 여부를 반환한다.
+		 * 
+		 * @return	단순화된 파티션인 경우는 {@code true}, 원본 파티션인 경우는 {@code false}.
+		 */
+		public boolean isSimplified() {
+			return m_level != FULL_RESOLUTION;
+		}
+		
+		/**
+		 * 단순화된 파티션의 단순화 단계를 반환한다.
+		 * 
+		 * @return	단순화 단계.
+		 */
+		public int getLevel() {
+			Preconditions.checkState(isSimplified(), "not simplified partition: " + this);
+			
+			return m_level;
+		}
+		
+		String getFileName() {
+			return isSimplified() ? m_quadKey + LOD_SEPARATOR + m_level : m_quadKey;
+		}
+		
 		@Override
 		public String toString() {
-			return String.format("%s:%s", m_dsId, m_quadKey);
+			return String.format("%s:%s", m_dsId, getFileName());
 		}
 		
 		@Override
@@ -181,12 +875,13 @@ public class PartitionCache {
 			
 			PartitionKey other = (PartitionKey)obj;
 			return m_dsId.equals(other.m_dsId)
-				&& m_quadKey.equals(other.m_quadKey);
+				&& m_quadKey.equals(other.m_quadKey)
+				&& m_level == other.m_level;
 		}
 		
 		@Override
 		public int hashCode() {
-			return Objects.hash(m_dsId, m_quadKey);
+			return Objects.hash(m_dsId, m_quadKey, m_level);
 		}
 	}
 	
@@ -219,7 +914,11 @@ public class PartitionCache {
 
 		@Override
 		public File toFile(PartitionKey key) {
-			return new File(new File(m_rootDir, key.m_dsId), key.m_quadKey);
+			return new File(new File(m_rootDir, key.m_dsId), key.getFileName());
+		}
+		
+		File toIndexFile(PartitionKey key) {
+			return new File(new File(m_rootDir, key.m_dsId), key.getFileName() + INDEX_FILE_SUFFIX);
 		}
 
 		@Override
@@ -230,12 +929,27 @@ public class PartitionCache {
 				throw new IllegalArgumentException("invalid File: " + file);
 			}
 			
-			return new PartitionKey(suffix.substring(0, idx), file.getName());
+			String dsId = suffix.substring(0, idx);
+			String name = file.getName();
+			int sepIdx = name.lastIndexOf(LOD_SEPARATOR);
+			if ( sepIdx < 0 ) {
+				return new PartitionKey(dsId, name);
+			}
+			
+			try {
+				int level = Integer.parseInt(name.substring(sepIdx + LOD_SEPARATOR.length()));
+				return new PartitionKey(dsId, name.substring(0, sepIdx), level);
+			}
+			catch ( NumberFormatException e ) {
+				throw new IllegalArgumentException("invalid File: " + file, e);
+			}
 		}
 
 		@Override
 		public boolean isVallidFile(File file) {
-			return file.isFile() && file.getAbsolutePath().startsWith(m_rootDirPath);
+			return file.isFile() && file.getAbsolutePath().startsWith(m_rootDirPath)
+				&& !file.getName().endsWith(INDEX_FILE_SUFFIX)
+				&& !file.getName().endsWith(TEMP_FILE_SUFFIX);
 		}
 	}
 }
@@ -0,0 +1,466 @@
+package marmot.geo.query;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.BitSet;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.annotation.Nullable;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+import com.google.common.collect.Lists;
+import com.google.common.io.ByteStreams;
+import com.google.protobuf.CodedOutputStream;
+
+import utils.Preconditions;
+import utils.io.Lz4Compressions;
+import utils.stream.AsyncExecutionOptions;
+import utils.stream.FStream;
+
+import marmot.Record;
+import marmot.RecordSchema;
+import marmot.RecordSet;
+import marmot.protobuf.PBRecordProtos;
+import marmot.protobuf.RecordStreamCodec;
+import marmot.protobuf.RecordStreamFormat;
+import marmot.proto.RecordStreamHeaderProto;
+import marmot.support.DefaultRecord;
+
+
+/**
+ * 블록 단위로 구성된 캐쉬 파티션 파일.
+ * <p>
+ * 파티션 파일은 독립적으로 LZ4 압축된 블록들과 footer로 구성된다. 각 블록은 스트림 헤더를
+ * 포함한 {@link RecordStreamFormat#COMPACT} 형식의 레코드 스트림이기 때문에 다른 블록과
+ * 무관하게 디코딩할 수 있다. footer에는 각 블록의 위치, 크기, 레코드 수, 첫 레코드의 순번
+ * 및 블록에 포함된 레코드들의 MBR이 기록된다.
+ * <pre>
+ * [block 0] ... [block n-1] [footer] [stamp: long] [footer length: int] [MAGIC: int]
+ * </pre>
+ * stamp는 파티션 파일을 기록할 때마다 새로 부여되는 값으로, 함께 기록된 {@link PartitionIndex}와
+ * 짝이 맞는지 확인하는데 사용된다.
+ * <p>
+ * 파일은 {@link FileChannel#map}을 통해 메모리에 매핑되어 읽혀지기 때문에 여러 질의 쓰레드가
+ * 동일 페이지를 공유하고, 질의 영역과 겹치지 않는 블록은 압축 해제 없이 건너뛸 수 있다.
+ * 매핑된 파일은 일부 운영체제 (예: Windows)에서 삭제하거나 교체할 수 없기 때문에,
+ * 파일을 사용하는 쪽은 {@link #acquire()}/{@link #release()}로 참조를 관리하고
+ * 캐쉬에서 제거될 때는 {@link #close()}를 호출하여 마지막 참조가 해제될 때 매핑이 해제되도록 한다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+final class PartitionFile {
+	static final int DEFAULT_BLOCK_SIZE = 256 * 1024;
+	private static final int MAGIC = 0x4D505432;	// "MPT2"
+	private static final int TRAILER_SIZE = 8 + 4 + 4;
+	private static final int BLOCK_META_SIZE = 8 + 4 + 4 + 8 + 4*8;
+	
+	// 매핑 해제에 사용할 sun.misc.Unsafe#invokeCleaner (사용할 수 없는 경우는 null)
+	private static final Object s_unsafe;
+	private static final Method s_invokeCleaner;
+	static {
+		Object unsafe = null;
+		Method invokeCleaner = null;
+		try {
+			Class<?> cls = Class.forName("sun.misc.Unsafe");
+			Field field = cls.getDeclaredField("theUnsafe");
+			field.setAccessible(true);
+			unsafe = field.get(null);
+			invokeCleaner = cls.getMethod("invokeCleaner", ByteBuffer.class);
+		}
+		catch ( Exception ignored ) {
+			// 매핑 해제를 지원하지 않는 경우는 GC에 의해 해제되도록 한다.
+			unsafe = null;
+			invokeCleaner = null;
+		}
+		s_unsafe = unsafe;
+		s_invokeCleaner = invokeCleaner;
+	}
+
+	private final MappedByteBuffer m_buffer;
+	private final List<Block> m_blocks;
+	private final long m_recordCount;
+	private final long m_stamp;
+	private final AtomicInteger m_refCount = new AtomicInteger(1);	// 캐쉬가 갖는 참조 포함
+	private final AtomicBoolean m_closed = new AtomicBoolean(false);
+
+	private PartitionFile(MappedByteBuffer buffer, List<Block> blocks, long stamp) {
+		m_buffer = buffer;
+		m_blocks = blocks;
+		m_recordCount = FStream.from(blocks).mapToLong(b -> b.m_count).sum();
+		m_stamp = stamp;
+	}
+
+	/**
+	 * 파티션 파일 기록 시 부여된 stamp 값을 반환한다.
+	 *
+	 * @return	stamp 값.
+	 */
+	long getStamp() {
+		return m_stamp;
+	}
+
+	/**
+	 * 파티션 파일에 대한 참조를 획득한다.
+	 * <p>
+	 * 획득한 참조는 사용이 끝나면 반드시 {@link #release()}를 통해 해제하여야 한다.
+	 *
+	 * @return	참조를 획득한 경우는 {@code true}, 이미 매핑이 해제된 경우는 {@code false}.
+	 */
+	boolean acquire() {
+		while ( true ) {
+			int count = m_refCount.get();
+			if ( count <= 0 ) {
+				return false;
+			}
+			if ( m_refCount.compareAndSet(count, count+1) ) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * {@link #acquire()}로 획득한 참조를 해제한다.
+	 * <p>
+	 * 마지막 참조가 해제되면 파일 매핑이 해제된다.
+	 */
+	void release() {
+		if ( m_refCount.decrementAndGet() == 0 ) {
+			unmap(m_buffer);
+		}
+	}
+
+	/**
+	 * 파티션 파일을 닫는다.
+	 * <p>
+	 * 다른 쓰레드가 참조를 갖고 있는 경우는 모든 참조가 해제될 때 매핑이 해제된다.
+	 * 이미 닫힌 경우는 무시된다.
+	 */
+	void close() {
+		if ( m_closed.compareAndSet(false, true) ) {
+			release();
+		}
+	}
+
+	/**
+	 * 파티션 파일을 구성하는 블록의 갯수를 반환한다.
+	 *
+	 * @return	블록 수.
+	 */
+	int getBlockCount() {
+		return m_blocks.size();
+	}
+
+	/**
+	 * 파티션 파일에 저장된 레코드의 수를 반환한다.
+	 *
+	 * @return	레코드 수.
+	 */
+	long getRecordCount() {
+		return m_recordCount;
+	}
+
+	/**
+	 * 파티션 파일의 모든 레코드들을 읽는다.
+	 * <p>
+	 * 각 블록들은 {@code nworkers}개의 쓰레드를 통해 병렬로 디코딩되기 때문에
+	 * 레코드들의 순서는 보장되지 않는다.
+	 *
+	 * @param schema	레코드 스키마.
+	 * @param nworkers	블록 디코딩에 사용할 쓰레드 수.
+	 * @return	레코드 세트.
+	 */
+	RecordSet read(RecordSchema schema, int nworkers) {
+		Preconditions.checkNotNullArgument(schema, "RecordSchema");
+		Preconditions.checkArgument(nworkers > 0, "invalid worker count: " + nworkers);
+
+		FStream<Record> strm;
+		if ( nworkers == 1 || m_blocks.size() <= 1 ) {
+			strm = FStream.from(m_blocks).flatMap(b -> readBlock(b, null).fstream());
+		}
+		else {
+			strm = FStream.from(m_blocks)
+							.flatMapAsync(b -> readBlock(b, null).fstream(),
+											AsyncExecutionOptions.WORKER_COUNT(nworkers));
+		}
+		return RecordSet.from(schema, strm);
+	}
+
+	/**
+	 * 블록 MBR이 주어진 영역과 겹치는 블록들에서, 주어진 후보 순번에 해당하는 레코드들을 읽는다.
+	 * <p>
+	 * 블록들은 저장된 순서대로 필요할 때 하나씩 디코딩되기 때문에, 반환된 레코드 세트에서
+	 * 일부 레코드만 읽는 경우 (예: 샘플링) 나머지 블록들은 압축 해제되지 않는다.
+	 * 레코드들은 파티션 파일에 기록될 때 무작위로 섞이기 때문에 앞쪽 블록들만 읽어도
+	 * 파티션 전체에 대한 표본이 된다.
+	 * <p>
+	 * 공간 정보가 없는 레코드들로만 구성된 블록은 질의 영역과 겹치지 않는 것으로 간주된다.
+	 *
+	 * @param schema		레코드 스키마.
+	 * @param range			질의 영역.
+	 * @param candidates	읽을 레코드들의 순번. {@code null}인 경우는 블록 내 모든 레코드.
+	 * @return	레코드 세트.
+	 */
+	RecordSet query(RecordSchema schema, Envelope range, @Nullable BitSet candidates) {
+		Preconditions.checkNotNullArgument(schema, "RecordSchema");
+		Preconditions.checkNotNullArgument(range, "query range");
+
+		FStream<Record> strm = FStream.from(m_blocks)
+										.filter(b -> b.m_mbr.intersects(range))
+										.map(b -> readBlock(b, candidates))
+										.flatMap(RecordSet::fstream);
+		return RecordSet.from(schema, strm);
+	}
+
+	private RecordSet readBlock(Block block, @Nullable BitSet candidates) {
+		// 레코드 세트가 닫힌 뒤에도 디코딩 중인 블록이 매핑 해제된 메모리를 접근하지 않도록,
+		// 참조를 획득한 상태에서 압축된 블록을 복사한 뒤 압축을 해제한다.
+		if ( !acquire() ) {
+			throw new IllegalStateException("partition file has been closed");
+		}
+		byte[] bytes = new byte[block.m_length];
+		try {
+			m_buffer.get((int)block.m_offset, bytes);
+		}
+		finally {
+			release();
+		}
+		InputStream is = Lz4Compressions.decompress(new ByteArrayInputStream(bytes));
+
+		if ( candidates != null ) {
+			BitSet selecteds = candidates.get((int)block.m_firstOrdinal,
+												(int)block.m_firstOrdinal + block.m_count);
+			return PBRecordProtos.readRecordSet(is, selecteds);
+		}
+		else {
+			return PBRecordProtos.readRecordSet(is);
+		}
+	}
+
+	/**
+	 * 주어진 파티션 파일을 메모리에 매핑하여 연다.
+	 *
+	 * @param file	파티션 파일.
+	 * @return	파티션 파일 객체.
+	 * @throws IOException	파일이 파티션 파일 형식이 아니거나, 파일 접근 중 오류가 발생된 경우.
+	 */
+	static PartitionFile open(File file) throws IOException {
+		Preconditions.checkNotNullArgument(file, "partition file");
+
+		try ( RandomAccessFile raf = new RandomAccessFile(file, "r");
+				FileChannel channel = raf.getChannel() ) {
+			long size = channel.size();
+			if ( size < TRAILER_SIZE ) {
+				throw new IOException("invalid partition file: " + file);
+			}
+			if ( size > Integer.MAX_VALUE ) {
+				throw new IOException("too large partition file: " + file);
+			}
+			MappedByteBuffer buffer = channel.map(MapMode.READ_ONLY, 0, size);
+
+			try {
+				return parse(file, buffer, size);
+			}
+			catch ( IOException | RuntimeException e ) {
+				unmap(buffer);
+				throw e;
+			}
+		}
+	}
+
+	private static PartitionFile parse(File file, MappedByteBuffer buffer, long size)
+		throws IOException {
+		long stamp = buffer.getLong((int)size - TRAILER_SIZE);
+		int footerLength = buffer.getInt((int)size - 8);
+		int magic = buffer.getInt((int)size - 4);
+		if ( magic != MAGIC || footerLength < 4 || footerLength > size - TRAILER_SIZE ) {
+			throw new IOException("invalid partition file: " + file);
+		}
+
+		ByteBuffer footer = buffer.duplicate();
+		footer.position((int)size - TRAILER_SIZE - footerLength);
+		int nblocks = footer.getInt();
+		if ( footerLength != 4 + nblocks * BLOCK_META_SIZE ) {
+			throw new IOException("invalid partition file footer: " + file);
+		}
+
+		List<Block> blocks = Lists.newArrayListWithExpectedSize(nblocks);
+		for ( int i =0; i < nblocks; ++i ) {
+			long offset = footer.getLong();
+			int length = footer.getInt();
+			int count = footer.getInt();
+			long firstOrdinal = footer.getLong();
+			double minX = footer.getDouble();
+			double minY = footer.getDouble();
+			double maxX = footer.getDouble();
+			double maxY = footer.getDouble();
+			Envelope mbr = (minX <= maxX) ? new Envelope(minX, maxX, minY, maxY) : new Envelope();
+
+			blocks.add(new Block(offset, length, count, firstOrdinal, mbr));
+		}
+
+		return new PartitionFile(buffer, blocks, stamp);
+	}
+
+	/**
+	 * 주어진 레코드 세트를 블록 단위의 파티션 파일로 기록한다.
+	 * <p>
+	 * 레코드들은 인코딩된 크기가 {@code blockSize}를 넘을 때마다 새 블록으로 나뉘어 기록된다.
+	 *
+	 * @param rset			기록할 레코드 세트.
+	 * @param geomColIdx	블록 MBR 계산에 사용할 공간 컬럼 순번. 공간 컬럼이 없는 경우는 음수.
+	 * @param file			기록할 파일.
+	 * @param blockSize		블록의 (압축 전) 최대 크기.
+	 * @param stamp			파티션 파일에 기록할 stamp 값.
+	 * @return	기록된 레코드 수.
+	 * @throws IOException	파일 기록 중 오류가 발생된 경우.
+	 */
+	static long write(RecordSet rset, int geomColIdx, File file, int blockSize, long stamp)
+		throws IOException {
+		Preconditions.checkNotNullArgument(rset, "RecordSet");
+		Preconditions.checkNotNullArgument(file, "partition file");
+		Preconditions.checkArgument(blockSize > 0, "invalid block size: " + blockSize);
+
+		RecordSchema schema = rset.getRecordSchema();
+		RecordStreamFormat format = RecordStreamFormat.COMPACT;
+		RecordStreamCodec codec = format.newCodec(schema);
+		RecordStreamHeaderProto header = PBRecordProtos.toStreamHeader(schema, format);
+
+		try ( DataOutputStream dos = new DataOutputStream(new FileOutputStream(file)) ) {
+			BlockWriter writer = new BlockWriter(dos, header, blockSize);
+
+			Record rec = DefaultRecord.of(schema);
+			while ( rset.next(rec) ) {
+				Geometry geom = (geomColIdx >= 0) ? rec.getGeometry(geomColIdx) : null;
+				writer.write(rec, codec, geom);
+			}
+			List<Block> blocks = writer.close();
+
+			// footer를 기록한다.
+			dos.writeInt(blocks.size());
+			for ( Block block: blocks ) {
+				dos.writeLong(block.m_offset);
+				dos.writeInt(block.m_length);
+				dos.writeInt(block.m_count);
+				dos.writeLong(block.m_firstOrdinal);
+				dos.writeDouble(block.m_mbr.getMinX());
+				dos.writeDouble(block.m_mbr.getMinY());
+				dos.writeDouble(block.m_mbr.getMaxX());
+				dos.writeDouble(block.m_mbr.getMaxY());
+			}
+			dos.writeLong(stamp);
+			dos.writeInt(4 + blocks.size() * BLOCK_META_SIZE);
+			dos.writeInt(MAGIC);
+
+			return writer.m_ordinal;
+		}
+		finally {
+			rset.closeQuietly();
+		}
+	}
+
+	private static final class Block {
+		private final long m_offset;
+		private final int m_length;
+		private final int m_count;
+		private final long m_firstOrdinal;
+		private final Envelope m_mbr;
+
+		Block(long offset, int length, int count, long firstOrdinal, Envelope mbr) {
+			m_offset = offset;
+			m_length = length;
+			m_count = count;
+			m_firstOrdinal = firstOrdinal;
+			m_mbr = mbr;
+		}
+	}
+
+	private static final class BlockWriter {
+		private final OutputStream m_os;
+		private final RecordStreamHeaderProto m_header;
+		private final int m_blockSize;
+		private final List<Block> m_blocks = Lists.newArrayList();
+
+		private final ByteArrayOutputStream m_baos;
+		private CodedOutputStream m_out = null;
+		private long m_offset = 0;
+		private long m_ordinal = 0;
+		private int m_count = 0;
+		private Envelope m_mbr = new Envelope();
+
+		BlockWriter(OutputStream os, RecordStreamHeaderProto header, int blockSize) {
+			m_os = os;
+			m_header = header;
+			m_blockSize = blockSize;
+			m_baos = new ByteArrayOutputStream(blockSize + blockSize/4);
+		}
+
+		void write(Record rec, RecordStreamCodec codec, @Nullable Geometry geom)
+			throws IOException {
+			if ( m_out == null ) {
+				m_baos.reset();
+				m_out = CodedOutputStream.newInstance(m_baos);
+				m_out.writeUInt32NoTag(m_header.getSerializedSize());
+				m_header.writeTo(m_out);
+			}
+
+			codec.writeDelimited(rec, m_out);
+			if ( geom != null && !geom.isEmpty() ) {
+				m_mbr.expandToInclude(geom.getEnvelopeInternal());
+			}
+			++m_count;
+
+			if ( m_out.getTotalBytesWritten() >= m_blockSize ) {
+				flushBlock();
+			}
+		}
+
+		List<Block> close() throws IOException {
+			if ( m_out != null ) {
+				flushBlock();
+			}
+			return m_blocks;
+		}
+
+		private void flushBlock() throws IOException {
+			m_out.flush();
+			m_out = null;
+
+			InputStream compressed = Lz4Compressions.compress(
+											new ByteArrayInputStream(m_baos.toByteArray()));
+			byte[] bytes = ByteStreams.toByteArray(compressed);
+			m_os.write(bytes);
+
+			m_blocks.add(new Block(m_offset, bytes.length, m_count, m_ordinal, m_mbr));
+			m_offset += bytes.length;
+			m_ordinal += m_count;
+			m_count = 0;
+			m_mbr = new Envelope();
+		}
+	}
+
+	private static void unmap(MappedByteBuffer buffer) {
+		if ( s_invokeCleaner != null ) {
+			try {
+				s_invokeCleaner.invoke(s_unsafe, buffer);
+			}
+			catch ( Exception ignored ) { }
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package marmot.geo.query;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.BitSet;
+import java.util.List;
+
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.index.strtree.STRtree;
+
+import utils.Preconditions;
+
+
+/**
+ * 캐쉬된 파티션 파일에 포함된 레코드들의 MBR에 대한 공간 인덱스.
+ * <p>
+ * 각 레코드의 MBR과 파티션 파일 내 레코드 순번을 STR-tree로 색인하여, 질의 영역과
+ * 겹칠 가능성이 있는 레코드들의 순번만을 구할 수 있도록 한다.
+ * 인덱스 파일에는 짝이 되는 파티션 파일의 stamp 값, 레코드 수와 각 레코드의 MBR
+ * (min_x, min_y, max_x, max_y)이 레코드 순서대로 기록된다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+final class PartitionIndex {
+	private final STRtree m_tree;
+	private final int m_count;
+	private final long m_stamp;
+
+	private PartitionIndex(STRtree tree, int count, long stamp) {
+		m_tree = tree;
+		m_count = count;
+		m_stamp = stamp;
+	}
+
+	/**
+	 * 인덱스와 함께 기록된 파티션 파일의 stamp 값을 반환한다.
+	 *
+	 * @return	stamp 값.
+	 * @see PartitionFile#getStamp()
+	 */
+	long getStamp() {
+		return m_stamp;
+	}
+
+	/**
+	 * 색인된 레코드의 수를 반환한다.
+	 *
+	 * @return	레코드 수
+	 */
+	int getRecordCount() {
+		return m_count;
+	}
+
+	/**
+	 * 주어진 영역과 MBR이 겹치는 레코드들의 순번을 반환한다.
+	 *
+	 * @param range	질의 영역.
+	 * @return	레코드 순번 집합.
+	 */
+	BitSet query(Envelope range) {
+		BitSet selecteds = new BitSet(m_count);
+		m_tree.query(range, item -> selecteds.set((Integer)item));
+
+		return selecteds;
+	}
+
+	static void write(List<Envelope> envls, long stamp, File file) throws IOException {
+		Preconditions.checkNotNullArgument(envls, "Envelope list");
+		Preconditions.checkNotNullArgument(file, "index file");
+
+		try ( DataOutputStream dos = new DataOutputStream(
+										new BufferedOutputStream(new FileOutputStream(file))) ) {
+			dos.writeLong(stamp);
+			dos.writeInt(envls.size());
+			for ( Envelope envl: envls ) {
+				dos.writeDouble(envl.getMinX());
+				dos.writeDouble(envl.getMinY());
+				dos.writeDouble(envl.getMaxX());
+				dos.writeDouble(envl.getMaxY());
+			}
+		}
+	}
+
+	static PartitionIndex read(File file) throws IOException {
+		Preconditions.checkNotNullArgument(file, "index file");
+
+		try ( DataInputStream dis = new DataInputStream(
+										new BufferedInputStream(new FileInputStream(file))) ) {
+			long stamp = dis.readLong();
+			int count = dis.readInt();
+			STRtree tree = new STRtree();
+			for ( int i =0; i < count; ++i ) {
+				double minX = dis.readDouble();
+				double minY = dis.readDouble();
+				double maxX = dis.readDouble();
+				double maxY = dis.readDouble();
+
+				// 공간 정보가 없는 레코드 (null envelope)는 색인하지 않는다.
+				if ( minX <= maxX ) {
+					tree.insert(new Envelope(minX, maxX, minY, maxY), i);
+				}
+			}
+			tree.build();
+
+			return new PartitionIndex(tree, count, stamp);
+		}
+	}
+}
@@ -0,0 +1,359 @@
+package marmot.geo.query;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+import static java.util.concurrent.TimeUnit.SECONDS;
+
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.NavigableSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+
+import javax.annotation.Nullable;
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import utils.Preconditions;
+import utils.StopWatch;
+import utils.stream.FStream;
+
+import marmot.dataset.DataSet;
+import marmot.geo.CoordinateTransform;
+import marmot.type.MapTile;
+
+
+/**
+ * 사용자의 영역 질의 패턴을 바탕으로 이후 접근될 파티션들을 미리 캐쉬에 적재하는 스케쥴러.
+ * <p>
+ * 데이터세트별로 직전 질의 영역을 기억하여 현재 질의 영역의 이동 방향과 확대/축소 여부를
+ * 판단하고, 다음과 같은 순서로 적재 대상 영역을 예측한다.
+ * <ol>
+ * 	<li> 현재 질의 영역 중 캐쉬되지 않은 클러스터들.
+ * 	<li> 이동 중인 경우, 현재 영역을 이동 방향으로 한번 더 이동시킨 영역.
+ * 	<li> 축소(zoom-out) 중인 경우, 현재 영역을 포함하는 상위 타일 영역.
+ * 	<li> 현재 영역에 해당하는 타일의 인접 타일들 (이동 방향에 가까운 타일부터).
+ * </ol>
+ * 예측된 영역과 겹치는 클러스터는 타일과 클러스터의 quad-key 접두어 관계를 통해 구한다.
+ * 적재 작업은 크기가 제한된 쓰레드 풀에서 수행되며, 새 질의로 인해 더 이상 예측 대상이
+ * 아니게 된 대기 중인 작업은 취소된다.
+ * <p>
+ * 적재 대상 예측과 이에 필요한 데이터세트의 클러스터 목록 적재는 질의 쓰레드를 지연시키지 않도록
+ * 별도의 예측 쓰레드에서 수행된다. 예측 쓰레드가 처리하기 전에 동일 데이터세트에 대한 새 질의가
+ * 발생한 경우는 이전 요청은 처리하지 않는다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class PrefetchScheduler {
+	private static final Logger s_logger = LoggerFactory.getLogger(PrefetchScheduler.class);
+	public static final int DEFAULT_WORKER_COUNT = 2;
+	public static final int DEFAULT_MAX_PREFETCH_COUNT = 8;
+	private static final int QUEUE_LENGTH = 64;
+	private static final long CLUSTER_KEYS_EXPIRE_MINUTES = 10;
+	private static final int MAX_ZOOM = 20;
+	private static final double MAX_LAT = 85.0511;
+	private static final double ZOOM_RATIO = 1.5;
+
+	private final PartitionCache m_cache;
+	private final int m_maxPrefetchCount;
+	private final ThreadPoolExecutor m_executor;
+	private final ExecutorService m_planner;
+	private final Cache<String,NavigableSet<String>> m_clusterKeys;
+	private final ConcurrentMap<String,Envelope> m_lastRanges = Maps.newConcurrentMap();
+	private final ConcurrentMap<String,PrefetchTask> m_tasks = Maps.newConcurrentMap();
+	// 데이터세트별로 예측 쓰레드가 아직 처리하지 않은 가장 최근 요청
+	private final ConcurrentMap<String,PrefetchRequest> m_requests = Maps.newConcurrentMap();
+
+	public PrefetchScheduler(PartitionCache cache) {
+		this(cache, DEFAULT_WORKER_COUNT, DEFAULT_MAX_PREFETCH_COUNT);
+	}
+
+	public PrefetchScheduler(PartitionCache cache, int workerCount, int maxPrefetchCount) {
+		Preconditions.checkNotNullArgument(cache, "PartitionCache");
+		Preconditions.checkArgument(workerCount > 0, "invalid worker count: " + workerCount);
+		Preconditions.checkArgument(maxPrefetchCount > 0,
+									"invalid max prefetch count: " + maxPrefetchCount);
+
+		m_cache = cache;
+		m_maxPrefetchCount = maxPrefetchCount;
+		m_executor = new ThreadPoolExecutor(workerCount, workerCount, 60, SECONDS,
+											new LinkedBlockingQueue<>(QUEUE_LENGTH), r -> {
+												Thread thread = new Thread(r, "partition-prefetcher");
+												thread.setDaemon(true);
+												return thread;
+											});
+		m_executor.allowCoreThreadTimeOut(true);
+		m_planner = Executors.newSingleThreadExecutor(r -> {
+			Thread thread = new Thread(r, "partition-prefetch-planner");
+			thread.setDaemon(true);
+			return thread;
+		});
+		m_clusterKeys = CacheBuilder.newBuilder()
+									.expireAfterWrite(CLUSTER_KEYS_EXPIRE_MINUTES, MINUTES)
+									.build();
+	}
+
+	/**
+	 * 주어진 데이터세트에 대한 영역 질의가 발생했음을 알리고, 예측된 파티션들의 적재를 요청한다.
+	 * <p>
+	 * 본 메소드는 요청만 등록하고 바로 반환되며, 적재 대상 예측은 별도의 쓰레드에서 수행된다.
+	 *
+	 * @param ds			질의 대상 데이터세트.
+	 * @param range			질의 영역.
+	 * @param uncachedKeys	질의 영역과 겹치는 클러스터들 중 캐쉬되지 않은 클러스터들의 quad-key.
+	 */
+	public void schedule(DataSet ds, Envelope range, List<String> uncachedKeys) {
+		Preconditions.checkNotNullArgument(ds, "DataSet");
+		Preconditions.checkNotNullArgument(range, "query range");
+		Preconditions.checkNotNullArgument(uncachedKeys, "uncached quad-keys");
+
+		PrefetchRequest req = new PrefetchRequest(ds, range, Lists.newArrayList(uncachedKeys));
+		m_requests.put(req.m_dsId, req);
+		try {
+			m_planner.execute(() -> plan(req));
+		}
+		catch ( RejectedExecutionException e ) {
+			m_requests.remove(req.m_dsId, req);
+		}
+	}
+
+	private void plan(PrefetchRequest req) {
+		// 처리 전에 동일 데이터세트에 대한 새 요청이 들어온 경우는 무시한다.
+		if ( !m_requests.remove(req.m_dsId, req) ) {
+			return;
+		}
+
+		DataSet ds = req.m_ds;
+		String dsId = req.m_dsId;
+		Set<String> wanted = new LinkedHashSet<>(req.m_uncachedKeys);
+		try {
+			Envelope wgs84 = CoordinateTransform.transformToWgs84(req.m_range, ds.getSrid());
+			Envelope prev = m_lastRanges.put(dsId, wgs84);
+
+			NavigableSet<String> clusterKeys = m_clusterKeys.get(dsId,
+												() -> new TreeSet<>(ds.getClusterQuadKeyAll()));
+			for ( Envelope area: predict(wgs84, prev) ) {
+				wanted.addAll(findClusters(clusterKeys, area));
+			}
+		}
+		catch ( ExecutionException | RuntimeException e ) {
+			s_logger.warn("fails to predict partitions: ds={}, cause={}", dsId, ""+e);
+		}
+		List<String> targets = FStream.from(wanted)
+									.filter(qk -> !m_cache.exists(dsId, qk))
+									.take(m_maxPrefetchCount)
+									.toList();
+
+		// 더 이상 예측 대상이 아닌 대기 중인 작업들을 취소한다.
+		FStream.from(Lists.newArrayList(m_tasks.values()))
+				.filter(task -> task.m_dsId.equals(dsId) && !targets.contains(task.m_quadKey))
+				.forEach(PrefetchTask::cancel);
+
+		for ( String quadKey: targets ) {
+			PrefetchTask task = new PrefetchTask(ds, quadKey);
+			if ( m_tasks.putIfAbsent(task.m_key, task) == null ) {
+				try {
+					m_executor.execute(task);
+				}
+				catch ( RejectedExecutionException e ) {
+					// 대기 큐가 가득 찬 경우는 나머지 예측 파티션들은 적재하지 않는다.
+					m_tasks.remove(task.m_key, task);
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * 스케쥴러를 종료시킨다.
+	 * <p>
+	 * 처리되지 않은 예측 요청과 대기 중인 적재 작업들은 취소되고, 이후의 요청은 무시된다.
+	 * 이미 수행 중인 적재는 다른 질의에서도 사용될 수 있으므로 마저 수행된다.
+	 */
+	public void close() {
+		m_planner.shutdownNow();
+		m_requests.clear();
+		
+		m_executor.shutdownNow();
+		m_tasks.clear();
+	}
+
+	/**
+	 * 현재 적재 대기 또는 적재 중인 파티션의 수를 반환한다.
+	 *
+	 * @return	파티션 수.
+	 */
+	public int getPendingCount() {
+		return m_tasks.size();
+	}
+
+	private List<Envelope> predict(Envelope range, @Nullable Envelope prev) {
+		List<Envelope> areas = Lists.newArrayList();
+
+		Coordinate center = range.centre();
+		int zoom = toZoom(range);
+		MapTile tile = toTile(center, zoom);
+
+		double dx = 0, dy = 0;
+		if ( prev != null ) {
+			Coordinate prevCenter = prev.centre();
+			dx = center.x - prevCenter.x;
+			dy = center.y - prevCenter.y;
+
+			// 이동 중인 경우는 같은 방향으로 한번 더 이동한 영역을 우선 적재한다.
+			if ( dx != 0 || dy != 0 ) {
+				Envelope next = new Envelope(range);
+				next.translate(dx, dy);
+				areas.add(next);
+			}
+
+			// 축소 중인 경우는 상위 타일 영역을 적재한다.
+			if ( zoom > 0 && range.getArea() > prev.getArea() * ZOOM_RATIO ) {
+				areas.add(toTile(center, zoom-1).getBounds());
+			}
+		}
+
+		// 인접 타일들을 이동 방향과 가까운 순서로 추가한다.
+		// 타일의 y 축은 위도와 반대 방향이다.
+		final double mx = dx, my = -dy;
+		int upper = 1 << zoom;
+		List<MapTile> neighbors = Lists.newArrayList();
+		for ( int y = tile.getY()-1; y <= tile.getY()+1; ++y ) {
+			for ( int x = tile.getX()-1; x <= tile.getX()+1; ++x ) {
+				if ( (x != tile.getX() || y != tile.getY())
+					&& x >= 0 && x < upper && y >= 0 && y < upper ) {
+					neighbors.add(new MapTile(zoom, x, y));
+				}
+			}
+		}
+		neighbors.sort(Comparator.comparingDouble(t -> -((t.getX() - tile.getX())*mx
+															+ (t.getY() - tile.getY())*my)));
+		FStream.from(neighbors).map(MapTile::getBounds).forEach(areas::add);
+
+		return areas;
+	}
+
+	/**
+	 * 주어진 영역과 겹치는 타일들의 quad-key와 접두어 관계에 있는 클러스터들을 구한다.
+	 * 클러스터 quad-key가 타일 quad-key로 시작하면 클러스터가 타일에 포함되고,
+	 * 타일 quad-key가 클러스터 quad-key로 시작하면 타일이 클러스터에 포함된다.
+	 */
+	private static List<String> findClusters(NavigableSet<String> clusterKeys, Envelope area) {
+		int zoom = toZoom(area);
+		MapTile topLeft = toTile(new Coordinate(area.getMinX(), area.getMaxY()), zoom);
+		MapTile bottomRight = toTile(new Coordinate(area.getMaxX(), area.getMinY()), zoom);
+
+		List<String> found = Lists.newArrayList();
+		for ( MapTile tile: MapTile.listTilesInRange(topLeft, bottomRight) ) {
+			String tileKey = tile.getQuadKey();
+			for ( int len = tileKey.length(); len >= 0; --len ) {
+				String ancestor = tileKey.substring(0, len);
+				if ( clusterKeys.contains(ancestor) ) {
+					found.add(ancestor);
+					break;
+				}
+			}
+			for ( String desc: clusterKeys.subSet(tileKey, false, tileKey + Character.MAX_VALUE, false) ) {
+				if ( desc.startsWith(tileKey) ) {
+					found.add(desc);
+				}
+			}
+		}
+
+		return found;
+	}
+
+	private static int toZoom(Envelope range) {
+		double extent = Math.max(range.getWidth(), range.getHeight());
+		if ( extent <= 0 ) {
+			return MAX_ZOOM;
+		}
+
+		int zoom = (int)Math.floor(Math.log(360 / extent) / Math.log(2));
+		return Math.max(0, Math.min(MAX_ZOOM, zoom));
+	}
+
+	private static MapTile toTile(Coordinate coord, int zoom) {
+		double lon = Math.max(-180, Math.min(coord.x, Math.nextDown(180d)));
+		double lat = Math.max(-MAX_LAT, Math.min(coord.y, MAX_LAT));
+
+		return MapTile.fromLonLat(lon, lat, zoom);
+	}
+
+	private static final class PrefetchRequest {
+		private final DataSet m_ds;
+		private final String m_dsId;
+		private final Envelope m_range;
+		private final List<String> m_uncachedKeys;
+
+		PrefetchRequest(DataSet ds, Envelope range, List<String> uncachedKeys) {
+			m_ds = ds;
+			m_dsId = ds.getId();
+			m_range = range;
+			m_uncachedKeys = uncachedKeys;
+		}
+	}
+
+	private final class PrefetchTask implements Runnable {
+		private final DataSet m_ds;
+		private final String m_dsId;
+		private final String m_quadKey;
+		private final String m_key;
+		private volatile boolean m_cancelled = false;
+
+		PrefetchTask(DataSet ds, String quadKey) {
+			m_ds = ds;
+			m_dsId = ds.getId();
+			m_quadKey = quadKey;
+			m_key = m_dsId + ":" + quadKey;
+		}
+
+		@Override
+		public void run() {
+			try {
+				if ( !m_cancelled && !m_cache.exists(m_dsId, m_quadKey) ) {
+					StopWatch watch = StopWatch.start();
+					m_cache.load(m_ds.getId(), m_quadKey);
+
+					s_logger.debug("prefetched: ds={}, quadkey={}, elapsed={}",
+									m_dsId, m_quadKey, watch.stopAndGetElpasedTimeString());
+				}
+			}
+			catch ( Exception e ) {
+				s_logger.warn("fails to prefetch: ds={}, quadkey={}, cause={}", m_dsId, m_quadKey, ""+e);
+			}
+			finally {
+				m_tasks.remove(m_key, this);
+			}
+		}
+
+		void cancel() {
+			// 이미 수행 중인 적재는 다른 질의에서도 사용될 수 있으므로 중단시키지 않는다.
+			m_cancelled = true;
+			if ( m_executor.remove(this) ) {
+				m_tasks.remove(m_key, this);
+				s_logger.debug("cancel prefetch: ds={}, quadkey={}", m_dsId, m_quadKey);
+			}
+		}
+
+		@Override
+		public String toString() {
+			return String.format("PartitionPrefetcher[%s]", m_key);
+		}
+	}
+}
@@ -2,8 +2,9 @@ package marmot.geo.query;
 
 import java.io.IOException;
 import java.util.List;
-import java.util.concurrent.CompletableFuture;
+import java.util.Set;
 import java.util.function.Function;
+import java.util.function.Supplier;
 
 import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
@@ -12,13 +13,9 @@ import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.Lists;
+
 import utils.Preconditions;
-import utils.StopWatch;
-import utils.async.AbstractThreadedExecution;
-import utils.async.CancellableWork;
-import utils.async.Executions;
-import utils.async.StartableExecution;
-import utils.async.op.AsyncExecutions;
 import utils.func.Try;
 import utils.stream.AsyncExecutionOptions;
 import utils.stream.FStream;
@@ -28,6 +25,8 @@ import marmot.RecordSet;
 import marmot.dataset.DataSet;
 import marmot.geo.GeoClientUtils;
 import marmot.geo.query.RangeQueryEstimate.ClusterEstimate;
+import marmot.geo.query.RangeQueryPlanner.Plan;
+import marmot.geo.query.RangeQueryPlanner.Strategy;
 
 
 /**
@@ -37,8 +36,7 @@ import marmot.geo.query.RangeQueryEstimate.ClusterEstimate;
 public class RangeQuery {
 	private static final Logger s_logger = LoggerFactory.getLogger(RangeQuery.class);
 
-	private static final float CACHE_COST = 1f;
-	private static final float NETWORK_COST = 2.5f;
+	private static final int LOCAL_WORKER_COUNT = 3;
 	
 	private final DataSet m_ds;
 	private final String m_dsId;
@@ -48,13 +46,23 @@ public class RangeQuery {
 	private final int m_sampleCount;
 	private final int m_maxLocalCacheCost;
 	private final PartitionCache m_cache;
+	private final RangeQueryStatistics m_stats;
+	private final RangeQueryEstimateCache m_estimates;
+	private final PrefetchScheduler m_prefetcher;
 	private volatile boolean m_usePrefetch = false;
+	private volatile boolean m_useHybrid = false;
+	private volatile LevelOfDetail m_lod = null;
 	
 	RangeQuery(DataSet ds, Envelope range, int sampleCount, PartitionCache cache,
-				boolean usePrefetch, int maxLocalCacheCost) {
+				RangeQueryStatistics stats, RangeQueryEstimateCache estimates,
+				PrefetchScheduler prefetcher, boolean usePrefetch, boolean useHybrid,
+				int maxLocalCacheCost) {
 		Preconditions.checkNotNullArgument(ds, "DataSet");
 		Preconditions.checkNotNullArgument(range, "query ranage");
 		Preconditions.checkNotNullArgument(cache, "DataSetPartitionCache");
+		Preconditions.checkNotNullArgument(stats, "RangeQueryStatistics");
+		Preconditions.checkNotNullArgument(estimates, "RangeQueryEstimateCache");
+		Preconditions.checkNotNullArgument(prefetcher, "PrefetchScheduler");
 		Preconditions.checkArgument(maxLocalCacheCost > 0, "MaxLocalCacheCost > 0, but " + maxLocalCacheCost);
 		
 		m_ds = ds;
@@ -62,7 +70,11 @@ public class RangeQuery {
 		m_range = range;
 		m_sampleCount = sampleCount;
 		m_cache = cache;
+		m_stats = stats;
+		m_estimates = estimates;
+		m_prefetcher = prefetcher;
 		m_usePrefetch = usePrefetch;
+		m_useHybrid = useHybrid;
 		m_maxLocalCacheCost = maxLocalCacheCost;
 		
 		Geometry key = GeoClientUtils.toPolygon(m_range);
@@ -74,75 +86,202 @@ public class RangeQuery {
 		return this;
 	}
 	
+	/**
+	 * 캐쉬된 파티션들은 지역적으로 읽고 나머지 클러스터들만 서버에서 질의하는 혼합 방식의
+	 * 사용 여부를 설정한다.
+	 * <p>
+	 * 혼합 방식은 서버가 영역 질의 대상 클러스터 제한 (quad_keys)을 지원하는 경우에만
+	 * 올바른 결과를 얻을 수 있다. 이를 지원하지 않는 이전 버전의 서버는 전체 클러스터에 대해
+	 * 질의하기 때문에 캐쉬된 파티션의 레코드들이 중복되어 반환된다.
+	 * 
+	 * @param flag	혼합 방식 사용 여부.
+	 * @return	질의 객체.
+	 */
+	public RangeQuery useHybrid(boolean flag) {
+		m_useHybrid = flag;
+		return this;
+	}
+	
+	/**
+	 * 질의 결과 레코드의 공간 정보를 주어진 화소 해상도에 맞게 단순화하도록 설정한다.
+	 * <p>
+	 * 공간 정보는 화소 크기 이하의 정점 변화가 제거되도록 단순화되고, 화소 크기 단위로
+	 * 정밀도가 축소된다. 0 이하의 값이 주어지면 단순화하지 않는다.
+	 * 화소 크기는 이를 넘지 않는 가장 큰 2의 거듭제곱 값으로 정규화되어, 파티션 캐쉬에
+	 * 단계별로 저장된 단순화된 파티션을 비슷한 해상도의 질의들이 함께 사용하게 된다.
+	 * 
+	 * @param pixelSize	화소 하나에 해당하는 길이 (데이터세트 좌표계 단위).
+	 * @return	질의 객체.
+	 */
+	public RangeQuery setPixelResolution(double pixelSize) {
+		m_lod = (pixelSize > 0) ? LevelOfDetail.forPixelSize(m_ds.getGeometryColumn(), pixelSize)
+								: null;
+		return this;
+	}
+	
+	/**
+	 * 질의 영역이 주어진 크기의 화면에 그려지는 것으로 가정하여 화소 해상도를 설정한다.
+	 * 
+	 * @param width		화면 폭 (화소 수).
+	 * @param height	화면 높이 (화소 수).
+	 * @return	질의 객체.
+	 * @see #setPixelResolution(double)
+	 */
+	public RangeQuery setViewSize(int width, int height) {
+		Preconditions.checkArgument(width > 0 && height > 0,
+									String.format("invalid view size: %dx%d", width, height));
+		
+		double pixelSize = Math.max(m_range.getWidth() / width, m_range.getHeight() / height);
+		return setPixelResolution(pixelSize);
+	}
+	
 	public RecordSet run() throws Exception {
-		if ( !m_ds.hasSpatialIndex() ) {
-			if ( m_ds.getRecordCount() <= m_sampleCount ) {
-				return m_ds.read();
-			}
+		if ( !needsEstimate() ) {
+			return simplify(m_ds.read());
 		}
 		
 		// 질의 영역과 겹치는 quad-key들과, 추정되는 결과 레코드의 수를 계산한다.
-		RangeQueryEstimate est = m_ds.estimateRangeQuery(m_range);
-		
+		// 이전 추정치들로부터 계산 가능한 경우는 서버에 요청하지 않는다.
+		RangeQueryEstimate est = m_estimates.estimate(m_ds, m_range);
+		return run(est);
+	}
+	
+	/**
+	 * 질의 수행에 질의 결과 추정치가 필요한지 여부를 반환한다.
+	 * 공간 색인이 없는 작은 데이터세트는 추정없이 전체를 읽는다.
+	 * 
+	 * @return	추정치 필요 여부.
+	 */
+	boolean needsEstimate() {
+		return m_ds.hasSpatialIndex() || m_ds.getRecordCount() > m_sampleCount;
+	}
+	
+	/**
+	 * 미리 계산된 질의 결과 추정치를 사용하여 영역 질의를 수행한다.
+	 * 
+	 * @param est	질의 영역에 대한 결과 추정치.
+	 * @return	질의 결과 레코드 세트.
+	 */
+	RecordSet run(RangeQueryEstimate est) {
 		// 추정된 결과 레코드 수를 통해 샘플링 비율을 계산한다.
 		double ratio = (m_sampleCount > 0)
 						? (double)m_sampleCount / est.getMatchCount() : 1d;
 		final double sampleRatio = Math.min(ratio, 1);
 		
-		// quad-key들 중에서 캐슁되지 않은 cluster들의 갯수를 구한다.
+		// quad-key들 중에서 캐슁된 cluster들을 구하고, 관측된 수행 통계를 바탕으로
+		// 서버 질의와 지역 캐쉬 활용 중 예상 소요 시간이 짧은 방식을 선택한다.
 		List<ClusterEstimate> clusters = est.getClusterEstimates();
-		int nclusters = clusters.size();
-		List<String> cachedKeys = FStream.from(clusters)
+		Set<String> cachedKeys = FStream.from(clusters)
 										.map(ClusterEstimate::getQuadKey)
 										.filter(key -> m_cache.exists(m_dsId, key))
-										.toList();
-		int remoteIoCount = nclusters - cachedKeys.size();
-		int cost = Math.round((cachedKeys.size()*CACHE_COST) + (remoteIoCount * NETWORK_COST));
+										.toSet();
+		RangeQueryPlanner planner = new RangeQueryPlanner(m_stats, m_maxLocalCacheCost,
+															LOCAL_WORKER_COUNT, m_useHybrid);
+		Plan plan = planner.plan(est, cachedKeys, m_sampleCount, sampleRatio);
 		
-		String msg = String.format("ds_id=%s, clusters=%d/%d, cost=%d/%d, guess_count=%d, ratio=%.3f",
-									m_dsId, cachedKeys.size(), nclusters, cost, m_maxLocalCacheCost,
+		String msg = String.format("ds_id=%s, clusters=%d/%d, plan=%s, guess_count=%d, ratio=%.3f",
+									m_dsId, cachedKeys.size(), clusters.size(), plan,
 									est.getMatchCount(), sampleRatio);
-		if ( cost > m_maxLocalCacheCost ) {
-			if ( m_usePrefetch ) {
-				StartableExecution<RecordSet> fg = Executions.supplyAsync(() -> queryAtServer(msg));
-				StartableExecution<?> bg = forkClusterPrefetcher(est);
-				StartableExecution<RecordSet> exec = AsyncExecutions.backgrounded(fg, bg);
-				exec.start();
-				
-				return exec.getUnchecked();
-			}
-			else {
-				return queryAtServer(msg);
-			}
+		if ( m_usePrefetch ) {
+			// 현재 영역에서 캐쉬되지 않은 클러스터들과 이후 접근이 예상되는 주변 클러스터들을
+			// 백그라운드에서 적재한다.
+			List<String> uncachedKeys = FStream.from(clusters)
+												.map(ClusterEstimate::getQuadKey)
+												.filter(key -> !cachedKeys.contains(key))
+												.toList();
+			m_prefetcher.schedule(m_ds, m_range, uncachedKeys);
+		}
+		
+		if ( plan.getStrategy() == Strategy.SERVER ) {
+			return queryAtServer(msg);
+		}
+		else if ( plan.getStrategy() == Strategy.HYBRID ) {
+			return runHybrid(sampleRatio, est, cachedKeys, msg);
 		}
 		else {
-			return runOnLocalCache(sampleRatio, est, msg);
+			return runOnLocalCache(sampleRatio, est, cachedKeys, msg);
 		}
 	}
 	
 	private RecordSet queryAtServer(String logMsg) {
 		s_logger.info("query range at server: {}", logMsg);
-		return m_ds.queryRange(m_range, m_sampleCount);
+		
+		long started = System.nanoTime();
+		RecordSet result = m_ds.queryRange(m_range, m_sampleCount);
+		return simplify(new MeasuredRecordSet(result, started, m_stats::observeServerQuery));
 	}
 	
-	private RecordSet runOnLocalCache(double ratio, RangeQueryEstimate est, String logMsg) {
+	private RecordSet runOnLocalCache(double ratio, RangeQueryEstimate est, Set<String> cachedKeys,
+										String logMsg) {
 		s_logger.info("use local-cache: {}", logMsg);
 		
 		Function<String,FStream<Record>> loader
-							= Try.lift((String qk) -> readPartitionCache(qk, est, ratio))
+							= Try.lift((String qk) -> readPartitionCache(qk, est, ratio,
+																		cachedKeys.contains(qk)))
 									.andThen(d -> d.getOrElse(FStream.empty()));
 		FStream<Record> recStream = FStream.from(est.getClusterEstimates())
 											.map(ClusterEstimate::getQuadKey)
-											.flatMapAsync(loader, AsyncExecutionOptions.WORKER_COUNT(3));
+											.flatMapAsync(loader,
+														AsyncExecutionOptions.WORKER_COUNT(LOCAL_WORKER_COUNT));
 		
 		return RecordSet.from(m_ds.getRecordSchema(), recStream);
 	}
 	
+	/**
+	 * 캐쉬된 파티션들은 지역적으로 읽고, 캐쉬되지 않은 클러스터들은 하나의 서버 질의로 처리하여
+	 * 그 결과를 하나의 레코드 세트로 합친다.
+	 * <p>
+	 * 서버 질의의 샘플 수는 캐쉬되지 않은 클러스터들의 추정 결과 레코드 수에 지역 파티션과
+	 * 동일한 샘플링 비율을 적용하여 계산한다.
+	 */
+	private RecordSet runHybrid(double ratio, RangeQueryEstimate est, Set<String> cachedKeys,
+								String logMsg) {
+		s_logger.info("use hybrid: {}", logMsg);
+		
+		List<String> remoteKeys = Lists.newArrayList();
+		long remoteMatchCount = 0;
+		for ( ClusterEstimate cluster: est.getClusterEstimates() ) {
+			if ( !cachedKeys.contains(cluster.getQuadKey()) ) {
+				remoteKeys.add(cluster.getQuadKey());
+				remoteMatchCount += cluster.getMatchCount();
+			}
+		}
+		int nsamples = (ratio < 1) ? (int)Math.max(1, Math.round(remoteMatchCount * ratio))
+									: m_sampleCount;
+		
+		// 서버 질의가 먼저 시작되도록 작업 목록의 처음에 둔다.
+		List<Supplier<FStream<Record>>> sources = Lists.newArrayList();
+		sources.add(() -> {
+			long started = System.nanoTime();
+			RecordSet remote = m_ds.queryRange(m_range, remoteKeys, nsamples);
+			return simplify(new MeasuredRecordSet(remote, started, m_stats::observeServerQuery))
+						.fstream();
+		});
+		for ( String quadKey: cachedKeys ) {
+			sources.add(() -> Try.get(() -> readPartitionCache(quadKey, est, ratio, true))
+								.getOrElse(FStream.empty()));
+		}
+		
+		FStream<Record> recStream = FStream.from(sources)
+											.flatMapAsync(Supplier::get,
+												AsyncExecutionOptions.WORKER_COUNT(LOCAL_WORKER_COUNT+1));
+		return RecordSet.from(m_ds.getRecordSchema(), recStream);
+	}
+	
 	private FStream<Record> readPartitionCache(String quadKey, RangeQueryEstimate est,
-												double ratio) throws IOException {
+												double ratio, boolean cached) throws IOException {
 		String geomColName = m_ds.getGeometryColumn();
-		FStream<Record> matcheds = m_cache.get(m_dsId, quadKey)
-											.fstream()
+		// 파티션의 공간 인덱스를 통해 MBR이 질의 영역과 겹치는 레코드들만 읽는다.
+		// 이미 캐쉬된 파티션을 읽는 경우에 한해 지역 읽기 처리율을 측정한다.
+		// 단순화가 필요한 경우는 캐쉬에 저장된 해당 단계의 단순화된 파티션을 읽는다.
+		LevelOfDetail lod = m_lod;
+		long started = System.nanoTime();
+		RecordSet candidates = (lod != null) ? m_cache.query(m_dsId, quadKey, m_range, lod)
+											: m_cache.query(m_dsId, quadKey, m_range);
+		if ( cached ) {
+			candidates = new MeasuredRecordSet(candidates, started, m_stats::observeLocalRead);
+		}
+		FStream<Record> matcheds = candidates.fstream()
 											.filter(r -> {
 												Geometry geom = r.getGeometry(geomColName);
 												return m_pkey.intersects(geom);
@@ -158,49 +297,12 @@ public class RangeQuery {
 		return matcheds;
 	}
 	
-	private StartableExecution<?> forkClusterPrefetcher(RangeQueryEstimate est) {
-		FStream<StartableExecution<?>> strm
-								= FStream.from(est.getClusterEstimates())
-										.map(ClusterEstimate::getQuadKey)
-										.filter(qkey -> !m_cache.exists(m_dsId, qkey))
-										.takeTopK(5, (k1,k2) -> k2.length() - k1.length())
-										.map(Prefetcher::new);
-		return AsyncExecutions.sequential(strm);
-	}
-	
-	private class Prefetcher extends AbstractThreadedExecution<Void> implements CancellableWork {
-		private final String m_quadKey;
-		
-		Prefetcher(String quadKey) {
-			m_quadKey = quadKey;
-		}
-		
-		@Override
-		protected Void executeWork() throws Exception {
-			StopWatch watch = StopWatch.start();
-			try {
-				m_cache.put(m_dsId, m_quadKey, m_ds.readSpatialCluster(m_quadKey));
-				
-				s_logger.debug("prefetched: ds={}, quadkey={}, elapsed={}",
-								m_dsId, m_quadKey, watch.stopAndGetElpasedTimeString());
-			}
-			catch ( Exception e ) {
-				m_cache.remove(m_dsId, m_quadKey);
-				s_logger.warn("fails to prefetch: ds={}, quadkey={}, cause={}", m_dsId, m_quadKey, e);
-			}
-			return null;
-		}
-
-		@Override
-		public boolean cancelWork() {
-			CompletableFuture.runAsync(() -> Try.run(() -> waitForFinished()));
-			
-			return true;
+	private RecordSet simplify(RecordSet rset) {
+		LevelOfDetail lod = m_lod;
+		if ( lod == null ) {
+			return rset;
 		}
 		
-		@Override
-		public String toString() {
-			return String.format("PartitionPrefetcher[%s]", m_quadKey);
-		}
+		return RecordSet.from(rset.getRecordSchema(), rset.fstream().map(lod::apply));
 	}
 }
\ No newline at end of file
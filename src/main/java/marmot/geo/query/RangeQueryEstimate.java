@@ -1,6 +1,8 @@
 package marmot.geo.query;
 
 import java.util.List;
+import java.util.NavigableMap;
+import java.util.TreeMap;
 
 import org.locationtech.jts.geom.Envelope;
 
@@ -8,10 +10,15 @@ import marmot.proto.service.RangeQueryEstimateProto;
 import marmot.proto.service.RangeQueryEstimateProto.ClusterEstimateProto;
 import marmot.protobuf.PBUtils;
 import marmot.support.PBSerializable;
+import utils.Preconditions;
 import utils.func.FOption;
 import utils.stream.FStream;
 
 /**
+ * 영역 질의 결과 추정치.
+ * <p>
+ * 클러스터별 추정치는 quad-key 순으로 정렬된 색인을 통해 관리되어, 특정 quad-key에 대한
+ * 검색과 quad-key 접두어를 통한 하위 클러스터 검색을 O(log n)에 수행할 수 있다.
  * 
  * @author Kang-Woo Lee (ETRI)
  */
@@ -19,17 +26,30 @@ public class RangeQueryEstimate implements PBSerializable<RangeQueryEstimateProt
 	private final String m_dsId;
 	private final Envelope m_range;
 	private final List<ClusterEstimate> m_clusterEstimates;
+	private final NavigableMap<String,ClusterEstimate> m_index;
 	private long m_matchCount;
 	
 	public RangeQueryEstimate(String dsId, Envelope range, List<ClusterEstimate> clusterEstimates) {
 		m_dsId = dsId;
 		m_range = range;
 		m_clusterEstimates = clusterEstimates;
+		m_index = new TreeMap<>();
+		for ( ClusterEstimate est: clusterEstimates ) {
+			m_index.put(est.getQuadKey(), est);
+		}
 		m_matchCount = FStream.from(clusterEstimates)
 								.mapToLong(est -> (long)est.m_matchCount)
 								.sum();
 	}
 	
+	public String getDataSetId() {
+		return m_dsId;
+	}
+	
+	public Envelope getRange() {
+		return m_range;
+	}
+	
 	public long getMatchCount() {
 		return m_matchCount;
 	}
@@ -39,8 +59,76 @@ public class RangeQueryEstimate implements PBSerializable<RangeQueryEstimateProt
 	}
 	
 	public FOption<ClusterEstimate> getClusterEstimate(String quadKey) {
-		return FStream.from(m_clusterEstimates)
-						.findFirst(est -> est.getQuadKey().equals(quadKey));
+		return FOption.ofNullable(m_index.get(quadKey));
+	}
+	
+	/**
+	 * 주어진 quad-key를 접두어로 갖는, 즉 해당 타일에 포함되는 모든 클러스터의 추정치를
+	 * quad-key 순서로 반환한다.
+	 * 
+	 * @param prefix	quad-key 접두어.
+	 * @return	클러스터 추정치 리스트.
+	 */
+	public List<ClusterEstimate> getClusterEstimatesUnder(String prefix) {
+		Preconditions.checkNotNullArgument(prefix, "quad-key prefix");
+		
+		if ( prefix.isEmpty() ) {
+			return FStream.from(m_index.values()).toList();
+		}
+		
+		// quad-key는 '0'~'3'의 문자로만 구성되므로 prefix + '4' 미만의 키들이 해당된다.
+		String upper = prefix.substring(0, prefix.length()-1)
+						+ (char)(prefix.charAt(prefix.length()-1) + 1);
+		return FStream.from(m_index.subMap(prefix, true, upper, false).values()).toList();
+	}
+	
+	/**
+	 * 주어진 quad-key의 타일을 포함하는 클러스터의 추정치를 반환한다.
+	 * 주어진 quad-key 자체의 클러스터가 존재하는 경우는 그 클러스터의 추정치가 반환된다.
+	 * 
+	 * @param quadKey	대상 quad-key.
+	 * @return	클러스터 추정치. 포함하는 클러스터가 없는 경우는 {@link FOption#empty()}.
+	 */
+	public FOption<ClusterEstimate> getEnclosingClusterEstimate(String quadKey) {
+		Preconditions.checkNotNullArgument(quadKey, "quad-key");
+		
+		for ( int len = quadKey.length(); len > 0; --len ) {
+			ClusterEstimate est = m_index.get(quadKey.substring(0, len));
+			if ( est != null ) {
+				return FOption.of(est);
+			}
+		}
+		return FOption.empty();
+	}
+	
+	/**
+	 * 동일 데이터세트에 대한 다른 추정치와 합친 추정치를 반환한다.
+	 * <p>
+	 * 두 질의 영역은 서로 겹치지 않는 것으로 가정한다. 따라서 양쪽에 모두 포함된 클러스터의
+	 * 결과 레코드 수는 두 추정치의 합으로 하되, 해당 클러스터의 전체 레코드 수를 넘지 않도록 한다.
+	 * 질의 영역은 두 영역을 모두 포함하는 최소 사각형이 된다.
+	 * 
+	 * @param other	합칠 추정치.
+	 * @return	합쳐진 추정치.
+	 */
+	public RangeQueryEstimate merge(RangeQueryEstimate other) {
+		Preconditions.checkNotNullArgument(other, "RangeQueryEstimate");
+		Preconditions.checkArgument(m_dsId.equals(other.m_dsId),
+									String.format("incompatible dataset: %s <-> %s", m_dsId, other.m_dsId));
+		
+		TreeMap<String,ClusterEstimate> merged = new TreeMap<>(m_index);
+		for ( ClusterEstimate est: other.m_clusterEstimates ) {
+			merged.merge(est.getQuadKey(), est, (e1, e2) -> {
+				int total = Math.max(e1.m_totalCount, e2.m_totalCount);
+				int match = (int)Math.min(total, (long)e1.m_matchCount + e2.m_matchCount);
+				return new ClusterEstimate(e1.m_quadKey, total, match);
+			});
+		}
+		
+		Envelope range = new Envelope(m_range);
+		range.expandToInclude(other.m_range);
+		
+		return new RangeQueryEstimate(m_dsId, range, FStream.from(merged.values()).toList());
 	}
 	
 	public static RangeQueryEstimate fromProto(RangeQueryEstimateProto proto) {
@@ -77,6 +165,10 @@ public class RangeQueryEstimate implements PBSerializable<RangeQueryEstimateProt
 			return m_quadKey;
 		}
 		
+		public int getTotalCount() {
+			return m_totalCount;
+		}
+		
 		public int getMatchCount() {
 			return m_matchCount;
 		}
@@ -0,0 +1,207 @@
+package marmot.geo.query;
+
+import static java.util.concurrent.TimeUnit.MINUTES;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+
+import javax.annotation.concurrent.GuardedBy;
+
+import org.locationtech.jts.geom.Envelope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import utils.Preconditions;
+import utils.func.FOption;
+
+import marmot.dataset.DataSet;
+import marmot.geo.CoordinateTransform;
+import marmot.geo.catalog.SpatialIndexInfo;
+import marmot.geo.query.RangeQueryEstimate.ClusterEstimate;
+import marmot.type.MapTile;
+
+
+/**
+ * 데이터세트별 영역 질의 결과 추정치 캐쉬.
+ * <p>
+ * 서버에서 받은 추정치들로부터 클러스터(quad-key)별 전체 레코드 수와 추정에 사용된 질의
+ * 영역들을 기억한다. 새 질의 영역이 이전에 추정된 영역에 포함되는 경우는 해당 영역과 겹치는
+ * 모든 클러스터를 이미 알고 있으므로, 각 클러스터의 결과 레코드 수를 클러스터 영역과 질의
+ * 영역이 겹치는 면적 비율로 계산하여 서버 요청없이 추정치를 만든다.
+ * <p>
+ * 데이터세트의 공간 색인 정보({@link SpatialIndexInfo})의 갱신 시각이 바뀌면 해당 데이터세트의
+ * 캐쉬 정보는 폐기된다. 갱신 시각은 최대 {@code validateMillis} 간격으로 확인한다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+final class RangeQueryEstimateCache {
+	private static final Logger s_logger = LoggerFactory.getLogger(RangeQueryEstimateCache.class);
+	static final long DEFAULT_VALIDATE_MILLIS = 30 * 1000;
+	private static final int MAX_DATASET_COUNT = 256;
+	private static final int MAX_RANGE_COUNT = 64;
+	private static final long EXPIRE_MINUTES = 60;
+
+	private final long m_validateMillis;
+	private final Cache<String,Entry> m_entries;
+
+	RangeQueryEstimateCache(long validateMillis) {
+		Preconditions.checkArgument(validateMillis >= 0, "invalid validate interval: " + validateMillis);
+
+		m_validateMillis = validateMillis;
+		m_entries = CacheBuilder.newBuilder()
+								.maximumSize(MAX_DATASET_COUNT)
+								.expireAfterAccess(EXPIRE_MINUTES, MINUTES)
+								.build();
+	}
+
+	/**
+	 * 주어진 데이터세트의 질의 영역에 대한 추정치를 반환한다.
+	 * 캐쉬된 정보로 추정할 수 없는 경우는 서버에 요청하고 그 결과를 캐쉬에 반영한다.
+	 *
+	 * @param ds	대상 데이터세트.
+	 * @param range	질의 영역.
+	 * @return	질의 결과 추정치.
+	 */
+	RangeQueryEstimate estimate(DataSet ds, Envelope range) {
+		FOption<RangeQueryEstimate> cached = find(ds, range);
+		if ( cached.isPresent() ) {
+			return cached.get();
+		}
+
+		RangeQueryEstimate est = ds.estimateRangeQuery(range);
+		put(ds, range, est);
+
+		return est;
+	}
+
+	/**
+	 * 캐쉬된 정보만을 사용하여 주어진 질의 영역에 대한 추정치를 계산한다.
+	 *
+	 * @param ds	대상 데이터세트.
+	 * @param range	질의 영역.
+	 * @return	질의 결과 추정치. 캐쉬된 정보로 추정할 수 없는 경우는 {@link FOption#empty()}.
+	 */
+	FOption<RangeQueryEstimate> find(DataSet ds, Envelope range) {
+		Preconditions.checkNotNullArgument(ds, "DataSet");
+		Preconditions.checkNotNullArgument(range, "query range");
+
+		Entry entry = getValidEntry(ds);
+		if ( entry == null || range.getArea() <= 0 ) {
+			return FOption.empty();
+		}
+
+		return entry.estimate(ds.getId(), range);
+	}
+
+	/**
+	 * 서버에서 받은 추정치를 캐쉬에 반영한다.
+	 *
+	 * @param ds	대상 데이터세트.
+	 * @param range	추정에 사용된 질의 영역.
+	 * @param est	질의 결과 추정치.
+	 */
+	void put(DataSet ds, Envelope range, RangeQueryEstimate est) {
+		Preconditions.checkNotNullArgument(ds, "DataSet");
+		Preconditions.checkNotNullArgument(range, "query range");
+		Preconditions.checkNotNullArgument(est, "RangeQueryEstimate");
+
+		Entry entry = getValidEntry(ds);
+		if ( entry == null ) {
+			FOption<SpatialIndexInfo> oinfo = ds.getSpatialIndexInfo();
+			if ( oinfo.isAbsent() ) {
+				return;
+			}
+
+			entry = new Entry(ds.getSrid(), oinfo.get().getUpdatedMillis());
+			m_entries.put(ds.getId(), entry);
+		}
+		entry.add(range, est);
+	}
+
+	void invalidate(String dsId) {
+		m_entries.invalidate(dsId);
+	}
+
+	private Entry getValidEntry(DataSet ds) {
+		String dsId = ds.getId();
+		Entry entry = m_entries.getIfPresent(dsId);
+		if ( entry == null ) {
+			return null;
+		}
+
+		long now = System.currentTimeMillis();
+		if ( now - entry.m_validatedMillis > m_validateMillis ) {
+			long updated = ds.getSpatialIndexInfo()
+							.map(SpatialIndexInfo::getUpdatedMillis)
+							.getOrElse(-1L);
+			if ( updated != entry.m_updatedMillis ) {
+				s_logger.info("spatial index changed, drop cached estimates: ds={}", dsId);
+				m_entries.invalidate(dsId);
+
+				return null;
+			}
+			entry.m_validatedMillis = now;
+		}
+
+		return entry;
+	}
+
+	private static final class Entry {
+		private final String m_srid;
+		private final long m_updatedMillis;
+		private volatile long m_validatedMillis;
+		@GuardedBy("this") private final Map<String,Integer> m_totals = Maps.newHashMap();
+		@GuardedBy("this") private final Map<String,Envelope> m_bounds = Maps.newHashMap();
+		@GuardedBy("this") private final Deque<Envelope> m_ranges = new ArrayDeque<>();
+
+		Entry(String srid, long updatedMillis) {
+			m_srid = srid;
+			m_updatedMillis = updatedMillis;
+			m_validatedMillis = System.currentTimeMillis();
+		}
+
+		synchronized void add(Envelope range, RangeQueryEstimate est) {
+			for ( ClusterEstimate cluster: est.getClusterEstimates() ) {
+				String quadKey = cluster.getQuadKey();
+				m_totals.put(quadKey, cluster.getTotalCount());
+				m_bounds.computeIfAbsent(quadKey, qk -> MapTile.fromQuadKey(qk).getBounds());
+			}
+
+			m_ranges.addFirst(new Envelope(range));
+			if ( m_ranges.size() > MAX_RANGE_COUNT ) {
+				m_ranges.removeLast();
+			}
+		}
+
+		synchronized FOption<RangeQueryEstimate> estimate(String dsId, Envelope range) {
+			// 이전에 추정된 영역에 포함되지 않으면 알려지지 않은 클러스터가 있을 수 있다.
+			if ( m_ranges.stream().noneMatch(r -> r.contains(range)) ) {
+				return FOption.empty();
+			}
+
+			Envelope wgs84 = CoordinateTransform.transformToWgs84(range, m_srid);
+			List<ClusterEstimate> clusters = Lists.newArrayList();
+			for ( Map.Entry<String,Envelope> ent: m_bounds.entrySet() ) {
+				Envelope bounds = ent.getValue();
+				Envelope overlap = bounds.intersection(wgs84);
+				if ( overlap.isNull() || bounds.getArea() <= 0 ) {
+					continue;
+				}
+
+				int total = m_totals.get(ent.getKey());
+				double ratio = Math.min(1, overlap.getArea() / bounds.getArea());
+				int match = (int)Math.round(total * ratio);
+				clusters.add(new ClusterEstimate(ent.getKey(), total, match));
+			}
+
+			return FOption.of(new RangeQueryEstimate(dsId, range, clusters));
+		}
+	}
+}
@@ -0,0 +1,148 @@
+package marmot.geo.query;
+
+import java.util.Set;
+
+import utils.Preconditions;
+
+import marmot.geo.query.RangeQueryEstimate.ClusterEstimate;
+
+
+/**
+ * 영역 질의의 수행 방식을 결정하는 비용 기반 계획기.
+ * <p>
+ * 질의 영역과 겹치는 각 클러스터의 전체 레코드 수와 추정 결과 레코드 수, 그리고
+ * {@link RangeQueryStatistics}에 유지되는 서버 질의/파티션 다운로드/지역 캐쉬 읽기의
+ * 관측 지연 시간과 처리율을 사용하여 각 수행 방식의 예상 소요 시간을 계산하고
+ * 가장 짧은 방식을 선택한다.
+ * <p>
+ * 혼합 방식({@link Strategy#HYBRID})은 캐쉬된 파티션들을 지역적으로 읽는 작업과 캐쉬되지 않은
+ * 클러스터들에 대한 서버 질의가 동시에 수행되기 때문에 둘 중 오래 걸리는 쪽의 시간을 비용으로 한다.
+ * 혼합 방식은 서버가 클러스터를 제한한 영역 질의를 지원하는 경우에만 사용해야 하기 때문에
+ * 명시적으로 허용된 경우에만 고려된다.
+ * 
+ * @author Kang-Woo Lee (ETRI)
+ */
+final class RangeQueryPlanner {
+	enum Strategy {
+		/** 서버에서 영역 질의를 수행한다. */
+		SERVER,
+		/** 필요한 파티션들을 캐쉬에 적재하여 지역적으로 영역 질의를 수행한다. */
+		LOCAL_CACHE,
+		/** 캐쉬된 파티션들은 지역적으로 읽고, 나머지 클러스터들은 서버에서 질의한다. */
+		HYBRID,
+	}
+	
+	private final RangeQueryStatistics m_stats;
+	private final int m_maxDownloads;
+	private final int m_localWorkerCount;
+	private final boolean m_hybridEnabled;
+	
+	/**
+	 * 계획기 객체를 생성한다.
+	 * 
+	 * @param stats				수행 통계 정보.
+	 * @param maxDownloads		지역 캐쉬 활용시 한 질의에서 적재할 수 있는 최대 파티션 수.
+	 * @param localWorkerCount	지역 캐쉬 활용시 동시에 읽는 파티션 수.
+	 * @param hybridEnabled		혼합 방식 사용 허용 여부.
+	 */
+	RangeQueryPlanner(RangeQueryStatistics stats, int maxDownloads, int localWorkerCount,
+						boolean hybridEnabled) {
+		Preconditions.checkNotNullArgument(stats, "RangeQueryStatistics");
+		Preconditions.checkArgument(maxDownloads >= 0, "invalid max downloads: " + maxDownloads);
+		Preconditions.checkArgument(localWorkerCount > 0,
+									"invalid local worker count: " + localWorkerCount);
+		
+		m_stats = stats;
+		m_maxDownloads = maxDownloads;
+		m_localWorkerCount = localWorkerCount;
+		m_hybridEnabled = hybridEnabled;
+	}
+	
+	/**
+	 * 주어진 질의 추정 정보를 바탕으로 질의 수행 계획을 생성한다.
+	 * 
+	 * @param est			영역 질의 추정 정보.
+	 * @param cachedKeys	캐쉬에 적재된 클러스터들의 quad-key 집합.
+	 * @param sampleCount	샘플 갯수. 샘플링을 하지 않는 경우는 0 이하.
+	 * @param sampleRatio	결과 레코드 샘플링 비율.
+	 * @return	질의 수행 계획.
+	 */
+	Plan plan(RangeQueryEstimate est, Set<String> cachedKeys, int sampleCount, double sampleRatio) {
+		// 서버 질의: 요청 지연 시간 + 샘플링된 결과 레코드 전송 시간
+		long serverCount = (sampleCount > 0) ? Math.min(est.getMatchCount(), sampleCount)
+											: est.getMatchCount();
+		double serverCost = m_stats.getServerLatency() + serverCount / m_stats.getServerRate();
+		
+		// 지역 캐쉬: 캐쉬되지 않은 파티션 다운로드 시간 + 후보 레코드 디코딩 시간.
+		// 파티션들은 m_localWorkerCount개씩 동시에 처리된다.
+		double cachedSum = 0, cachedMax = 0;
+		double uncachedSum = 0, uncachedMax = 0;
+		long uncachedMatchCount = 0;
+		int ndownloads = 0;
+		for ( ClusterEstimate cluster: est.getClusterEstimates() ) {
+			double cost = (cluster.getMatchCount() * sampleRatio) / m_stats.getLocalRate();
+			if ( cachedKeys.contains(cluster.getQuadKey()) ) {
+				cachedSum += cost;
+				cachedMax = Math.max(cachedMax, cost);
+			}
+			else {
+				cost += m_stats.getDownloadLatency()
+						+ cluster.getTotalCount() / m_stats.getDownloadRate();
+				uncachedSum += cost;
+				uncachedMax = Math.max(uncachedMax, cost);
+				uncachedMatchCount += cluster.getMatchCount();
+				++ndownloads;
+			}
+		}
+		double localCost = Math.max((cachedSum + uncachedSum) / m_localWorkerCount,
+									Math.max(cachedMax, uncachedMax));
+		
+		// 혼합: 캐쉬된 파티션 읽기와 나머지 클러스터에 대한 서버 질의 중 오래 걸리는 쪽
+		double hybridCost = Double.POSITIVE_INFINITY;
+		if ( m_hybridEnabled && ndownloads > 0 && ndownloads < est.getClusterEstimates().size() ) {
+			double remoteCost = m_stats.getServerLatency()
+								+ (uncachedMatchCount * sampleRatio) / m_stats.getServerRate();
+			double cachedCost = Math.max(cachedSum / m_localWorkerCount, cachedMax);
+			hybridCost = Math.max(remoteCost, cachedCost);
+		}
+		
+		Strategy strategy = Strategy.SERVER;
+		double best = serverCost;
+		if ( ndownloads <= m_maxDownloads && localCost <= best ) {
+			strategy = Strategy.LOCAL_CACHE;
+			best = localCost;
+		}
+		if ( hybridCost < best ) {
+			strategy = Strategy.HYBRID;
+		}
+		return new Plan(strategy, serverCost, localCost, hybridCost, ndownloads);
+	}
+	
+	static final class Plan {
+		private final Strategy m_strategy;
+		private final double m_serverCost;
+		private final double m_localCost;
+		private final double m_hybridCost;
+		private final int m_downloadCount;
+		
+		private Plan(Strategy strategy, double serverCost, double localCost, double hybridCost,
+					int downloadCount) {
+			m_strategy = strategy;
+			m_serverCost = serverCost;
+			m_localCost = localCost;
+			m_hybridCost = hybridCost;
+			m_downloadCount = downloadCount;
+		}
+		
+		Strategy getStrategy() {
+			return m_strategy;
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("%s(server=%.3fs, local=%.3fs, hybrid=%.3fs, downloads=%d)",
+								m_strategy, m_serverCost, m_localCost, m_hybridCost,
+								m_downloadCount);
+		}
+	}
+}
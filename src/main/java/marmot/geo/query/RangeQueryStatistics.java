@@ -0,0 +1,113 @@
+package marmot.geo.query;
+
+import javax.annotation.concurrent.GuardedBy;
+
+
+/**
+ * 영역 질의 수행 방식 결정에 사용되는 수행 통계 정보.
+ * <p>
+ * 서버 측 영역 질의, 파티션 다운로드, 지역 캐쉬 파티션 읽기 각각에 대해
+ * 요청 지연 시간과 레코드 처리율을 지수 이동 평균(EWMA)으로 유지한다.
+ * 관측된 값이 없는 경우는 미리 정해진 기본 값을 사용한다.
+ * 
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class RangeQueryStatistics {
+	private static final double ALPHA = 0.2;
+	private static final long MIN_RATE_SAMPLE_COUNT = 100;
+	
+	@GuardedBy("this") private final Measure m_server = new Measure(0.3, 20_000);
+	@GuardedBy("this") private final Measure m_download = new Measure(0.2, 50_000);
+	@GuardedBy("this") private final Measure m_local = new Measure(0.001, 200_000);
+	
+	/**
+	 * 서버 측 영역 질의 요청의 평균 지연 시간(초)을 반환한다.
+	 * 
+	 * @return	지연 시간 (초 단위).
+	 */
+	public synchronized double getServerLatency() {
+		return m_server.m_latency;
+	}
+	
+	/**
+	 * 서버 측 영역 질의 결과의 초당 평균 전송 레코드 수를 반환한다.
+	 * 
+	 * @return	초당 레코드 수.
+	 */
+	public synchronized double getServerRate() {
+		return m_server.m_rate;
+	}
+	
+	/**
+	 * 파티션 다운로드 요청의 평균 지연 시간(초)을 반환한다.
+	 * 
+	 * @return	지연 시간 (초 단위).
+	 */
+	public synchronized double getDownloadLatency() {
+		return m_download.m_latency;
+	}
+	
+	/**
+	 * 파티션 다운로드시 초당 평균 전송 레코드 수를 반환한다.
+	 * 
+	 * @return	초당 레코드 수.
+	 */
+	public synchronized double getDownloadRate() {
+		return m_download.m_rate;
+	}
+	
+	/**
+	 * 캐쉬된 파티션을 읽을 때의 초당 평균 디코딩 레코드 수를 반환한다.
+	 * 
+	 * @return	초당 레코드 수.
+	 */
+	public synchronized double getLocalRate() {
+		return m_local.m_rate;
+	}
+	
+	synchronized void observeServerQuery(long count, long latencyNanos, long elapsedNanos) {
+		m_server.observe(count, latencyNanos, elapsedNanos);
+	}
+	
+	synchronized void observeDownload(long count, long latencyNanos, long elapsedNanos) {
+		m_download.observe(count, latencyNanos, elapsedNanos);
+	}
+	
+	synchronized void observeLocalRead(long count, long latencyNanos, long elapsedNanos) {
+		m_local.observe(count, latencyNanos, elapsedNanos);
+	}
+	
+	@Override
+	public synchronized String toString() {
+		return String.format("server=%s, download=%s, local=%s", m_server, m_download, m_local);
+	}
+	
+	private static final class Measure {
+		private double m_latency;	// 초 단위
+		private double m_rate;		// 초당 레코드 수
+		private long m_count = 0;	// 관측 횟수
+		
+		Measure(double latency, double rate) {
+			m_latency = latency;
+			m_rate = rate;
+		}
+		
+		void observe(long count, long latencyNanos, long elapsedNanos) {
+			double latency = latencyNanos / 1e9;
+			double transfer = (elapsedNanos - latencyNanos) / 1e9;
+			
+			// 첫 관측 값은 기본 값을 대체한다.
+			double alpha = (m_count == 0) ? 1 : ALPHA;
+			m_latency += alpha * (latency - m_latency);
+			if ( count >= MIN_RATE_SAMPLE_COUNT && transfer > 0 ) {
+				m_rate += alpha * (count/transfer - m_rate);
+			}
+			++m_count;
+		}
+		
+		@Override
+		public String toString() {
+			return String.format("{latency=%.3fs, rate=%.0f/s, samples=%d}", m_latency, m_rate, m_count);
+		}
+	}
+}
@@ -0,0 +1,56 @@
+package marmot.protobuf;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+import com.google.protobuf.ByteString;
+
+import utils.Preconditions;
+import utils.io.IOUtils;
+import utils.io.LimitedInputStream;
+
+/**
+ * 업로드할 바이트 스트림을 chunk 단위로 제공하는 인터페이스.
+ * <p>
+ * {@link #nextChunk()}가 반환한 chunk는 전송 계층이 언제 직렬화할지 알 수 없으므로
+ * 이후 {@link #nextChunk()} 호출이나 {@link #close()} 호출에 의해 변경되어서는 안된다.
+ * 구현 객체는 내부 버퍼를 재사용하는 경우 반환할 chunk를 복사하여야 한다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public interface ChunkSource extends Closeable {
+	/**
+	 * 다음 chunk를 반환한다.
+	 *
+	 * @return	chunk 데이터. 더 이상의 chunk가 없는 경우는 {@code null}.
+	 * @throws IOException	chunk 생성 중 오류가 발생된 경우.
+	 */
+	public ByteString nextChunk() throws IOException;
+
+	/**
+	 * 주어진 입력 스트림을 최대 {@code chunkSize} 크기의 chunk로 나누어 제공하는
+	 * {@link ChunkSource}를 생성한다.
+	 *
+	 * @param is		입력 스트림.
+	 * @param chunkSize	chunk 크기.
+	 * @return	ChunkSource 객체.
+	 */
+	public static ChunkSource from(InputStream is, int chunkSize) {
+		Preconditions.checkNotNullArgument(is, "InputStream");
+		Preconditions.checkArgument(chunkSize > 0, "invalid chunk size: " + chunkSize);
+
+		return new ChunkSource() {
+			@Override
+			public ByteString nextChunk() throws IOException {
+				ByteString chunk = ByteString.readFrom(new LimitedInputStream(is, chunkSize));
+				return (chunk.isEmpty()) ? null : chunk;
+			}
+
+			@Override
+			public void close() throws IOException {
+				IOUtils.closeQuietly(is);
+			}
+		};
+	}
+}
@@ -0,0 +1,288 @@
+package marmot.protobuf;
+
+import java.io.IOException;
+import java.sql.Date;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.Arrays;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.io.ParseException;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+
+import utils.LocalDateTimes;
+import utils.LocalTimes;
+import utils.Preconditions;
+
+import marmot.Record;
+import marmot.RecordSchema;
+import marmot.geo.GeoClientUtils;
+import marmot.proto.ValueProto;
+import marmot.type.TypeCode;
+
+
+/**
+ * 레코드를 {@link RecordStreamFormat#COMPACT} 형식으로 인코딩/디코딩하는 클래스.
+ * <p>
+ * 레코드 스키마는 스트림 헤더에 한번만 기록되기 때문에, 각 레코드는 컬럼별 null 여부를 나타내는
+ * bitmap과 null이 아닌 컬럼 값들만을 스키마 순서대로 타입 태그 없이 기록한다.
+ * <ul>
+ * 	<li> 정수형 (BYTE, SHORT, INT, LONG, DATETIME, DATE): zigzag varint
+ * 	<li> 실수형 (FLOAT, DOUBLE): 고정 길이 (4/8 바이트)
+ * 	<li> POINT: x, y 좌표 (각각 8 바이트)
+ * 	<li> 그 밖의 공간 타입: 길이 + WKB
+ * 	<li> STRING, BINARY: 길이 + 바이트열
+ * 	<li> 그 밖의 타입: 길이 + {@link ValueProto}
+ * </ul>
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public final class PBCompactRecordCodec implements RecordStreamCodec {
+	private static final ExtensionRegistryLite EMPTY_REGISTRY
+						= ExtensionRegistryLite.getEmptyRegistry();
+
+	private final RecordSchema m_schema;
+	private final TypeCode[] m_tcs;
+	private final byte[] m_nulls;
+	private final Object[] m_values;
+
+	public static PBCompactRecordCodec of(RecordSchema schema) {
+		return new PBCompactRecordCodec(schema);
+	}
+
+	private PBCompactRecordCodec(RecordSchema schema) {
+		Preconditions.checkNotNullArgument(schema, "RecordSchema");
+
+		m_schema = schema;
+
+		int ncols = schema.getColumnCount();
+		m_tcs = new TypeCode[ncols];
+		for ( int i =0; i < ncols; ++i ) {
+			m_tcs[i] = schema.getColumnAt(i).type().getTypeCode();
+		}
+		m_nulls = new byte[(ncols + 7) >>> 3];
+		m_values = new Object[ncols];
+	}
+
+	@Override
+	public RecordSchema getRecordSchema() {
+		return m_schema;
+	}
+
+	@Override
+	public void writeDelimited(Record record, CodedOutputStream out) throws IOException {
+		Arrays.fill(m_nulls, (byte)0);
+		for ( int i =0; i < m_tcs.length; ++i ) {
+			m_values[i] = record.get(i);
+			if ( m_values[i] == null ) {
+				m_nulls[i >>> 3] |= (1 << (i & 7));
+			}
+		}
+
+		try {
+			out.writeRawBytes(m_nulls);
+			for ( int i =0; i < m_tcs.length; ++i ) {
+				if ( m_values[i] != null ) {
+					writeValue(m_tcs[i], m_values[i], out);
+				}
+			}
+		}
+		finally {
+			Arrays.fill(m_values, null);
+		}
+	}
+
+	@Override
+	public boolean readDelimited(CodedInputStream in, Record output) throws IOException {
+		if ( in.isAtEnd() ) {
+			return false;
+		}
+		// 전체 스트림 크기 제한에 걸리지 않도록 레코드마다 크기 계수기를 초기화한다.
+		in.resetSizeCounter();
+
+		for ( int i =0; i < m_nulls.length; ++i ) {
+			m_nulls[i] = in.readRawByte();
+		}
+		for ( int i =0; i < m_tcs.length; ++i ) {
+			if ( (m_nulls[i >>> 3] & (1 << (i & 7))) != 0 ) {
+				output.set(i, null);
+			}
+			else {
+				readValue(m_tcs[i], in, i, output);
+			}
+		}
+
+		return true;
+	}
+
+	@Override
+	public boolean skipDelimited(CodedInputStream in) throws IOException {
+		if ( in.isAtEnd() ) {
+			return false;
+		}
+		in.resetSizeCounter();
+
+		for ( int i =0; i < m_nulls.length; ++i ) {
+			m_nulls[i] = in.readRawByte();
+		}
+		for ( int i =0; i < m_tcs.length; ++i ) {
+			if ( (m_nulls[i >>> 3] & (1 << (i & 7))) == 0 ) {
+				skipValue(m_tcs[i], in);
+			}
+		}
+
+		return true;
+	}
+
+	private static void writeValue(TypeCode tc, Object value, CodedOutputStream out)
+		throws IOException {
+		switch ( tc ) {
+			case BYTE:
+			case SHORT:
+			case INT:
+				out.writeSInt32NoTag(((Number)value).intValue());
+				break;
+			case LONG:
+				out.writeSInt64NoTag(((Number)value).longValue());
+				break;
+			case FLOAT:
+				out.writeFloatNoTag(((Number)value).floatValue());
+				break;
+			case DOUBLE:
+				out.writeDoubleNoTag(((Number)value).doubleValue());
+				break;
+			case BOOLEAN:
+				out.writeBoolNoTag((Boolean)value);
+				break;
+			case STRING:
+				out.writeStringNoTag((String)value);
+				break;
+			case BINARY:
+				out.writeByteArrayNoTag((byte[])value);
+				break;
+			case DATETIME:
+				out.writeSInt64NoTag(LocalDateTimes.toUtcMillis((LocalDateTime)value));
+				break;
+			case DATE:
+				out.writeSInt64NoTag(((Date)value).getTime());
+				break;
+			case TIME:
+				out.writeStringNoTag(LocalTimes.toString((LocalTime)value));
+				break;
+			case POINT:
+				Point pt = (Point)value;
+				out.writeDoubleNoTag(pt.isEmpty() ? Double.NaN : pt.getX());
+				out.writeDoubleNoTag(pt.isEmpty() ? Double.NaN : pt.getY());
+				break;
+			case MULTI_POINT:
+			case LINESTRING:
+			case MULTI_LINESTRING:
+			case POLYGON:
+			case MULTI_POLYGON:
+			case GEOM_COLLECTION:
+			case GEOMETRY:
+				out.writeByteArrayNoTag(GeoClientUtils.toWKB((Geometry)value));
+				break;
+			default:
+				out.writeMessageNoTag(PBValueProtos.toValueProto(tc, value));
+				break;
+		}
+	}
+
+	private static void skipValue(TypeCode tc, CodedInputStream in) throws IOException {
+		switch ( tc ) {
+			case BYTE:
+			case SHORT:
+			case INT:
+			case LONG:
+			case BOOLEAN:
+			case DATETIME:
+			case DATE:
+				in.readRawVarint64();
+				break;
+			case FLOAT:
+				in.skipRawBytes(4);
+				break;
+			case DOUBLE:
+				in.skipRawBytes(8);
+				break;
+			case POINT:
+				in.skipRawBytes(16);
+				break;
+			default:
+				// STRING, BINARY, TIME, 공간 타입 및 ValueProto 모두 길이 + 바이트열로 기록됨.
+				in.skipRawBytes(in.readRawVarint32());
+				break;
+		}
+	}
+
+	private static void readValue(TypeCode tc, CodedInputStream in, int idx, Record output)
+		throws IOException {
+		switch ( tc ) {
+			case BYTE:
+				output.set(idx, (byte)in.readSInt32());
+				break;
+			case SHORT:
+				output.set(idx, (short)in.readSInt32());
+				break;
+			case INT:
+				output.setInt(idx, in.readSInt32());
+				break;
+			case LONG:
+				output.setLong(idx, in.readSInt64());
+				break;
+			case FLOAT:
+				output.set(idx, in.readFloat());
+				break;
+			case DOUBLE:
+				output.setDouble(idx, in.readDouble());
+				break;
+			case BOOLEAN:
+				output.set(idx, in.readBool());
+				break;
+			case STRING:
+				output.set(idx, in.readStringRequireUtf8());
+				break;
+			case BINARY:
+				output.set(idx, in.readByteArray());
+				break;
+			case DATETIME:
+				output.set(idx, LocalDateTimes.fromUtcMillis(in.readSInt64()));
+				break;
+			case DATE:
+				output.set(idx, new Date(in.readSInt64()));
+				break;
+			case TIME:
+				output.set(idx, LocalTimes.fromString(in.readStringRequireUtf8()));
+				break;
+			case POINT:
+				double x = in.readDouble();
+				double y = in.readDouble();
+				output.set(idx, Double.isNaN(x) ? GeoClientUtils.EMPTY_POINT
+												: GeoClientUtils.toPoint(x, y));
+				break;
+			case MULTI_POINT:
+			case LINESTRING:
+			case MULTI_LINESTRING:
+			case POLYGON:
+			case MULTI_POLYGON:
+			case GEOM_COLLECTION:
+			case GEOMETRY:
+				try {
+					output.set(idx, GeoClientUtils.fromWKB(in.readByteArray()));
+				}
+				catch ( ParseException e ) {
+					throw new IOException("invalid WKB: cause=" + e);
+				}
+				break;
+			default:
+				ValueProto proto = in.readMessage(ValueProto.parser(), EMPTY_REGISTRY);
+				output.set(idx, PBValueProtos.fromProto(proto));
+				break;
+		}
+	}
+}
@@ -0,0 +1,293 @@
+package marmot.protobuf;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+
+import org.slf4j.LoggerFactory;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.UnsafeByteOperations;
+
+import utils.Preconditions;
+import utils.Throwables;
+import utils.async.AbstractThreadedExecution;
+
+import marmot.Record;
+import marmot.RecordSchema;
+import marmot.RecordSet;
+import marmot.RecordSetException;
+import marmot.proto.RecordStreamHeaderProto;
+import marmot.support.DefaultRecord;
+
+/**
+ * 레코드 세트를 ProtoBuf 방식으로 인코딩하여 고정 크기의 chunk 단위로 제공하는 파이프라인.
+ * <p>
+ * 별도의 쓰레드가 레코드들을 인코딩하여 chunk 버퍼에 직접 기록하고, 채워진 chunk는
+ * 크기가 제한된 큐를 통해 소비자에게 전달된다. 소비자가 chunk를 가져가지 않으면 큐가
+ * 가득 차서 인코딩 쓰레드가 대기하게 된다.
+ * <p>
+ * gRPC는 {@code onNext()} 호출 이후에도 메시지를 보관했다가 나중에 직렬화할 수 있기 때문에
+ * (전송 준비 전의 DelayedStream, 재전송용 RetriableStream 등) chunk 버퍼는 재사용하지 않는다.
+ * 대신 매 chunk마다 새 버퍼를 할당하여 {@link #nextChunk()}에서 복사없이 그대로 전달한다.
+ * <p>
+ * 인코딩된 데이터는 {@link #nextChunk()}를 통해 chunk 단위로 읽거나,
+ * {@link InputStream} 인터페이스를 통해 읽을 수 있다. 단 두 방식을 섞어서 사용하면 안된다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class PBRecordChunkPipeline extends InputStream implements ChunkSource {
+	public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+	public static final int DEFAULT_QUEUE_LENGTH = 4;
+	private static final Chunk EOS = new Chunk(new byte[0]);
+
+	private final int m_chunkSize;
+	private final BlockingQueue<Chunk> m_queue;		// 인코딩이 완료된 chunk들
+	private final Encoder m_encoder;
+	private volatile Throwable m_error = null;
+
+	// 소비자 쓰레드에서만 접근
+	private Chunk m_current = null;
+	private int m_offset = 0;
+	private boolean m_eos = false;
+
+	public static PBRecordChunkPipeline start(RecordSet rset, RecordStreamFormat format) {
+		return start(rset, format, DEFAULT_CHUNK_SIZE, DEFAULT_QUEUE_LENGTH);
+	}
+
+	public static PBRecordChunkPipeline start(RecordSet rset, RecordStreamFormat format,
+											int chunkSize, int queueLength) {
+		PBRecordChunkPipeline pipeline = new PBRecordChunkPipeline(rset, format, chunkSize,
+																	queueLength);
+		pipeline.m_encoder.start();
+
+		return pipeline;
+	}
+
+	private PBRecordChunkPipeline(RecordSet rset, RecordStreamFormat format, int chunkSize,
+									int queueLength) {
+		Preconditions.checkNotNullArgument(rset, "RecordSet");
+		Preconditions.checkNotNullArgument(format, "RecordStreamFormat");
+		Preconditions.checkArgument(chunkSize > 0, "invalid chunk size: " + chunkSize);
+		Preconditions.checkArgument(queueLength > 0, "invalid queue length: " + queueLength);
+
+		m_chunkSize = chunkSize;
+		m_queue = new ArrayBlockingQueue<>(queueLength);
+		m_encoder = new Encoder(rset, format);
+	}
+
+	public int getChunkSize() {
+		return m_chunkSize;
+	}
+
+	@Override
+	public ByteString nextChunk() throws IOException {
+		Chunk chunk = takeChunk();
+		if ( chunk == null ) {
+			return null;
+		}
+
+		// chunk 버퍼는 재사용되지 않으므로 복사하지 않고 그대로 감싼다.
+		m_offset = chunk.m_length;
+		return UnsafeByteOperations.unsafeWrap(chunk.m_buffer, 0, chunk.m_length);
+	}
+
+	@Override
+	public int read() throws IOException {
+		while ( m_current == null || m_offset >= m_current.m_length ) {
+			if ( takeChunk() == null ) {
+				return -1;
+			}
+		}
+
+		return m_current.m_buffer[m_offset++] & 0xff;
+	}
+
+	@Override
+	public int read(byte b[], int off, int len) throws IOException {
+		if ( len == 0 ) {
+			return 0;
+		}
+		while ( m_current == null || m_offset >= m_current.m_length ) {
+			if ( takeChunk() == null ) {
+				return -1;
+			}
+		}
+
+		int nbytes = Math.min(len, m_current.m_length - m_offset);
+		System.arraycopy(m_current.m_buffer, m_offset, b, off, nbytes);
+		m_offset += nbytes;
+
+		return nbytes;
+	}
+
+	@Override
+	public void close() throws IOException {
+		m_eos = true;
+		m_encoder.cancel(true);
+
+		m_current = null;
+		m_queue.clear();
+	}
+
+	private Chunk takeChunk() throws IOException {
+		m_current = null;
+		if ( m_eos ) {
+			return null;
+		}
+
+		try {
+			Chunk chunk = m_queue.take();
+			if ( chunk == EOS ) {
+				m_eos = true;
+				if ( m_error != null ) {
+					throw toIOException(m_error);
+				}
+
+				return null;
+			}
+
+			m_current = chunk;
+			m_offset = 0;
+
+			return chunk;
+		}
+		catch ( InterruptedException e ) {
+			throw new InterruptedIOException("" + e);
+		}
+	}
+
+	private static IOException toIOException(Throwable error) {
+		if ( error instanceof IOException ) {
+			return (IOException)error;
+		}
+		Throwables.throwIfInstanceOf(error, RecordSetException.class);
+		throw new RecordSetException("" + error);
+	}
+
+	private static final class Chunk {
+		private final byte[] m_buffer;
+		private int m_length = 0;
+
+		private Chunk(byte[] buffer) {
+			m_buffer = buffer;
+		}
+	}
+
+	private class Encoder extends AbstractThreadedExecution<Long> {
+		private final RecordSet m_rset;
+		private final RecordStreamFormat m_format;
+
+		private Encoder(RecordSet rset, RecordStreamFormat format) {
+			m_rset = rset;
+			m_format = format;
+
+			setLogger(LoggerFactory.getLogger(PBRecordChunkPipeline.class));
+		}
+
+		@Override
+		protected Long executeWork() throws CancellationException, Exception {
+			RecordSchema schema = m_rset.getRecordSchema();
+			Record rec = DefaultRecord.of(schema);
+			RecordStreamCodec codec = m_format.newCodec(schema);
+
+			ChunkOutputStream chunkOut = new ChunkOutputStream();
+			try {
+				CodedOutputStream out = CodedOutputStream.newInstance(chunkOut);
+
+				RecordStreamHeaderProto header = PBRecordProtos.toStreamHeader(schema, m_format);
+				out.writeUInt32NoTag(header.getSerializedSize());
+				header.writeTo(out);
+
+				long count = 0;
+				while ( m_rset.next(rec) ) {
+					if ( !isRunning() ) {
+						break;
+					}
+
+					codec.writeDelimited(rec, out);
+					++count;
+				}
+				out.flush();
+				chunkOut.close();
+
+				return count;
+			}
+			catch ( InterruptedIOException e ) {
+				throw new CancellationException("" + e);
+			}
+			catch ( Exception e ) {
+				m_error = e;
+				throw e;
+			}
+			finally {
+				m_rset.closeQuietly();
+
+				try {
+					m_queue.put(EOS);
+				}
+				catch ( InterruptedException ignored ) {
+					// 소비자가 파이프라인을 닫은 경우이므로 EOS를 전달할 필요가 없다.
+				}
+			}
+		}
+
+		private class ChunkOutputStream extends OutputStream {
+			private Chunk m_chunk = null;
+
+			@Override
+			public void write(int b) throws IOException {
+				prepareChunk();
+				m_chunk.m_buffer[m_chunk.m_length++] = (byte)b;
+				if ( m_chunk.m_length == m_chunkSize ) {
+					emitChunk();
+				}
+			}
+
+			@Override
+			public void write(byte[] b, int off, int len) throws IOException {
+				while ( len > 0 ) {
+					prepareChunk();
+
+					int nbytes = Math.min(len, m_chunkSize - m_chunk.m_length);
+					System.arraycopy(b, off, m_chunk.m_buffer, m_chunk.m_length, nbytes);
+					m_chunk.m_length += nbytes;
+					off += nbytes;
+					len -= nbytes;
+
+					if ( m_chunk.m_length == m_chunkSize ) {
+						emitChunk();
+					}
+				}
+			}
+
+			@Override
+			public void close() throws IOException {
+				if ( m_chunk != null && m_chunk.m_length > 0 ) {
+					emitChunk();
+				}
+			}
+
+			private void prepareChunk() {
+				if ( m_chunk == null ) {
+					m_chunk = new Chunk(new byte[m_chunkSize]);
+				}
+			}
+
+			private void emitChunk() throws InterruptedIOException {
+				try {
+					m_queue.put(m_chunk);
+					m_chunk = null;
+				}
+				catch ( InterruptedException e ) {
+					throw new InterruptedIOException("" + e);
+				}
+			}
+		}
+	}
+}
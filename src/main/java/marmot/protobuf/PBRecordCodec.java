@@ -0,0 +1,502 @@
+package marmot.protobuf;
+
+import java.io.IOException;
+import java.sql.Date;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.io.ParseException;
+
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.ExtensionRegistryLite;
+import com.google.protobuf.WireFormat;
+
+import utils.LocalDateTimes;
+import utils.LocalTimes;
+import utils.Preconditions;
+
+import marmot.Record;
+import marmot.RecordSchema;
+import marmot.geo.GeoClientUtils;
+import marmot.proto.DoubleArrayProto;
+import marmot.proto.EnvelopeProto;
+import marmot.proto.FloatArrayProto;
+import marmot.proto.GeometryProto;
+import marmot.proto.GridCellProto;
+import marmot.proto.IntervalProto;
+import marmot.proto.MapTileProto;
+import marmot.proto.RecordProto;
+import marmot.proto.TrajectoryProto;
+import marmot.proto.ValueProto;
+import marmot.type.DataTypes;
+import marmot.type.GeometryDataType;
+import marmot.type.TypeCode;
+
+
+/**
+ * 레코드 스키마 정보를 이용하여 레코드를 {@link RecordProto} 형식으로 직접 인코딩/디코딩하는 클래스.
+ * <p>
+ * {@link PBRecordProtos#toProto(Record)}와 동일한 wire format을 사용하지만,
+ * 레코드마다 {@link RecordProto}와 {@link ValueProto} 메시지 객체를 생성하지 않고
+ * {@link CodedOutputStream}에 직접 기록하고, {@link CodedInputStream}에서 직접 읽어
+ * 주어진 레코드에 적재한다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public final class PBRecordCodec implements RecordStreamCodec {
+	private static final int RECORD_COLUMN_TAG
+						= WireFormat.makeTag(RecordProto.COLUMN_FIELD_NUMBER,
+											WireFormat.WIRETYPE_LENGTH_DELIMITED);
+	// PointProto의 x, y는 항상 기록하기 때문에 크기는 고정된다.
+	private static final int POINT_SIZE = CodedOutputStream.computeDoubleSize(1, 0d)
+										+ CodedOutputStream.computeDoubleSize(2, 0d);
+	private static final ExtensionRegistryLite EMPTY_REGISTRY
+						= ExtensionRegistryLite.getEmptyRegistry();
+
+	private final RecordSchema m_schema;
+	private final TypeCode[] m_tcs;
+
+	// 레코드 인코딩 과정에서 사용되는 컬럼별 임시 정보 (레코드마다 재사용됨)
+	private final Object[] m_values;
+	private final int[] m_sizes;
+	private final Object[] m_encodeds;
+
+	public static PBRecordCodec of(RecordSchema schema) {
+		return new PBRecordCodec(schema);
+	}
+
+	private PBRecordCodec(RecordSchema schema) {
+		Preconditions.checkNotNullArgument(schema, "RecordSchema");
+
+		m_schema = schema;
+
+		int ncols = schema.getColumnCount();
+		m_tcs = new TypeCode[ncols];
+		for ( int i =0; i < ncols; ++i ) {
+			m_tcs[i] = schema.getColumnAt(i).type().getTypeCode();
+		}
+		m_values = new Object[ncols];
+		m_sizes = new int[ncols];
+		m_encodeds = new Object[ncols];
+	}
+
+	@Override
+	public RecordSchema getRecordSchema() {
+		return m_schema;
+	}
+
+	/**
+	 * 주어진 레코드를 길이 정보가 앞에 붙은 {@link RecordProto} 형식으로 출력 스트림에 기록한다.
+	 * <p>
+	 * 기록된 결과는 {@code RecordProto.parseDelimitedFrom()}으로 읽을 수 있다.
+	 *
+	 * @param record	기록할 레코드.
+	 * @param out		출력 스트림.
+	 * @throws IOException	출력 스트림 기록 중 오류가 발생된 경우.
+	 */
+	@Override
+	public void writeDelimited(Record record, CodedOutputStream out) throws IOException {
+		int recSize = 0;
+		for ( int i =0; i < m_tcs.length; ++i ) {
+			m_values[i] = record.get(i);
+			m_sizes[i] = computeValueSize(i, m_values[i]);
+			recSize += CodedOutputStream.computeTagSize(RecordProto.COLUMN_FIELD_NUMBER)
+						+ CodedOutputStream.computeUInt32SizeNoTag(m_sizes[i])
+						+ m_sizes[i];
+		}
+
+		try {
+			out.writeUInt32NoTag(recSize);
+			for ( int i =0; i < m_tcs.length; ++i ) {
+				out.writeUInt32NoTag(RECORD_COLUMN_TAG);
+				out.writeUInt32NoTag(m_sizes[i]);
+				writeValue(i, m_values[i], out);
+			}
+		}
+		finally {
+			for ( int i =0; i < m_tcs.length; ++i ) {
+				m_values[i] = null;
+				m_encodeds[i] = null;
+			}
+		}
+	}
+
+	/**
+	 * 입력 스트림에서 길이 정보가 앞에 붙은 {@link RecordProto} 형식의 레코드 하나를 읽어
+	 * 주어진 레코드에 적재한다.
+	 *
+	 * @param in		입력 스트림.
+	 * @param output	읽은 레코드 값이 저장될 레코드 객체.
+	 * @return	레코드 적재 여부. 입력 스트림의 끝에 도달한 경우는 {@code false}.
+	 * @throws IOException	입력 스트림 읽기 중 오류가 발생된 경우.
+	 */
+	@Override
+	public boolean skipDelimited(CodedInputStream in) throws IOException {
+		if ( in.isAtEnd() ) {
+			return false;
+		}
+		in.resetSizeCounter();
+		in.skipRawBytes(in.readRawVarint32());
+		
+		return true;
+	}
+
+	@Override
+	public boolean readDelimited(CodedInputStream in, Record output) throws IOException {
+		if ( in.isAtEnd() ) {
+			return false;
+		}
+		// 전체 스트림 크기 제한에 걸리지 않도록 레코드마다 크기 계수기를 초기화한다.
+		in.resetSizeCounter();
+
+		int recLimit = in.pushLimit(in.readRawVarint32());
+		int idx = 0;
+		for ( int tag = in.readTag(); tag != 0; tag = in.readTag() ) {
+			if ( tag == RECORD_COLUMN_TAG && idx < m_tcs.length ) {
+				int valueLimit = in.pushLimit(in.readRawVarint32());
+				readValue(in, idx, output);
+				in.skipMessage();
+				in.popLimit(valueLimit);
+				++idx;
+			}
+			else {
+				in.skipField(tag);
+			}
+		}
+		in.popLimit(recLimit);
+
+		for (; idx < m_tcs.length; ++idx ) {
+			output.set(idx, null);
+		}
+
+		return true;
+	}
+
+	private int computeValueSize(int idx, Object value) {
+		TypeCode tc = m_tcs[idx];
+		if ( value == null ) {
+			return CodedOutputStream.computeEnumSize(ValueProto.NULL_VALUE_FIELD_NUMBER, tc.get());
+		}
+
+		switch ( tc ) {
+			case BYTE:
+				return CodedOutputStream.computeSInt32Size(ValueProto.BYTE_VALUE_FIELD_NUMBER,
+															((Number)value).intValue());
+			case SHORT:
+				return CodedOutputStream.computeSInt32Size(ValueProto.SHORT_VALUE_FIELD_NUMBER,
+															((Number)value).intValue());
+			case INT:
+				return CodedOutputStream.computeSInt32Size(ValueProto.INT_VALUE_FIELD_NUMBER,
+															((Number)value).intValue());
+			case LONG:
+				return CodedOutputStream.computeSInt64Size(ValueProto.LONG_VALUE_FIELD_NUMBER,
+															((Number)value).longValue());
+			case FLOAT:
+				return CodedOutputStream.computeFloatSize(ValueProto.FLOAT_VALUE_FIELD_NUMBER, 0f);
+			case DOUBLE:
+				return CodedOutputStream.computeDoubleSize(ValueProto.DOUBLE_VALUE_FIELD_NUMBER, 0d);
+			case BOOLEAN:
+				return CodedOutputStream.computeBoolSize(ValueProto.BOOL_VALUE_FIELD_NUMBER, false);
+			case STRING:
+				return CodedOutputStream.computeStringSize(ValueProto.STRING_VALUE_FIELD_NUMBER,
+															(String)value);
+			case BINARY:
+				return CodedOutputStream.computeByteArraySize(ValueProto.BINARY_VALUE_FIELD_NUMBER,
+																(byte[])value);
+			case DATETIME:
+				long millis = LocalDateTimes.toUtcMillis((LocalDateTime)value);
+				m_encodeds[idx] = millis;
+				return CodedOutputStream.computeSInt64Size(ValueProto.DATETIME_VALUE_FIELD_NUMBER,
+															millis);
+			case DATE:
+				return CodedOutputStream.computeSInt64Size(ValueProto.DATE_VALUE_FIELD_NUMBER,
+															((Date)value).getTime());
+			case TIME:
+				String timeStr = LocalTimes.toString((LocalTime)value);
+				m_encodeds[idx] = timeStr;
+				return CodedOutputStream.computeStringSize(ValueProto.TIME_VALUE_FIELD_NUMBER,
+															timeStr);
+			case POINT:
+				return computeMessageSize(ValueProto.POINT_VALUE_FIELD_NUMBER,
+											POINT_SIZE);
+			case MULTI_POINT:
+			case LINESTRING:
+			case MULTI_LINESTRING:
+			case POLYGON:
+			case MULTI_POLYGON:
+			case GEOM_COLLECTION:
+			case GEOMETRY:
+				Geometry geom = (Geometry)value;
+				if ( geom.isEmpty() ) {
+					break;
+				}
+				else if ( geom instanceof Point ) {
+					int ptSize = computeMessageSize(GeometryProto.POINT_FIELD_NUMBER,
+													POINT_SIZE);
+					return computeMessageSize(ValueProto.GEOMETRY_VALUE_FIELD_NUMBER, ptSize);
+				}
+				else {
+					byte[] wkb = GeoClientUtils.toWKB(geom);
+					m_encodeds[idx] = wkb;
+					int wkbSize = CodedOutputStream.computeByteArraySize(GeometryProto.WKB_FIELD_NUMBER,
+																		wkb);
+					return computeMessageSize(ValueProto.GEOMETRY_VALUE_FIELD_NUMBER, wkbSize);
+				}
+			default:
+				break;
+		}
+
+		// 자주 사용되지 않는 타입들은 ValueProto를 생성하여 기록한다.
+		ValueProto proto = PBValueProtos.toValueProto(tc, value);
+		m_encodeds[idx] = proto;
+		return proto.getSerializedSize();
+	}
+
+	private void writeValue(int idx, Object value, CodedOutputStream out) throws IOException {
+		TypeCode tc = m_tcs[idx];
+		if ( value == null ) {
+			out.writeEnum(ValueProto.NULL_VALUE_FIELD_NUMBER, tc.get());
+			return;
+		}
+		if ( m_encodeds[idx] instanceof ValueProto ) {
+			((ValueProto)m_encodeds[idx]).writeTo(out);
+			return;
+		}
+
+		switch ( tc ) {
+			case BYTE:
+				out.writeSInt32(ValueProto.BYTE_VALUE_FIELD_NUMBER, ((Number)value).intValue());
+				break;
+			case SHORT:
+				out.writeSInt32(ValueProto.SHORT_VALUE_FIELD_NUMBER, ((Number)value).intValue());
+				break;
+			case INT:
+				out.writeSInt32(ValueProto.INT_VALUE_FIELD_NUMBER, ((Number)value).intValue());
+				break;
+			case LONG:
+				out.writeSInt64(ValueProto.LONG_VALUE_FIELD_NUMBER, ((Number)value).longValue());
+				break;
+			case FLOAT:
+				out.writeFloat(ValueProto.FLOAT_VALUE_FIELD_NUMBER, ((Number)value).floatValue());
+				break;
+			case DOUBLE:
+				out.writeDouble(ValueProto.DOUBLE_VALUE_FIELD_NUMBER, ((Number)value).doubleValue());
+				break;
+			case BOOLEAN:
+				out.writeBool(ValueProto.BOOL_VALUE_FIELD_NUMBER, (Boolean)value);
+				break;
+			case STRING:
+				out.writeString(ValueProto.STRING_VALUE_FIELD_NUMBER, (String)value);
+				break;
+			case BINARY:
+				out.writeByteArray(ValueProto.BINARY_VALUE_FIELD_NUMBER, (byte[])value);
+				break;
+			case DATETIME:
+				out.writeSInt64(ValueProto.DATETIME_VALUE_FIELD_NUMBER, (Long)m_encodeds[idx]);
+				break;
+			case DATE:
+				out.writeSInt64(ValueProto.DATE_VALUE_FIELD_NUMBER, ((Date)value).getTime());
+				break;
+			case TIME:
+				out.writeString(ValueProto.TIME_VALUE_FIELD_NUMBER, (String)m_encodeds[idx]);
+				break;
+			case POINT:
+				Point pt = (Point)value;
+				out.writeTag(ValueProto.POINT_VALUE_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+				out.writeUInt32NoTag(POINT_SIZE);
+				writePoint(pt, out);
+				break;
+			default:
+				Geometry geom = (Geometry)value;
+				out.writeTag(ValueProto.GEOMETRY_VALUE_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+				if ( geom instanceof Point ) {
+					int ptSize = POINT_SIZE;
+					out.writeUInt32NoTag(computeMessageSize(GeometryProto.POINT_FIELD_NUMBER, ptSize));
+					out.writeTag(GeometryProto.POINT_FIELD_NUMBER, WireFormat.WIRETYPE_LENGTH_DELIMITED);
+					out.writeUInt32NoTag(ptSize);
+					writePoint((Point)geom, out);
+				}
+				else {
+					byte[] wkb = (byte[])m_encodeds[idx];
+					out.writeUInt32NoTag(CodedOutputStream.computeByteArraySize(GeometryProto.WKB_FIELD_NUMBER,
+																				wkb));
+					out.writeByteArray(GeometryProto.WKB_FIELD_NUMBER, wkb);
+				}
+				break;
+		}
+	}
+
+	private void readValue(CodedInputStream in, int idx, Record output) throws IOException {
+		int tag = in.readTag();
+		if ( tag == 0 ) {	// VALUE_NOT_SET
+			output.set(idx, null);
+			return;
+		}
+
+		switch ( WireFormat.getTagFieldNumber(tag) ) {
+			case ValueProto.BYTE_VALUE_FIELD_NUMBER:
+				output.set(idx, (byte)in.readSInt32());
+				break;
+			case ValueProto.SHORT_VALUE_FIELD_NUMBER:
+				output.set(idx, (short)in.readSInt32());
+				break;
+			case ValueProto.INT_VALUE_FIELD_NUMBER:
+				output.setInt(idx, in.readSInt32());
+				break;
+			case ValueProto.LONG_VALUE_FIELD_NUMBER:
+				output.setLong(idx, in.readSInt64());
+				break;
+			case ValueProto.FLOAT_VALUE_FIELD_NUMBER:
+				output.set(idx, in.readFloat());
+				break;
+			case ValueProto.DOUBLE_VALUE_FIELD_NUMBER:
+				output.setDouble(idx, in.readDouble());
+				break;
+			case ValueProto.BOOL_VALUE_FIELD_NUMBER:
+				output.set(idx, in.readBool());
+				break;
+			case ValueProto.STRING_VALUE_FIELD_NUMBER:
+				output.set(idx, in.readStringRequireUtf8());
+				break;
+			case ValueProto.BINARY_VALUE_FIELD_NUMBER:
+				output.set(idx, in.readByteArray());
+				break;
+			case ValueProto.DATETIME_VALUE_FIELD_NUMBER:
+				output.set(idx, LocalDateTimes.fromUtcMillis(in.readSInt64()));
+				break;
+			case ValueProto.DATE_VALUE_FIELD_NUMBER:
+				output.set(idx, new Date(in.readSInt64()));
+				break;
+			case ValueProto.TIME_VALUE_FIELD_NUMBER:
+				output.set(idx, LocalTimes.fromString(in.readStringRequireUtf8()));
+				break;
+			case ValueProto.POINT_VALUE_FIELD_NUMBER:
+				output.set(idx, readPoint(in));
+				break;
+			case ValueProto.GEOMETRY_VALUE_FIELD_NUMBER:
+				output.set(idx, readGeometry(in));
+				break;
+			case ValueProto.NULL_VALUE_FIELD_NUMBER:
+				in.readEnum();
+				output.set(idx, null);
+				break;
+			default:
+				output.set(idx, PBValueProtos.fromProto(readRareValue(tag, in)));
+				break;
+		}
+	}
+
+	private static ValueProto readRareValue(int tag, CodedInputStream in) throws IOException {
+		ValueProto.Builder builder = ValueProto.newBuilder();
+		switch ( WireFormat.getTagFieldNumber(tag) ) {
+			case ValueProto.INTERVAL_VALUE_FIELD_NUMBER:
+				builder.setIntervalValue(in.readMessage(IntervalProto.parser(), EMPTY_REGISTRY));
+				break;
+			case ValueProto.ENVELOPE_VALUE_FIELD_NUMBER:
+				builder.setEnvelopeValue(in.readMessage(EnvelopeProto.parser(), EMPTY_REGISTRY));
+				break;
+			case ValueProto.TILE_VALUE_FIELD_NUMBER:
+				builder.setTileValue(in.readMessage(MapTileProto.parser(), EMPTY_REGISTRY));
+				break;
+			case ValueProto.GRID_CELL_VALUE_FIELD_NUMBER:
+				builder.setGridCellValue(in.readMessage(GridCellProto.parser(), EMPTY_REGISTRY));
+				break;
+			case ValueProto.TRAJECTORY_VALUE_FIELD_NUMBER:
+				builder.setTrajectoryValue(in.readMessage(TrajectoryProto.parser(), EMPTY_REGISTRY));
+				break;
+			case ValueProto.FLOAT_ARRAY_FIELD_NUMBER:
+				builder.setFloatArray(in.readMessage(FloatArrayProto.parser(), EMPTY_REGISTRY));
+				break;
+			case ValueProto.DOUBLE_ARRAY_FIELD_NUMBER:
+				builder.setDoubleArray(in.readMessage(DoubleArrayProto.parser(), EMPTY_REGISTRY));
+				break;
+			default:
+				// 위에서 처리하지 않는 필드(duration, 압축 문자열/바이너리 등)는 이미 읽은 태그와
+				// 나머지 필드를 다시 인코딩하여 ValueProto 전체로 파싱한다.
+				ByteString.Output bytes = ByteString.newOutput();
+				CodedOutputStream out = CodedOutputStream.newInstance(bytes);
+				in.skipField(tag, out);
+				for ( int next = in.readTag(); next != 0; next = in.readTag() ) {
+					in.skipField(next, out);
+				}
+				out.flush();
+				
+				return ValueProto.parseFrom(bytes.toByteString());
+		}
+
+		return builder.build();
+	}
+
+	private static int computeMessageSize(int fieldNo, int msgSize) {
+		return CodedOutputStream.computeTagSize(fieldNo)
+				+ CodedOutputStream.computeUInt32SizeNoTag(msgSize)
+				+ msgSize;
+	}
+
+	private static void writePoint(Point pt, CodedOutputStream out) throws IOException {
+		if ( pt.isEmpty() ) {
+			out.writeDouble(1, Double.NaN);
+			out.writeDouble(2, Double.NaN);
+		}
+		else {
+			out.writeDouble(1, pt.getX());
+			out.writeDouble(2, pt.getY());
+		}
+	}
+
+	private static Point readPoint(CodedInputStream in) throws IOException {
+		int limit = in.pushLimit(in.readRawVarint32());
+		double x = 0, y = 0;
+		for ( int tag = in.readTag(); tag != 0; tag = in.readTag() ) {
+			switch ( WireFormat.getTagFieldNumber(tag) ) {
+				case 1:
+					x = in.readDouble();
+					break;
+				case 2:
+					y = in.readDouble();
+					break;
+				default:
+					in.skipField(tag);
+					break;
+			}
+		}
+		in.popLimit(limit);
+
+		return Double.isNaN(x) ? GeoClientUtils.EMPTY_POINT : GeoClientUtils.toPoint(x, y);
+	}
+
+	private static Geometry readGeometry(CodedInputStream in) throws IOException {
+		int limit = in.pushLimit(in.readRawVarint32());
+		try {
+			int tag = in.readTag();
+			switch ( WireFormat.getTagFieldNumber(tag) ) {
+				case GeometryProto.POINT_FIELD_NUMBER:
+					return readPoint(in);
+				case GeometryProto.WKB_FIELD_NUMBER:
+					try {
+						return GeoClientUtils.fromWKB(in.readByteArray());
+					}
+					catch ( ParseException e ) {
+						throw new IllegalArgumentException("invalid WKB: cause=" + e);
+					}
+				case GeometryProto.EMPTY_FIELD_NUMBER:
+					TypeCode tc = TypeCode.fromCode(in.readEnum());
+					GeometryDataType dt = (GeometryDataType)DataTypes.fromTypeCode(tc);
+					return GeoClientUtils.emptyGeometry(dt.toGeometries());
+				default:	// GeometryProto.NULL_FIELD_NUMBER
+					if ( tag != 0 ) {
+						in.skipField(tag);
+					}
+					return null;
+			}
+		}
+		finally {
+			in.skipMessage();
+			in.popLimit(limit);
+		}
+	}
+}
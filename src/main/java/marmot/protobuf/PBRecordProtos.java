@@ -6,13 +6,16 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.InterruptedIOException;
 import java.io.OutputStream;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
+import java.util.BitSet;
 import java.util.concurrent.CancellationException;
 
+import javax.annotation.Nullable;
+
 import org.slf4j.LoggerFactory;
 
-import utils.Preconditions;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
 import utils.Throwables;
 import utils.async.AbstractThreadedExecution;
 import utils.async.StartableExecution;
@@ -26,9 +29,11 @@ import marmot.RecordSet;
 import marmot.RecordSetException;
 import marmot.proto.RecordProto;
 import marmot.proto.RecordSchemaProto;
+import marmot.proto.RecordStreamHeaderProto;
 import marmot.proto.ValueProto;
 import marmot.rset.AbstractRecordSet;
 import marmot.support.DefaultRecord;
+import marmot.type.TypeCode;
 
 /**
  * 
@@ -41,23 +46,52 @@ public class PBRecordProtos {
 
 	/**
 	 * ProtoBuf 방식으로 인코딩된 주어진 입력 스트림에 저장된 레코드세트를 읽는다.
+	 * <p>
+	 * 레코드들의 기록 형식({@link RecordStreamFormat})은 스트림 헤더에 기록된 정보를 통해 결정된다.
 	 * 
 	 *  @param is		ProtoBuf 형식으로 인코딩된 입력 스트림. 
 	 *  @return	레코드 세트
 	 */
 	public static RecordSet readRecordSet(InputStream is) {
-		return new PBInputStreamRecordSet(is);
+		return new PBInputStreamRecordSet(is, null);
+	}
+	
+	/**
+	 * ProtoBuf 방식으로 인코딩된 주어진 입력 스트림에 저장된 레코드들 중에서
+	 * 주어진 순번에 해당하는 레코드들만 읽는다.
+	 * <p>
+	 * 선택되지 않은 레코드들은 디코딩하지 않고 건너뛴다.
+	 * 
+	 *  @param is			ProtoBuf 형식으로 인코딩된 입력 스트림.
+	 *  @param selecteds	읽을 레코드들의 순번 (0부터 시작).
+	 *  @return	레코드 세트
+	 */
+	public static RecordSet readRecordSet(InputStream is, BitSet selecteds) {
+		checkNotNullArgument(selecteds, "selecteds");
+		
+		return new PBInputStreamRecordSet(is, selecteds);
 	}
 	static class PBInputStreamRecordSet extends AbstractRecordSet {
 		private final RecordSchema m_schema;
-		private final InputStream m_is;
+		private final CodedInputStream m_is;
+		private final RecordStreamCodec m_codec;
+		private final @Nullable BitSet m_selecteds;
+		private int m_ordinal = 0;
 		
-		private PBInputStreamRecordSet(InputStream is) {
+		private PBInputStreamRecordSet(InputStream is, @Nullable BitSet selecteds) {
 			checkNotNullArgument(is, "InputStream");
 			
 			try {
-				m_schema = RecordSchema.fromProto(RecordSchemaProto.parseDelimitedFrom(is));
-				m_is = is;
+				RecordStreamHeaderProto header = RecordStreamHeaderProto.parseDelimitedFrom(is);
+				if ( header == null ) {
+					throw new RecordSetException("empty record stream: no header");
+				}
+				m_schema = RecordSchema.fromProto(RecordSchemaProto.newBuilder()
+																.addAllColumns(header.getColumnsList())
+																.build());
+				m_is = CodedInputStream.newInstance(is);
+				m_codec = RecordStreamFormat.fromProto(header.getFormat()).newCodec(m_schema);
+				m_selecteds = selecteds;
 			}
 			catch ( Exception e ) {
 				Throwables.throwIfInstanceOf(e, RuntimeException.class);
@@ -76,9 +110,20 @@ public class PBRecordProtos {
 		@Override
 		public boolean next(Record output) {
 			try {
-				RecordProto proto = RecordProto.parseDelimitedFrom(m_is);
-				if ( proto != null ) {
-					PBRecordProtos.fromProto(proto, output);
+				if ( m_selecteds != null ) {
+					int selected = m_selecteds.nextSetBit(m_ordinal);
+					if ( selected < 0 ) {
+						return false;
+					}
+					for (; m_ordinal < selected; ++m_ordinal ) {
+						if ( !m_codec.skipDelimited(m_is) ) {
+							return false;
+						}
+					}
+				}
+				
+				if ( m_codec.readDelimited(m_is, output) ) {
+					++m_ordinal;
 					return true;
 				}
 				else {
@@ -92,50 +137,64 @@ public class PBRecordProtos {
 		
 		@Override
 		public Record nextCopy() {
-			try {
-				RecordProto proto = RecordProto.parseDelimitedFrom(m_is);
-				if ( proto != null ) {
-					return DefaultRecord.fromProto(m_schema, proto);
-				}
-				else {
-					return null;
-				}
-			}
-			catch ( IOException e ) {
-				throw new RecordSetException("" + e);
-			}
+			Record output = DefaultRecord.of(m_schema);
+			return next(output) ? output : null;
 		}
 	}
 	
 	public static StartableExecution<Long> newWriteExecution(RecordSet rset, OutputStream os) {
-		return new WriteRecordSetToOutStream(rset, os);
+		return new WriteRecordSetToOutStream(rset, os, RecordStreamFormat.RECORD_PROTO);
+	}
+	
+	/**
+	 * 주어진 레코드 세트를 지정된 형식으로 출력 스트림에 기록하는 작업을 생성한다.
+	 * <p>
+	 * {@link RecordStreamFormat#COMPACT} 형식으로 기록된 스트림은 본 클래스의
+	 * {@link #readRecordSet(InputStream)}로만 읽을 수 있기 때문에, 읽는 측이 이 형식을
+	 * 지원하는 경우에만 사용하여야 한다.
+	 * 
+	 * @param rset		기록할 레코드 세트.
+	 * @param os		출력 스트림.
+	 * @param format	레코드 기록 형식.
+	 * @return	기록 작업 객체.
+	 */
+	public static StartableExecution<Long> newWriteExecution(RecordSet rset, OutputStream os,
+															RecordStreamFormat format) {
+		return new WriteRecordSetToOutStream(rset, os, format);
 	}
 	private static class WriteRecordSetToOutStream extends AbstractThreadedExecution<Long> {
 		private final RecordSet m_rset;
 		private final OutputStream m_os;
+		private final RecordStreamFormat m_format;
 		
-		private WriteRecordSetToOutStream(RecordSet rset, OutputStream os) {
+		private WriteRecordSetToOutStream(RecordSet rset, OutputStream os, RecordStreamFormat format) {
 			m_rset = rset;
 			m_os = os;
+			m_format = format;
 			
 			setLogger(LoggerFactory.getLogger(WriteRecordSetToOutStream.class));
 		}
 
 		@Override
 		protected Long executeWork() throws CancellationException, Exception {
-			Record rec = DefaultRecord.of(m_rset.getRecordSchema());
+			RecordSchema schema = m_rset.getRecordSchema();
+			Record rec = DefaultRecord.of(schema);
+			RecordStreamCodec codec = m_format.newCodec(schema);
 			
 			long count = 0;
 			try {
-				m_rset.getRecordSchema().toProto().writeDelimitedTo(m_os);
+				toStreamHeader(schema, m_format).writeDelimitedTo(m_os);
+				
+				CodedOutputStream out = CodedOutputStream.newInstance(m_os);
 				while ( m_rset.next(rec) ) {
 					if ( !isRunning() ) {
 						break;
 					}
 					
-					PBRecordProtos.toProto(rec).writeDelimitedTo(m_os);
+					codec.writeDelimited(rec, out);
 					++count;
 				}
+				out.flush();
 				
 				return count;
 			}
@@ -150,71 +209,58 @@ public class PBRecordProtos {
 	}
 	
 	public static InputStream toInputStream(RecordSet rset) {
-		return new PBRecordSetInputStream(rset);
+		return toInputStream(rset, RecordStreamFormat.RECORD_PROTO);
+	}
+	public static InputStream toInputStream(RecordSet rset, RecordStreamFormat format) {
+		return PBRecordChunkPipeline.start(rset, format);
 	}
 	public static InputStream toInputStream(RecordSchema schema, FStream<Record> rstream) {
 		return toInputStream(RecordSet.from(schema, rstream));
 	}
-	private static class PBRecordSetInputStream extends InputStream {
-		private static final int DEFAULT_PIPE_SIZE = 64 * 1024;
-		
-		private final PipedInputStream m_pipe;
-		private final StartableExecution<Long> m_pump;
-		private Throwable m_error;
-		
-		private PBRecordSetInputStream(RecordSet rset) {
-			Preconditions.checkNotNullArgument(rset, "RecordSet");
-			
-			try {
-				PipedOutputStream pipeOut = new PipedOutputStream();
-				m_pipe = new PipedInputStream(pipeOut, DEFAULT_PIPE_SIZE);
-				
-				m_pump = PBRecordProtos.newWriteExecution(rset, pipeOut);
-				m_pump.whenFailed(error -> m_error = error);
-				m_pump.start();
-			}
-			catch ( IOException e ) {
-				throw new RecordSetException(e);
-			}
-		}
-		
-		@Override
-		public void close() throws IOException {
-			m_pump.cancel(true);
-			m_pipe.close();
-		}
-
-		@Override
-		public int read() throws IOException {
-			int ret = m_pipe.read();
-			if ( ret >= 0 || m_error == null ) {
-				return ret;
-			}
-			
-			throw throwException(m_error);
-		}
-
-		@Override
-	    public int read(byte b[], int off, int len) throws IOException {
-			int ret = m_pipe.read(b, off, len);
-			if ( ret >= 0 || m_error == null ) {
-				return ret;
-			}
-
-			throw throwException(m_error);
-		}
-		
-		private static IOException throwException(Throwable error) {
-			if ( error instanceof IOException ) {
-				return (IOException)error;
-			}
-			Throwables.throwIfInstanceOf(error, RecordSetException.class);
-			throw new RecordSetException("" + error);
-		}
+	
+	/**
+	 * 주어진 레코드 세트를 ProtoBuf 방식으로 인코딩하여 chunk 단위로 제공하는
+	 * {@link ChunkSource}를 생성한다.
+	 * 
+	 * @param rset		인코딩할 레코드 세트.
+	 * @param format	레코드 기록 형식.
+	 * @param chunkSize	chunk 크기.
+	 * @return	ChunkSource 객체.
+	 */
+	public static ChunkSource toChunkSource(RecordSet rset, RecordStreamFormat format,
+											int chunkSize) {
+		return PBRecordChunkPipeline.start(rset, format, chunkSize,
+											PBRecordChunkPipeline.DEFAULT_QUEUE_LENGTH);
+	}
+	
+	/**
+	 * 레코드 스트림의 헤더를 생성한다.
+	 * <p>
+	 * {@link RecordStreamFormat#RECORD_PROTO} 형식의 헤더는 {@link RecordSchemaProto}와
+	 * 동일하게 인코딩되기 때문에 기존 방식으로도 읽을 수 있다.
+	 * 
+	 * @param schema	레코드 스키마.
+	 * @param format	레코드 기록 형식.
+	 * @return	스트림 헤더
+	 */
+	public static RecordStreamHeaderProto toStreamHeader(RecordSchema schema,
+														RecordStreamFormat format) {
+		return RecordStreamHeaderProto.newBuilder()
+									.addAllColumns(schema.toProto().getColumnsList())
+									.setFormat(format.toProto())
+									.build();
 	}
 	
 	public static RecordProto toProto(Record record) {
-		return toProto(record.getRecordSchema(), record.getAll());
+		// Record#getAll()은 레코드 구현에 따라 값 배열을 새로 생성하므로 컬럼 단위로 접근한다.
+		RecordSchema schema = record.getRecordSchema();
+		RecordProto.Builder builder = RecordProto.newBuilder();
+		for ( int i =0; i < schema.getColumnCount(); ++i ) {
+			TypeCode tc = schema.getColumnAt(i).type().getTypeCode();
+			builder.addColumn(PBValueProtos.toValueProto(tc, record.get(i)));
+		}
+		
+		return builder.build();
 	}
 
 	public static RecordProto toProto(RecordSchema schema, Object[] values) {
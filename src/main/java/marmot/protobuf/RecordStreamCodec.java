@@ -0,0 +1,51 @@
+package marmot.protobuf;
+
+import java.io.IOException;
+
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+
+import marmot.Record;
+import marmot.RecordSchema;
+
+/**
+ * 레코드 스트림에 포함된 레코드를 인코딩/디코딩하는 코덱 인터페이스.
+ * 
+ * @author Kang-Woo Lee (ETRI)
+ */
+public interface RecordStreamCodec {
+	/**
+	 * 코덱이 처리하는 레코드의 스키마를 반환한다.
+	 * 
+	 * @return	레코드 스키마.
+	 */
+	public RecordSchema getRecordSchema();
+	
+	/**
+	 * 주어진 레코드를 출력 스트림에 기록한다.
+	 * 
+	 * @param record	기록할 레코드.
+	 * @param out		출력 스트림.
+	 * @throws IOException	출력 스트림 기록 중 오류가 발생된 경우.
+	 */
+	public void writeDelimited(Record record, CodedOutputStream out) throws IOException;
+	
+	/**
+	 * 입력 스트림에서 레코드 하나를 읽어 주어진 레코드에 적재한다.
+	 * 
+	 * @param in		입력 스트림.
+	 * @param output	읽은 레코드 값이 저장될 레코드 객체.
+	 * @return	레코드 적재 여부. 입력 스트림의 끝에 도달한 경우는 {@code false}.
+	 * @throws IOException	입력 스트림 읽기 중 오류가 발생된 경우.
+	 */
+	public boolean readDelimited(CodedInputStream in, Record output) throws IOException;
+	
+	/**
+	 * 입력 스트림에서 레코드 하나를 디코딩하지 않고 건너뛴다.
+	 * 
+	 * @param in		입력 스트림.
+	 * @return	레코드 존재 여부. 입력 스트림의 끝에 도달한 경우는 {@code false}.
+	 * @throws IOException	입력 스트림 읽기 중 오류가 발생된 경우.
+	 */
+	public boolean skipDelimited(CodedInputStream in) throws IOException;
+}
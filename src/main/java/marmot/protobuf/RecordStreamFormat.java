@@ -0,0 +1,44 @@
+package marmot.protobuf;
+
+import marmot.RecordSchema;
+import marmot.proto.RecordStreamFormatProto;
+import marmot.support.ProtoBufEnumSerializable;
+
+/**
+ * 레코드 스트림에 레코드들이 기록되는 형식.
+ * <p>
+ * 레코드 스트림의 형식은 스트림 헤더({@code RecordStreamHeaderProto})에 기록되어,
+ * 스트림을 읽는 측에서 자동으로 결정된다.
+ * 
+ * @author Kang-Woo Lee (ETRI)
+ */
+public enum RecordStreamFormat implements ProtoBufEnumSerializable<RecordStreamFormatProto> {
+	/** 레코드마다 {@code RecordProto} 형식으로 기록하는 기본 형식. */
+	RECORD_PROTO,
+	/** null bitmap과 타입 태그가 없는 컬럼 값들로 기록하는 형식. */
+	COMPACT;
+	
+	/**
+	 * 본 형식으로 주어진 스키마의 레코드를 인코딩/디코딩하는 코덱을 생성한다.
+	 * 
+	 * @param schema	레코드 스키마.
+	 * @return	레코드 코덱 객체.
+	 */
+	public RecordStreamCodec newCodec(RecordSchema schema) {
+		switch ( this ) {
+			case COMPACT:
+				return PBCompactRecordCodec.of(schema);
+			default:
+				return PBRecordCodec.of(schema);
+		}
+	}
+	
+	public static RecordStreamFormat fromProto(RecordStreamFormatProto proto) {
+		return RecordStreamFormat.valueOf(proto.name());
+	}
+
+	@Override
+	public RecordStreamFormatProto toProto() {
+		return RecordStreamFormatProto.valueOf(name());
+	}
+}
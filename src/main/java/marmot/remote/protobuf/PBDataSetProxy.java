@@ -1,5 +1,6 @@
 package marmot.remote.protobuf;
 
+import java.util.List;
 import java.util.Optional;
 import java.util.Set;
 
@@ -131,6 +132,11 @@ public class PBDataSetProxy implements DataSet {
 	public RecordSet queryRange(Envelope range, int nsamples) {
 		return m_service.queryRange(getId(), range, nsamples);
 	}
+	
+	@Override
+	public RecordSet queryRange(Envelope range, List<String> quadKeys, int nsamples) {
+		return m_service.queryRange(getId(), range, quadKeys, nsamples);
+	}
 
 	@Override
 	public long append(RecordSet rset) {
@@ -2,6 +2,7 @@ package marmot.remote.protobuf;
 
 
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Optional;
@@ -9,14 +10,16 @@ import java.util.Set;
 
 import org.locationtech.jts.geom.Envelope;
 
+import com.google.common.collect.Lists;
 import com.google.protobuf.ByteString;
 
 import io.grpc.ManagedChannel;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
 import io.grpc.stub.StreamObserver;
 
 import utils.Throwables;
 import utils.func.Optionals;
-import utils.io.Lz4Compressions;
 import utils.stream.FStream;
 
 import marmot.BindDataSetOptions;
@@ -56,6 +59,7 @@ import marmot.proto.service.DataSetTypeProto;
 import marmot.proto.service.DirectoryTraverseRequest;
 import marmot.proto.service.DownChunkResponse;
 import marmot.proto.service.EstimateQuadKeysRequest;
+import marmot.proto.service.EstimateRangeQueriesRequest;
 import marmot.proto.service.EstimateRangeQueryRequest;
 import marmot.proto.service.FloatResponse;
 import marmot.proto.service.LongResponse;
@@ -71,8 +75,10 @@ import marmot.proto.service.StringResponse;
 import marmot.proto.service.UpChunkRequest;
 import marmot.proto.service.UpdateGeometryColumnInfoRequest;
 import marmot.proto.service.VoidResponse;
+import marmot.protobuf.ChunkSource;
 import marmot.protobuf.PBRecordProtos;
 import marmot.protobuf.PBUtils;
+import marmot.protobuf.RecordStreamFormat;
 
 /**
  * 
@@ -82,6 +88,8 @@ public class PBDataSetServiceProxy {
 	private final PBMarmotClient m_marmot;
 	private final DataSetServiceBlockingStub m_dsBlockingStub;
 	private final DataSetServiceStub m_dsStub;
+	// 서버가 일괄 영역 질의 예측 (estimateRangeQueries)을 지원하지 않는 경우 true
+	private volatile boolean m_batchEstimateUnsupported = false;
 
 	PBDataSetServiceProxy(PBMarmotClient marmot, ManagedChannel channel) {
 		m_marmot = marmot;
@@ -188,6 +196,11 @@ public class PBDataSetServiceProxy {
 	}
 	
 	public RecordSet readDataSet(String dsId) throws DataSetNotFoundException {
+		return readDataSet(dsId, m_marmot.getStreamCompression());
+	}
+	
+	public RecordSet readDataSet(String dsId, StreamCompression comp)
+		throws DataSetNotFoundException {
 		StreamDownloadReceiver downloader = new StreamDownloadReceiver();
 
 		// start download by sending 'stream-download' request
@@ -195,12 +208,10 @@ public class PBDataSetServiceProxy {
 		
 		ReadDataSetRequest req = ReadDataSetRequest.newBuilder()
 												.setId(dsId)
-												.setUseCompression(m_marmot.useCompression())
+												.setUseCompression(comp.isEnabled())
 												.build();
 		InputStream is = downloader.start(req.toByteString(), channel);
-		if ( m_marmot.useCompression() ) {
-			is = Lz4Compressions.decompress(is);
-		}
+		is = comp.decompress(is);
 		return PBRecordProtos.readRecordSet(is);
 	}
 	
@@ -220,8 +231,57 @@ public class PBDataSetServiceProxy {
 		}
 	}
 	
+	public List<RangeQueryEstimate> estimateRangeQueries(List<String> dsIds, Envelope range) {
+		if ( m_batchEstimateUnsupported ) {
+			return estimateRangeQueriesEach(dsIds, range);
+		}
+		
+		EstimateRangeQueriesRequest req = EstimateRangeQueriesRequest.newBuilder()
+																	.addAllDatasetId(dsIds)
+																	.setRange(PBUtils.toProto(range))
+																	.build();
+		List<RangeQueryEstimate> estimates = Lists.newArrayList();
+		try {
+			Iterator<RangeQueryEstimateResponse> iter = m_dsBlockingStub.estimateRangeQueries(req);
+			while ( iter.hasNext() ) {
+				RangeQueryEstimateResponse resp = iter.next();
+				switch ( resp.getEitherCase() ) {
+					case ESTIMATE:
+						estimates.add(RangeQueryEstimate.fromProto(resp.getEstimate()));
+						break;
+					case ERROR:
+						throw Throwables.toRuntimeException(PBUtils.toException(resp.getError()));
+					default:
+						throw new AssertionError();
+				}
+			}
+		}
+		catch ( StatusRuntimeException e ) {
+			// 일괄 예측을 지원하지 않는 이전 버전의 서버인 경우는 데이터세트별로 예측한다.
+			if ( e.getStatus().getCode() != Status.Code.UNIMPLEMENTED || !estimates.isEmpty() ) {
+				throw e;
+			}
+			m_batchEstimateUnsupported = true;
+			return estimateRangeQueriesEach(dsIds, range);
+		}
+		
+		return estimates;
+	}
+	
+	private List<RangeQueryEstimate> estimateRangeQueriesEach(List<String> dsIds, Envelope range) {
+		return FStream.from(dsIds)
+						.map(id -> estimateRangeQuery(id, range))
+						.toList();
+	}
+	
 	public RecordSet queryRange(String dsId, Envelope range, int nsamples)
 		throws DataSetNotFoundException {
+		return queryRange(dsId, range, Collections.emptyList(), nsamples);
+	}
+	
+	public RecordSet queryRange(String dsId, Envelope range, List<String> quadKeys, int nsamples)
+		throws DataSetNotFoundException {
+		StreamCompression comp = m_marmot.getStreamCompression();
 		StreamDownloadReceiver downloader = new StreamDownloadReceiver();
 		StreamObserver<DownChunkResponse> channel = m_dsStub.queryRange(downloader);
 		
@@ -229,32 +289,43 @@ public class PBDataSetServiceProxy {
 												.setId(dsId)
 												.setRange(PBUtils.toProto(range))
 												.setSampleCount(nsamples)
-												.setUseCompression(m_marmot.useCompression())
+												.addAllQuadKeys(quadKeys)
+												.setUseCompression(comp.isEnabled())
 												.build();
 
 		// start download by sending 'stream-download' request
 		InputStream is = downloader.start(req.toByteString(), channel);
-		if ( m_marmot.useCompression() ) {
-			is = Lz4Compressions.decompress(is);
-		}
+		is = comp.decompress(is);
 		
 		return PBRecordProtos.readRecordSet(is);
 	}
 	
 	public long appendRecordSet(String dsId, RecordSet rset, Optional<String> partId) {
+		return appendRecordSet(dsId, rset, partId, m_marmot.getStreamCompression());
+	}
+	
+	public long appendRecordSet(String dsId, RecordSet rset, Optional<String> partId,
+								StreamCompression comp) {
 		try {
-			InputStream is = PBRecordProtos.toInputStream(rset);
-			if ( m_marmot.useCompression() ) {
-				is = Lz4Compressions.compress(is);
+			// 압축을 사용하지 않는 경우는 인코딩 쓰레드가 chunk마다 새로 할당한 버퍼에 직접
+			// 기록하고, 그 버퍼를 복사없이 감싸서 전송한다.
+			ChunkSource source;
+			if ( comp.isEnabled() ) {
+				InputStream is = comp.compress(PBRecordProtos.toInputStream(rset));
+				source = ChunkSource.from(is, StreamUploadSender.DEFAULT_CHUNK_SIZE);
+			}
+			else {
+				source = PBRecordProtos.toChunkSource(rset, RecordStreamFormat.RECORD_PROTO,
+														StreamUploadSender.DEFAULT_CHUNK_SIZE);
 			}
 			
-			StreamUploadSender uploader = new StreamUploadSender(is) {
+			StreamUploadSender uploader = new StreamUploadSender(source) {
 				@Override
 				protected ByteString getHeader() throws Exception {
 					AppendRecordSetRequest.Builder builder
 									= AppendRecordSetRequest.newBuilder()
 															.setId(dsId)
-															.setUseCompression(m_marmot.useCompression());
+															.setUseCompression(comp.isEnabled());
 					
 					builder = Optionals.transform(partId, builder, (b,i) -> b.setPartitionId(i));
 					AppendRecordSetRequest req = builder.build();
@@ -263,6 +334,7 @@ public class PBDataSetServiceProxy {
 			};
 			StreamObserver<UpChunkRequest> channel = m_dsStub.appendRecordSet(uploader);
 			uploader.setChannel(channel);
+			uploader.setWindowSize(m_marmot.getUploadWindowSize());
 			uploader.start();
 			
 			ByteString ret = uploader.get();
@@ -323,19 +395,18 @@ public class PBDataSetServiceProxy {
 	}
 	
 	public RecordSet readSpatialCluster(String dsId, String quadKey) {
+		StreamCompression comp = m_marmot.getStreamCompression();
 		StreamDownloadReceiver downloader = new StreamDownloadReceiver();
 
 		// start download by sending 'stream-download' request
 		ReadRawSpatialClusterRequest.Builder builder = ReadRawSpatialClusterRequest.newBuilder()
 																.setDatasetId(dsId)
 																.setQuadKey(quadKey)
-																.setUseCompression(m_marmot.useCompression());
+																.setUseCompression(comp.isEnabled());
 		ReadRawSpatialClusterRequest req = builder.build();
 		StreamObserver<DownChunkResponse> channel = m_dsStub.readRawSpatialCluster(downloader);
 		InputStream is = downloader.start(req.toByteString(), channel);
-		if ( m_marmot.useCompression() ) {
-			is = Lz4Compressions.decompress(is);
-		}
+		is = comp.decompress(is);
 		return PBRecordProtos.readRecordSet(is);
 	}
 
@@ -431,19 +502,18 @@ public class PBDataSetServiceProxy {
 	}
 	
 	public RecordSet readThumbnail(String dsId, Envelope range, int count) {
+		StreamCompression comp = m_marmot.getStreamCompression();
 		ReadThumbnailRequest req = ReadThumbnailRequest.newBuilder()
 														.setId(dsId)
 														.setRange(PBUtils.toProto(range))
 														.setCount(count)
-														.setUseCompression(m_marmot.useCompression())
+														.setUseCompression(comp.isEnabled())
 														.build();
 
 		StreamDownloadReceiver downloader = new StreamDownloadReceiver();
 		StreamObserver<DownChunkResponse> channel = m_dsStub.readThumbnail(downloader);
 		InputStream is = downloader.start(req.toByteString(), channel);
-		if ( m_marmot.useCompression() ) {
-			is = Lz4Compressions.decompress(is);
-		}
+		is = comp.decompress(is);
 
 		return PBRecordProtos.readRecordSet(is);
 	}
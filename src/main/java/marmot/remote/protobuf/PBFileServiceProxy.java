@@ -26,7 +26,6 @@ import utils.StopWatch;
 import utils.Throwables;
 import utils.UnitUtils;
 import utils.func.FOption;
-import utils.io.Lz4Compressions;
 
 /**
  * 
@@ -70,17 +69,16 @@ public class PBFileServiceProxy {
 	public long copyToHdfsFile(String path, InputStream stream, FOption<Long> blockSize,
 								FOption<String> codecName)
 		throws IOException {
+		StreamCompression comp = m_marmot.getStreamCompression();
 		try {
-			if ( m_marmot.useCompression() ) {
-				stream = Lz4Compressions.compress(stream);
-			}
+			stream = comp.compress(stream);
 			
 			StreamUploadSender uploader = new StreamUploadSender(stream) {
 				@Override
 				protected ByteString getHeader() throws Exception {
 					CopyToHdfsFileRequest.Builder hbuilder = CopyToHdfsFileRequest.newBuilder()
 																.setPath(PBUtils.toStringProto(path))
-																.setUseCompression(m_marmot.useCompression());
+																.setUseCompression(comp.isEnabled());
 					blockSize.ifPresent(sz -> hbuilder.setBlockSize(sz));
 					codecName.ifPresent(hbuilder::setCompressionCodecName);
 					CopyToHdfsFileRequest req = hbuilder.build();
@@ -89,6 +87,7 @@ public class PBFileServiceProxy {
 			};
 			StreamObserver<UpChunkRequest> channel = m_stub.copyToHdfsFile(uploader);
 			uploader.setChannel(channel);
+			uploader.setWindowSize(m_marmot.getUploadWindowSize());
 			uploader.start();
 			
 			ByteString ret = uploader.get();
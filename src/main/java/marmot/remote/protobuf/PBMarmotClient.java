@@ -6,6 +6,8 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import org.locationtech.jts.geom.Envelope;
+
 import io.grpc.ManagedChannel;
 import io.grpc.ManagedChannelBuilder;
 import io.grpc.Server;
@@ -31,6 +33,7 @@ import marmot.exec.ExecutionNotFoundException;
 import marmot.exec.MarmotAnalysis;
 import marmot.exec.MarmotExecution;
 import marmot.exec.MarmotExecutionException;
+import marmot.geo.query.RangeQueryEstimate;
 import marmot.io.MarmotFileNotFoundException;
 import marmot.optor.CreateDataSetOptions;
 import marmot.optor.StoreDataSetOptions;
@@ -47,19 +50,43 @@ public class PBMarmotClient implements MarmotRuntime {
 	private final PBFileServiceProxy m_fileService;
 	private final PBDataSetServiceProxy m_dsService;
 	private final PBPlanExecutionServiceProxy m_pexecService;
-	private final boolean m_useCompression;
+	private volatile StreamCompression m_compression;
+	private volatile int m_uploadWindowSize = StreamUploadSender.DEFAULT_WINDOW_SIZE;
 	
+	/**
+	 * 주어진 서버에 접속한다.
+	 * <p>
+	 * 스트림 압축 방식은 {@link StreamCompression#forHost(String)}을 통해 서버의 주소에 따라
+	 * 결정된다.
+	 * 
+	 * @param host	서버 호스트 이름 또는 주소.
+	 * @param port	서버 포트 번호.
+	 * @return	접속된 클라이언트 객체.
+	 * @throws IOException	접속 중 오류가 발생된 경우.
+	 */
 	public static PBMarmotClient connect(String host, int port) throws IOException {
+		return connect(host, port, StreamCompression.forHost(host));
+	}
+	
+	public static PBMarmotClient connect(String host, int port, StreamCompression compression)
+		throws IOException {
 		ManagedChannel channel = ManagedChannelBuilder.forAddress(host, port)
 													.usePlaintext()
 													.build();
 		
-		return new PBMarmotClient(channel, true);
+		return new PBMarmotClient(channel, compression);
 	}
 	
 	protected PBMarmotClient(ManagedChannel channel, boolean useCompression) throws IOException {
+		this(channel, useCompression ? StreamCompression.LZ4 : StreamCompression.NONE);
+	}
+	
+	protected PBMarmotClient(ManagedChannel channel, StreamCompression compression)
+		throws IOException {
+		Preconditions.checkNotNullArgument(compression, "StreamCompression");
+		
 		m_channel = channel;
-		m_useCompression = useCompression;
+		m_compression = compression;
 		
 		m_fileService = new PBFileServiceProxy(this, channel);
 		m_dsService = new PBDataSetServiceProxy(this, channel);
@@ -83,7 +110,42 @@ public class PBMarmotClient implements MarmotRuntime {
 	}
 	
 	public boolean useCompression() {
-		return m_useCompression;
+		return m_compression.isEnabled();
+	}
+	
+	public StreamCompression getStreamCompression() {
+		return m_compression;
+	}
+	
+	/**
+	 * 이후 수행되는 스트림 송수신에 사용할 압축 방식을 설정한다.
+	 * <p>
+	 * 이미 진행 중인 스트림 송수신에는 영향을 주지 않는다.
+	 * 
+	 * @param compression	압축 방식.
+	 */
+	public void setStreamCompression(StreamCompression compression) {
+		Preconditions.checkNotNullArgument(compression, "StreamCompression");
+		
+		m_compression = compression;
+	}
+	
+	public int getUploadWindowSize() {
+		return m_uploadWindowSize;
+	}
+	
+	/**
+	 * 스트림 업로드시 서버의 응답(sync-back)을 받지 않고 연속으로 전송할 수 있는
+	 * 최대 chunk의 수를 설정한다.
+	 * <p>
+	 * 지연 시간이 긴 네트워크에서는 window 크기를 늘리면 업로드 처리율이 높아진다.
+	 * 
+	 * @param windowSize	window 크기 (chunk 갯수).
+	 */
+	public void setUploadWindowSize(int windowSize) {
+		Preconditions.checkArgument(windowSize > 0, "invalid window size: " + windowSize);
+		
+		m_uploadWindowSize = windowSize;
 	}
 	
 	public PBPlanExecutionServiceProxy getPlanExecutionService() {
@@ -164,6 +226,14 @@ public class PBMarmotClient implements MarmotRuntime {
 	public List<DataSet> getDataSetAll() {
 		return m_dsService.getDataSetAll();
 	}
+	
+	@Override
+	public List<RangeQueryEstimate> estimateRangeQueries(List<String> dsIds, Envelope range) {
+		Preconditions.checkNotNullArgument(dsIds, "dataset ids is null");
+		Preconditions.checkNotNullArgument(range, "query range is null");
+		
+		return m_dsService.estimateRangeQueries(dsIds, range);
+	}
 
 	@Override
 	public List<DataSet> getDataSetAllInDir(String folder, boolean recursive) {
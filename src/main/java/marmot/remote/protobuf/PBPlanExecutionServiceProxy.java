@@ -42,12 +42,13 @@ import marmot.proto.service.RecordSchemaResponse;
 import marmot.proto.service.SetExecutionInfoRequest;
 import marmot.proto.service.TimeoutProto;
 import marmot.proto.service.WaitForFinishedRequest;
+import marmot.protobuf.ChunkSource;
 import marmot.protobuf.PBRecordProtos;
 import marmot.protobuf.PBUtils;
+import marmot.protobuf.RecordStreamFormat;
 import marmot.support.DefaultRecord;
 import utils.Throwables;
 import utils.func.FOption;
-import utils.io.Lz4Compressions;
 import utils.stream.FStream;
 
 /**
@@ -227,6 +228,7 @@ public class PBPlanExecutionServiceProxy {
 	}
 
 	public RecordSet executeLocally(Plan plan) {
+		StreamCompression comp = m_marmot.getStreamCompression();
 		StreamDownloadReceiver downloader = new StreamDownloadReceiver();
 		StreamObserver<DownChunkResponse> channel = m_stub.executeLocally(downloader);
 
@@ -234,36 +236,35 @@ public class PBPlanExecutionServiceProxy {
 		ExecutePlanRequest req = ExecutePlanRequest.newBuilder()
 													.setPlan(plan.toProto())
 													.setOptions(DEFAULT.toProto())
-													.setUseCompression(m_marmot.useCompression())
+													.setUseCompression(comp.isEnabled())
 													.build();
 		InputStream is = downloader.start(req.toByteString(), channel);
-		if ( m_marmot.useCompression() ) {
-			is = Lz4Compressions.decompress(is);
-		}
+		is = comp.decompress(is);
 		
 		return PBRecordProtos.readRecordSet(is);
 	}
 
 	public RecordSet executeLocally(Plan plan, RecordSet input) {
+		StreamCompression comp = m_marmot.getStreamCompression();
 		try {
-			InputStream is = PBRecordProtos.toInputStream(input);
-			StreamUpnDownloadClient client = new StreamUpnDownloadClient(is) {
+			ChunkSource source = PBRecordProtos.toChunkSource(input, RecordStreamFormat.RECORD_PROTO,
+															StreamUploadSender.DEFAULT_CHUNK_SIZE);
+			StreamUpnDownloadClient client = new StreamUpnDownloadClient(source) {
 				@Override
 				protected ByteString getHeader() throws Exception {
 					ExecutePlanRequest req
 								= ExecutePlanRequest.newBuilder()
 													.setPlan(plan.toProto())
 													.setHasInputRset(true)
-													.setUseCompression(m_marmot.useCompression())
+													.setUseCompression(comp.isEnabled())
 													.build();
 					return req.toByteString();
 				}
 			};
 			
+			client.setUploadWindowSize(m_marmot.getUploadWindowSize());
 			InputStream stream = client.upAndDownload(m_stub.executeLocallyWithInput(client));
-			if ( m_marmot.useCompression() ) {
-				stream = Lz4Compressions.decompress(stream);
-			}
+			stream = comp.decompress(stream);
 			
 			return PBRecordProtos.readRecordSet(stream);
 		}
@@ -294,6 +295,7 @@ public class PBPlanExecutionServiceProxy {
 	}
 	
 	public RecordSet executeToRecordSet(Plan plan) {
+		StreamCompression comp = m_marmot.getStreamCompression();
 		StreamDownloadReceiver downloader = new StreamDownloadReceiver();
 		StreamObserver<DownChunkResponse> channel = m_stub.executeToRecordSet(downloader);
 
@@ -301,12 +303,10 @@ public class PBPlanExecutionServiceProxy {
 		ExecutePlanRequest req = ExecutePlanRequest.newBuilder()
 													.setPlan(plan.toProto())
 													.setOptions(DEFAULT.toProto())
-													.setUseCompression(m_marmot.useCompression())
+													.setUseCompression(comp.isEnabled())
 													.build();
 		InputStream is = downloader.start(req.toByteString(), channel);
-		if ( m_marmot.useCompression() ) {
-			is = Lz4Compressions.decompress(is);
-		}
+		is = comp.decompress(is);
 		
 		return PBRecordProtos.readRecordSet(is);
 	}
@@ -0,0 +1,100 @@
+package marmot.remote.protobuf;
+
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import utils.io.Lz4Compressions;
+
+/**
+ * 원격 레코드/파일 스트림 송수신시 사용할 압축 방식.
+ * <p>
+ * 압축 여부는 각 요청의 'use_compression' 필드를 통해 서버에 전달되기 때문에
+ * 서버가 지원하는 방식({@link #NONE}, {@link #LZ4})만 정의한다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public enum StreamCompression {
+	/** 압축을 사용하지 않음. */
+	NONE {
+		@Override
+		public boolean isEnabled() {
+			return false;
+		}
+
+		@Override
+		public InputStream compress(InputStream is) {
+			return is;
+		}
+
+		@Override
+		public InputStream decompress(InputStream is) {
+			return is;
+		}
+	},
+	/** LZ4 방식으로 압축함. */
+	LZ4 {
+		@Override
+		public boolean isEnabled() {
+			return true;
+		}
+
+		@Override
+		public InputStream compress(InputStream is) {
+			return Lz4Compressions.compress(is);
+		}
+
+		@Override
+		public InputStream decompress(InputStream is) {
+			return Lz4Compressions.decompress(is);
+		}
+	};
+
+	/**
+	 * 요청 메시지의 'use_compression' 필드에 설정할 값을 반환한다.
+	 *
+	 * @return	압축 사용 여부.
+	 */
+	public abstract boolean isEnabled();
+
+	/**
+	 * 주어진 입력 스트림을 압축하는 입력 스트림을 반환한다.
+	 *
+	 * @param is	입력 스트림.
+	 * @return	압축된 입력 스트림.
+	 */
+	public abstract InputStream compress(InputStream is);
+
+	/**
+	 * 주어진 압축된 입력 스트림의 압축을 해제하는 입력 스트림을 반환한다.
+	 *
+	 * @param is	압축된 입력 스트림.
+	 * @return	압축이 해제된 입력 스트림.
+	 */
+	public abstract InputStream decompress(InputStream is);
+
+	/**
+	 * 주어진 서버 호스트와의 연결에 적합한 압축 방식을 선택한다.
+	 * <p>
+	 * 로컬 또는 사설망(LAN) 주소의 경우는 전송 대역폭이 충분하여 압축이 CPU 부하만
+	 * 늘리기 때문에 {@link #NONE}을 선택하고, 그 밖의 경우는 {@link #LZ4}를 선택한다.
+	 *
+	 * @param host	서버 호스트 이름 또는 주소.
+	 * @return	압축 방식.
+	 */
+	public static StreamCompression forHost(String host) {
+		try {
+			InetAddress addr = InetAddress.getByName(host);
+			if ( addr.isLoopbackAddress() || addr.isSiteLocalAddress()
+				|| addr.isLinkLocalAddress() ) {
+				return NONE;
+			}
+			else {
+				return LZ4;
+			}
+		}
+		catch ( UnknownHostException e ) {
+			return LZ4;
+		}
+	}
+}
@@ -18,10 +18,10 @@ import utils.Throwables;
 import utils.async.AbstractThreadedExecution;
 import utils.thread.Guard;
 import utils.io.IOUtils;
-import utils.io.LimitedInputStream;
 
 import marmot.proto.service.UpChunkRequest;
 import marmot.proto.service.UpChunkResponse;
+import marmot.protobuf.ChunkSource;
 import marmot.protobuf.PBUtils;
 
 /**
@@ -30,13 +30,13 @@ import marmot.protobuf.PBUtils;
  */
 abstract class StreamUploadSender extends AbstractThreadedExecution<ByteString>
 									implements StreamObserver<UpChunkResponse> {
-	private static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
-	private static final int SYNC_INTERVAL = 4;
+	static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+	static final int DEFAULT_WINDOW_SIZE = 16;	// 16 chunks (1MB)
 	private static final int TIMEOUT = 30;		// 30s
 	
-	private final InputStream m_stream;
+	private final ChunkSource m_source;
 	private StreamObserver<UpChunkRequest> m_channel = null;
-	private int m_chunkSize = DEFAULT_CHUNK_SIZE;
+	private int m_windowSize = DEFAULT_WINDOW_SIZE;
 	
 	private final Guard m_guard = Guard.create();
 	@GuardedBy("m_guard") private int m_sync = 0;
@@ -48,9 +48,13 @@ abstract class StreamUploadSender extends AbstractThreadedExecution<ByteString>
 	abstract protected ByteString getHeader() throws Exception;
 	
 	protected StreamUploadSender(InputStream stream) {
-		Preconditions.checkNotNullArgument(stream, "Stream to upload");
+		this(ChunkSource.from(stream, DEFAULT_CHUNK_SIZE));
+	}
+	
+	protected StreamUploadSender(ChunkSource source) {
+		Preconditions.checkNotNullArgument(source, "ChunkSource to upload");
 		
-		m_stream = stream;
+		m_source = source;
 		setLogger(LoggerFactory.getLogger(StreamUploadSender.class));
 	}
 	
@@ -60,6 +64,20 @@ abstract class StreamUploadSender extends AbstractThreadedExecution<ByteString>
 		m_channel = channel;
 	}
 
+	/**
+	 * sync-back을 받지 못한 상태로 전송할 수 있는 최대 chunk의 수를 설정한다.
+	 * <p>
+	 * 송신측은 window 크기의 1/4마다 SYNC를 보내되 그 응답을 바로 기다리지 않고,
+	 * 응답받지 못한 chunk의 수가 window 크기에 도달한 경우에만 대기한다.
+	 * 
+	 * @param windowSize	window 크기 (chunk 갯수).
+	 */
+	void setWindowSize(int windowSize) {
+		Preconditions.checkArgument(windowSize > 0, "invalid window size: " + windowSize);
+		
+		m_windowSize = windowSize;
+	}
+
 	@Override
 	public ByteString executeWork() throws Exception {
 		Preconditions.checkState(m_channel != null, "Upload stream channel has not been set");
@@ -69,14 +87,18 @@ abstract class StreamUploadSender extends AbstractThreadedExecution<ByteString>
 			m_channel.onNext(HEADER(hdr));
 			getLogger().debug("sent HEADER: {}", hdr);
 			
+			int syncInterval = Math.max(1, m_windowSize / 4);
 			int chunkCount = 0;
+			int lastSync = 0;
 			while ( isRunning() ) {
-				LimitedInputStream chunkedStream = new LimitedInputStream(m_stream, m_chunkSize);
-				ByteString chunk = ByteString.readFrom(chunkedStream);
-				if ( chunk.isEmpty() ) {
+				ByteString chunk = m_source.nextChunk();
+				if ( chunk == null ) {
 					// 마지막 chunk에 대한 sync를 보내고, sync-back을 대기한다.
 					if ( m_guard.get(()->m_sync) < chunkCount ) {
-						if ( sync(chunkCount, chunkCount) < 0 ) {
+						if ( lastSync < chunkCount ) {
+							sendSync(chunkCount);
+						}
+						if ( awaitSyncBack(chunkCount) < 0 ) {
 							break;
 						}
 					}
@@ -99,12 +121,20 @@ abstract class StreamUploadSender extends AbstractThreadedExecution<ByteString>
 				++chunkCount;
 				getLogger().trace("sent CHUNK[idx={}, size={}]", chunkCount, chunk.size());
 				
-				if ( (chunkCount % SYNC_INTERVAL) == 0 ) {
+				if ( chunkCount - lastSync >= syncInterval ) {
+					sendSync(chunkCount);
+					lastSync = chunkCount;
+				}
+				
+				// sync-back을 받지 못한 chunk의 수가 window 크기에 도달한 경우에만
+				// window에 여유가 생길 때까지 대기한다. (syncInterval <= window 크기이므로
+				// 대기하는 sync 값은 이미 전송된 SYNC 값을 넘지 않는다)
+				if ( chunkCount - m_guard.get(()->m_sync) >= m_windowSize ) {
 					// 세가지 가능성 고려할 것
 					//	1. sync-back을 성공적으로 전송
 					//	2. server측에서 오류 전송
 					//	3. server측에서 connection 단절
-					if ( sync(chunkCount, chunkCount - SYNC_INTERVAL) < 0 ) {
+					if ( awaitSyncBack(chunkCount - m_windowSize + 1) < 0 ) {
 						break;
 					}
 				}
@@ -143,7 +173,7 @@ abstract class StreamUploadSender extends AbstractThreadedExecution<ByteString>
 		finally {
 			m_channel.onCompleted();
 			
-			IOUtils.closeQuietly(m_stream);
+			IOUtils.closeQuietly(m_source);
 		}
 	}
 
@@ -187,10 +217,13 @@ abstract class StreamUploadSender extends AbstractThreadedExecution<ByteString>
 		m_guard.run(() -> m_serverClosed = true);
 	}
 	
-	private int sync(int sync, int expectedSyncBack)
-		throws InterruptedException, TimeoutException {
+	private void sendSync(int sync) {
 		m_channel.onNext(SYNC(sync));
-		getLogger().debug("sent SYNC[{}] & wait for SYNC[{}]", sync, expectedSyncBack);
+		getLogger().debug("sent SYNC[{}]", sync);
+	}
+	
+	private int awaitSyncBack(int sync) throws InterruptedException, TimeoutException {
+		getLogger().debug("wait for SYNC_BACK[{}]", sync);
 		
 		Date due = new Date(System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(TIMEOUT));
 		m_guard.lock();
@@ -10,6 +10,7 @@ import utils.Preconditions;
 
 import marmot.proto.service.UpRequestDownResponse;
 import marmot.proto.service.UpResponseDownRequest;
+import marmot.protobuf.ChunkSource;
 import marmot.protobuf.PBUtils;
 import marmot.remote.protobuf.StreamObservers.ClientUpDownChannel;
 
@@ -23,10 +24,10 @@ abstract class StreamUpnDownloadClient implements StreamObserver<UpResponseDownR
 	
 	abstract protected ByteString getHeader() throws Exception;
 	
-	StreamUpnDownloadClient(InputStream stream) {
-		Preconditions.checkNotNullArgument(stream, "Stream to upload");
+	StreamUpnDownloadClient(ChunkSource source) {
+		Preconditions.checkNotNullArgument(source, "ChunkSource to upload");
 		
-		m_uploader = new StreamUploadSender(stream) {
+		m_uploader = new StreamUploadSender(source) {
 			@Override
 			protected ByteString getHeader() throws Exception {
 				return StreamUpnDownloadClient.this.getHeader();
@@ -35,6 +36,10 @@ abstract class StreamUpnDownloadClient implements StreamObserver<UpResponseDownR
 		m_downloader = new StreamDownloadReceiver();
 	}
 	
+	void setUploadWindowSize(int windowSize) {
+		m_uploader.setWindowSize(windowSize);
+	}
+	
 	InputStream upAndDownload(StreamObserver<UpRequestDownResponse> channel) {
 		Preconditions.checkNotNullArgument(channel, "UpRequestDownResponse stream channel");
 		
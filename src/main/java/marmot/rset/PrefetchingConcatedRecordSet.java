@@ -0,0 +1,102 @@
+package marmot.rset;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import utils.Preconditions;
+import utils.Throwables;
+
+import marmot.RecordSchema;
+import marmot.RecordSet;
+import marmot.RecordSetException;
+
+/**
+ * 주어진 순서대로 레코드 세트들을 연결하되, 현재 접근 중인 레코드 세트 이후의 레코드 세트들을
+ * 미리 비동기적으로 열어두는 레코드 세트.
+ * <p>
+ * 원격 스트림처럼 여는 데 시간이 걸리는 레코드 세트들을 순서를 유지하면서 최대
+ * {@code prefetchCount}개까지 동시에 읽어 들일 때 사용한다. 레코드 세트를 여는 작업은
+ * 레코드 세트마다 별도로 생성되는 최대 {@code prefetchCount}개의 쓰레드에서 수행되고,
+ * 이 쓰레드들은 레코드 세트가 닫힐 때 종료된다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class PrefetchingConcatedRecordSet extends ConcatedRecordSet {
+	private final RecordSchema m_schema;
+	private final Iterator<? extends Supplier<? extends RecordSet>> m_suppliers;
+	private final int m_prefetchCount;
+	private final Deque<CompletableFuture<? extends RecordSet>> m_prefetcheds = new ArrayDeque<>();
+	private final ThreadPoolExecutor m_executor;
+
+	public PrefetchingConcatedRecordSet(RecordSchema schema,
+										Iterable<? extends Supplier<? extends RecordSet>> suppliers,
+										int prefetchCount) {
+		Preconditions.checkNotNullArgument(schema, "schema is null");
+		Preconditions.checkNotNullArgument(suppliers, "suppliers is null");
+		Preconditions.checkArgument(prefetchCount > 0, "invalid prefetch count: " + prefetchCount);
+
+		m_schema = schema;
+		m_suppliers = suppliers.iterator();
+		m_prefetchCount = prefetchCount;
+		
+		// 호출자가 닫지 않은 경우에도 쓰레드가 남지 않도록 일정 시간 이상 쉬는 쓰레드는 종료시킨다.
+		m_executor = new ThreadPoolExecutor(prefetchCount, prefetchCount, 30, TimeUnit.SECONDS,
+											new LinkedBlockingQueue<>(), r -> {
+			Thread thread = new Thread(r, "prefetching-concat");
+			thread.setDaemon(true);
+			return thread;
+		});
+		m_executor.allowCoreThreadTimeOut(true);
+	}
+
+	@Override
+	protected void closeInGuard() {
+		// 미리 열린(또는 열리는 중인) 레코드 세트들은 열리는 대로 close 시킨다.
+		while ( !m_prefetcheds.isEmpty() ) {
+			m_prefetcheds.pollFirst().thenAccept(RecordSet::closeQuietly);
+		}
+		// 열리는 중인 레코드 세트들은 마저 열린 뒤 close되고 쓰레드들이 종료된다.
+		m_executor.shutdown();
+
+		super.closeInGuard();
+	}
+
+	@Override
+	public RecordSchema getRecordSchema() {
+		return m_schema;
+	}
+
+	@Override
+	protected RecordSet loadNext() {
+		fill();
+
+		CompletableFuture<? extends RecordSet> head = m_prefetcheds.pollFirst();
+		if ( head == null ) {
+			return null;
+		}
+		fill();
+
+		try {
+			return head.join();
+		}
+		catch ( CompletionException e ) {
+			Throwable cause = Throwables.unwrapThrowable(e);
+			Throwables.throwIfInstanceOf(cause, RecordSetException.class);
+			throw new RecordSetException(cause);
+		}
+	}
+
+	private void fill() {
+		while ( m_prefetcheds.size() < m_prefetchCount && m_suppliers.hasNext() ) {
+			Supplier<? extends RecordSet> supplier = m_suppliers.next();
+			m_prefetcheds.addLast(CompletableFuture.supplyAsync(supplier::get, m_executor));
+		}
+	}
+}
@@ -25,13 +25,30 @@ public class DefaultRecord implements Record {
 	private final RecordSchema m_schema;
 	private final Object[] m_values;
 	
+	/**
+	 * 주어진 스키마의 레코드 객체를 생성한다.
+	 * <p>
+	 * 스키마의 모든 컬럼이 primitive 타입(숫자, boolean)인 경우는 컬럼 값을 boxing 없이
+	 * 저장하는 {@link PrimitiveRecord} 객체가 생성된다.
+	 * 
+	 * @param schema	레코드 스키마.
+	 * @return	레코드 객체.
+	 */
 	public static DefaultRecord of(RecordSchema schema) {
+		if ( PrimitiveRecord.isAllPrimitive(schema) ) {
+			return PrimitiveRecord.of(schema);
+		}
+		
 		return new DefaultRecord(schema);
 	}
 	
 	protected DefaultRecord(RecordSchema schema) {
+		this(schema, new Object[schema.getColumnCount()]);
+	}
+	
+	protected DefaultRecord(RecordSchema schema, Object[] values) {
 		m_schema = schema;
-		m_values = new Object[schema.getColumnCount()];
+		m_values = values;
 	}
 	
 	/**
@@ -249,7 +266,12 @@ public class DefaultRecord implements Record {
 	
 	public static DefaultRecord fromProto(RecordSchema schema, RecordProto proto) {
 		DefaultRecord record = DefaultRecord.of(schema);
-		PBRecordProtos.fromProto(proto, schema, record.m_values);
+		if ( record instanceof PrimitiveRecord ) {
+			PBRecordProtos.fromProto(proto, record);
+		}
+		else {
+			PBRecordProtos.fromProto(proto, schema, record.m_values);
+		}
 		return record;
 	}
 }
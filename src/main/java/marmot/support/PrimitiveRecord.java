@@ -0,0 +1,446 @@
+package marmot.support;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheLoader;
+import com.google.common.cache.LoadingCache;
+
+import utils.Preconditions;
+
+import marmot.Column;
+import marmot.ColumnNotFoundException;
+import marmot.Record;
+import marmot.RecordSchema;
+import marmot.type.DataType;
+import marmot.type.TypeCode;
+
+
+/**
+ * 숫자 및 boolean 타입 컬럼 값을 boxing 없이 저장하는 레코드 클래스.
+ * <p>
+ * 정수형 컬럼(BYTE, SHORT, INT, LONG, BOOLEAN)은 {@code long[]}에,
+ * 실수형 컬럼(FLOAT, DOUBLE)은 {@code double[]}에 저장되고,
+ * 그 밖의 타입의 컬럼들만 {@code Object[]}에 저장된다.
+ * 스키마별 컬럼 배치 정보는 한번만 계산되어 재사용된다.
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class PrimitiveRecord extends DefaultRecord {
+	private static final Object[] EMPTY = new Object[0];
+	private static final Object UNDEFINED = new Object();
+	private static final byte LONG_SLOT = 0;
+	private static final byte DOUBLE_SLOT = 1;
+	private static final byte OBJECT_SLOT = 2;
+
+	private static final LoadingCache<RecordSchema,Layout> s_layouts
+				= CacheBuilder.newBuilder()
+								.maximumSize(256)
+								.build(new CacheLoader<RecordSchema,Layout>() {
+									@Override
+									public Layout load(RecordSchema schema) {
+										return new Layout(schema);
+									}
+								});
+
+	private final Layout m_layout;
+	private final long[] m_longs;
+	private final double[] m_doubles;
+	private final Object[] m_objects;
+	private final boolean[] m_nulls;
+
+	/**
+	 * 주어진 스키마의 모든 컬럼이 boxing 없이 저장될 수 있는지 여부를 반환한다.
+	 *
+	 * @param schema	레코드 스키마.
+	 * @return	모든 컬럼이 primitive 타입인 경우는 {@code true}.
+	 */
+	public static boolean isAllPrimitive(RecordSchema schema) {
+		if ( schema.getColumnCount() == 0 ) {
+			return false;
+		}
+
+		for ( Column col: schema.getColumns() ) {
+			if ( slotType(col.type()) == OBJECT_SLOT ) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	public static PrimitiveRecord of(RecordSchema schema) {
+		Preconditions.checkNotNullArgument(schema, "RecordSchema");
+
+		return new PrimitiveRecord(schema, s_layouts.getUnchecked(schema));
+	}
+
+	private PrimitiveRecord(RecordSchema schema, Layout layout) {
+		super(schema, EMPTY);
+
+		m_layout = layout;
+		m_longs = new long[layout.m_nlongs];
+		m_doubles = new double[layout.m_ndoubles];
+		m_objects = new Object[layout.m_nobjects];
+		m_nulls = new boolean[layout.m_slots.length];
+		Arrays.fill(m_nulls, true);
+	}
+
+	@Override
+	public Object get(int index) {
+		checkIndex(index);
+
+		if ( m_nulls[index] ) {
+			return null;
+		}
+
+		int slot = m_layout.m_slots[index];
+		switch ( m_layout.m_slotTypes[index] ) {
+			case LONG_SLOT:
+				long lv = m_longs[slot];
+				switch ( m_layout.m_tcs[index] ) {
+					case BYTE:
+						return (byte)lv;
+					case SHORT:
+						return (short)lv;
+					case INT:
+						return (int)lv;
+					case BOOLEAN:
+						return lv != 0;
+					default:
+						return lv;
+				}
+			case DOUBLE_SLOT:
+				double dv = m_doubles[slot];
+				return (m_layout.m_tcs[index] == TypeCode.FLOAT) ? (Object)(float)dv : (Object)dv;
+			default:
+				return m_objects[slot];
+		}
+	}
+
+	@Override
+	public Object get(String name) {
+		Preconditions.checkNotNullArgument(name, "column name");
+
+		return get(getRecordSchema().getColumn(name).ordinal());
+	}
+
+	/**
+	 * 레코드의 모든 컬럼 값들을 배열 형태로 반환한다.
+	 * <p>
+	 * 반환되는 배열은 호출시마다 새로 생성되고, primitive 컬럼 값들은 boxing되어 저장된다.
+	 *
+	 * @return	컬럼 값 배열.
+	 */
+	@Override
+	public Object[] getAll() {
+		Object[] values = new Object[m_nulls.length];
+		for ( int i =0; i < values.length; ++i ) {
+			values[i] = get(i);
+		}
+
+		return values;
+	}
+
+	@Override
+	public PrimitiveRecord set(String name, Object value) {
+		Preconditions.checkNotNullArgument(name, "column name");
+
+		return set(getRecordSchema().getColumn(name).ordinal(), value);
+	}
+
+	@Override
+	public PrimitiveRecord set(int idx, Object value) {
+		checkIndex(idx);
+
+		if ( value == null ) {
+			m_nulls[idx] = true;
+			if ( m_layout.m_slotTypes[idx] == OBJECT_SLOT ) {
+				m_objects[m_layout.m_slots[idx]] = null;
+			}
+			return this;
+		}
+
+		int slot = m_layout.m_slots[idx];
+		switch ( m_layout.m_slotTypes[idx] ) {
+			case LONG_SLOT:
+				m_longs[slot] = (m_layout.m_tcs[idx] == TypeCode.BOOLEAN)
+								? (DataUtils.asBoolean(value) ? 1 : 0)
+								: DataUtils.asLong(value);
+				break;
+			case DOUBLE_SLOT:
+				m_doubles[slot] = DataUtils.asDouble(value);
+				break;
+			default:
+				m_objects[slot] = value;
+				break;
+		}
+		m_nulls[idx] = false;
+
+		return this;
+	}
+
+	@Override
+	public PrimitiveRecord setInt(int idx, int value) {
+		return setLong(idx, value);
+	}
+
+	@Override
+	public PrimitiveRecord setLong(int idx, long value) {
+		checkIndex(idx);
+
+		switch ( m_layout.m_slotTypes[idx] ) {
+			case LONG_SLOT:
+				m_longs[m_layout.m_slots[idx]] = value;
+				break;
+			case DOUBLE_SLOT:
+				m_doubles[m_layout.m_slots[idx]] = value;
+				break;
+			default:
+				m_objects[m_layout.m_slots[idx]] = value;
+				break;
+		}
+		m_nulls[idx] = false;
+
+		return this;
+	}
+
+	@Override
+	public PrimitiveRecord setDouble(int idx, double value) {
+		checkIndex(idx);
+
+		switch ( m_layout.m_slotTypes[idx] ) {
+			case DOUBLE_SLOT:
+				m_doubles[m_layout.m_slots[idx]] = value;
+				break;
+			case LONG_SLOT:
+				m_longs[m_layout.m_slots[idx]] = (long)value;
+				break;
+			default:
+				m_objects[m_layout.m_slots[idx]] = value;
+				break;
+		}
+		m_nulls[idx] = false;
+
+		return this;
+	}
+
+	@Override
+	public int getInt(int idx) {
+		return (int)getLong(idx);
+	}
+
+	@Override
+	public long getLong(int idx) {
+		checkIndex(idx);
+
+		if ( m_nulls[idx] ) {
+			return 0;
+		}
+		switch ( m_layout.m_slotTypes[idx] ) {
+			case LONG_SLOT:
+				return m_longs[m_layout.m_slots[idx]];
+			case DOUBLE_SLOT:
+				return (long)m_doubles[m_layout.m_slots[idx]];
+			default:
+				return DataUtils.asLong(m_objects[m_layout.m_slots[idx]]);
+		}
+	}
+
+	@Override
+	public short getShort(int idx) {
+		return (short)getLong(idx);
+	}
+
+	@Override
+	public byte getByte(int idx) {
+		return (byte)getLong(idx);
+	}
+
+	@Override
+	public boolean getBoolean(int idx) {
+		return getLong(idx) != 0;
+	}
+
+	@Override
+	public double getDouble(int idx) {
+		checkIndex(idx);
+
+		if ( m_nulls[idx] ) {
+			return 0;
+		}
+		switch ( m_layout.m_slotTypes[idx] ) {
+			case DOUBLE_SLOT:
+				return m_doubles[m_layout.m_slots[idx]];
+			case LONG_SLOT:
+				return m_longs[m_layout.m_slots[idx]];
+			default:
+				return DataUtils.asDouble(m_objects[m_layout.m_slots[idx]]);
+		}
+	}
+
+	@Override
+	public float getFloat(int idx) {
+		return (float)getDouble(idx);
+	}
+
+	@Override
+	public PrimitiveRecord set(Record src) {
+		if ( src instanceof PrimitiveRecord && ((PrimitiveRecord)src).m_layout == m_layout ) {
+			PrimitiveRecord other = (PrimitiveRecord)src;
+			System.arraycopy(other.m_longs, 0, m_longs, 0, m_longs.length);
+			System.arraycopy(other.m_doubles, 0, m_doubles, 0, m_doubles.length);
+			System.arraycopy(other.m_objects, 0, m_objects, 0, m_objects.length);
+			System.arraycopy(other.m_nulls, 0, m_nulls, 0, m_nulls.length);
+		}
+		else if ( getRecordSchema().equals(src.getRecordSchema()) ) {
+			for ( int i =0; i < m_nulls.length; ++i ) {
+				set(i, src.get(i));
+			}
+		}
+		else {
+			RecordSchema srcSchema = src.getRecordSchema();
+			for ( int i =0; i < m_nulls.length; ++i ) {
+				final int idx = i;
+				srcSchema.findColumn(getRecordSchema().getColumnAt(i).name())
+						.ifPresent(srcCol -> set(idx, src.get(srcCol.ordinal())));
+			}
+		}
+
+		return this;
+	}
+
+	@Override
+	public PrimitiveRecord set(Map<String,Object> values) {
+		RecordSchema schema = getRecordSchema();
+		for ( int i =0; i < schema.getColumnCount(); ++i ) {
+			Column col = schema.getColumnAt(i);
+
+			Object value = values.getOrDefault(col.name(), UNDEFINED);
+			if ( value != UNDEFINED ) {
+				set(i, DataUtils.cast(value, col.type()));
+			}
+		}
+
+		return this;
+	}
+
+	@Override
+	public PrimitiveRecord setAll(Iterable<?> values) {
+		Iterator<?> iter = values.iterator();
+		for ( int i =0; i < m_nulls.length && iter.hasNext(); ++i ) {
+			set(i, iter.next());
+		}
+
+		return this;
+	}
+
+	@Override
+	public PrimitiveRecord setAll(Object... values) {
+		int count = Math.min(m_nulls.length, values.length);
+		for ( int i =0; i < count; ++i ) {
+			set(i, values[i]);
+		}
+
+		return this;
+	}
+
+	@Override
+	public PrimitiveRecord setAll(int start, Object[] values) {
+		Preconditions.checkArgument(start >= 0, "invalid start index");
+
+		int count = Math.min(m_nulls.length - start, values.length);
+		for ( int i =0; i < count; ++i ) {
+			set(start + i, values[i]);
+		}
+
+		return this;
+	}
+
+	@Override
+	public void clear() {
+		Arrays.fill(m_nulls, true);
+		Arrays.fill(m_objects, null);
+	}
+
+	@Override
+	public PrimitiveRecord duplicate() {
+		PrimitiveRecord copy = new PrimitiveRecord(getRecordSchema(), m_layout);
+		copy.set(this);
+
+		return copy;
+	}
+
+	@Override
+	public boolean equals(Object obj) {
+		if ( this == obj ) {
+			return true;
+		}
+		else if ( obj == null || !(obj instanceof DefaultRecord) ) {
+			return false;
+		}
+
+		return Arrays.equals(getAll(), ((DefaultRecord)obj).getAll());
+	}
+
+	private void checkIndex(int idx) {
+		if ( idx < 0 || idx >= m_nulls.length ) {
+			throw new ColumnNotFoundException("invalid column ordinal: " + idx);
+		}
+	}
+
+	private static byte slotType(DataType type) {
+		switch ( type.getTypeCode() ) {
+			case BYTE:
+			case SHORT:
+			case INT:
+			case LONG:
+			case BOOLEAN:
+				return LONG_SLOT;
+			case FLOAT:
+			case DOUBLE:
+				return DOUBLE_SLOT;
+			default:
+				return OBJECT_SLOT;
+		}
+	}
+
+	private static final class Layout {
+		private final TypeCode[] m_tcs;
+		private final byte[] m_slotTypes;
+		private final int[] m_slots;
+		private final int m_nlongs;
+		private final int m_ndoubles;
+		private final int m_nobjects;
+
+		Layout(RecordSchema schema) {
+			int ncols = schema.getColumnCount();
+			m_tcs = new TypeCode[ncols];
+			m_slotTypes = new byte[ncols];
+			m_slots = new int[ncols];
+
+			int nlongs = 0, ndoubles = 0, nobjects = 0;
+			for ( int i =0; i < ncols; ++i ) {
+				DataType type = schema.getColumnAt(i).type();
+				m_tcs[i] = type.getTypeCode();
+				m_slotTypes[i] = slotType(type);
+				switch ( m_slotTypes[i] ) {
+					case LONG_SLOT:
+						m_slots[i] = nlongs++;
+						break;
+					case DOUBLE_SLOT:
+						m_slots[i] = ndoubles++;
+						break;
+					default:
+						m_slots[i] = nobjects++;
+						break;
+				}
+			}
+			m_nlongs = nlongs;
+			m_ndoubles = ndoubles;
+			m_nobjects = nobjects;
+		}
+	}
+}
@@ -1,6 +1,6 @@
 package marmot.support;
 
-import java.util.Arrays;
+import java.util.AbstractList;
 import java.util.Collection;
 import java.util.Map;
 import java.util.Set;
@@ -102,7 +102,18 @@ public class RecordMap implements Map<String,Object> {
 
 	@Override
 	public Collection<Object> values() {
-		return Arrays.asList(m_record.getAll());
+		// 레코드 값 배열을 복사하지 않도록 레코드를 직접 접근하는 뷰를 반환한다.
+		return new AbstractList<Object>() {
+			@Override
+			public Object get(int index) {
+				return m_record.get(index);
+			}
+
+			@Override
+			public int size() {
+				return m_record.getColumnCount();
+			}
+		};
 	}
 	
 	@Override
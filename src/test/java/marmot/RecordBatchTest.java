@@ -0,0 +1,79 @@
+package marmot;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import marmot.RecordBatch.VectorType;
+import marmot.support.DefaultRecord;
+import marmot.type.DataType;
+
+
+/**
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class RecordBatchTest {
+	private RecordSchema m_schema;
+	private Geometry m_pt;
+
+	@Before
+	public void setup() {
+		m_schema = RecordSchema.builder()
+								.addColumn("the_geom", DataType.POINT)
+								.addColumn("id", DataType.STRING)
+								.addColumn("count", DataType.INT)
+								.addColumn("total", DataType.LONG)
+								.addColumn("value", DataType.DOUBLE)
+								.build();
+		m_pt = new GeometryFactory().createPoint(new Coordinate(1, 2));
+	}
+
+	@Test
+	public void test01() throws Exception {
+		RecordBatch batch = RecordBatch.of(m_schema, 100);
+		Assert.assertEquals(VectorType.GEOMETRY, batch.getVectorType(0));
+		Assert.assertEquals(VectorType.OBJECT, batch.getVectorType(1));
+		Assert.assertEquals(VectorType.INT, batch.getVectorType(2));
+		Assert.assertEquals(VectorType.LONG, batch.getVectorType(3));
+		Assert.assertEquals(VectorType.DOUBLE, batch.getVectorType(4));
+
+		Record rec = DefaultRecord.of(m_schema);
+		batch.add(rec.setAll(m_pt, "a", 1, 10L, 1.5));
+		batch.add(rec.setAll(null, "b", null, 20L, null));
+
+		Assert.assertEquals(2, batch.size());
+		Assert.assertEquals(m_pt, batch.getGeometry(0, 0));
+		Assert.assertEquals(1, batch.getInt(0, 2));
+		Assert.assertEquals(10L, batch.getLong(0, 3));
+		Assert.assertEquals(1.5, batch.getDouble(0, 4), 0);
+
+		Assert.assertTrue(batch.isNull(1, 0));
+		Assert.assertTrue(batch.isNull(1, 2));
+		Assert.assertTrue(batch.isNull(1, 4));
+		Assert.assertFalse(batch.isNull(1, 3));
+		Assert.assertEquals(null, batch.get(1, 2));
+
+		Record copy = batch.copyTo(0, DefaultRecord.of(m_schema));
+		Assert.assertEquals(1, copy.get(2));
+		Assert.assertEquals(1.5, copy.get(4));
+	}
+
+	@Test
+	public void test02() throws Exception {
+		Record rec = DefaultRecord.of(m_schema);
+		RecordSet rset = RecordSet.of(rec.setAll(m_pt, "a", 1, 1L, 1.0).duplicate(),
+									rec.setAll(m_pt, "b", 2, 2L, 2.0).duplicate(),
+									rec.setAll(m_pt, "c", 3, 3L, 3.0).duplicate());
+
+		RecordBatch batch = RecordBatch.of(m_schema, 2);
+		Assert.assertEquals(2, rset.nextBatch(batch));
+		Assert.assertEquals("b", batch.get(1, 1));
+		Assert.assertEquals(1, rset.nextBatch(batch));
+		Assert.assertEquals(3, batch.getInt(0, 2));
+		Assert.assertEquals(0, rset.nextBatch(batch));
+	}
+}
@@ -0,0 +1,174 @@
+package marmot.dataset;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Proxy;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import utils.func.FOption;
+
+import marmot.Record;
+import marmot.RecordSchema;
+import marmot.RecordSet;
+import marmot.geo.catalog.SpatialIndexInfo;
+import marmot.support.DefaultRecord;
+import marmot.type.DataType;
+
+
+/**
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class DataSetReadParallelTest {
+	private static final int CLUSTER_SIZE = 10;
+	private static final String[] QUAD_KEYS = new String[] {"1", "0", "2"};
+
+	private final AtomicInteger m_readCount = new AtomicInteger(0);
+	private final AtomicInteger m_clusterReadCount = new AtomicInteger(0);
+
+	@Before
+	public void setup() {
+		m_readCount.set(0);
+		m_clusterReadCount.set(0);
+	}
+
+	@Test
+	public void test01() throws Exception {
+		// 클러스터링 되지 않은 경우
+		DataSet ds = stub(DataType.POINT, false, 0);
+		Assert.assertEquals(QUAD_KEYS.length * CLUSTER_SIZE, readIds(ds.readParallel(4)).size());
+		Assert.assertEquals(1, m_readCount.get());
+		Assert.assertEquals(0, m_clusterReadCount.get());
+	}
+
+	@Test
+	public void test02() throws Exception {
+		// 점이 아닌 공간 데이터인 경우
+		DataSet ds = stub(DataType.POLYGON, true, 0);
+		Assert.assertEquals(QUAD_KEYS.length * CLUSTER_SIZE, readIds(ds.readParallel(4)).size());
+		Assert.assertEquals(1, m_readCount.get());
+		Assert.assertEquals(0, m_clusterReadCount.get());
+	}
+
+	@Test
+	public void test03() throws Exception {
+		// 공간 인덱스의 레코드 수가 데이터세트의 레코드 수와 다른 경우
+		DataSet ds = stub(DataType.POINT, true, 1);
+		Assert.assertEquals(QUAD_KEYS.length * CLUSTER_SIZE, readIds(ds.readParallel(4)).size());
+		Assert.assertEquals(1, m_readCount.get());
+		Assert.assertEquals(0, m_clusterReadCount.get());
+	}
+
+	@Test
+	public void test04() throws Exception {
+		// 순서를 유지하는 경우는 quad-key 순서대로 클러스터들이 연결된다.
+		DataSet ds = stub(DataType.POINT, true, 0);
+		List<Integer> ids = readIds(ds.readParallel(2, true));
+
+		List<Integer> expected = Lists.newArrayList();
+		for ( int i =0; i < CLUSTER_SIZE; ++i ) { expected.add(CLUSTER_SIZE + i); }		// "0"
+		for ( int i =0; i < CLUSTER_SIZE; ++i ) { expected.add(i); }					// "1"
+		for ( int i =0; i < CLUSTER_SIZE; ++i ) { expected.add(2*CLUSTER_SIZE + i); }	// "2"
+		Assert.assertEquals(expected, ids);
+		Assert.assertEquals(0, m_readCount.get());
+		Assert.assertEquals(QUAD_KEYS.length, m_clusterReadCount.get());
+	}
+
+	@Test
+	public void test05() throws Exception {
+		// 순서를 유지하지 않는 경우도 모든 레코드가 한번씩만 반환된다.
+		DataSet ds = stub(DataType.POINT, true, 0);
+		List<Integer> ids = readIds(ds.readParallel(2, false));
+		ids.sort(Integer::compare);
+
+		List<Integer> expected = Lists.newArrayList();
+		for ( int i =0; i < QUAD_KEYS.length * CLUSTER_SIZE; ++i ) {
+			expected.add(i);
+		}
+		Assert.assertEquals(expected, ids);
+		Assert.assertEquals(0, m_readCount.get());
+		Assert.assertEquals(QUAD_KEYS.length, m_clusterReadCount.get());
+	}
+
+	private static List<Integer> readIds(RecordSet rset) {
+		List<Integer> ids = Lists.newArrayList();
+		try ( RecordSet closeable = rset ) {
+			closeable.forEach(r -> ids.add(r.getInt("id")));
+		}
+		return ids;
+	}
+
+	/**
+	 * 클러스터 "1", "0", "2"에 각각 0~9, 10~19, 20~29 식별자의 레코드를 갖는
+	 * 데이터세트를 생성한다.
+	 */
+	private DataSet stub(DataType geomType, boolean clustered, long missingCount) {
+		RecordSchema schema = RecordSchema.builder()
+										.addColumn("the_geom", geomType)
+										.addColumn("id", DataType.INT)
+										.build();
+		GeometryColumnInfo gcInfo = new GeometryColumnInfo("the_geom", "EPSG:4326");
+
+		GeometryFactory fact = new GeometryFactory();
+		Map<String,List<Record>> clusters = Maps.newHashMap();
+		List<Record> all = Lists.newArrayList();
+		for ( int i =0; i < QUAD_KEYS.length; ++i ) {
+			List<Record> records = Lists.newArrayList();
+			for ( int j =0; j < CLUSTER_SIZE; ++j ) {
+				int id = i * CLUSTER_SIZE + j;
+				Object geom = (geomType == DataType.POINT)
+							? fact.createPoint(new Coordinate(id, id)) : null;
+				records.add(DefaultRecord.of(schema).setAll(geom, id));
+			}
+			clusters.put(QUAD_KEYS[i], records);
+			all.addAll(records);
+		}
+
+		SpatialIndexInfo idxInfo = new SpatialIndexInfo("test", gcInfo);
+		idxInfo.setClusterCount(QUAD_KEYS.length);
+		idxInfo.setRecordCount(all.size());
+		idxInfo.setNonDuplicatedRecordCount(all.size() - missingCount);
+
+		InvocationHandler handler = (proxy, method, args) -> {
+			switch ( method.getName() ) {
+				case "getRecordSchema":
+					return schema;
+				case "hasGeometryColumn":
+					return true;
+				case "getGeometryColumnInfo":
+					return gcInfo;
+				case "getRecordCount":
+					return (long)all.size();
+				case "isSpatiallyClustered":
+					return clustered;
+				case "getSpatialIndexInfo":
+					return FOption.of(idxInfo);
+				case "getClusterQuadKeyAll":
+					return clusters.keySet();
+				case "read":
+					m_readCount.incrementAndGet();
+					return RecordSet.from(schema, all);
+				case "readSpatialCluster":
+					m_clusterReadCount.incrementAndGet();
+					return RecordSet.from(schema, clusters.get((String)args[0]));
+				default:
+					if ( method.isDefault() ) {
+						return InvocationHandler.invokeDefault(proxy, method, args);
+					}
+					throw new UnsupportedOperationException(method.getName());
+			}
+		};
+		return (DataSet)Proxy.newProxyInstance(DataSet.class.getClassLoader(),
+												new Class<?>[] {DataSet.class}, handler);
+	}
+}
@@ -0,0 +1,67 @@
+package marmot.externio.csv;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import com.google.common.collect.Lists;
+
+
+/**
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class CsvChunkReaderTest {
+	private static List<String> split(String csv, CsvParameters params, int chunkSize)
+		throws Exception {
+		byte[] bytes = csv.getBytes(StandardCharsets.UTF_8);
+		try ( CsvChunkReader reader = new CsvChunkReader(new ByteArrayInputStream(bytes),
+														params, chunkSize) ) {
+			List<String> chunks = Lists.newArrayList();
+			byte[] chunk;
+			while ( (chunk = reader.next()) != null ) {
+				chunks.add(new String(chunk, StandardCharsets.UTF_8));
+			}
+			return chunks;
+		}
+	}
+
+	@Test
+	public void test01() throws Exception {
+		List<String> chunks = split("a,b\nc,d\ne,f", CsvParameters.create(), 3);
+		Assert.assertEquals(Lists.newArrayList("a,b\n", "c,d\n", "e,f"), chunks);
+	}
+
+	@Test
+	public void test02() throws Exception {
+		CsvParameters params = CsvParameters.create().quote('"');
+		List<String> chunks = split("\"a\nb\",c\n\"x\"\"\ny\",z\n", params, 1);
+		Assert.assertEquals(Lists.newArrayList("\"a\nb\",c\n", "\"x\"\"\ny\",z\n"), chunks);
+	}
+
+	@Test
+	public void test03() throws Exception {
+		// 필드 중간의 따옴표는 일반 문자로 취급된다.
+		CsvParameters params = CsvParameters.create().quote('"');
+		List<String> chunks = split("a\"b,c\nd,e\n", params, 1);
+		Assert.assertEquals(Lists.newArrayList("a\"b,c\n", "d,e\n"), chunks);
+	}
+
+	@Test
+	public void test04() throws Exception {
+		CsvParameters params = CsvParameters.create().escape('\\');
+		List<String> chunks = split("a\\\nb,c\nd,e\n", params, 1);
+		Assert.assertEquals(Lists.newArrayList("a\\\nb,c\n", "d,e\n"), chunks);
+	}
+
+	@Test
+	public void test05() throws Exception {
+		Assert.assertTrue(CsvChunkReader.isSplittable(CsvParameters.create()));
+		Assert.assertFalse(CsvChunkReader.isSplittable(CsvParameters.create()
+																.charset(StandardCharsets.UTF_16)));
+		Assert.assertTrue(CsvChunkReader.isSplittable(CsvParameters.create().charset("MS949")));
+	}
+}
@@ -0,0 +1,58 @@
+package marmot.externio.csv;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+
+/**
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class CsvFieldDecoderTest {
+	@Test
+	public void test01() throws Exception {
+		Assert.assertEquals(0L, CsvFieldDecoder.parseLong("0"));
+		Assert.assertEquals(-123L, CsvFieldDecoder.parseLong(" -123 "));
+		Assert.assertEquals(45L, CsvFieldDecoder.parseLong("+45"));
+		Assert.assertEquals(Long.MAX_VALUE, CsvFieldDecoder.parseLong(Long.toString(Long.MAX_VALUE)));
+	}
+
+	@Test(expected=NumberFormatException.class)
+	public void test02() throws Exception {
+		CsvFieldDecoder.parseLong("12a");
+	}
+
+	@Test
+	public void test03() throws Exception {
+		String[] samples = { "0", "-0", "1.", ".5", "127.0276", "-37.5665123", " 3.14159 ",
+							"0.1", "0.3", "123456789012345.678", "9007199254740993", "1e10",
+							"1.7976931348623157E308", "0.000000000000000000000123", "NaN" };
+		for ( String str: samples ) {
+			Assert.assertEquals(str, Double.parseDouble(str), CsvFieldDecoder.parseDouble(str), 0);
+		}
+		Assert.assertEquals(Double.doubleToLongBits(-0.0),
+							Double.doubleToLongBits(CsvFieldDecoder.parseDouble("-0")));
+	}
+
+	@Test(expected=NumberFormatException.class)
+	public void test04() throws Exception {
+		CsvFieldDecoder.parseDouble("1.2.3");
+	}
+
+	@Test
+	public void test05() throws Exception {
+		Assert.assertEquals(Integer.MIN_VALUE, CsvFieldDecoder.parseInt(Integer.toString(Integer.MIN_VALUE)));
+		Assert.assertEquals((short)-32768, CsvFieldDecoder.parseShort("-32768"));
+		Assert.assertEquals((byte)127, CsvFieldDecoder.parseByte(" 127 "));
+	}
+
+	@Test(expected=NumberFormatException.class)
+	public void test06() throws Exception {
+		CsvFieldDecoder.parseShort("70000");
+	}
+
+	@Test(expected=NumberFormatException.class)
+	public void test07() throws Exception {
+		CsvFieldDecoder.parseByte("128");
+	}
+}
@@ -0,0 +1,65 @@
+package marmot.externio.csv;
+
+import java.io.BufferedReader;
+import java.io.StringReader;
+import java.util.Arrays;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.locationtech.jts.geom.Point;
+
+import marmot.Record;
+import marmot.RecordBatch;
+import marmot.RecordSet;
+
+
+/**
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class CsvRecordSetTest {
+	private static final String CSV = "id:int,name,x:double,y:double\n"
+									+ "1,a,127.5,37.5\n"
+									+ "2,,126.9,\n"
+									+ "3,c,128.1,35.1\n";
+
+	private static RecordSet open() throws Exception {
+		CsvParameters params = CsvParameters.create().headerFirst(true);
+		return CsvRecordSet.from("test", new BufferedReader(new StringReader(CSV)), params);
+	}
+
+	@Test
+	public void test01() throws Exception {
+		try ( RecordSet rset = open() ) {
+			RecordBatch batch = RecordBatch.of(rset.getRecordSchema(), 2);
+
+			Assert.assertEquals(2, rset.nextBatch(batch));
+			Assert.assertArrayEquals(new int[] {1, 2}, Arrays.copyOf(batch.getIntVector(0), 2));
+			Assert.assertEquals(127.5, batch.getDouble(0, 2), 0);
+			Assert.assertTrue(batch.isNull(1, 1));
+			Assert.assertTrue(batch.isNull(1, 3));
+
+			Assert.assertEquals(1, rset.nextBatch(batch));
+			Assert.assertEquals("c", batch.get(0, 1));
+			Assert.assertFalse(batch.isNull(0, 3));
+
+			Assert.assertEquals(0, rset.nextBatch(batch));
+		}
+	}
+
+	@Test
+	public void test02() throws Exception {
+		try ( RecordSet rset = new CsvPointRecordSet(open(), "x", "y", "the_geom", null) ) {
+			Record first = rset.nextCopy();
+			Assert.assertEquals(127.5, ((Point)first.get("the_geom")).getX(), 0);
+			Assert.assertEquals(1, first.get("id"));
+
+			Record second = rset.nextCopy();
+			Assert.assertNull(second.get("the_geom"));
+			Assert.assertNull(second.get("name"));
+
+			Assert.assertNotNull(rset.nextCopy());
+			Assert.assertNull(rset.nextCopy());
+		}
+	}
+}
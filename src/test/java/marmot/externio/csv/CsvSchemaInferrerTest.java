@@ -0,0 +1,56 @@
+package marmot.externio.csv;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.csv.CSVRecord;
+import org.junit.Assert;
+import org.junit.Test;
+
+import marmot.RecordSchema;
+import marmot.type.DataType;
+
+
+/**
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class CsvSchemaInferrerTest {
+	private static List<CSVRecord> parse(CsvParameters params, String csv) throws Exception {
+		return CsvRecordSet.toCsvFormat(params).parse(new StringReader(csv)).getRecords();
+	}
+
+	@Test
+	public void test01() throws Exception {
+		CsvParameters params = CsvParameters.create().quote('"');
+		List<CSVRecord> samples = parse(params,
+										"1,10000000000,1.5,2020-01-02 10:00:00,007,\"POINT (1 2)\",a,127.1,37.5\n"
+										+ "2,3,2,2021-12-31T23:59:59,010,\"POINT (3 4)\",,126.9,35.1\n");
+		List<String> specs = Arrays.asList("id", "big", "value", "ts", "code", "geom", "name:int", "lon", "lat");
+
+		CsvSchemaInferrer.Result result = CsvSchemaInferrer.infer(specs, samples, params);
+		RecordSchema schema = result.getRecordSchema();
+		Assert.assertEquals(DataType.LONG, schema.getColumn("id").type());
+		Assert.assertEquals(DataType.LONG, schema.getColumn("big").type());
+		Assert.assertEquals(DataType.DOUBLE, schema.getColumn("value").type());
+		Assert.assertEquals(DataType.DATETIME, schema.getColumn("ts").type());
+		Assert.assertEquals(DataType.STRING, schema.getColumn("code").type());
+		Assert.assertEquals(DataType.POINT, schema.getColumn("geom").type());
+		Assert.assertEquals(DataType.INT, schema.getColumn("name").type());
+		Assert.assertEquals("lon", result.getPointColumns().get()._1);
+		Assert.assertEquals("lat", result.getPointColumns().get()._2);
+	}
+
+	@Test
+	public void test02() throws Exception {
+		CsvParameters params = CsvParameters.create();
+		List<CSVRecord> samples = parse(params, "x,1\n,2\n");
+		CsvSchemaInferrer.Result result = CsvSchemaInferrer.infer(Arrays.asList("a", "b", "c"),
+																	samples, params);
+		Assert.assertEquals(DataType.STRING, result.getRecordSchema().getColumn("a").type());
+		Assert.assertEquals(DataType.LONG, result.getRecordSchema().getColumn("b").type());
+		Assert.assertEquals(DataType.STRING, result.getRecordSchema().getColumn("c").type());
+		Assert.assertFalse(result.getPointColumns().isPresent());
+	}
+}
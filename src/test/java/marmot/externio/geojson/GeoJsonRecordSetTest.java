@@ -0,0 +1,87 @@
+package marmot.externio.geojson;
+
+import java.io.StringReader;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.MultiPolygon;
+
+import marmot.Record;
+import marmot.RecordSchema;
+import marmot.type.DataType;
+
+
+/**
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class GeoJsonRecordSetTest {
+	private static final String GEOJSON
+		= "{\"type\":\"FeatureCollection\",\"crs\":{\"type\":\"name\",\"properties\":{}},\"features\":["
+		+ "{\"type\":\"Feature\",\"properties\":{\"id\":1,\"name\":\"a\",\"area\":1.5,\"tag\":[1,2]},"
+		+ "\"geometry\":{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[1,0],[1,1],[0,1]]]}},"
+		+ "{\"type\":\"Feature\",\"geometry\":{\"coordinates\":[[[[0,0,5],[2,0,5],[2,2,5],[0,0,5]]]],"
+		+ "\"type\":\"MultiPolygon\"},\"properties\":{\"id\":10000000000,\"area\":2,\"flag\":true}},"
+		+ "{\"type\":\"Feature\",\"geometry\":null,\"properties\":null}"
+		+ "]}";
+
+	@Test
+	public void test01() throws Exception {
+		try ( GeoJsonRecordSet rset = new GeoJsonRecordSet(new StringReader(GEOJSON), "the_geom", null) ) {
+			RecordSchema schema = rset.getRecordSchema();
+			Assert.assertEquals(0, schema.getColumn("the_geom").ordinal());
+			Assert.assertEquals(DataType.MULTI_POLYGON, schema.getColumn("the_geom").type());
+			Assert.assertEquals(DataType.LONG, schema.getColumn("id").type());
+			Assert.assertEquals(DataType.STRING, schema.getColumn("name").type());
+			Assert.assertEquals(DataType.DOUBLE, schema.getColumn("area").type());
+			Assert.assertEquals(DataType.STRING, schema.getColumn("tag").type());
+			Assert.assertEquals(DataType.BOOLEAN, schema.getColumn("flag").type());
+
+			List<Record> records = rset.fstream().toList();
+			Assert.assertEquals(3, records.size());
+
+			Geometry geom = (Geometry)records.get(0).get("the_geom");
+			Assert.assertTrue(geom instanceof MultiPolygon);
+			Assert.assertEquals(1.0, geom.getArea(), 1e-9);
+			Assert.assertEquals(5, geom.getNumPoints());
+			Assert.assertEquals(1L, records.get(0).get("id"));
+			Assert.assertEquals("[1,2]", records.get(0).get("tag"));
+
+			geom = (Geometry)records.get(1).get("the_geom");
+			Assert.assertEquals(5.0, geom.getCoordinate().getZ(), 1e-9);
+			Assert.assertEquals(2.0, records.get(1).get("area"));
+			Assert.assertEquals(true, records.get(1).get("flag"));
+			Assert.assertNull(records.get(1).get("name"));
+
+			Assert.assertNull(records.get(2).get("the_geom"));
+			Assert.assertNull(records.get(2).get("id"));
+		}
+	}
+
+	@Test
+	public void test02() throws Exception {
+		// 표본 이후 feature의 속성 값은 표본으로 결정된 타입으로 변환되고,
+		// 스키마에 없는 속성은 무시된다.
+		String geojson = "{\"features\":["
+						+ "{\"geometry\":{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[1,0],[1,1],[0,0]]]},"
+						+ "\"properties\":{\"id\":1,\"area\":0.5}},"
+						+ "{\"geometry\":{\"type\":\"Polygon\",\"coordinates\":[[[0,0],[2,0],[2,2],[0,0]]]},"
+						+ "\"properties\":{\"id\":2,\"area\":2,\"flag\":true}}"
+						+ "]}";
+		try ( GeoJsonRecordSet rset = new GeoJsonRecordSet(new StringReader(geojson), "geometry",
+															null, 1) ) {
+			RecordSchema schema = rset.getRecordSchema();
+			Assert.assertEquals(DataType.POLYGON, schema.getColumn("geometry").type());
+			Assert.assertEquals(DataType.LONG, schema.getColumn("id").type());
+			Assert.assertFalse(schema.existsColumn("flag"));
+
+			List<Record> records = rset.fstream().toList();
+			Assert.assertEquals(2, records.size());
+			Assert.assertEquals(2L, records.get(1).get("id"));
+			Assert.assertEquals(2.0, records.get(1).get("area"));
+			Assert.assertEquals(2.0, ((Geometry)records.get(1).get("geometry")).getArea(), 1e-9);
+		}
+	}
+}
@@ -0,0 +1,61 @@
+package marmot.geo.query;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import marmot.Record;
+import marmot.RecordSchema;
+import marmot.support.DefaultRecord;
+import marmot.type.DataType;
+
+
+/**
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class LevelOfDetailTest {
+	private RecordSchema m_schema;
+	private GeometryFactory m_fact;
+
+	@Before
+	public void setup() {
+		m_schema = RecordSchema.builder()
+								.addColumn("the_geom", DataType.POLYGON)
+								.addColumn("id", DataType.INT)
+								.build();
+		m_fact = new GeometryFactory();
+	}
+
+	@Test
+	public void test01() throws Exception {
+		Geometry circle = m_fact.createPoint(new Coordinate(0, 0)).buffer(100, 32);
+		Record record = DefaultRecord.of(m_schema).setAll(circle, 1);
+
+		LevelOfDetail lod = LevelOfDetail.forPixelSize("the_geom", 10);
+		Assert.assertEquals(3, lod.getLevel());
+		Assert.assertEquals(8, lod.getPixelSize(), 0);
+		Record simplified = lod.apply(record);
+
+		// 인자 레코드는 갱신되지 않아야 한다.
+		Assert.assertNotSame(record, simplified);
+		Assert.assertSame(circle, record.getGeometry("the_geom"));
+		Assert.assertEquals(circle.getNumPoints(), record.getGeometry("the_geom").getNumPoints());
+
+		Geometry geom = simplified.getGeometry("the_geom");
+		Assert.assertTrue(geom.getNumPoints() < circle.getNumPoints());
+		Assert.assertEquals(1, simplified.getInt("id"));
+	}
+
+	@Test
+	public void test02() throws Exception {
+		// 단순화 대상이 아닌 레코드는 그대로 반환된다.
+		Record record = DefaultRecord.of(m_schema).setAll(null, 2);
+
+		LevelOfDetail lod = LevelOfDetail.forPixelSize("the_geom", 10);
+		Assert.assertSame(record, lod.apply(record));
+	}
+}
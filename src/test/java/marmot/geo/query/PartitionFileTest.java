@@ -0,0 +1,128 @@
+package marmot.geo.query;
+
+import java.io.File;
+import java.util.BitSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import marmot.Record;
+import marmot.RecordSchema;
+import marmot.RecordSet;
+import marmot.support.DefaultRecord;
+import marmot.type.DataType;
+
+
+/**
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class PartitionFileTest {
+	private static final int COUNT = 200;
+	private static final long STAMP = 0x1234L;
+
+	@Rule public TemporaryFolder m_tempDir = new TemporaryFolder();
+
+	private RecordSchema m_schema;
+	private List<Record> m_records;
+	private List<Envelope> m_envls;
+
+	@Before
+	public void setup() {
+		m_schema = RecordSchema.builder()
+								.addColumn("the_geom", DataType.POINT)
+								.addColumn("id", DataType.INT)
+								.build();
+
+		GeometryFactory fact = new GeometryFactory();
+		m_records = Lists.newArrayList();
+		m_envls = Lists.newArrayList();
+		for ( int i =0; i < COUNT; ++i ) {
+			// 마지막 레코드는 공간 정보를 갖지 않는다.
+			Point pt = (i < COUNT-1) ? fact.createPoint(new Coordinate(i, i)) : null;
+			m_records.add(DefaultRecord.of(m_schema).setAll(pt, i));
+			m_envls.add((pt != null) ? pt.getEnvelopeInternal() : new Envelope());
+		}
+	}
+
+	@Test
+	public void test01() throws Exception {
+		File file = m_tempDir.newFile();
+		long count = PartitionFile.write(RecordSet.from(m_schema, m_records), 0, file, 512, STAMP);
+		Assert.assertEquals(COUNT, count);
+
+		PartitionFile pfile = PartitionFile.open(file);
+		try {
+			Assert.assertEquals(COUNT, pfile.getRecordCount());
+			Assert.assertEquals(STAMP, pfile.getStamp());
+			Assert.assertTrue(pfile.getBlockCount() > 1);
+
+			Set<Integer> ids = Sets.newHashSet();
+			try ( RecordSet rset = pfile.read(m_schema, 2) ) {
+				rset.forEach(r -> ids.add(r.getInt(1)));
+			}
+			Assert.assertEquals(COUNT, ids.size());
+		}
+		finally {
+			pfile.close();
+		}
+	}
+
+	@Test
+	public void test02() throws Exception {
+		File file = m_tempDir.newFile();
+		File idxFile = m_tempDir.newFile();
+		PartitionFile.write(RecordSet.from(m_schema, m_records), 0, file, 512, STAMP);
+		PartitionIndex.write(m_envls, STAMP, idxFile);
+
+		PartitionIndex idx = PartitionIndex.read(idxFile);
+		Assert.assertEquals(COUNT, idx.getRecordCount());
+		Assert.assertEquals(STAMP, idx.getStamp());
+
+		Envelope range = new Envelope(10, 19.5, 10, 19.5);
+		BitSet candidates = idx.query(range);
+		Assert.assertEquals(10, candidates.cardinality());
+		Assert.assertEquals(10, candidates.nextSetBit(0));
+
+		PartitionFile pfile = PartitionFile.open(file);
+		try {
+			List<Integer> ids = Lists.newArrayList();
+			try ( RecordSet rset = pfile.query(m_schema, range, candidates) ) {
+				rset.forEach(r -> ids.add(r.getInt(1)));
+			}
+			Assert.assertEquals(Lists.newArrayList(10, 11, 12, 13, 14, 15, 16, 17, 18, 19), ids);
+		}
+		finally {
+			pfile.close();
+		}
+	}
+
+	@Test
+	public void test03() throws Exception {
+		File file = m_tempDir.newFile();
+		PartitionFile.write(RecordSet.from(m_schema, m_records), 0, file, 512, STAMP);
+
+		// 참조를 갖고 있는 동안은 파일이 닫히더라도 계속 읽을 수 있어야 한다.
+		PartitionFile pfile = PartitionFile.open(file);
+		Assert.assertTrue(pfile.acquire());
+		pfile.close();
+		try ( RecordSet rset = pfile.read(m_schema, 1) ) {
+			Assert.assertEquals(COUNT, rset.count());
+		}
+		pfile.release();
+
+		Assert.assertFalse(pfile.acquire());
+	}
+}
@@ -0,0 +1,69 @@
+package marmot.geo.query;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Envelope;
+
+import marmot.geo.query.RangeQueryEstimate.ClusterEstimate;
+
+
+/**
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class RangeQueryEstimateTest {
+	private RangeQueryEstimate m_est;
+
+	@Before
+	public void setup() {
+		m_est = new RangeQueryEstimate("ds", new Envelope(0, 10, 0, 10),
+										Arrays.asList(new ClusterEstimate("1320", 100, 10),
+													new ClusterEstimate("1321", 200, 20),
+													new ClusterEstimate("1330", 300, 30),
+													new ClusterEstimate("0", 50, 5)));
+	}
+
+	@Test
+	public void test01() throws Exception {
+		Assert.assertEquals(65, m_est.getMatchCount());
+		Assert.assertEquals(200, m_est.getClusterEstimate("1321").get().getTotalCount());
+		Assert.assertTrue(m_est.getClusterEstimate("132").isAbsent());
+	}
+
+	@Test
+	public void test02() throws Exception {
+		List<ClusterEstimate> ests = m_est.getClusterEstimatesUnder("132");
+		Assert.assertEquals(2, ests.size());
+		Assert.assertEquals("1320", ests.get(0).getQuadKey());
+		Assert.assertEquals("1321", ests.get(1).getQuadKey());
+
+		Assert.assertEquals(3, m_est.getClusterEstimatesUnder("13").size());
+		Assert.assertEquals(4, m_est.getClusterEstimatesUnder("").size());
+		Assert.assertEquals(0, m_est.getClusterEstimatesUnder("2").size());
+	}
+
+	@Test
+	public void test03() throws Exception {
+		Assert.assertEquals("0", m_est.getEnclosingClusterEstimate("0123").get().getQuadKey());
+		Assert.assertEquals("1330", m_est.getEnclosingClusterEstimate("1330").get().getQuadKey());
+		Assert.assertTrue(m_est.getEnclosingClusterEstimate("13").isAbsent());
+	}
+
+	@Test
+	public void test04() throws Exception {
+		RangeQueryEstimate other = new RangeQueryEstimate("ds", new Envelope(10, 20, 0, 5),
+										Arrays.asList(new ClusterEstimate("1321", 200, 190),
+													new ClusterEstimate("2000", 40, 4)));
+		RangeQueryEstimate merged = m_est.merge(other);
+
+		Assert.assertEquals(new Envelope(0, 20, 0, 10), merged.getRange());
+		Assert.assertEquals(5, merged.getClusterEstimates().size());
+		Assert.assertEquals(200, merged.getClusterEstimate("1321").get().getMatchCount());
+		Assert.assertEquals(4, merged.getClusterEstimate("2000").get().getMatchCount());
+		Assert.assertEquals(10+200+30+5+4, merged.getMatchCount());
+	}
+}
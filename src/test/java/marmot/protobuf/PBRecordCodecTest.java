@@ -0,0 +1,171 @@
+package marmot.protobuf;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+
+import com.google.common.collect.Lists;
+import com.google.protobuf.ByteString;
+import com.google.protobuf.CodedInputStream;
+import com.google.protobuf.CodedOutputStream;
+import com.google.protobuf.UnknownFieldSet;
+
+import utils.async.StartableExecution;
+
+import marmot.Record;
+import marmot.RecordSchema;
+import marmot.RecordSet;
+import marmot.proto.RecordProto;
+import marmot.proto.ValueProto;
+import marmot.support.DefaultRecord;
+import marmot.type.DataType;
+
+
+/**
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class PBRecordCodecTest {
+	private RecordSchema m_schema;
+	private Record m_record;
+
+	@Before
+	public void setup() {
+		m_schema = RecordSchema.builder()
+								.addColumn("the_geom", DataType.POLYGON)
+								.addColumn("pt", DataType.POINT)
+								.addColumn("name", DataType.STRING)
+								.addColumn("count", DataType.INT)
+								.addColumn("total", DataType.LONG)
+								.addColumn("value", DataType.DOUBLE)
+								.addColumn("ts", DataType.DATETIME)
+								.build();
+
+		GeometryFactory fact = new GeometryFactory();
+		Geometry poly = fact.createPolygon(new Coordinate[] {
+			new Coordinate(0, 0), new Coordinate(1, 0), new Coordinate(1, 1), new Coordinate(0, 0)
+		});
+		m_record = DefaultRecord.of(m_schema);
+		m_record.setAll(poly, fact.createPoint(new Coordinate(3, 4)), "가나다", -15, 1234567890123L,
+						12.5d, LocalDateTime.of(2020, 2, 12, 10, 30));
+	}
+
+	@Test
+	public void test01() throws Exception {
+		byte[] bytes = encode(m_record, m_record.duplicate().set(2, null).set(5, null));
+
+		// 기존 RecordProto 파서로 읽을 수 있어야 한다.
+		ByteArrayInputStream bais = new ByteArrayInputStream(bytes);
+		Record rec1 = PBRecordProtos.fromProto(RecordProto.parseDelimitedFrom(bais), m_schema);
+		Assert.assertEquals(m_record, rec1);
+		Record rec2 = PBRecordProtos.fromProto(RecordProto.parseDelimitedFrom(bais), m_schema);
+		Assert.assertEquals(null, rec2.get(2));
+		Assert.assertEquals(null, rec2.get(5));
+		Assert.assertEquals(null, RecordProto.parseDelimitedFrom(bais));
+	}
+
+	@Test
+	public void test02() throws Exception {
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		PBRecordProtos.toProto(m_record).writeDelimitedTo(baos);
+
+		PBRecordCodec codec = PBRecordCodec.of(m_schema);
+		CodedInputStream in = CodedInputStream.newInstance(baos.toByteArray());
+		Record output = DefaultRecord.of(m_schema);
+		Assert.assertTrue(codec.readDelimited(in, output));
+		Assert.assertEquals(m_record, output);
+		Assert.assertFalse(codec.readDelimited(in, output));
+	}
+
+	@Test
+	public void test03() throws Exception {
+		RecordSet rset = RecordSet.of(m_record, m_record.duplicate().set(0, null).set(3, null));
+		
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		StartableExecution<Long> exec = PBRecordProtos.newWriteExecution(rset, baos,
+																	RecordStreamFormat.COMPACT);
+		exec.start();
+		Assert.assertEquals(2L, (long)exec.get());
+		
+		RecordSet read = PBRecordProtos.readRecordSet(new ByteArrayInputStream(baos.toByteArray()));
+		Assert.assertEquals(m_schema, read.getRecordSchema());
+		List<Record> records = read.toList();
+		Assert.assertEquals(2, records.size());
+		Assert.assertEquals(m_record, records.get(0));
+		Assert.assertEquals(null, records.get(1).get(0));
+		Assert.assertEquals(null, records.get(1).get(3));
+		Assert.assertEquals(m_record.get(6), records.get(1).get(6));
+	}
+
+	@Test
+	public void test04() throws Exception {
+		List<Record> input = Lists.newArrayList();
+		for ( int i =0; i < 100; ++i ) {
+			input.add(m_record.duplicate().set(3, i));
+		}
+		
+		// 반환된 chunk는 이후의 nextChunk() 호출에 의해 변경되지 않아야 한다.
+		ChunkSource source = PBRecordProtos.toChunkSource(RecordSet.from(input),
+														RecordStreamFormat.RECORD_PROTO, 100);
+		List<ByteString> chunks = Lists.newArrayList();
+		ByteString chunk;
+		while ( (chunk = source.nextChunk()) != null ) {
+			Assert.assertTrue(chunk.size() <= 100);
+			chunks.add(chunk);
+		}
+		source.close();
+		
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		for ( ByteString c: chunks ) {
+			c.writeTo(baos);
+		}
+		
+		RecordSet read = PBRecordProtos.readRecordSet(new ByteArrayInputStream(baos.toByteArray()));
+		Assert.assertEquals(input, read.toList());
+	}
+
+	@Test
+	public void test05() throws Exception {
+		// 빠른 경로에서 처리하지 않는 필드는 ValueProto 전체로 파싱되어야 한다.
+		RecordSchema schema = RecordSchema.builder()
+											.addColumn("a", DataType.STRING)
+											.addColumn("b", DataType.INT)
+											.build();
+		UnknownFieldSet unknowns = UnknownFieldSet.newBuilder()
+										.addField(60, UnknownFieldSet.Field.newBuilder().addVarint(7).build())
+										.build();
+		RecordProto proto = RecordProto.newBuilder()
+									.addColumn(ValueProto.newBuilder().setUnknownFields(unknowns))
+									.addColumn(ValueProto.newBuilder().setIntValue(7))
+									.build();
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		proto.writeDelimitedTo(baos);
+
+		CodedInputStream in = CodedInputStream.newInstance(baos.toByteArray());
+		Record output = DefaultRecord.of(schema);
+		Assert.assertTrue(PBRecordCodec.of(schema).readDelimited(in, output));
+		Assert.assertEquals(null, output.get(0));
+		Assert.assertEquals(7, output.get(1));
+	}
+
+	private byte[] encode(Record... records) throws Exception {
+		PBRecordCodec codec = PBRecordCodec.of(m_schema);
+
+		ByteArrayOutputStream baos = new ByteArrayOutputStream();
+		CodedOutputStream out = CodedOutputStream.newInstance(baos);
+		for ( Record rec: records ) {
+			codec.writeDelimited(rec, out);
+		}
+		out.flush();
+
+		return baos.toByteArray();
+	}
+}
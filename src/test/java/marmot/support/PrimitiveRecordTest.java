@@ -0,0 +1,69 @@
+package marmot.support;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import marmot.Record;
+import marmot.RecordSchema;
+import marmot.type.DataType;
+
+
+/**
+ *
+ * @author Kang-Woo Lee (ETRI)
+ */
+public class PrimitiveRecordTest {
+	private RecordSchema m_schema;
+
+	@Before
+	public void setup() {
+		m_schema = RecordSchema.builder()
+								.addColumn("count", DataType.INT)
+								.addColumn("total", DataType.LONG)
+								.addColumn("value", DataType.DOUBLE)
+								.addColumn("flag", DataType.BOOLEAN)
+								.build();
+	}
+
+	@Test
+	public void test01() throws Exception {
+		Record rec = DefaultRecord.of(m_schema);
+		Assert.assertTrue(rec instanceof PrimitiveRecord);
+
+		rec.setAll(15, 30L, 12.5d, true);
+		Assert.assertEquals(15, rec.get(0));
+		Assert.assertEquals(30L, rec.get("TOTAL"));
+		Assert.assertEquals(12.5d, rec.get(2));
+		Assert.assertEquals(true, rec.get(3));
+		Assert.assertEquals(12.5d, rec.getDouble(2), 0);
+		Assert.assertEquals(30, rec.getInt(1));
+	}
+
+	@Test
+	public void test02() throws Exception {
+		Record rec = DefaultRecord.of(m_schema);
+		Assert.assertEquals(null, rec.get(0));
+
+		rec.setDouble(2, 3.5).setLong(1, 7);
+		Assert.assertEquals(3.5d, rec.get(2));
+		Assert.assertEquals(7L, rec.get(1));
+
+		rec.set(2, null);
+		Assert.assertEquals(null, rec.get(2));
+		Assert.assertEquals(0, rec.getDouble(2), 0);
+
+		Record copy = rec.duplicate();
+		Assert.assertEquals(rec, copy);
+		Assert.assertArrayEquals(new Object[]{null, 7L, null, null}, copy.getAll());
+	}
+
+	@Test
+	public void test03() throws Exception {
+		RecordSchema schema = RecordSchema.builder()
+										.addColumn("name", DataType.STRING)
+										.addColumn("value", DataType.DOUBLE)
+										.build();
+		Assert.assertFalse(DefaultRecord.of(schema) instanceof PrimitiveRecord);
+	}
+}